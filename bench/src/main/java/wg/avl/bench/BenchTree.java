@@ -0,0 +1,36 @@
+package wg.avl.bench;
+
+/**
+ * The operations a benchmark performs on a tree, so that each tree and the JDK maps can be measured
+ * by the same benchmark.
+ * @author Wesley Garey
+ */
+public interface BenchTree {
+  /**
+   * Indicates if the tree contains a key.
+   * @param key The key.
+   * @return True, if the tree contains the key.
+   */
+  public boolean contains(Integer key);
+  /**
+   * Gets the number of elements in the tree.
+   * @return The number of elements.
+   */
+  public int getCount();
+  /**
+   * Gets the elements of the tree in key order.
+   * @return The elements.
+   */
+  public Object[] getInOrder();
+  /**
+   * Puts an element into the tree, replacing the element of an equal key.
+   * @param key The key of the element.
+   * @param data The element.
+   */
+  public void put(Integer key, Integer data);
+  /**
+   * Removes an element from the tree.
+   * @param key The key of the element.
+   */
+  public void remove(Integer key);
+}
@@ -0,0 +1,118 @@
+package wg.avl.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler and prints each tree's scores beside those of
+ * the JDK map it is compared with.
+ * Takes the usual JMH options, so "-p size=1000,100000 TreeBenchmark.contains" runs a subset.
+ * Results are also written to bench-results.csv unless another result file is given.
+ * @author Wesley Garey
+ */
+public class BenchmarkRunner {
+  /**
+   * The allocation per operation, as the GC profiler names it. Older JMH prefixed it with a dot.
+   */
+  private static final String[] ALLOC_RESULTS = {"gc.alloc.rate.norm", "\u00b7gc.alloc.rate.norm"};
+  /**
+   * The parameter naming the tree measured.
+   */
+  private static final String IMPL = "impl";
+  /**
+   * Runs the benchmarks.
+   * @param args The JMH command line.
+   * @throws CommandLineOptionException If the command line is malformed.
+   * @throws RunnerException If a benchmark failed.
+   */
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(cmd);
+    if (cmd.getIncludes().isEmpty()) {
+      builder.include(BenchmarkRunner.class.getPackage().getName() + ".");
+    }
+    if (!cmd.getResult().hasValue()) {
+      builder.result("bench-results.csv");
+      builder.resultFormat(ResultFormatType.CSV);
+    }
+    builder.addProfiler(GCProfiler.class);
+    Options options = builder.build();
+    Collection<RunResult> results = new Runner(options).run();
+    BenchmarkRunner.printComparison(results);
+  }
+  /**
+   * Gets the bytes allocated per operation.
+   * @param result The result of a benchmark.
+   * @return The bytes allocated per operation, or NaN if the profiler did not report it.
+   */
+  private static double getAllocation(RunResult result) {
+    Map<String, Result> secondary = result.getSecondaryResults();
+    double alloc = Double.NaN;
+    for (String name : ALLOC_RESULTS) {
+      if (Double.isNaN(alloc) && secondary.containsKey(name)) {
+        alloc = secondary.get(name).getScore();
+      }
+    }
+    return alloc;
+  }
+  /**
+   * Describes a benchmark and its parameters other than the tree measured.
+   * @param params The parameters of a benchmark.
+   * @return The description.
+   */
+  private static String getCase(BenchmarkParams params) {
+    StringBuilder builder = new StringBuilder();
+    String benchmark = params.getBenchmark();
+    builder.append(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+    for (String key : params.getParamsKeys()) {
+      if (!IMPL.equals(key)) {
+        builder.append(' ').append(key).append('=').append(params.getParam(key));
+      }
+    }
+    return builder.toString();
+  }
+  /**
+   * Prints each case on one line, with the score and allocation of each tree side by side.
+   * @param results The results of the benchmarks.
+   */
+  private static void printComparison(Collection<RunResult> results) {
+    Map<String, List<RunResult>> cases = new LinkedHashMap<String, List<RunResult>>();
+    for (RunResult result : results) {
+      String key = BenchmarkRunner.getCase(result.getParams());
+      List<RunResult> row = cases.get(key);
+      if (row == null) {
+        row = new ArrayList<RunResult>();
+        cases.put(key, row);
+      }
+      row.add(result);
+    }
+    System.out.println();
+    System.out.println("Side by side (score, bytes allocated per operation):");
+    for (Map.Entry<String, List<RunResult>> entry : cases.entrySet()) {
+      StringBuilder line = new StringBuilder(entry.getKey());
+      for (RunResult result : entry.getValue()) {
+        Result primary = result.getPrimaryResult();
+        line.append(String.format("  | %s %.3f %s, %.1f B/op",
+            result.getParams().getParam(IMPL), primary.getScore(), primary.getScoreUnit(),
+            BenchmarkRunner.getAllocation(result)));
+      }
+      System.out.println(line);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package wg.avl.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a mix of lookups and updates on the thread-safe trees next to a synchronized TreeMap,
+ * with several threads sharing one tree.
+ * Each thread draws its own keys, so threads contend on the tree but not on the workload.
+ * @author Wesley Garey
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentBenchmark {
+  /**
+   * The tree shared by every thread.
+   */
+  @State(Scope.Benchmark)
+  public static class Shared {
+    /**
+     * The key distribution.
+     */
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "SORTED"})
+    public KeyDistribution distribution;
+    /**
+     * The tree measured.
+     */
+    @Param({"STAMPED_AVL_TREE", "CONCURRENT_AVL_TREE", "SYNCHRONIZED_TREE_MAP"})
+    public TreeKind impl;
+    /**
+     * The percentage of operations that are lookups.
+     */
+    @Param({"50", "90", "99"})
+    public int readPercent;
+    /**
+     * The number of keys loaded.
+     */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+    private final AtomicLong mSeeds = new AtomicLong(42);
+    private BenchTree mTree;
+    private Workload mWorkload;
+    /**
+     * Builds the workload and loads the tree.
+     * @throws IllegalArgumentException If the tree is not safe to share between threads.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+      if (!this.impl.isThreadSafe()) {
+        throw new IllegalArgumentException(this.impl + " is not safe to share between threads");
+      }
+      this.mWorkload = new Workload(this.distribution, this.size, this.readPercent, this.mSeeds.getAndIncrement());
+      this.mTree = this.mWorkload.load(this.impl);
+    }
+    /**
+     * Gets the tree.
+     * @return The tree.
+     */
+    public BenchTree getTree() {
+      return this.mTree;
+    }
+    /**
+     * Creates the workload of another thread, over the keys loaded but with its own lookups.
+     * @return The workload.
+     */
+    public Workload split() {
+      return this.mWorkload.split(this.mSeeds.getAndIncrement());
+    }
+  }
+  /**
+   * The keys one thread looks up.
+   */
+  @State(Scope.Thread)
+  public static class Local {
+    private int mCursor;
+    private Workload mWorkload;
+    /**
+     * Builds the thread's workload.
+     * @param shared The shared tree.
+     */
+    @Setup(Level.Trial)
+    public void setUp(Shared shared) {
+      this.mWorkload = shared.split();
+      this.mCursor = 0;
+    }
+  }
+  /**
+   * Performs the next operation of the mix with four threads.
+   * @param shared The shared tree.
+   * @param local The thread's keys.
+   * @return True, if the operation was a lookup that found its key.
+   */
+  @Benchmark
+  @Threads(4)
+  public boolean mixed4(Shared shared, Local local) {
+    return ConcurrentBenchmark.mixed(shared, local);
+  }
+  /**
+   * Performs the next operation of the mix with a thread for every processor.
+   * @param shared The shared tree.
+   * @param local The thread's keys.
+   * @return True, if the operation was a lookup that found its key.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public boolean mixedMax(Shared shared, Local local) {
+    return ConcurrentBenchmark.mixed(shared, local);
+  }
+  /**
+   * Performs the next operation of the mix.
+   * @param shared The shared tree.
+   * @param local The thread's keys.
+   * @return True, if the operation was a lookup that found its key.
+   */
+  private static boolean mixed(Shared shared, Local local) {
+    int cursor = local.mCursor++;
+    Integer key = local.mWorkload.getQuery(cursor);
+    boolean found = false;
+    if (local.mWorkload.isRead(cursor)) {
+      found = shared.getTree().contains(key);
+    } else {
+      shared.getTree().remove(key);
+      shared.getTree().put(key, key);
+    }
+    return found;
+  }
+}
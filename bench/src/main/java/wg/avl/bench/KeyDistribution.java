@@ -0,0 +1,99 @@
+package wg.avl.bench;
+
+import java.util.Random;
+
+/**
+ * The ways a benchmark chooses the keys it loads into a tree and the keys it then looks up.
+ * @author Wesley Garey
+ */
+public enum KeyDistribution {
+  /**
+   * Dense keys from zero, loaded and looked up in ascending order, wrapping at the end.
+   */
+  SEQUENTIAL {
+    @Override
+    public int[] queries(int keyCount, int count, Random random) {
+      int[] queries = new int[count];
+      for (int i = 0; i < count; ++i) {
+        queries[i] = i % keyCount;
+      }
+      return queries;
+    }
+  },
+  /**
+   * Sparse random keys, loaded in random order and looked up uniformly.
+   */
+  RANDOM,
+  /**
+   * Sparse random keys, loaded in random order and looked up with Zipfian skew.
+   * The popular keys are spread over the key space rather than bunched at one end.
+   */
+  ZIPFIAN {
+    @Override
+    public int[] queries(int keyCount, int count, Random random) {
+      ZipfianGenerator zipf = new ZipfianGenerator(keyCount, random);
+      int[] queries = new int[count];
+      for (int i = 0; i < count; ++i) {
+        //keys are loaded in random order, so the popular positions land on unrelated keys
+        queries[i] = (int)zipf.next();
+      }
+      return queries;
+    }
+  },
+  /**
+   * Sparse random keys, loaded in ascending order and looked up uniformly.
+   */
+  SORTED;
+
+  /**
+   * Chooses the keys to load.
+   * @param size The number of keys.
+   * @param random The source of randomness.
+   * @return The distinct keys, in the order they are to be loaded.
+   */
+  public int[] keys(int size, Random random) {
+    int[] keys = new int[size];
+    if (this == KeyDistribution.SEQUENTIAL) {
+      for (int i = 0; i < size; ++i) {
+        keys[i] = i;
+      }
+    } else {
+      //spreading the keys by a random stride keeps them distinct without a set
+      for (int i = 0, key = 0; i < size; ++i) {
+        key += 1 + random.nextInt(16);
+        keys[i] = key;
+      }
+      if (this != KeyDistribution.SORTED) {
+        KeyDistribution.shuffle(keys, random);
+      }
+    }
+    return keys;
+  }
+  /**
+   * Chooses the keys to look up.
+   * @param keyCount The number of keys loaded.
+   * @param count The number of lookups.
+   * @param random The source of randomness.
+   * @return The positions, in load order, of the keys to look up.
+   */
+  public int[] queries(int keyCount, int count, Random random) {
+    int[] queries = new int[count];
+    for (int i = 0; i < count; ++i) {
+      queries[i] = random.nextInt(keyCount);
+    }
+    return queries;
+  }
+  /**
+   * Shuffles keys in place.
+   * @param keys The keys.
+   * @param random The source of randomness.
+   */
+  private static void shuffle(int[] keys, Random random) {
+    for (int i = keys.length - 1; i > 0; --i) {
+      int j = random.nextInt(i + 1);
+      int swap = keys[i];
+      keys[i] = keys[j];
+      keys[j] = swap;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package wg.avl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a mix of lookups and updates on an AvlTree next to a TreeMap, one thread at a time.
+ * An update removes a key and puts it back, so the tree keeps its size.
+ * @author Wesley Garey
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class MixedBenchmark {
+  /**
+   * The key distribution.
+   */
+  @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "SORTED"})
+  public KeyDistribution distribution;
+  /**
+   * The tree measured.
+   */
+  @Param({"AVL_TREE", "TREE_MAP"})
+  public TreeKind impl;
+  /**
+   * The percentage of operations that are lookups.
+   */
+  @Param({"50", "90", "99"})
+  public int readPercent;
+  /**
+   * The number of keys loaded.
+   */
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int size;
+  private int mCursor;
+  private BenchTree mTree;
+  private Workload mWorkload;
+  /**
+   * Builds the workload and loads the tree.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.mWorkload = new Workload(this.distribution, this.size, this.readPercent, 42);
+    this.mTree = this.mWorkload.load(this.impl);
+    this.mCursor = 0;
+  }
+  /**
+   * Performs the next operation of the mix.
+   * @return True, if the operation was a lookup that found its key.
+   */
+  @Benchmark
+  public boolean mixed() {
+    int cursor = this.mCursor++;
+    Integer key = this.mWorkload.getQuery(cursor);
+    boolean found = false;
+    if (this.mWorkload.isRead(cursor)) {
+      found = this.mTree.contains(key);
+    } else {
+      this.mTree.remove(key);
+      this.mTree.put(key, key);
+    }
+    return found;
+  }
+}
@@ -0,0 +1,107 @@
+package wg.avl.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single operations on an AvlTree next to a TreeMap, one thread at a time.
+ * Lookups and updates run against a tree loaded with every key; the tree keeps its size, since an
+ * update removes a key and puts it back.
+ * @author Wesley Garey
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Thread)
+public class TreeBenchmark {
+  /**
+   * The key distribution.
+   */
+  @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "SORTED"})
+  public KeyDistribution distribution;
+  /**
+   * The tree measured.
+   */
+  @Param({"AVL_TREE", "TREE_MAP"})
+  public TreeKind impl;
+  /**
+   * The number of keys loaded.
+   */
+  @Param({"1000", "100000", "1000000", "10000000"})
+  public int size;
+  private int mCursor;
+  private BenchTree mTree;
+  private Workload mWorkload;
+  /**
+   * Builds the workload and loads the tree.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.mWorkload = new Workload(this.distribution, this.size, 100, 42);
+    this.mTree = this.mWorkload.load(this.impl);
+    this.mCursor = 0;
+  }
+  /**
+   * Checks that the updates left every key in the tree.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (this.mTree.getCount() != this.size) {
+      throw new IllegalStateException("expected " + this.size + " keys, found " + this.mTree.getCount());
+    }
+  }
+  /**
+   * Creates a tree and loads every key into it.
+   * The time reported is for the whole load, not for each key.
+   * @return The tree.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 5)
+  public BenchTree build() {
+    return this.mWorkload.load(this.impl);
+  }
+  /**
+   * Looks up a key that the tree contains.
+   * @return True, if the tree contains the key.
+   */
+  @Benchmark
+  public boolean contains() {
+    return this.mTree.contains(this.mWorkload.getQuery(this.mCursor++));
+  }
+  /**
+   * Gets every element in key order.
+   * @return The elements.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object[] getInOrder() {
+    return this.mTree.getInOrder();
+  }
+  /**
+   * Removes a key and puts it back.
+   */
+  @Benchmark
+  public void removePut() {
+    Integer key = this.mWorkload.getQuery(this.mCursor++);
+    this.mTree.remove(key);
+    this.mTree.put(key, key);
+  }
+}
@@ -0,0 +1,183 @@
+package wg.avl.bench;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import wg.avl.AvlTree;
+import wg.avl.ConcurrentAvlTree;
+import wg.avl.StampedAvlTree;
+
+/**
+ * The trees a benchmark can measure.
+ * The first two are for single-threaded benchmarks, the rest are safe to share between threads.
+ * @author Wesley Garey
+ */
+public enum TreeKind {
+  /**
+   * An AvlTree.
+   */
+  AVL_TREE(false) {
+    @Override
+    public BenchTree create() {
+      final AvlTree<Integer, Integer> tree = new AvlTree<Integer, Integer>();
+      return new BenchTree() {
+        @Override
+        public boolean contains(Integer key) {
+          return tree.contains(key);
+        }
+        @Override
+        public int getCount() {
+          return tree.getCount();
+        }
+        @Override
+        public Object[] getInOrder() {
+          return tree.getInOrder();
+        }
+        @Override
+        public void put(Integer key, Integer data) {
+          tree.put(key, data);
+        }
+        @Override
+        public void remove(Integer key) {
+          tree.remove(key);
+        }
+      };
+    }
+  },
+  /**
+   * A TreeMap, for comparison.
+   */
+  TREE_MAP(false) {
+    @Override
+    public BenchTree create() {
+      return TreeKind.wrap(new TreeMap<Integer, Integer>());
+    }
+  },
+  /**
+   * A StampedAvlTree.
+   */
+  STAMPED_AVL_TREE(true) {
+    @Override
+    public BenchTree create() {
+      final StampedAvlTree<Integer, Integer> tree = new StampedAvlTree<Integer, Integer>();
+      return new BenchTree() {
+        @Override
+        public boolean contains(Integer key) {
+          return tree.contains(key);
+        }
+        @Override
+        public int getCount() {
+          return tree.getCount();
+        }
+        @Override
+        public Object[] getInOrder() {
+          return tree.getInOrder();
+        }
+        @Override
+        public void put(Integer key, Integer data) {
+          tree.put(key, data);
+        }
+        @Override
+        public void remove(Integer key) {
+          tree.remove(key);
+        }
+      };
+    }
+  },
+  /**
+   * A ConcurrentAvlTree.
+   */
+  CONCURRENT_AVL_TREE(true) {
+    @Override
+    public BenchTree create() {
+      final ConcurrentAvlTree<Integer, Integer> tree = new ConcurrentAvlTree<Integer, Integer>();
+      return new BenchTree() {
+        @Override
+        public boolean contains(Integer key) {
+          return tree.contains(key);
+        }
+        @Override
+        public int getCount() {
+          return tree.getCount();
+        }
+        @Override
+        public Object[] getInOrder() {
+          return tree.getInOrder();
+        }
+        @Override
+        public void put(Integer key, Integer data) {
+          tree.insert(key, data);
+        }
+        @Override
+        public void remove(Integer key) {
+          tree.remove(key);
+        }
+      };
+    }
+  },
+  /**
+   * A synchronized TreeMap, for comparison.
+   */
+  SYNCHRONIZED_TREE_MAP(true) {
+    @Override
+    public BenchTree create() {
+      return TreeKind.wrap(Collections.synchronizedSortedMap(new TreeMap<Integer, Integer>()));
+    }
+  };
+
+  private final boolean mThreadSafe;
+  /**
+   * Creates a tree kind.
+   * @param threadSafe Whether the tree is safe to share between threads.
+   */
+  private TreeKind(boolean threadSafe) {
+    this.mThreadSafe = threadSafe;
+  }
+  /**
+   * Creates an empty tree.
+   * @return The tree.
+   */
+  public abstract BenchTree create();
+  /**
+   * Indicates if the tree is safe to share between threads.
+   * @return True, if the tree is safe to share between threads.
+   */
+  public boolean isThreadSafe() {
+    return this.mThreadSafe;
+  }
+  /**
+   * Adapts a sorted map.
+   * @param map The map.
+   * @return The adapter.
+   */
+  private static BenchTree wrap(final SortedMap<Integer, Integer> map) {
+    return new BenchTree() {
+      @Override
+      public boolean contains(Integer key) {
+        return map.containsKey(key);
+      }
+      @Override
+      public int getCount() {
+        return map.size();
+      }
+      @Override
+      public Object[] getInOrder() {
+        Object[] values;
+        //a synchronized map's views must be walked under its lock
+        synchronized (map) {
+          values = map.values().toArray();
+        }
+        return values;
+      }
+      @Override
+      public void put(Integer key, Integer data) {
+        map.put(key, data);
+      }
+      @Override
+      public void remove(Integer key) {
+        map.remove(key);
+      }
+    };
+  }
+}
@@ -0,0 +1,100 @@
+package wg.avl.bench;
+
+import java.util.Random;
+
+/**
+ * The keys a benchmark loads into a tree and the keys it then looks up.
+ * Keys are boxed up front so that the measured operations allocate only what the trees allocate.
+ * @author Wesley Garey
+ */
+public class Workload {
+  /**
+   * The number of lookups, a power of two so that a cursor can wrap with a mask.
+   */
+  public static final int QUERY_COUNT = 1 << 16;
+  private final KeyDistribution mDistribution;
+  private final Integer[] mKeys;
+  private final Integer[] mQueries;
+  private final int mReadPercent;
+  private final boolean[] mReads;
+  /**
+   * Creates a workload.
+   * @param distribution The key distribution.
+   * @param size The number of keys to load.
+   * @param readPercent The percentage of operations that are lookups rather than updates.
+   * @param seed The seed of the keys and lookups.
+   */
+  public Workload(KeyDistribution distribution, int size, int readPercent, long seed) {
+    this(distribution, Workload.box(distribution.keys(size, new Random(seed))), readPercent, new Random(seed + 1));
+  }
+  /**
+   * Creates a workload of boxed keys.
+   * @param distribution The key distribution.
+   * @param keys The keys to load.
+   * @param readPercent The percentage of operations that are lookups rather than updates.
+   * @param random The source of the lookups.
+   */
+  private Workload(KeyDistribution distribution, Integer[] keys, int readPercent, Random random) {
+    int[] queries = distribution.queries(keys.length, QUERY_COUNT, random);
+    this.mDistribution = distribution;
+    this.mKeys = keys;
+    this.mReadPercent = readPercent;
+    //lookups share the loaded keys' boxes, so they cost no allocation and compare the objects the tree holds
+    this.mQueries = new Integer[queries.length];
+    for (int i = 0; i < queries.length; ++i) {
+      this.mQueries[i] = keys[queries[i]];
+    }
+    this.mReads = new boolean[QUERY_COUNT];
+    for (int i = 0; i < QUERY_COUNT; ++i) {
+      this.mReads[i] = random.nextInt(100) < readPercent;
+    }
+  }
+  /**
+   * Gets a key to look up.
+   * @param cursor The position in the lookups. It wraps at the end.
+   * @return The key.
+   */
+  public Integer getQuery(int cursor) {
+    return this.mQueries[cursor & (QUERY_COUNT - 1)];
+  }
+  /**
+   * Indicates if an operation is a lookup rather than an update.
+   * @param cursor The position in the operations. It wraps at the end.
+   * @return True, if the operation is a lookup.
+   */
+  public boolean isRead(int cursor) {
+    return this.mReads[cursor & (QUERY_COUNT - 1)];
+  }
+  /**
+   * Creates a tree and loads the keys into it, each key being its own data.
+   * @param kind The kind of tree.
+   * @return The tree.
+   */
+  public BenchTree load(TreeKind kind) {
+    BenchTree tree = kind.create();
+    for (Integer key : this.mKeys) {
+      tree.put(key, key);
+    }
+    return tree;
+  }
+  /**
+   * Creates a workload over the same keys with its own lookups, for another thread.
+   * @param seed The seed of the lookups.
+   * @return The workload.
+   */
+  public Workload split(long seed) {
+    return new Workload(this.mDistribution, this.mKeys, this.mReadPercent, new Random(seed));
+  }
+  /**
+   * Boxes keys.
+   * @param keys The keys.
+   * @return The boxed keys.
+   */
+  private static Integer[] box(int[] keys) {
+    Integer[] boxed = new Integer[keys.length];
+    for (int i = 0; i < keys.length; ++i) {
+      boxed[i] = Integer.valueOf(keys[i]);
+    }
+    return boxed;
+  }
+}
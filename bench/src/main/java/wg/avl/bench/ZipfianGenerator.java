@@ -0,0 +1,95 @@
+package wg.avl.bench;
+
+import java.util.Random;
+
+/**
+ * Draws ranks from a Zipfian distribution, so that rank 0 is the most popular.
+ * Uses the method of Gray et al., "Quickly Generating Billion-Record Synthetic Databases", which
+ * needs the zeta constant of the item count once and then draws each rank in constant time.
+ * @author Wesley Garey
+ */
+public class ZipfianGenerator {
+  /**
+   * The default skew, as used by YCSB.
+   */
+  public static final double DEFAULT_THETA = 0.99;
+  private final double mAlpha;
+  private final double mEta;
+  private final long mItemCount;
+  private final Random mRandom;
+  private final double mTheta;
+  private final double mZetaN;
+  /**
+   * Creates a generator with the default skew.
+   * @param itemCount The number of ranks.
+   * @param random The source of randomness.
+   */
+  public ZipfianGenerator(long itemCount, Random random) {
+    this(itemCount, DEFAULT_THETA, random);
+  }
+  /**
+   * Creates a generator.
+   * @param itemCount The number of ranks.
+   * @param theta The skew, between zero and one exclusive.
+   * @param random The source of randomness.
+   */
+  public ZipfianGenerator(long itemCount, double theta, Random random) {
+    if (itemCount < 1) {
+      throw new IllegalArgumentException("itemCount must be positive");
+    }
+    if (theta <= 0.0 || theta >= 1.0) {
+      throw new IllegalArgumentException("theta must be between zero and one exclusive");
+    }
+    double zeta2 = ZipfianGenerator.zeta(2, theta);
+    this.mItemCount = itemCount;
+    this.mRandom = random;
+    this.mTheta = theta;
+    this.mZetaN = ZipfianGenerator.zeta(itemCount, theta);
+    this.mAlpha = 1.0 / (1.0 - theta);
+    this.mEta = (1.0 - Math.pow(2.0 / itemCount, 1.0 - theta)) / (1.0 - zeta2 / this.mZetaN);
+  }
+  /**
+   * Gets the number of ranks.
+   * @return The number of ranks.
+   */
+  public long getItemCount() {
+    return this.mItemCount;
+  }
+  /**
+   * Gets the skew.
+   * @return The skew.
+   */
+  public double getTheta() {
+    return this.mTheta;
+  }
+  /**
+   * Draws the next rank.
+   * @return A rank from zero to the item count exclusive.
+   */
+  public long next() {
+    double u = this.mRandom.nextDouble();
+    double uz = u * this.mZetaN;
+    long rank;
+    if (uz < 1.0) {
+      rank = 0;
+    } else if (uz < 1.0 + Math.pow(0.5, this.mTheta)) {
+      rank = 1;
+    } else {
+      rank = (long)(this.mItemCount * Math.pow(this.mEta * u - this.mEta + 1.0, this.mAlpha));
+    }
+    return Math.min(rank, this.mItemCount - 1);
+  }
+  /**
+   * Computes the generalised harmonic number of an item count.
+   * @param itemCount The item count.
+   * @param theta The skew.
+   * @return The sum of 1 / i^theta for i from one to the item count.
+   */
+  private static double zeta(long itemCount, double theta) {
+    double sum = 0.0;
+    for (long i = 1; i <= itemCount; ++i) {
+      sum += 1.0 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+}
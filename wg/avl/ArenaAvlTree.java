@@ -0,0 +1,424 @@
+package wg.avl;
+
+/**
+ * An AVL tree whose nodes live in a NodeArena instead of separate node objects.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ArenaAvlTree<K extends Comparable, E> {
+  /**
+   * The node storage.
+   */
+  private NodeArena<K, E> mArena;
+  /**
+   * The number of elements in the tree.
+   */
+  private int mCount;
+  /**
+   * The root node id.
+   */
+  private int mRoot;
+  /**
+   * Gets the node storage.
+   * @return The node storage.
+   */
+  protected NodeArena<K, E> getArena() {
+    return this.mArena;
+  }
+  /**
+   * Gets the number of elements in the tree.
+   * @return The number.
+   */
+  public int getCount() {
+    return this.mCount;
+  }
+  /**
+   * Gets the root node id.
+   * @return The root node id.
+   */
+  protected int getRoot() {
+    return this.mRoot;
+  }
+  /**
+   * Sets the number of elements in the tree.
+   * @param count The number.
+   */
+  protected void setCount(int count) {
+    this.mCount = count;
+  }
+  /**
+   * Sets the root node id.
+   * @param root The root node id.
+   */
+  protected void setRoot(int root) {
+    this.mRoot = root;
+  }
+  /**
+   * Creates an instance of the ArenaAvlTree class that stores its nodes in arrays.
+   */
+  public ArenaAvlTree() {
+    this(new ArrayNodeArena<K, E>());
+  }
+  /**
+   * Creates an instance of the ArenaAvlTree class.
+   * @param arena The node storage. It must be empty.
+   */
+  public ArenaAvlTree(NodeArena<K, E> arena) {
+    this.mArena = arena;
+    this.mCount = 0;
+    this.mRoot = NodeArena.NIL;
+  }
+  /**
+   * Removes all elements.
+   */
+  public void clear() {
+    this.getArena().clear();
+    this.setCount(0);
+    this.setRoot(NodeArena.NIL);
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key to search for.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(K key) {
+    boolean contains = (this.findNode(key) != NodeArena.NIL);
+    return contains;
+  }
+  /**
+   * Finds the first node on the search path that has the given key.
+   * @param key The key to search for.
+   * @return The node id, or NIL if the key is not in the tree.
+   */
+  protected int findNode(K key) {
+    NodeArena<K, E> arena = this.getArena();
+    int node = NodeArena.NIL;
+    int temp = this.getRoot();
+    while (temp != NodeArena.NIL && node == NodeArena.NIL) {
+      int cmp = key.compareTo(arena.getKey(temp));
+      if (cmp < 0) {
+        temp = arena.getLeft(temp);
+      } else if (cmp > 0) {
+        temp = arena.getRight(temp);
+      } else {
+        node = temp;
+      }
+    }
+    return node;
+  }
+  /**
+   * Gets the balance factor of a node.
+   * @param node The node id.
+   * @return The balance factor.
+   */
+  protected int getBalFac(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    int balFac = this.getHeight(arena.getLeft(node)) - this.getHeight(arena.getRight(node));
+    return balFac;
+  }
+  /**
+   * Gets the height of a node.
+   * @param node The node id, or NIL.
+   * @return The height, or -1 for NIL.
+   */
+  protected int getHeight(int node) {
+    int height = -1;
+    if (node != NodeArena.NIL) {
+      height = this.getArena().getHeight(node);
+    }
+    return height;
+  }
+  /**
+   * Gets the collection of elements in order.
+   * @return The collection.
+   */
+  public Object[] getInOrder() {
+    NodeArena<K, E> arena = this.getArena();
+    int index = 0;
+    Object[] collection = new Object[this.getCount()];
+    int node = this.getRoot();
+    if (node != NodeArena.NIL) {
+      while (arena.getLeft(node) != NodeArena.NIL) {
+        node = arena.getLeft(node);
+      }
+    }
+    while (node != NodeArena.NIL) {
+      collection[index++] = arena.getData(node);
+      node = this.getSuccessor(node);
+    }
+    return collection;
+  }
+  /**
+   * Gets the smallest element
+   * @return The smallest element.
+   */
+  public E getMin() {
+    NodeArena<K, E> arena = this.getArena();
+    E min = null;
+    int temp = this.getRoot();
+    if (temp != NodeArena.NIL) {
+      while (arena.getLeft(temp) != NodeArena.NIL) {
+        temp = arena.getLeft(temp);
+      }
+      min = arena.getData(temp);
+    }
+    return min;
+  }
+  /**
+   * The largest element.
+   * @return The element.
+   */
+  public E getMax() {
+    NodeArena<K, E> arena = this.getArena();
+    E max = null;
+    int temp = this.getRoot();
+    if (temp != NodeArena.NIL) {
+      while (arena.getRight(temp) != NodeArena.NIL) {
+        temp = arena.getRight(temp);
+      }
+      max = arena.getData(temp);
+    }
+    return max;
+  }
+  /**
+   * Gets the in-order successor of a node using the parent links.
+   * @param node The node id.
+   * @return The successor id, or NIL.
+   */
+  protected int getSuccessor(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    int successor = arena.getRight(node);
+    if (successor != NodeArena.NIL) {
+      while (arena.getLeft(successor) != NodeArena.NIL) {
+        successor = arena.getLeft(successor);
+      }
+    } else {
+      successor = arena.getParent(node);
+      while (successor != NodeArena.NIL && arena.getRight(successor) == node) {
+        node = successor;
+        successor = arena.getParent(node);
+      }
+    }
+    return successor;
+  }
+  /**
+   * Indicates if the tree is empty.
+   * @return True, if the tree is empty.
+   */
+  public boolean isEmpty() {
+    boolean isEmpty = (this.getCount() == 0);
+    return isEmpty;
+  }
+  /**
+   * Inserts an element into the tree.
+   * @param key The key of the element.
+   * @param data The element.
+   */
+  public void insert(K key, E data) {
+    NodeArena<K, E> arena = this.getArena();
+    boolean isLeft = false;
+    int parent = NodeArena.NIL;
+    int temp = this.getRoot();
+    while (temp != NodeArena.NIL) {
+      parent = temp;
+      isLeft = (key.compareTo(arena.getKey(temp)) < 0);
+      if (isLeft) {
+        temp = arena.getLeft(temp);
+      } else {
+        temp = arena.getRight(temp);
+      }
+    }
+    int node = arena.allocate();
+    arena.setKey(node, key);
+    arena.setData(node, data);
+    arena.setParent(node, parent);
+    if (parent == NodeArena.NIL) {
+      this.setRoot(node);
+    } else if (isLeft) {
+      arena.setLeft(parent, node);
+    } else {
+      arena.setRight(parent, node);
+    }
+    this.setCount(this.getCount() + 1);
+    this.retraceInsert(parent);
+  }
+  /**
+   * Re-balances the sub-tree of a node.
+   * @param node The node id.
+   * @return The new root of the sub-tree.
+   */
+  protected int rebalance(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    int root = node;
+    int balFac = this.getBalFac(node);
+    if (balFac > 1) {
+      int left = arena.getLeft(node);
+      if (this.getBalFac(left) < 0) {
+        this.rotateLeft(left);
+      }
+      root = this.rotateRight(node);
+    } else if (balFac < -1) {
+      int right = arena.getRight(node);
+      if (this.getBalFac(right) > 0) {
+        this.rotateRight(right);
+      }
+      root = this.rotateLeft(node);
+    }
+    return root;
+  }
+  /**
+   * Removes an element from the tree.
+   * @param key The key of the element.
+   */
+  public void remove(K key) {
+    int node = this.findNode(key);
+    if (node != NodeArena.NIL) {
+      this.removeNode(node);
+    }
+  }
+  /**
+   * Unlinks a node, frees its slot and restores the balance.
+   * @param node The node id.
+   */
+  protected void removeNode(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    if (arena.getLeft(node) != NodeArena.NIL && arena.getRight(node) != NodeArena.NIL) {
+      int predecessor = arena.getLeft(node);
+      while (arena.getRight(predecessor) != NodeArena.NIL) {
+        predecessor = arena.getRight(predecessor);
+      }
+      arena.setKey(node, arena.getKey(predecessor));
+      arena.setData(node, arena.getData(predecessor));
+      node = predecessor;
+    }
+    int child = arena.getLeft(node);
+    if (child == NodeArena.NIL) {
+      child = arena.getRight(node);
+    }
+    int parent = arena.getParent(node);
+    this.replaceChild(parent, node, child);
+    arena.free(node);
+    this.setCount(this.getCount() - 1);
+    this.retraceRemove(parent);
+  }
+  /**
+   * Replaces the child of a node, or the root, and fixes the parent link of the new child.
+   * @param parent The parent id, or NIL for the root.
+   * @param old The current child id.
+   * @param child The new child id, or NIL.
+   */
+  protected void replaceChild(int parent, int old, int child) {
+    NodeArena<K, E> arena = this.getArena();
+    if (child != NodeArena.NIL) {
+      arena.setParent(child, parent);
+    }
+    if (parent == NodeArena.NIL) {
+      this.setRoot(child);
+    } else if (arena.getLeft(parent) == old) {
+      arena.setLeft(parent, child);
+    } else {
+      arena.setRight(parent, child);
+    }
+  }
+  /**
+   * Walks up from a node after an insertion, stopping once a subtree keeps its height.
+   * @param node The parent of the inserted node.
+   */
+  protected void retraceInsert(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    boolean done = false;
+    while (node != NodeArena.NIL && !done) {
+      int parent = arena.getParent(node);
+      int height = arena.getHeight(node);
+      this.updateHeight(node);
+      int balFac = this.getBalFac(node);
+      if (balFac > 1 || balFac < -1) {
+        this.rebalance(node);
+        done = true;
+      } else if (arena.getHeight(node) == height) {
+        done = true;
+      }
+      node = parent;
+    }
+  }
+  /**
+   * Walks up from a node after a removal, stopping once a subtree keeps its height.
+   * @param node The parent of the unlinked node.
+   */
+  protected void retraceRemove(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    boolean done = false;
+    while (node != NodeArena.NIL && !done) {
+      int parent = arena.getParent(node);
+      int height = arena.getHeight(node);
+      this.updateHeight(node);
+      int root = this.rebalance(node);
+      done = (arena.getHeight(root) == height);
+      node = parent;
+    }
+  }
+  /**
+   * Rotates a node to the left.
+   * @param node The node id.
+   * @return The new root of the sub-tree.
+   */
+  protected int rotateLeft(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    int right = arena.getRight(node);
+    int inner = arena.getLeft(right);
+    arena.setRight(node, inner);
+    if (inner != NodeArena.NIL) {
+      arena.setParent(inner, node);
+    }
+    this.replaceChild(arena.getParent(node), node, right);
+    arena.setLeft(right, node);
+    arena.setParent(node, right);
+    this.updateHeight(node);
+    this.updateHeight(right);
+    return right;
+  }
+  /**
+   * Rotates a node to the right.
+   * @param node The node id.
+   * @return The new root of the sub-tree.
+   */
+  protected int rotateRight(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    int left = arena.getLeft(node);
+    int inner = arena.getRight(left);
+    arena.setLeft(node, inner);
+    if (inner != NodeArena.NIL) {
+      arena.setParent(inner, node);
+    }
+    this.replaceChild(arena.getParent(node), node, left);
+    arena.setRight(left, node);
+    arena.setParent(node, left);
+    this.updateHeight(node);
+    this.updateHeight(left);
+    return left;
+  }
+  /**
+   * Gets the string representation of the tree.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    NodeArena<K, E> arena = this.getArena();
+    String rep = "(empty)";
+    int root = this.getRoot();
+    if (root != NodeArena.NIL) {
+      rep = "(key=" + arena.getKey(root) + ";data=" + arena.getData(root) + ";height=" + arena.getHeight(root) + ")";
+    }
+    return rep;
+  }
+  /**
+   * Updates the height of a node from its children.
+   * @param node The node id.
+   */
+  protected void updateHeight(int node) {
+    NodeArena<K, E> arena = this.getArena();
+    int height = Math.max(this.getHeight(arena.getLeft(node)), this.getHeight(arena.getRight(node))) + 1;
+    arena.setHeight(node, height);
+  }
+}
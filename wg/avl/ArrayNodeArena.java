@@ -0,0 +1,271 @@
+package wg.avl;
+
+import java.util.Arrays;
+
+/**
+ * A node arena that keeps each node field in its own array.
+ * Freed slots are chained through the left child array and reused first.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class ArrayNodeArena<K, E> implements NodeArena<K, E> {
+  /**
+   * The default number of slots.
+   */
+  public static final int DEFAULT_CAPACITY = 16;
+  /**
+   * The data of each node.
+   */
+  private Object[] mData;
+  /**
+   * The first free slot.
+   */
+  private int mFreeHead;
+  /**
+   * The height of each node.
+   */
+  private byte[] mHeights;
+  /**
+   * The key of each node.
+   */
+  private Object[] mKeys;
+  /**
+   * The left child of each node.
+   */
+  private int[] mLefts;
+  /**
+   * The first slot that has never been used.
+   */
+  private int mNext;
+  /**
+   * The parent of each node.
+   */
+  private int[] mParents;
+  /**
+   * The right child of each node.
+   */
+  private int[] mRights;
+  /**
+   * Gets the first free slot.
+   * @return The slot.
+   */
+  protected int getFreeHead() {
+    return this.mFreeHead;
+  }
+  /**
+   * Gets the first slot that has never been used.
+   * @return The slot.
+   */
+  protected int getNext() {
+    return this.mNext;
+  }
+  /**
+   * Sets the first free slot.
+   * @param freeHead The slot.
+   */
+  protected void setFreeHead(int freeHead) {
+    this.mFreeHead = freeHead;
+  }
+  /**
+   * Sets the first slot that has never been used.
+   * @param next The slot.
+   */
+  protected void setNext(int next) {
+    this.mNext = next;
+  }
+  /**
+   * Creates an instance of the ArrayNodeArena class.
+   */
+  public ArrayNodeArena() {
+    this(ArrayNodeArena.DEFAULT_CAPACITY);
+  }
+  /**
+   * Creates an instance of the ArrayNodeArena class.
+   * @param capacity The initial number of slots.
+   */
+  public ArrayNodeArena(int capacity) {
+    capacity = Math.max(capacity, 1);
+    this.mData = new Object[capacity];
+    this.mFreeHead = NodeArena.NIL;
+    this.mHeights = new byte[capacity];
+    this.mKeys = new Object[capacity];
+    this.mLefts = new int[capacity];
+    this.mNext = 0;
+    this.mParents = new int[capacity];
+    this.mRights = new int[capacity];
+  }
+  /**
+   * Allocates a node.
+   * @return The node id.
+   */
+  @Override
+  public int allocate() {
+    int id = this.getFreeHead();
+    if (id != NodeArena.NIL) {
+      this.setFreeHead(this.mLefts[id]);
+    } else {
+      id = this.getNext();
+      if (id == this.getCapacity()) {
+        this.grow();
+      }
+      this.setNext(id + 1);
+    }
+    this.mHeights[id] = 0;
+    this.mLefts[id] = NodeArena.NIL;
+    this.mParents[id] = NodeArena.NIL;
+    this.mRights[id] = NodeArena.NIL;
+    return id;
+  }
+  /**
+   * Removes all nodes.
+   */
+  @Override
+  public void clear() {
+    Arrays.fill(this.mData, 0, this.getNext(), null);
+    Arrays.fill(this.mKeys, 0, this.getNext(), null);
+    this.setFreeHead(NodeArena.NIL);
+    this.setNext(0);
+  }
+  /**
+   * Returns a node to the free list.
+   * @param id The node id.
+   */
+  @Override
+  public void free(int id) {
+    this.mData[id] = null;
+    this.mKeys[id] = null;
+    this.mLefts[id] = this.getFreeHead();
+    this.setFreeHead(id);
+  }
+  /**
+   * Gets the number of slots.
+   * @return The capacity.
+   */
+  @Override
+  public int getCapacity() {
+    return this.mLefts.length;
+  }
+  /**
+   * Gets the data of a node.
+   * @param id The node id.
+   * @return The data.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public E getData(int id) {
+    return (E)this.mData[id];
+  }
+  /**
+   * Gets the height of a node.
+   * @param id The node id.
+   * @return The height.
+   */
+  @Override
+  public int getHeight(int id) {
+    return this.mHeights[id];
+  }
+  /**
+   * Gets the key of a node.
+   * @param id The node id.
+   * @return The key.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public K getKey(int id) {
+    return (K)this.mKeys[id];
+  }
+  /**
+   * Gets the left child of a node.
+   * @param id The node id.
+   * @return The left child id.
+   */
+  @Override
+  public int getLeft(int id) {
+    return this.mLefts[id];
+  }
+  /**
+   * Gets the parent of a node.
+   * @param id The node id.
+   * @return The parent id.
+   */
+  @Override
+  public int getParent(int id) {
+    return this.mParents[id];
+  }
+  /**
+   * Gets the right child of a node.
+   * @param id The node id.
+   * @return The right child id.
+   */
+  @Override
+  public int getRight(int id) {
+    return this.mRights[id];
+  }
+  /**
+   * Doubles the number of slots.
+   */
+  protected void grow() {
+    int capacity = this.getCapacity() * 2;
+    this.mData = Arrays.copyOf(this.mData, capacity);
+    this.mHeights = Arrays.copyOf(this.mHeights, capacity);
+    this.mKeys = Arrays.copyOf(this.mKeys, capacity);
+    this.mLefts = Arrays.copyOf(this.mLefts, capacity);
+    this.mParents = Arrays.copyOf(this.mParents, capacity);
+    this.mRights = Arrays.copyOf(this.mRights, capacity);
+  }
+  /**
+   * Sets the data of a node.
+   * @param id The node id.
+   * @param data The data.
+   */
+  @Override
+  public void setData(int id, E data) {
+    this.mData[id] = data;
+  }
+  /**
+   * Sets the height of a node.
+   * @param id The node id.
+   * @param height The height.
+   */
+  @Override
+  public void setHeight(int id, int height) {
+    this.mHeights[id] = (byte)height;
+  }
+  /**
+   * Sets the key of a node.
+   * @param id The node id.
+   * @param key The key.
+   */
+  @Override
+  public void setKey(int id, K key) {
+    this.mKeys[id] = key;
+  }
+  /**
+   * Sets the left child of a node.
+   * @param id The node id.
+   * @param left The left child id.
+   */
+  @Override
+  public void setLeft(int id, int left) {
+    this.mLefts[id] = left;
+  }
+  /**
+   * Sets the parent of a node.
+   * @param id The node id.
+   * @param parent The parent id.
+   */
+  @Override
+  public void setParent(int id, int parent) {
+    this.mParents[id] = parent;
+  }
+  /**
+   * Sets the right child of a node.
+   * @param id The node id.
+   * @param right The right child id.
+   */
+  @Override
+  public void setRight(int id, int right) {
+    this.mRights[id] = right;
+  }
+}
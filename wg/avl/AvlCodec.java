@@ -0,0 +1,32 @@
+package wg.avl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes keys or data for an AVL tree snapshot.
+ * Keys are written in ascending order and each key is given the key before it, so a codec may
+ * encode the difference instead of the whole key. Data is always given a null previous value.
+ * Every value must take at least one byte, since an empty data field stands for null data.
+ * @author Wesley Garey
+ * @param <T> The type of the values encoded.
+ */
+public interface AvlCodec<T> {
+  /**
+   * Reads a value.
+   * @param in The buffer, positioned at the value. It is left positioned after the value.
+   * @param previous The value read before this one, or null if there is none.
+   * @return The value.
+   * @throws IOException If the value is malformed.
+   */
+  public T read(ByteBuffer in, T previous) throws IOException;
+  /**
+   * Writes a value.
+   * @param out The output.
+   * @param previous The value written before this one, or null if there is none.
+   * @param value The value.
+   * @throws IOException If the value could not be written.
+   */
+  public void write(DataOutput out, T previous, T value) throws IOException;
+}
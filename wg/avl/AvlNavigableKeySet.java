@@ -0,0 +1,283 @@
+package wg.avl;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+
+/**
+ * A navigable set view of the keys of a navigable map.
+ * Every operation is passed on to the map, so the set costs what the map costs.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <V> The value data type of the map.
+ */
+public class AvlNavigableKeySet<K, V> extends AbstractSet<K> implements NavigableSet<K> {
+  /**
+   * The map whose keys are viewed.
+   */
+  private NavigableMap<K, V> mMap;
+  /**
+   * Gets the map whose keys are viewed.
+   * @return The map.
+   */
+  public NavigableMap<K, V> getMap() {
+    return this.mMap;
+  }
+  /**
+   * Creates an instance of the AvlNavigableKeySet class.
+   * @param map The map whose keys are viewed.
+   */
+  public AvlNavigableKeySet(NavigableMap<K, V> map) {
+    this.mMap = map;
+  }
+  /**
+   * Gets the smallest key that is greater than or equal to a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K ceiling(K key) {
+    return this.getMap().ceilingKey(key);
+  }
+  /**
+   * Removes all of the keys, and their values, from the map.
+   */
+  @Override
+  public void clear() {
+    this.getMap().clear();
+  }
+  /**
+   * Gets the key order of the set.
+   * @return The comparator, or null for the natural ordering.
+   */
+  @Override
+  public Comparator<? super K> comparator() {
+    return this.getMap().comparator();
+  }
+  /**
+   * Indicates if the set contains a key.
+   * @param obj The key.
+   * @return True, if the key is in the set.
+   */
+  @Override
+  public boolean contains(Object obj) {
+    return this.getMap().containsKey(obj);
+  }
+  /**
+   * Gets an iterator over the keys in descending order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<K> descendingIterator() {
+    Iterator<K> iterator = this.keyIterator(this.getMap().descendingMap().entrySet().iterator());
+    return iterator;
+  }
+  /**
+   * Gets a view of the set in reverse key order.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> descendingSet() {
+    NavigableSet<K> view = new AvlNavigableKeySet<K, V>(this.getMap().descendingMap());
+    return view;
+  }
+  /**
+   * Gets the first key.
+   * @return The key.
+   */
+  @Override
+  public K first() {
+    return this.getMap().firstKey();
+  }
+  /**
+   * Gets the largest key that is less than or equal to a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K floor(K key) {
+    return this.getMap().floorKey(key);
+  }
+  /**
+   * Gets a view of the keys that come before a key.
+   * @param toElement The key.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> headSet(K toElement) {
+    NavigableSet<K> view = this.headSet(toElement, false);
+    return view;
+  }
+  /**
+   * Gets a view of the keys that come before, or optionally at, a key.
+   * @param toElement The key.
+   * @param inclusive True, to include the key.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+    NavigableSet<K> view = new AvlNavigableKeySet<K, V>(this.getMap().headMap(toElement, inclusive));
+    return view;
+  }
+  /**
+   * Gets the smallest key that is strictly greater than a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K higher(K key) {
+    return this.getMap().higherKey(key);
+  }
+  /**
+   * Indicates if the set is empty.
+   * @return True, if the set is empty.
+   */
+  @Override
+  public boolean isEmpty() {
+    return this.getMap().isEmpty();
+  }
+  /**
+   * Gets an iterator over the keys.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<K> iterator() {
+    Iterator<K> iterator = this.keyIterator(this.getMap().entrySet().iterator());
+    return iterator;
+  }
+  /**
+   * Gets an iterator over the keys of entries.
+   * Removing a key removes its entry.
+   * @param entries The iterator over the entries.
+   * @return The iterator over the keys.
+   */
+  protected Iterator<K> keyIterator(final Iterator<Map.Entry<K, V>> entries) {
+    Iterator<K> iterator = new Iterator<K>() {
+      @Override
+      public boolean hasNext() {
+        return entries.hasNext();
+      }
+      @Override
+      public K next() {
+        return entries.next().getKey();
+      }
+      @Override
+      public void remove() {
+        entries.remove();
+      }
+    };
+    return iterator;
+  }
+  /**
+   * Gets the last key.
+   * @return The key.
+   */
+  @Override
+  public K last() {
+    return this.getMap().lastKey();
+  }
+  /**
+   * Gets the largest key that is strictly less than a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K lower(K key) {
+    return this.getMap().lowerKey(key);
+  }
+  /**
+   * Removes and gets the first key.
+   * @return The key, or null if the set is empty.
+   */
+  @Override
+  public K pollFirst() {
+    Map.Entry<K, V> entry = this.getMap().pollFirstEntry();
+    K key = null;
+    if (entry != null) {
+      key = entry.getKey();
+    }
+    return key;
+  }
+  /**
+   * Removes and gets the last key.
+   * @return The key, or null if the set is empty.
+   */
+  @Override
+  public K pollLast() {
+    Map.Entry<K, V> entry = this.getMap().pollLastEntry();
+    K key = null;
+    if (entry != null) {
+      key = entry.getKey();
+    }
+    return key;
+  }
+  /**
+   * Removes a key, and its value, from the map.
+   * @param obj The key.
+   * @return True, if the key was in the set.
+   */
+  @Override
+  public boolean remove(Object obj) {
+    boolean removed = this.getMap().containsKey(obj);
+    if (removed) {
+      this.getMap().remove(obj);
+    }
+    return removed;
+  }
+  /**
+   * Gets the number of keys.
+   * @return The number of keys.
+   */
+  @Override
+  public int size() {
+    return this.getMap().size();
+  }
+  /**
+   * Gets a view of the keys from a key, or optionally just after it, to another key.
+   * @param fromElement The first key.
+   * @param fromInclusive True, to include the first key.
+   * @param toElement The last key.
+   * @param toInclusive True, to include the last key.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+    NavigableSet<K> view = new AvlNavigableKeySet<K, V>(this.getMap().subMap(fromElement, fromInclusive, toElement, toInclusive));
+    return view;
+  }
+  /**
+   * Gets a view of the keys from a key up to, but not including, another key.
+   * @param fromElement The first key, inclusive.
+   * @param toElement The last key, exclusive.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> subSet(K fromElement, K toElement) {
+    NavigableSet<K> view = this.subSet(fromElement, true, toElement, false);
+    return view;
+  }
+  /**
+   * Gets a view of the keys that come at or after a key.
+   * @param fromElement The key.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> tailSet(K fromElement) {
+    NavigableSet<K> view = this.tailSet(fromElement, true);
+    return view;
+  }
+  /**
+   * Gets a view of the keys that come after, or optionally at, a key.
+   * @param fromElement The key.
+   * @param inclusive True, to include the key.
+   * @return The view.
+   */
+  @Override
+  public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+    NavigableSet<K> view = new AvlNavigableKeySet<K, V>(this.getMap().tailMap(fromElement, inclusive));
+    return view;
+  }
+}
@@ -0,0 +1,910 @@
+package wg.avl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A navigable map backed by an AVL tree.
+ * An instance is either the whole map or a view of a key range of it, optionally in descending order.
+ * Views share the tree, so changes through a view are visible in the map and the other way around.
+ * Navigation, sub-map creation and the size of a view all cost O(log n).
+ * Null keys are not permitted, since a null bound means that a view has no bound.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <V> The value data type.
+ */
+public class AvlNavigableMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+  /**
+   * Indicates if the entries are visited from the largest key down.
+   */
+  private boolean mDescending;
+  /**
+   * The largest key, or null for no upper bound.
+   */
+  private K mHi;
+  /**
+   * Indicates if the largest key is included.
+   */
+  private boolean mHiInclusive;
+  /**
+   * The smallest key, or null for no lower bound.
+   */
+  private K mLo;
+  /**
+   * Indicates if the smallest key is included.
+   */
+  private boolean mLoInclusive;
+  /**
+   * The tree holding the entries.
+   */
+  private AvlTree<K, V> mTree;
+  /**
+   * Gets the largest key, in ascending key order.
+   * @return The key, or null for no upper bound.
+   */
+  protected K getHi() {
+    return this.mHi;
+  }
+  /**
+   * Gets the smallest key, in ascending key order.
+   * @return The key, or null for no lower bound.
+   */
+  protected K getLo() {
+    return this.mLo;
+  }
+  /**
+   * Gets the tree holding the entries.
+   * @return The tree.
+   */
+  protected AvlTree<K, V> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Indicates if the entries are visited from the largest key down.
+   * @return True, if descending.
+   */
+  protected boolean isDescending() {
+    return this.mDescending;
+  }
+  /**
+   * Indicates if the largest key is included.
+   * @return True, if the largest key is included.
+   */
+  protected boolean isHiInclusive() {
+    return this.mHiInclusive;
+  }
+  /**
+   * Indicates if the smallest key is included.
+   * @return True, if the smallest key is included.
+   */
+  protected boolean isLoInclusive() {
+    return this.mLoInclusive;
+  }
+  /**
+   * Creates an instance of the AvlNavigableMap class that orders keys by their natural ordering.
+   */
+  public AvlNavigableMap() {
+    this(new AvlTree<K, V>(), null, false, null, false, false);
+  }
+  /**
+   * Creates an instance of the AvlNavigableMap class.
+   * @param comparator The key order, or null for the natural ordering.
+   */
+  public AvlNavigableMap(Comparator<? super K> comparator) {
+    this(new AvlTree<K, V>(comparator), null, false, null, false, false);
+  }
+  /**
+   * Creates an instance of the AvlNavigableMap class that views a key range of a tree.
+   * @param tree The tree holding the entries. Its keys must be unique.
+   * @param lo The smallest key, or null for no lower bound.
+   * @param loInclusive True, to include the smallest key.
+   * @param hi The largest key, or null for no upper bound.
+   * @param hiInclusive True, to include the largest key.
+   * @param descending True, to visit the entries from the largest key down.
+   */
+  protected AvlNavigableMap(AvlTree<K, V> tree, K lo, boolean loInclusive, K hi, boolean hiInclusive, boolean descending) {
+    this.mDescending = descending;
+    this.mHi = hi;
+    this.mHiInclusive = hiInclusive;
+    this.mLo = lo;
+    this.mLoInclusive = loInclusive;
+    this.mTree = tree;
+  }
+  /**
+   * Finds the node with the smallest key in the range that is above, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to accept a node with an equal key.
+   * @return The node, or null if there is none.
+   */
+  protected AvlTreeNode<K, V> absCeiling(K key, boolean inclusive) {
+    AvlTreeNode<K, V> node;
+    if (this.isTooLow(key)) {
+      node = this.absLowest();
+    } else {
+      node = this.getTree().ceilingNode(key, inclusive);
+      if (node != null && this.isTooHigh(node.getKey())) {
+        node = null;
+      }
+    }
+    return node;
+  }
+  /**
+   * Finds the node with the largest key in the range that is below, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to accept a node with an equal key.
+   * @return The node, or null if there is none.
+   */
+  protected AvlTreeNode<K, V> absFloor(K key, boolean inclusive) {
+    AvlTreeNode<K, V> node;
+    if (this.isTooHigh(key)) {
+      node = this.absHighest();
+    } else {
+      node = this.getTree().floorNode(key, inclusive);
+      if (node != null && this.isTooLow(node.getKey())) {
+        node = null;
+      }
+    }
+    return node;
+  }
+  /**
+   * Finds the node with the largest key in the range.
+   * @return The node, or null if the range is empty.
+   */
+  protected AvlTreeNode<K, V> absHighest() {
+    K hi = this.getHi();
+    AvlTreeNode<K, V> node;
+    if (hi == null) {
+      node = this.getTree().getMaxNode();
+    } else {
+      node = this.getTree().floorNode(hi, this.isHiInclusive());
+    }
+    if (node != null && this.isTooLow(node.getKey())) {
+      node = null;
+    }
+    return node;
+  }
+  /**
+   * Finds the node with the smallest key in the range.
+   * @return The node, or null if the range is empty.
+   */
+  protected AvlTreeNode<K, V> absLowest() {
+    K lo = this.getLo();
+    AvlTreeNode<K, V> node;
+    if (lo == null) {
+      node = this.getTree().getMinNode();
+    } else {
+      node = this.getTree().ceilingNode(lo, this.isLoInclusive());
+    }
+    if (node != null && this.isTooHigh(node.getKey())) {
+      node = null;
+    }
+    return node;
+  }
+  /**
+   * Creates a view of a key range within this map, in the same key order as this map.
+   * @param lo The smallest key in ascending key order, or null to keep the current lower bound.
+   * @param loInclusive True, to include the smallest key.
+   * @param hi The largest key in ascending key order, or null to keep the current upper bound.
+   * @param hiInclusive True, to include the largest key.
+   * @return The view.
+   * @throws IllegalArgumentException If a key is outside of this map's range, or the keys are out of order.
+   */
+  protected AvlNavigableMap<K, V> absSubMap(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+    if (lo != null && hi != null && this.getTree().compare(lo, hi) > 0) {
+      throw new IllegalArgumentException("fromKey > toKey");
+    }
+    if (lo == null) {
+      lo = this.getLo();
+      loInclusive = this.isLoInclusive();
+    } else if (!this.isInRange(lo, loInclusive)) {
+      throw new IllegalArgumentException("Key out of range: " + lo);
+    }
+    if (hi == null) {
+      hi = this.getHi();
+      hiInclusive = this.isHiInclusive();
+    } else if (!this.isInRange(hi, hiInclusive)) {
+      throw new IllegalArgumentException("Key out of range: " + hi);
+    }
+    AvlNavigableMap<K, V> view = new AvlNavigableMap<K, V>(this.getTree(), lo, loInclusive, hi, hiInclusive, this.isDescending());
+    return view;
+  }
+  /**
+   * Gets the entry with the smallest key that is greater than or equal to a key.
+   * @param key The key.
+   * @return The entry, or null if there is none.
+   */
+  @Override
+  public Map.Entry<K, V> ceilingEntry(K key) {
+    Map.Entry<K, V> entry = this.exportEntry(this.ceilingNode(key, true));
+    return entry;
+  }
+  /**
+   * Gets the smallest key that is greater than or equal to a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K ceilingKey(K key) {
+    K ceiling = this.keyOf(this.ceilingNode(key, true));
+    return ceiling;
+  }
+  /**
+   * Finds the node with the smallest key, in the order of this map, that is above, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to accept a node with an equal key.
+   * @return The node, or null if there is none.
+   */
+  protected AvlTreeNode<K, V> ceilingNode(K key, boolean inclusive) {
+    AvlTreeNode<K, V> node;
+    this.checkKey(key);
+    if (this.isDescending()) {
+      node = this.absFloor(key, inclusive);
+    } else {
+      node = this.absCeiling(key, inclusive);
+    }
+    return node;
+  }
+  /**
+   * Checks that a key may be added to the range.
+   * @param key The key.
+   * @throws NullPointerException If the key is null.
+   * @throws IllegalArgumentException If the key is outside of the range.
+   */
+  protected void checkInRange(K key) {
+    this.checkKey(key);
+    if (!this.isInRange(key)) {
+      throw new IllegalArgumentException("Key out of range: " + key);
+    }
+  }
+  /**
+   * Checks that a key is not null.
+   * @param key The key.
+   * @throws NullPointerException If the key is null.
+   */
+  protected void checkKey(Object key) {
+    if (key == null) {
+      throw new NullPointerException("Null keys are not permitted.");
+    }
+  }
+  /**
+   * Removes all of the entries in the range.
+   */
+  @Override
+  public void clear() {
+    if (this.getLo() == null && this.getHi() == null) {
+      this.getTree().setJoined(null);
+    } else {
+      Iterator<Map.Entry<K, V>> iterator = this.entryIterator();
+      while (iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+  }
+  /**
+   * Gets the key order of this map.
+   * @return The comparator, or null for the natural ordering.
+   */
+  @Override
+  public Comparator<? super K> comparator() {
+    Comparator<? super K> comparator = this.getTree().getComparator();
+    if (this.isDescending()) {
+      comparator = Collections.reverseOrder(comparator);
+    }
+    return comparator;
+  }
+  /**
+   * Computes a new value for a key from its current value, or from null if it has none, in one descent.
+   * A null result removes the key.
+   * @param key The key.
+   * @param function The function of the key and the current value.
+   * @return The new value, or null if the key was removed or not added.
+   * @throws IllegalArgumentException If the key is outside of the range and the result is not null.
+   */
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+    V value;
+    this.checkKey(key);
+    if (this.isInRange(key)) {
+      value = this.getTree().compute(key, function);
+    } else {
+      value = function.apply(key, null);
+      if (value != null) {
+        throw new IllegalArgumentException("Key out of range: " + key);
+      }
+    }
+    return value;
+  }
+  /**
+   * Computes a new value for a key that has a non-null value, in one descent.
+   * A null result removes the key.
+   * @param key The key.
+   * @param function The function of the key and the current value.
+   * @return The new value, or null if there was none or the key was removed.
+   */
+  @Override
+  public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+    V value = null;
+    this.checkKey(key);
+    if (this.isInRange(key)) {
+      value = this.getTree().computeIfPresent(key, function);
+    }
+    return value;
+  }
+  /**
+   * Indicates if the map contains a key.
+   * @param key The key.
+   * @return True, if the key is in the map.
+   */
+  @Override
+  public boolean containsKey(Object key) {
+    boolean contains = (this.getNode(key) != null);
+    return contains;
+  }
+  /**
+   * Gets a set view of the keys, in descending order.
+   * @return The set.
+   */
+  @Override
+  public NavigableSet<K> descendingKeySet() {
+    NavigableSet<K> keys = this.descendingMap().navigableKeySet();
+    return keys;
+  }
+  /**
+   * Gets a view of the map in reverse key order.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> descendingMap() {
+    NavigableMap<K, V> view = new AvlNavigableMap<K, V>(this.getTree(), this.getLo(), this.isLoInclusive(), this.getHi(), this.isHiInclusive(), !this.isDescending());
+    return view;
+  }
+  /**
+   * Gets a set view of the entries, in the order of this map.
+   * The entries are the tree nodes, so setValue writes through to the map.
+   * @return The set.
+   */
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    Set<Map.Entry<K, V>> entries = new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public void clear() {
+        AvlNavigableMap.this.clear();
+      }
+      @Override
+      public boolean contains(Object obj) {
+        boolean contains = false;
+        if (obj instanceof Map.Entry) {
+          Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+          AvlTreeNode<K, V> node = AvlNavigableMap.this.getNode(entry.getKey());
+          contains = (node != null && AvlNavigableMap.this.isValueEqual(node.getData(), entry.getValue()));
+        }
+        return contains;
+      }
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return AvlNavigableMap.this.entryIterator();
+      }
+      @Override
+      public boolean remove(Object obj) {
+        boolean removed = false;
+        if (obj instanceof Map.Entry) {
+          Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+          AvlTreeNode<K, V> node = AvlNavigableMap.this.getNode(entry.getKey());
+          if (node != null && AvlNavigableMap.this.isValueEqual(node.getData(), entry.getValue())) {
+            AvlNavigableMap.this.getTree().removeNode(node);
+            removed = true;
+          }
+        }
+        return removed;
+      }
+      @Override
+      public int size() {
+        return AvlNavigableMap.this.size();
+      }
+    };
+    return entries;
+  }
+  /**
+   * Gets an iterator over the entries in the range, in the order of this map.
+   * @return The iterator.
+   */
+  protected Iterator<Map.Entry<K, V>> entryIterator() {
+    AvlTreeRange<K, V> range = new AvlTreeRange<K, V>(this.getTree(), this.getLo(), this.isLoInclusive(), this.getHi(), this.isHiInclusive());
+    Iterator<Map.Entry<K, V>> iterator;
+    if (this.isDescending()) {
+      iterator = range.descendingIterator();
+    } else {
+      iterator = range.iterator();
+    }
+    return iterator;
+  }
+  /**
+   * Copies a node into an immutable entry.
+   * @param node The node, or null.
+   * @return The entry, or null if the node is null.
+   */
+  protected Map.Entry<K, V> exportEntry(AvlTreeNode<K, V> node) {
+    Map.Entry<K, V> entry = null;
+    if (node != null) {
+      entry = new AbstractMap.SimpleImmutableEntry<K, V>(node.getKey(), node.getData());
+    }
+    return entry;
+  }
+  /**
+   * Gets the first entry in the order of this map.
+   * @return The entry, or null if the map is empty.
+   */
+  @Override
+  public Map.Entry<K, V> firstEntry() {
+    Map.Entry<K, V> entry = this.exportEntry(this.firstNode());
+    return entry;
+  }
+  /**
+   * Gets the first key in the order of this map.
+   * @return The key.
+   * @throws NoSuchElementException If the map is empty.
+   */
+  @Override
+  public K firstKey() {
+    AvlTreeNode<K, V> node = this.firstNode();
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return node.getKey();
+  }
+  /**
+   * Finds the first node in the order of this map.
+   * @return The node, or null if the map is empty.
+   */
+  protected AvlTreeNode<K, V> firstNode() {
+    AvlTreeNode<K, V> node;
+    if (this.isDescending()) {
+      node = this.absHighest();
+    } else {
+      node = this.absLowest();
+    }
+    return node;
+  }
+  /**
+   * Gets the entry with the largest key that is less than or equal to a key.
+   * @param key The key.
+   * @return The entry, or null if there is none.
+   */
+  @Override
+  public Map.Entry<K, V> floorEntry(K key) {
+    Map.Entry<K, V> entry = this.exportEntry(this.floorNode(key, true));
+    return entry;
+  }
+  /**
+   * Gets the largest key that is less than or equal to a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K floorKey(K key) {
+    K floor = this.keyOf(this.floorNode(key, true));
+    return floor;
+  }
+  /**
+   * Finds the node with the largest key, in the order of this map, that is below, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to accept a node with an equal key.
+   * @return The node, or null if there is none.
+   */
+  protected AvlTreeNode<K, V> floorNode(K key, boolean inclusive) {
+    AvlTreeNode<K, V> node;
+    this.checkKey(key);
+    if (this.isDescending()) {
+      node = this.absCeiling(key, inclusive);
+    } else {
+      node = this.absFloor(key, inclusive);
+    }
+    return node;
+  }
+  /**
+   * Gets the value of a key.
+   * @param key The key.
+   * @return The value, or null if the key is not in the map.
+   */
+  @Override
+  public V get(Object key) {
+    AvlTreeNode<K, V> node = this.getNode(key);
+    V value = null;
+    if (node != null) {
+      value = node.getData();
+    }
+    return value;
+  }
+  /**
+   * Finds the node of a key in the range.
+   * @param key The key.
+   * @return The node, or null if the key is not in the range.
+   * @throws NullPointerException If the key is null.
+   * @throws ClassCastException If the key cannot be compared with the keys in the map.
+   */
+  @SuppressWarnings("unchecked")
+  protected AvlTreeNode<K, V> getNode(Object key) {
+    this.checkKey(key);
+    K k = (K)key;
+    AvlTreeNode<K, V> node = null;
+    if (this.isInRange(k)) {
+      node = this.getTree().findNode(k);
+    }
+    return node;
+  }
+  /**
+   * Gets a view of the entries whose keys come before a key, in the order of this map.
+   * @param toKey The key.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> headMap(K toKey) {
+    NavigableMap<K, V> view = this.headMap(toKey, false);
+    return view;
+  }
+  /**
+   * Gets a view of the entries whose keys come before, or optionally at, a key, in the order of this map.
+   * @param toKey The key.
+   * @param inclusive True, to include the key.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+    NavigableMap<K, V> view;
+    this.checkKey(toKey);
+    if (this.isDescending()) {
+      view = this.absSubMap(toKey, inclusive, null, false);
+    } else {
+      view = this.absSubMap(null, false, toKey, inclusive);
+    }
+    return view;
+  }
+  /**
+   * Gets the entry with the smallest key that is strictly greater than a key.
+   * @param key The key.
+   * @return The entry, or null if there is none.
+   */
+  @Override
+  public Map.Entry<K, V> higherEntry(K key) {
+    Map.Entry<K, V> entry = this.exportEntry(this.ceilingNode(key, false));
+    return entry;
+  }
+  /**
+   * Gets the smallest key that is strictly greater than a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K higherKey(K key) {
+    K higher = this.keyOf(this.ceilingNode(key, false));
+    return higher;
+  }
+  /**
+   * Indicates if the map is empty.
+   * @return True, if there are no entries in the range.
+   */
+  @Override
+  public boolean isEmpty() {
+    boolean isEmpty = (this.absLowest() == null);
+    return isEmpty;
+  }
+  /**
+   * Indicates if a key is within the range.
+   * @param key The key.
+   * @return True, if the key is within the range.
+   */
+  protected boolean isInRange(K key) {
+    boolean isInRange = (!this.isTooLow(key) && !this.isTooHigh(key));
+    return isInRange;
+  }
+  /**
+   * Indicates if a key is within the range, or optionally on a bound that the range excludes.
+   * @param key The key.
+   * @param inclusive False, to also accept a key on an excluded bound.
+   * @return True, if the key is accepted.
+   */
+  protected boolean isInRange(K key, boolean inclusive) {
+    boolean isInRange;
+    if (inclusive) {
+      isInRange = this.isInRange(key);
+    } else {
+      AvlTree<K, V> tree = this.getTree();
+      K lo = this.getLo();
+      K hi = this.getHi();
+      isInRange = ((lo == null || tree.compare(key, lo) >= 0) && (hi == null || tree.compare(key, hi) <= 0));
+    }
+    return isInRange;
+  }
+  /**
+   * Indicates if a key is above the range.
+   * @param key The key.
+   * @return True, if the key is above the range.
+   */
+  protected boolean isTooHigh(K key) {
+    boolean isTooHigh = false;
+    K hi = this.getHi();
+    if (hi != null) {
+      int cmp = this.getTree().compare(key, hi);
+      isTooHigh = (cmp > 0 || (cmp == 0 && !this.isHiInclusive()));
+    }
+    return isTooHigh;
+  }
+  /**
+   * Indicates if a key is below the range.
+   * @param key The key.
+   * @return True, if the key is below the range.
+   */
+  protected boolean isTooLow(K key) {
+    boolean isTooLow = false;
+    K lo = this.getLo();
+    if (lo != null) {
+      int cmp = this.getTree().compare(key, lo);
+      isTooLow = (cmp < 0 || (cmp == 0 && !this.isLoInclusive()));
+    }
+    return isTooLow;
+  }
+  /**
+   * Indicates if two values are equal, allowing for null values.
+   * @param a The first value.
+   * @param b The second value.
+   * @return True, if the values are equal.
+   */
+  protected boolean isValueEqual(Object a, Object b) {
+    boolean isEqual = (a == null ? b == null : a.equals(b));
+    return isEqual;
+  }
+  /**
+   * Gets the key of a node.
+   * @param node The node, or null.
+   * @return The key, or null if the node is null.
+   */
+  protected K keyOf(AvlTreeNode<K, V> node) {
+    K key = null;
+    if (node != null) {
+      key = node.getKey();
+    }
+    return key;
+  }
+  /**
+   * Gets a set view of the keys, in the order of this map.
+   * @return The set.
+   */
+  @Override
+  public NavigableSet<K> keySet() {
+    NavigableSet<K> keys = this.navigableKeySet();
+    return keys;
+  }
+  /**
+   * Gets the last entry in the order of this map.
+   * @return The entry, or null if the map is empty.
+   */
+  @Override
+  public Map.Entry<K, V> lastEntry() {
+    Map.Entry<K, V> entry = this.exportEntry(this.lastNode());
+    return entry;
+  }
+  /**
+   * Gets the last key in the order of this map.
+   * @return The key.
+   * @throws NoSuchElementException If the map is empty.
+   */
+  @Override
+  public K lastKey() {
+    AvlTreeNode<K, V> node = this.lastNode();
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return node.getKey();
+  }
+  /**
+   * Finds the last node in the order of this map.
+   * @return The node, or null if the map is empty.
+   */
+  protected AvlTreeNode<K, V> lastNode() {
+    AvlTreeNode<K, V> node;
+    if (this.isDescending()) {
+      node = this.absLowest();
+    } else {
+      node = this.absHighest();
+    }
+    return node;
+  }
+  /**
+   * Gets the entry with the largest key that is strictly less than a key.
+   * @param key The key.
+   * @return The entry, or null if there is none.
+   */
+  @Override
+  public Map.Entry<K, V> lowerEntry(K key) {
+    Map.Entry<K, V> entry = this.exportEntry(this.floorNode(key, false));
+    return entry;
+  }
+  /**
+   * Gets the largest key that is strictly less than a key.
+   * @param key The key.
+   * @return The key, or null if there is none.
+   */
+  @Override
+  public K lowerKey(K key) {
+    K lower = this.keyOf(this.floorNode(key, false));
+    return lower;
+  }
+  /**
+   * Sets the value of a key, or combines it with the current value if there is one, in one descent.
+   * A null result removes the key.
+   * @param key The key.
+   * @param value The value to set or combine.
+   * @param function The function of the current value and the given value.
+   * @return The new value, or null if the key was removed.
+   * @throws IllegalArgumentException If the key is outside of the range.
+   */
+  @Override
+  public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> function) {
+    this.checkInRange(key);
+    V merged = this.getTree().merge(key, value, function);
+    return merged;
+  }
+  /**
+   * Gets a navigable set view of the keys, in the order of this map.
+   * @return The set.
+   */
+  @Override
+  public NavigableSet<K> navigableKeySet() {
+    NavigableSet<K> keys = new AvlNavigableKeySet<K, V>(this);
+    return keys;
+  }
+  /**
+   * Removes and gets the first entry in the order of this map.
+   * @return The entry, or null if the map is empty.
+   */
+  @Override
+  public Map.Entry<K, V> pollFirstEntry() {
+    AvlTreeNode<K, V> node = this.firstNode();
+    Map.Entry<K, V> entry = this.exportEntry(node);
+    if (node != null) {
+      this.getTree().removeNode(node);
+    }
+    return entry;
+  }
+  /**
+   * Removes and gets the last entry in the order of this map.
+   * @return The entry, or null if the map is empty.
+   */
+  @Override
+  public Map.Entry<K, V> pollLastEntry() {
+    AvlTreeNode<K, V> node = this.lastNode();
+    Map.Entry<K, V> entry = this.exportEntry(node);
+    if (node != null) {
+      this.getTree().removeNode(node);
+    }
+    return entry;
+  }
+  /**
+   * Associates a value with a key, replacing the previous value of the key, in one descent.
+   * @param key The key.
+   * @param value The value.
+   * @return The previous value, or null if the key was not in the map.
+   * @throws IllegalArgumentException If the key is outside of the range.
+   */
+  @Override
+  public V put(K key, V value) {
+    this.checkInRange(key);
+    V previous = this.getTree().put(key, value);
+    return previous;
+  }
+  /**
+   * Associates a value with a key that has no value or a null value, in one descent.
+   * @param key The key.
+   * @param value The value.
+   * @return The current value, or null if the value was set.
+   * @throws IllegalArgumentException If the key is outside of the range.
+   */
+  @Override
+  public V putIfAbsent(K key, V value) {
+    this.checkInRange(key);
+    V current = this.getTree().putIfAbsent(key, value);
+    return current;
+  }
+  /**
+   * Removes a key from the map.
+   * @param key The key.
+   * @return The value of the key, or null if the key was not in the map.
+   */
+  @Override
+  public V remove(Object key) {
+    AvlTreeNode<K, V> node = this.getNode(key);
+    V value = null;
+    if (node != null) {
+      value = node.getData();
+      this.getTree().removeNode(node);
+    }
+    return value;
+  }
+  /**
+   * Gets the number of entries in the range.
+   * For a view, this is found from the positions of its first and last nodes.
+   * @return The number of entries.
+   */
+  @Override
+  public int size() {
+    int size = 0;
+    if (this.getLo() == null && this.getHi() == null) {
+      size = this.getTree().getCount();
+    } else {
+      AvlTreeNode<K, V> lowest = this.absLowest();
+      if (lowest != null) {
+        AvlTree<K, V> tree = this.getTree();
+        size = tree.indexOf(this.absHighest()) - tree.indexOf(lowest) + 1;
+      }
+    }
+    return size;
+  }
+  /**
+   * Gets a view of the entries from a key, or optionally just after it, to another key, in the order of this map.
+   * @param fromKey The first key.
+   * @param fromInclusive True, to include the first key.
+   * @param toKey The last key.
+   * @param toInclusive True, to include the last key.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+    NavigableMap<K, V> view;
+    this.checkKey(fromKey);
+    this.checkKey(toKey);
+    if (this.isDescending()) {
+      view = this.absSubMap(toKey, toInclusive, fromKey, fromInclusive);
+    } else {
+      view = this.absSubMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+    return view;
+  }
+  /**
+   * Gets a view of the entries from a key up to, but not including, another key, in the order of this map.
+   * @param fromKey The first key, inclusive.
+   * @param toKey The last key, exclusive.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> subMap(K fromKey, K toKey) {
+    NavigableMap<K, V> view = this.subMap(fromKey, true, toKey, false);
+    return view;
+  }
+  /**
+   * Gets a view of the entries whose keys come at or after a key, in the order of this map.
+   * @param fromKey The key.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> tailMap(K fromKey) {
+    NavigableMap<K, V> view = this.tailMap(fromKey, true);
+    return view;
+  }
+  /**
+   * Gets a view of the entries whose keys come after, or optionally at, a key, in the order of this map.
+   * @param fromKey The key.
+   * @param inclusive True, to include the key.
+   * @return The view.
+   */
+  @Override
+  public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+    NavigableMap<K, V> view;
+    this.checkKey(fromKey);
+    if (this.isDescending()) {
+      view = this.absSubMap(null, false, fromKey, inclusive);
+    } else {
+      view = this.absSubMap(fromKey, inclusive, null, false);
+    }
+    return view;
+  }
+}
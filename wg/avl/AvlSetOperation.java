@@ -0,0 +1,20 @@
+package wg.avl;
+
+/**
+ * The set operations that can be applied to two AVL trees.
+ * @author Wesley Garey
+ */
+public enum AvlSetOperation {
+  /**
+   * The elements of the first tree whose keys are not in the second tree.
+   */
+  DIFFERENCE,
+  /**
+   * The elements of the first tree whose keys are also in the second tree.
+   */
+  INTERSECTION,
+  /**
+   * The elements of both trees, preferring the first tree when a key is in both.
+   */
+  UNION
+}
@@ -0,0 +1,129 @@
+package wg.avl;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork-join task that applies a set operation to two detached sub-trees using split and join.
+ * The operations on the two halves run in parallel when the sub-trees are large.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlSetOperationTask<K, E> extends RecursiveTask<AvlTreeNode<K, E>> {
+  /**
+   * The serialization version.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * The combined sub-tree size above which the halves are processed in parallel.
+   */
+  public static final int THRESHOLD = 8192;
+  /**
+   * The root of the first sub-tree.
+   */
+  private AvlTreeNode<K, E> mFirst;
+  /**
+   * The operation to apply.
+   */
+  private AvlSetOperation mOperation;
+  /**
+   * The root of the second sub-tree.
+   */
+  private AvlTreeNode<K, E> mSecond;
+  /**
+   * The tree that provides split and join.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Gets the root of the first sub-tree.
+   * @return The root.
+   */
+  public AvlTreeNode<K, E> getFirst() {
+    return this.mFirst;
+  }
+  /**
+   * Gets the operation to apply.
+   * @return The operation.
+   */
+  public AvlSetOperation getOperation() {
+    return this.mOperation;
+  }
+  /**
+   * Gets the root of the second sub-tree.
+   * @return The root.
+   */
+  public AvlTreeNode<K, E> getSecond() {
+    return this.mSecond;
+  }
+  /**
+   * Gets the tree that provides split and join.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Creates an instance of the AvlSetOperationTask class.
+   * @param tree The tree that provides split and join.
+   * @param operation The operation to apply.
+   * @param first The root of the first sub-tree.
+   * @param second The root of the second sub-tree.
+   */
+  public AvlSetOperationTask(AvlTree<K, E> tree, AvlSetOperation operation, AvlTreeNode<K, E> first, AvlTreeNode<K, E> second) {
+    this.mFirst = first;
+    this.mOperation = operation;
+    this.mSecond = second;
+    this.mTree = tree;
+  }
+  /**
+   * Applies the operation.
+   * @return The root of the resulting sub-tree, or null if it is empty.
+   */
+  @Override
+  protected AvlTreeNode<K, E> compute() {
+    AvlTreeNode<K, E> root;
+    AvlTree<K, E> tree = this.getTree();
+    AvlSetOperation operation = this.getOperation();
+    AvlTreeNode<K, E> first = this.getFirst();
+    AvlTreeNode<K, E> second = this.getSecond();
+    if (first == null) {
+      root = (operation == AvlSetOperation.UNION ? second : null);
+    } else if (second == null) {
+      root = (operation == AvlSetOperation.INTERSECTION ? null : first);
+    } else {
+      boolean isLarge = (first.getTreeSize() + second.getTreeSize() > AvlSetOperationTask.THRESHOLD);
+      AvlTreeNode<K, E> pivot;
+      AvlTreeSplit<K, E> split;
+      AvlSetOperationTask<K, E> leftTask;
+      AvlSetOperationTask<K, E> rightTask;
+      if (operation == AvlSetOperation.DIFFERENCE) {
+        pivot = second;
+        split = tree.split(first, pivot.getKey());
+        leftTask = new AvlSetOperationTask<K, E>(tree, operation, split.getLeft(), tree.detach(pivot.getLeft()));
+        rightTask = new AvlSetOperationTask<K, E>(tree, operation, split.getRight(), tree.detach(pivot.getRight()));
+      } else {
+        pivot = first;
+        split = tree.split(second, pivot.getKey());
+        leftTask = new AvlSetOperationTask<K, E>(tree, operation, tree.detach(pivot.getLeft()), split.getLeft());
+        rightTask = new AvlSetOperationTask<K, E>(tree, operation, tree.detach(pivot.getRight()), split.getRight());
+      }
+      AvlTreeNode<K, E> left;
+      AvlTreeNode<K, E> right;
+      if (isLarge) {
+        leftTask.fork();
+        right = rightTask.compute();
+        left = leftTask.join();
+      } else {
+        left = leftTask.compute();
+        right = rightTask.compute();
+      }
+      boolean keepPivot = (operation == AvlSetOperation.UNION || (operation == AvlSetOperation.INTERSECTION && split.getNode() != null));
+      if (keepPivot) {
+        root = tree.join(left, pivot, right);
+      } else {
+        root = tree.join(left, right);
+      }
+    }
+    return root;
+  }
+}
@@ -0,0 +1,351 @@
+package wg.avl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes the elements of an AVL tree to a compact binary file and loads them back.
+ * The file holds a header, one length-prefixed record per element in key order, and a trailer with the count
+ * and a CRC32 of everything before it.
+ * A record is a varint length followed by the encoded key and the encoded data. A record that ends after
+ * the key holds null data.
+ * Loading maps the file into memory and decodes straight into arrays, which are linked into a
+ * balanced tree in O(n) by bulkLoad, so there is no per-key search or rotation.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlSnapshot<K, E> {
+  /**
+   * The first and last int of a snapshot file.
+   */
+  public static final int MAGIC = 0x41564C53;
+  /**
+   * The format version.
+   */
+  public static final int VERSION = 1;
+  /**
+   * The size of the header: the magic number and the version.
+   */
+  protected static final int HEADER_SIZE = 8;
+  /**
+   * The size of the trailer: the count, the checksum and the magic number.
+   */
+  protected static final int TRAILER_SIZE = 16;
+  /**
+   * The largest number of bytes a varint takes.
+   */
+  protected static final int MAX_VARINT_SIZE = 10;
+  /**
+   * The size of the output buffer.
+   */
+  protected static final int BUFFER_SIZE = 1 << 16;
+  /**
+   * The largest part of the file mapped at once.
+   */
+  protected static final long WINDOW_SIZE = 1L << 30;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * Gets the codec for the data.
+   * @return The codec.
+   */
+  public AvlCodec<E> getDataCodec() {
+    return this.mDataCodec;
+  }
+  /**
+   * Gets the codec for the keys.
+   * @return The codec.
+   */
+  public AvlCodec<K> getKeyCodec() {
+    return this.mKeyCodec;
+  }
+  /**
+   * Creates an instance of the AvlSnapshot class.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   */
+  public AvlSnapshot(AvlCodec<K> keyCodec, AvlCodec<E> dataCodec) {
+    this.mDataCodec = dataCodec;
+    this.mKeyCodec = keyCodec;
+  }
+  /**
+   * Computes the CRC32 of the start of a file, a window at a time.
+   * @param channel The file.
+   * @param end The end of the checked part.
+   * @return The checksum.
+   * @throws IOException If the file could not be mapped.
+   */
+  protected int checksum(FileChannel channel, long end) throws IOException {
+    CRC32 crc = new CRC32();
+    long position = 0;
+    while (position < end) {
+      MappedByteBuffer window = this.map(channel, position, end);
+      position += window.remaining();
+      crc.update(window);
+    }
+    return (int)crc.getValue();
+  }
+  /**
+   * Decodes a value that was zig-zag encoded.
+   * @param value The encoded value.
+   * @return The value.
+   */
+  public static long decodeZigZag(long value) {
+    long decoded = (value >>> 1) ^ -(value & 1);
+    return decoded;
+  }
+  /**
+   * Zig-zag encodes a value, so small negative values also have a short varint.
+   * @param value The value.
+   * @return The encoded value.
+   */
+  public static long encodeZigZag(long value) {
+    long encoded = (value << 1) ^ (value >> 63);
+    return encoded;
+  }
+  /**
+   * Maps a part of a file, up to the window size.
+   * @param channel The file.
+   * @param position The position of the part.
+   * @param end The end of the mapped data in the file.
+   * @return The mapped part.
+   * @throws IOException If the file could not be mapped.
+   */
+  protected MappedByteBuffer map(FileChannel channel, long position, long end) throws IOException {
+    long size = Math.min(WINDOW_SIZE, end - position);
+    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    return window;
+  }
+  /**
+   * Replaces the elements of a tree with the elements in a snapshot file.
+   * The decoded elements are passed to the tree as entries rather than as arrays, since a subclass
+   * that narrows the key type cannot take an Object array.
+   * @param tree The tree.
+   * @param path The snapshot file.
+   * @throws IOException If the file could not be read or is not a valid snapshot.
+   */
+  @SuppressWarnings("unchecked")
+  public void read(AvlTree<K, E> tree, Path path) throws IOException {
+    AvlCodec<K> keyCodec = this.getKeyCodec();
+    AvlCodec<E> dataCodec = this.getDataCodec();
+    Object[] keys;
+    Object[] data;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE + TRAILER_SIZE) {
+        throw new IOException("Not a snapshot: " + path);
+      }
+      ByteBuffer header = this.readFully(channel, 0, HEADER_SIZE);
+      ByteBuffer trailer = this.readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+      long count = trailer.getLong();
+      int crc = trailer.getInt();
+      if (header.getInt() != MAGIC || trailer.getInt() != MAGIC) {
+        throw new IOException("Not a complete snapshot: " + path);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version " + version + ": " + path);
+      }
+      if (count < 0 || count > Integer.MAX_VALUE - 8) {
+        throw new IOException("Bad element count " + count + ": " + path);
+      }
+      long end = size - TRAILER_SIZE;
+      if (this.checksum(channel, end) != crc) {
+        throw new IOException("Checksum mismatch: " + path);
+      }
+      keys = new Object[(int)count];
+      data = new Object[(int)count];
+      long windowStart = HEADER_SIZE;
+      MappedByteBuffer window = this.map(channel, windowStart, end);
+      K previous = null;
+      for (int i = 0; i < keys.length; i++) {
+        long windowEnd = windowStart + window.limit();
+        if (window.remaining() < MAX_VARINT_SIZE && windowEnd < end) {
+          windowStart += window.position();
+          window = this.map(channel, windowStart, end);
+        }
+        try {
+          int length = (int)readVarLong(window);
+          if (window.remaining() < length && windowStart + window.limit() < end) {
+            windowStart += window.position();
+            window = this.map(channel, windowStart, end);
+          }
+          if (length < 0 || window.remaining() < length) {
+            throw new IOException("Truncated record " + i + ": " + path);
+          }
+          int recordEnd = window.position() + length;
+          K key = keyCodec.read(window, previous);
+          E datum = null;
+          if (window.position() != recordEnd) {
+            datum = dataCodec.read(window, null);
+          }
+          if (window.position() != recordEnd) {
+            throw new IOException("Corrupt record " + i + ": " + path);
+          }
+          keys[i] = key;
+          data[i] = datum;
+          previous = key;
+        } catch (BufferUnderflowException e) {
+          throw new IOException("Corrupt record " + i + ": " + path, e);
+        }
+      }
+      if (windowStart + window.position() != end) {
+        throw new IOException("Unexpected data after the last record: " + path);
+      }
+    }
+    final Object[] loadedKeys = keys;
+    final Object[] loadedData = data;
+    tree.bulkLoad(new Iterator<Map.Entry<K, E>>() {
+      private int mIndex = 0;
+      @Override
+      public boolean hasNext() {
+        return this.mIndex < loadedKeys.length;
+      }
+      @Override
+      public Map.Entry<K, E> next() {
+        if (this.mIndex >= loadedKeys.length) {
+          throw new NoSuchElementException();
+        }
+        Map.Entry<K, E> entry = new AbstractMap.SimpleImmutableEntry<K, E>((K)loadedKeys[this.mIndex], (E)loadedData[this.mIndex]);
+        this.mIndex++;
+        return entry;
+      }
+    });
+  }
+  /**
+   * Reads a part of a file into a buffer.
+   * @param channel The file.
+   * @param position The position of the part.
+   * @param size The size of the part.
+   * @return The buffer, ready to be read.
+   * @throws IOException If the part could not be read.
+   */
+  protected ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Unexpected end of file.");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+  /**
+   * Reads an unsigned varint.
+   * @param in The buffer, positioned at the varint.
+   * @return The value.
+   * @throws IOException If the varint is longer than ten bytes.
+   */
+  public static long readVarLong(ByteBuffer in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    boolean done = false;
+    while (!done) {
+      if (shift >= 64) {
+        throw new IOException("Malformed varint.");
+      }
+      byte b = in.get();
+      value |= (long)(b & 0x7F) << shift;
+      shift += 7;
+      done = (b >= 0);
+    }
+    return value;
+  }
+  /**
+   * Synchronizes a directory, so that files created, renamed or deleted in it survive a crash.
+   * Some platforms cannot open a directory, and there the entries are left to the file system.
+   * @param directory The directory.
+   */
+  public static void syncDirectory(Path directory) {
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      //The platform does not support it
+    }
+  }
+  /**
+   * Writes the elements of a tree to a snapshot file, in key order.
+   * The file is written and forced to disk next to the target and then moved over it,
+   * so a crash never leaves a partial snapshot.
+   * @param tree The tree.
+   * @param path The snapshot file.
+   * @throws IOException If the file could not be written.
+   */
+  public void write(AvlTree<K, E> tree, Path path) throws IOException {
+    AvlCodec<K> keyCodec = this.getKeyCodec();
+    AvlCodec<E> dataCodec = this.getDataCodec();
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      //The buffer sits above the checksum so the checksum is updated a block at a time
+      OutputStream file = Channels.newOutputStream(channel);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), BUFFER_SIZE));
+      ByteArrayOutputStream record = new ByteArrayOutputStream();
+      DataOutputStream recordOut = new DataOutputStream(record);
+      long count = 0;
+      K previous = null;
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      for (Map.Entry<K, E> entry : tree) {
+        record.reset();
+        keyCodec.write(recordOut, previous, entry.getKey());
+        if (entry.getValue() != null) {
+          dataCodec.write(recordOut, null, entry.getValue());
+        }
+        writeVarLong(out, record.size());
+        record.writeTo(out);
+        previous = entry.getKey();
+        count++;
+      }
+      out.flush();
+      int checksum = (int)crc.getValue();
+      out.writeLong(count);
+      out.writeInt(checksum);
+      out.writeInt(MAGIC);
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    syncDirectory(path.toAbsolutePath().getParent());
+  }
+  /**
+   * Writes an unsigned varint: seven bits per byte, low bits first, with the top bit set on all but the last byte.
+   * @param out The output.
+   * @param value The value.
+   * @throws IOException If the value could not be written.
+   */
+  public static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int)value);
+  }
+}
@@ -1,21 +1,67 @@
 
 package wg.avl;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * An AVL tree.
+ * Keys are ordered by a comparator, or by their natural ordering if there is none.
  * @author Wesley Garey
  * @param <K> The key data type.
  * @param <E> The data data type.
  */
-public class AvlTree<K extends Comparable, E> {
+public class AvlTree<K, E> implements Iterable<Map.Entry<K, E>> {
+  /**
+   * The most links a bounded search follows. No AVL tree with an int count of nodes is taller than 45.
+   */
+  protected static final int MAX_SEARCH_STEPS = 64;
+  /**
+   * The key order, or null for the natural ordering.
+   */
+  private Comparator<? super K> mComparator;
   /**
    * The number of elements in the tree.
    */
   private int mCount;
+  /**
+   * The changes waiting for the listeners, or null if no listener was ever added.
+   */
+  private AvlTreeEventQueue<K, E> mEvents;
+  /**
+   * The node searches start from, or null.
+   */
+  private AvlTreeNode<K, E> mFinger;
+  /**
+   * Indicates if searches start from the finger.
+   */
+  private boolean mFingerEnabled;
+  /**
+   * The node with the largest key, or null if it has to be found again.
+   */
+  private AvlTreeNode<K, E> mMaxCache;
   /**
    * The root node.
    */
   private AvlTreeNode<K, E> mRoot;
+  /**
+   * Gets the key order.
+   * @return The comparator, or null for the natural ordering.
+   */
+  public Comparator<? super K> getComparator() {
+    return this.mComparator;
+  }
   /**
    * Gets the number of elements in the tree.
    * @return The number.
@@ -23,6 +69,27 @@ public class AvlTree<K extends Comparable, E> {
   public int getCount() {
     return this.mCount;
   }
+  /**
+   * Gets the changes waiting for the listeners.
+   * @return The queue, or null if no listener was ever added.
+   */
+  protected AvlTreeEventQueue<K, E> getEvents() {
+    return this.mEvents;
+  }
+  /**
+   * Gets the node searches start from.
+   * @return The node, or null.
+   */
+  protected AvlTreeNode<K, E> getFinger() {
+    return this.mFinger;
+  }
+  /**
+   * Gets the cached node with the largest key.
+   * @return The node, or null if it has to be found again.
+   */
+  protected AvlTreeNode<K, E> getMaxCache() {
+    return this.mMaxCache;
+  }
   /**
    * Gets the root node.
    * @return The root node.
@@ -30,6 +97,13 @@ public class AvlTree<K extends Comparable, E> {
   protected AvlTreeNode<K, E> getRoot() {
     return this.mRoot;
   }
+  /**
+   * Indicates if searches start from the finger.
+   * @return True, if finger search is enabled.
+   */
+  public boolean isFingerEnabled() {
+    return this.mFingerEnabled;
+  }
   /**
    * Sets the number of elements in the tree.
    * @param count The number.
@@ -37,6 +111,35 @@ public class AvlTree<K extends Comparable, E> {
   protected void setCount(int count) {
     this.mCount = count;
   }
+  /**
+   * Sets the changes waiting for the listeners.
+   * @param events The queue, or null.
+   */
+  protected void setEvents(AvlTreeEventQueue<K, E> events) {
+    this.mEvents = events;
+  }
+  /**
+   * Sets the node searches start from.
+   * @param finger The node, or null.
+   */
+  protected void setFinger(AvlTreeNode<K, E> finger) {
+    this.mFinger = finger;
+  }
+  /**
+   * Sets whether searches start from the finger.
+   * @param fingerEnabled True, to enable finger search.
+   */
+  public void setFingerEnabled(boolean fingerEnabled) {
+    this.mFingerEnabled = fingerEnabled;
+    this.setFinger(null);
+  }
+  /**
+   * Sets the cached node with the largest key.
+   * @param maxCache The node, or null if it has to be found again.
+   */
+  protected void setMaxCache(AvlTreeNode<K, E> maxCache) {
+    this.mMaxCache = maxCache;
+  }
   /**
    * Sets the root node.
    * @param root The root node.
@@ -44,31 +147,216 @@ public class AvlTree<K extends Comparable, E> {
   protected void setRoot(AvlTreeNode<K, E> root) {
     this.mRoot = root;
   }
+  /**
+   * Creates an instance of the AvlTree class that orders keys by their natural ordering.
+   */
+  public AvlTree() {
+    this(null);
+  }
   /**
    * Creates an instance of the AvlTree class.
+   * @param comparator The key order, or null for the natural ordering.
    */
-  public void AvlTree() {
+  public AvlTree(Comparator<? super K> comparator) {
+    this.mComparator = comparator;
     this.mCount = 0;
+    this.mEvents = null;
+    this.mFinger = null;
+    this.mFingerEnabled = false;
+    this.mMaxCache = null;
     this.mRoot = null;
   }
   /**
-   * Indicates if this tree contains a key.
-   * @param key The key to search for.
-   * @return True, if this tree contains the key.
+   * Adds a listener that is handed every change, in the order the changes were made.
+   * Changes are handed out once the operation that made them leaves the tree consistent,
+   * or when the outermost batch closes. Data replaced through an entry of an iterator or a view is not reported.
+   * Operations that replace many elements at once, such as bulk loads, joins, splits and set operations,
+   * report a single RESTRUCTURED change without a key instead of a change for each element.
+   * @param listener The listener.
    */
-  public boolean contains(K key) {
-    boolean contains = false;
+  public void addListener(AvlTreeListener<K, E> listener) {
+    this.addListener(listener, false);
+  }
+  /**
+   * Adds a listener.
+   * @param listener The listener.
+   * @param coalesce True, to hand the listener only the net change to each key in each delivery.
+   */
+  public void addListener(AvlTreeListener<K, E> listener, boolean coalesce) {
+    this.getOrCreateEvents().addListener(listener, coalesce);
+  }
+  /**
+   * Opens a batch. Changes are held for the listeners until every open batch is closed.
+   */
+  public void beginBatch() {
+    this.getOrCreateEvents().beginBatch();
+  }
+  /**
+   * Closes a batch, handing the held changes to the listeners if it was the outermost.
+   * @throws IllegalStateException If no batch is open.
+   */
+  public void endBatch() {
+    this.getOrCreateEvents().endBatch();
+  }
+  /**
+   * Hands the held changes to the listeners, unless a batch is open.
+   */
+  protected void flushEvents() {
+    AvlTreeEventQueue<K, E> events = this.getEvents();
+    if (events != null) {
+      events.flush();
+    }
+  }
+  /**
+   * Gets the changes waiting for the listeners, creating the queue if there is none.
+   * @return The queue.
+   */
+  protected AvlTreeEventQueue<K, E> getOrCreateEvents() {
+    AvlTreeEventQueue<K, E> events = this.getEvents();
+    if (events == null) {
+      events = new AvlTreeEventQueue<K, E>(this.getComparator());
+      this.setEvents(events);
+    }
+    return events;
+  }
+  /**
+   * Holds a change for the listeners. Until a listener is added this is only a field check.
+   * @param type The kind of change.
+   * @param key The key of the element changed, or of the root of the sub-tree restructured.
+   * @param oldData The data before the change.
+   * @param data The data after the change.
+   */
+  protected void publishEvent(AvlTreeEventType type, K key, E oldData, E data) {
+    AvlTreeEventQueue<K, E> events = this.getEvents();
+    if (events != null) {
+      events.publish(new AvlTreeEvent<K, E>(type, key, oldData, data));
+    }
+  }
+  /**
+   * Removes a listener.
+   * @param listener The listener.
+   * @return True, if the listener was found.
+   */
+  public boolean removeListener(AvlTreeListener<K, E> listener) {
+    AvlTreeEventQueue<K, E> events = this.getEvents();
+    boolean removed = (events != null && events.removeListener(listener));
+    return removed;
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements in linear time.
+   * @param keys The keys, in ascending order.
+   * @param data The elements, in the same order as the keys.
+   * @throws IllegalArgumentException If the arrays differ in length or the keys are not sorted.
+   */
+  public void bulkLoad(K[] keys, E[] data) {
+    AvlTreeNode<K, E>[] nodes = this.createNodes(keys, data);
+    this.checkSorted(nodes);
+    this.loadNodes(nodes);
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements in linear time.
+   * @param entries The entries, in ascending key order.
+   * @throws IllegalArgumentException If the keys are not sorted.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public void bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends E>> entries) {
+    ArrayList<AvlTreeNode<K, E>> list = new ArrayList<AvlTreeNode<K, E>>();
+    while (entries.hasNext()) {
+      Map.Entry<? extends K, ? extends E> entry = entries.next();
+      AvlTreeNode<K, E> node = this.createNode();
+      node.setKey(entry.getKey());
+      node.setData(entry.getValue());
+      list.add(node);
+    }
+    AvlTreeNode<K, E>[] nodes = list.toArray(new AvlTreeNode[list.size()]);
+    this.checkSorted(nodes);
+    this.loadNodes(nodes);
+  }
+  /**
+   * Replaces the elements of the tree with unsorted elements.
+   * The elements are sorted with a parallel sort and the sub-trees are built in parallel.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   * @throws IllegalArgumentException If the arrays differ in length.
+   */
+  public void bulkLoadUnsorted(K[] keys, E[] data) {
+    AvlTreeNode<K, E>[] nodes = this.createNodes(keys, data);
+    this.sortNodes(nodes);
+    this.loadNodes(nodes);
+  }
+  /**
+   * Recursively links a sorted run of nodes into a balanced sub-tree.
+   * @param nodes The sorted nodes.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @return The root of the sub-tree, or null if the run is empty.
+   */
+  protected AvlTreeNode<K, E> buildTree(AvlTreeNode<K, E>[] nodes, int lo, int hi) {
+    AvlTreeNode<K, E> root = null;
+    if (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      AvlTreeNode<K, E> left = this.buildTree(nodes, lo, mid);
+      AvlTreeNode<K, E> right = this.buildTree(nodes, mid + 1, hi);
+      root = this.linkNode(left, nodes[mid], right);
+    }
+    return root;
+  }
+  /**
+   * Finds the node with the smallest key that is above, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to accept a node with an equal key.
+   * @return The node, or null if there is none.
+   */
+  protected AvlTreeNode<K, E> ceilingNode(K key, boolean inclusive) {
+    AvlTreeNode<K, E> ceiling = null;
     AvlTreeNode<K, E> temp = this.getRoot();
-    while (temp != null && contains == false) {
-      K tempKey = temp.getKey();
-      if (tempKey.compareTo(key) < 0) {
-        temp = temp.getRight();
-      } else if (tempKey.compareTo(key) > 0) {
+    while (temp != null) {
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp < 0 || (cmp == 0 && inclusive)) {
+        ceiling = temp;
         temp = temp.getLeft();
       } else {
-        contains = true;
+        temp = temp.getRight();
       }
     }
+    return ceiling;
+  }
+  /**
+   * Checks that a run of nodes is in ascending key order.
+   * @param nodes The nodes.
+   * @throws IllegalArgumentException If the keys are not sorted.
+   */
+  protected void checkSorted(AvlTreeNode<K, E>[] nodes) {
+    for (int i = 1; i < nodes.length; i++) {
+      if (this.compare(nodes[i - 1].getKey(), nodes[i].getKey()) > 0) {
+        throw new IllegalArgumentException("The keys are not sorted at index " + i + ".");
+      }
+    }
+  }
+  /**
+   * Compares two keys in the order of the tree.
+   * @param a The first key.
+   * @param b The second key.
+   * @return A negative number, zero, or a positive number, as the first key is smaller, equal or larger.
+   */
+  @SuppressWarnings("unchecked")
+  protected int compare(K a, K b) {
+    Comparator<? super K> comparator = this.getComparator();
+    int cmp;
+    if (comparator == null) {
+      cmp = ((Comparable)a).compareTo(b);
+    } else {
+      cmp = comparator.compare(a, b);
+    }
+    return cmp;
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key to search for.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(K key) {
+    boolean contains = (this.findNode(key) != null);
     return contains;
   }
   /**
@@ -78,6 +366,34 @@ public class AvlTree<K extends Comparable, E> {
   protected AvlTreeNode<K, E> createNode() {
      return new AvlTreeNode<K, E>();
   }
+  /**
+   * Creates a node for each key and element.
+   * @param keys The keys.
+   * @param data The elements, in the same order as the keys.
+   * @return The nodes.
+   * @throws IllegalArgumentException If the arrays differ in length.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected AvlTreeNode<K, E>[] createNodes(K[] keys, E[] data) {
+    if (keys.length != data.length) {
+      throw new IllegalArgumentException("There are " + keys.length + " keys but " + data.length + " elements.");
+    }
+    AvlTreeNode<K, E>[] nodes = new AvlTreeNode[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      nodes[i] = this.createNode();
+      nodes[i].setKey(keys[i]);
+      nodes[i].setData(data[i]);
+    }
+    return nodes;
+  }
+  /**
+   * Gets an iterator over the entries from the largest key down.
+   * @return The iterator.
+   */
+  public Iterator<Map.Entry<K, E>> descendingIterator() {
+    Iterator<Map.Entry<K, E>> iterator = new AvlTreeIterator<K, E>(this, this.getMaxNode(), true, null, false);
+    return iterator;
+  }
   /**
    * Decreases the element count by one.
    */
@@ -111,6 +427,15 @@ public class AvlTree<K extends Comparable, E> {
     }
     return index;
   }
+  /**
+   * Gets a view of the entries whose keys are smaller than a key.
+   * @param hi The key, exclusive.
+   * @return The view.
+   */
+  public AvlTreeRange<K, E> headFrom(K hi) {
+    AvlTreeRange<K, E> range = new AvlTreeRange<K, E>(this, null, false, hi, false);
+    return range;
+  }
   /**
    * Gets the smallest element
    * @return The smallest element.
@@ -141,6 +466,21 @@ public class AvlTree<K extends Comparable, E> {
     }
     return max;
   }
+  /**
+   * Gets the position of a node in key order using the parent links.
+   * @param node The node.
+   * @return The zero-based position.
+   */
+  protected int indexOf(AvlTreeNode<K, E> node) {
+    int index = node.getLeftTreeSize();
+    while (node.hasParent()) {
+      if (node.isRight()) {
+        index += node.getParent().getLeftTreeSize() + 1;
+      }
+      node = node.getParent();
+    }
+    return index;
+  }
   /**
    * Increases the element count by one.
    */
@@ -156,116 +496,1201 @@ public class AvlTree<K extends Comparable, E> {
     boolean isEmpty = (count == 0);
     return isEmpty;
   }
+  /**
+   * Gets a lazy iterator over the entries in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    Iterator<Map.Entry<K, E>> iterator = new AvlTreeIterator<K, E>(this, this.getMinNode(), false, null, false);
+    return iterator;
+  }
   /**
    * Inserts an element into the tree.
+   * A key at or above the largest key is appended below the largest node without a search.
+   * Otherwise, with finger search enabled, the search starts near the last inserted node.
    * @param key The key of the element.
    * @param data The element.
    */
   public void insert(K key, E data) {
-    AvlTreeNode<K, E> root = this.getRoot();
-    this.setRoot(this.insertRec(key, data, root));
+    AvlTreeNode<K, E> parent = null;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    AvlTreeNode<K, E> max = this.getCachedMaxNode();
+    if (max != null && this.compare(key, max.getKey()) >= 0) {
+      parent = max;
+      temp = null;
+    } else if (this.isFingerEnabled() && this.getFinger() != null) {
+      temp = this.fingerStart(this.getFinger(), key, true);
+    }
+    while (temp != null) {
+      parent = temp;
+      if (this.compare(key, temp.getKey()) < 0) {
+        temp = temp.getLeft();
+      } else {
+        temp = temp.getRight();
+      }
+    }
+    this.attachNode(key, data, parent);
   }
   /**
-   * Recursively inserts a new node.
-   * @param key The key to insert.
-   * @param data The data to insert.
-   * @param node The current node.
-   * @return The current node.
+   * Creates a node for an element and links it into the tree below the given parent.
+   * The node becomes the left child if its key is smaller than the parent's, else the right child.
+   * The cached largest node and the finger follow the new node.
+   * @param key The key of the element.
+   * @param data The element.
+   * @param parent The parent, which must have a free child on the key's side, or null if the tree is empty.
+   * @return The new node.
+   */
+  protected AvlTreeNode<K, E> attachNode(K key, E data, AvlTreeNode<K, E> parent) {
+    boolean isLeft = (parent != null && this.compare(key, parent.getKey()) < 0);
+    AvlTreeNode<K, E> node = this.createNode();
+    node.setKey(key);
+    node.setData(data);
+    boolean isMax = (parent == null || (parent == this.getMaxCache() && !isLeft));
+    this.insertNode(node, parent, isLeft);
+    if (isMax) {
+      this.setMaxCache(node);
+    }
+    if (this.isFingerEnabled()) {
+      this.setFinger(node);
+    }
+    this.flushEvents();
+    return node;
+  }
+  /**
+   * Gets the node with the largest key, finding it again if it is not cached.
+   * @return The node, or null if the tree is empty.
    */
-  protected AvlTreeNode<K, E> insertRec(K key, E data, AvlTreeNode<K, E> node) {
+  protected AvlTreeNode<K, E> getCachedMaxNode() {
+    AvlTreeNode<K, E> max = this.getMaxCache();
+    if (max == null) {
+      max = this.getMaxNode();
+      this.setMaxCache(max);
+    }
+    return max;
+  }
+  /**
+   * Finds the first node on the search path with a key, or else the node below which the key belongs.
+   * It takes the append fast path and the finger like insert, so an update costs a single descent.
+   * @param key The key.
+   * @return The node with the key, the parent for a new node with the key, or null if the tree is empty.
+   */
+  protected AvlTreeNode<K, E> seekNode(K key) {
+    AvlTreeNode<K, E> node = null;
+    AvlTreeNode<K, E> parent = null;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    AvlTreeNode<K, E> max = this.getCachedMaxNode();
+    if (max != null && this.compare(key, max.getKey()) >= 0) {
+      parent = max;
+      temp = null;
+    } else if (this.isFingerEnabled() && this.getFinger() != null) {
+      temp = this.fingerStart(this.getFinger(), key, false);
+    }
+    while (temp != null && node == null) {
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp == 0) {
+        node = temp;
+      } else {
+        parent = temp;
+        if (cmp < 0) {
+          temp = temp.getLeft();
+        } else {
+          temp = temp.getRight();
+        }
+      }
+    }
     if (node == null) {
-      node = this.createNode();
-      node.setKey(key);
-      node.setData(data);
-      this.incrementCount();
-    } else if (key.compareTo(node.getKey()) < 0) {
-      node.setLeft(this.insertRec(key, data, node.getLeft()));
-      node.getLeft().setParent(node);
+      node = parent;
+    }
+    return node;
+  }
+  /**
+   * Sets the data of a key through a node found by seekNode, inserting or removing a node as needed.
+   * The shape of the tree only changes, and is only rebalanced, when a node is inserted or removed.
+   * @param key The key.
+   * @param found The node returned by seekNode.
+   * @param isPresent True, if the found node has the key.
+   * @param data The new data, or null to remove the key.
+   */
+  protected void updateNode(K key, AvlTreeNode<K, E> found, boolean isPresent, E data) {
+    if (isPresent) {
+      if (data == null) {
+        this.removeNode(found);
+      } else {
+        this.replaceData(found, data);
+        if (this.isFingerEnabled()) {
+          this.setFinger(found);
+        }
+      }
+    } else if (data != null) {
+      this.attachNode(key, data, found);
+    }
+  }
+  /**
+   * Indicates if a node found by seekNode has a key.
+   * @param key The key.
+   * @param found The node returned by seekNode.
+   * @return True, if the node has the key.
+   */
+  protected boolean isNodeOf(K key, AvlTreeNode<K, E> found) {
+    boolean isNodeOf = (found != null && this.compare(key, found.getKey()) == 0);
+    return isNodeOf;
+  }
+  /**
+   * Sets the data of a key, replacing the data of the first node found with the key, or inserting it.
+   * Unlike insert, this never adds a second node with the same key.
+   * @param key The key.
+   * @param data The data.
+   * @return The previous data, or null if the key was not in the tree.
+   */
+  public E put(K key, E data) {
+    AvlTreeNode<K, E> found = this.seekNode(key);
+    E previous = null;
+    if (this.isNodeOf(key, found)) {
+      previous = this.replaceData(found, data);
+      if (this.isFingerEnabled()) {
+        this.setFinger(found);
+      }
+    } else {
+      this.attachNode(key, data, found);
+    }
+    return previous;
+  }
+  /**
+   * Replaces the data of a node and reports the change.
+   * @param node The node.
+   * @param data The new data.
+   * @return The old data.
+   */
+  protected E replaceData(AvlTreeNode<K, E> node, E data) {
+    E oldData = node.getData();
+    node.setData(data);
+    this.publishEvent(AvlTreeEventType.REPLACED, node.getKey(), oldData, data);
+    this.flushEvents();
+    return oldData;
+  }
+  /**
+   * Sets the data of a key if the key is not in the tree or has null data.
+   * @param key The key.
+   * @param data The data.
+   * @return The current data, or null if the data was set.
+   */
+  public E putIfAbsent(K key, E data) {
+    AvlTreeNode<K, E> found = this.seekNode(key);
+    boolean isPresent = this.isNodeOf(key, found);
+    E current = null;
+    if (isPresent) {
+      current = found.getData();
+    }
+    if (isPresent && current == null) {
+      this.replaceData(found, data);
+    } else if (!isPresent) {
+      this.attachNode(key, data, found);
+    }
+    return current;
+  }
+  /**
+   * Computes new data for a key from its current data, or from null if the key is not in the tree.
+   * A null result removes the key.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if the key was removed or not added.
+   */
+  public E compute(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    AvlTreeNode<K, E> found = this.seekNode(key);
+    boolean isPresent = this.isNodeOf(key, found);
+    E current = null;
+    if (isPresent) {
+      current = found.getData();
+    }
+    E data = function.apply(key, current);
+    this.updateNode(key, found, isPresent, data);
+    return data;
+  }
+  /**
+   * Computes new data for a key that is in the tree with non-null data.
+   * A null result removes the key.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if there was none or the key was removed.
+   */
+  public E computeIfPresent(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    AvlTreeNode<K, E> found = this.seekNode(key);
+    E data = null;
+    if (this.isNodeOf(key, found) && found.getData() != null) {
+      data = function.apply(key, found.getData());
+      this.updateNode(key, found, true, data);
+    }
+    return data;
+  }
+  /**
+   * Sets the data of a key, or combines it with the current data if there is any.
+   * A null result of the function removes the key. This suits counters, as in merge(key, 1, Integer::sum).
+   * @param key The key.
+   * @param data The data to set or combine. It must not be null.
+   * @param function The function of the current data and the given data.
+   * @return The new data, or null if the key was removed.
+   * @throws NullPointerException If the data is null.
+   */
+  public E merge(K key, E data, BiFunction<? super E, ? super E, ? extends E> function) {
+    if (data == null) {
+      throw new NullPointerException("The data to merge must not be null.");
+    }
+    AvlTreeNode<K, E> found = this.seekNode(key);
+    boolean isPresent = this.isNodeOf(key, found);
+    E merged = data;
+    if (isPresent && found.getData() != null) {
+      merged = function.apply(found.getData(), data);
+    }
+    this.updateNode(key, found, isPresent, merged);
+    return merged;
+  }
+  /**
+   * Links a new node into the tree below the given parent and restores the balance.
+   * @param node The new node.
+   * @param parent The parent, or null if the tree is empty.
+   * @param isLeft True, if the node becomes the left child of the parent.
+   */
+  protected void insertNode(AvlTreeNode<K, E> node, AvlTreeNode<K, E> parent, boolean isLeft) {
+    node.setLeft(null);
+    node.setRight(null);
+    node.setParent(parent);
+    node.updateHeight();
+    node.updateTreeSize();
+    if (parent == null) {
+      this.setRoot(node);
+    } else if (isLeft) {
+      parent.setLeft(node);
     } else {
-      node.setRight(this.insertRec(key, data, node.getRight()));
-      node.getRight().setParent(node);
+      parent.setRight(node);
+    }
+    this.incrementCount();
+    this.publishEvent(AvlTreeEventType.INSERTED, node.getKey(), null, node.getData());
+    this.retraceInsert(parent);
+  }
+  /**
+   * Makes a node the root of a sub-tree with the given children.
+   * The children must already be balanced and differ in height by at most one.
+   * @param left The left child, or null.
+   * @param node The node.
+   * @param right The right child, or null.
+   * @return The node.
+   */
+  protected AvlTreeNode<K, E> linkNode(AvlTreeNode<K, E> left, AvlTreeNode<K, E> node, AvlTreeNode<K, E> right) {
+    node.setLeft(left);
+    node.setParent(null);
+    node.setRight(right);
+    if (left != null) {
+      left.setParent(node);
+    }
+    if (right != null) {
+      right.setParent(node);
     }
     node.updateHeight();
-    node = node.rebalance();
+    node.updateTreeSize();
     return node;
   }
   /**
-   * Inserts an element into the tree.
+   * Replaces the elements of the tree with a sorted run of nodes.
+   * Large runs are built on the common fork-join pool.
+   * @param nodes The sorted nodes.
+   */
+  protected void loadNodes(AvlTreeNode<K, E>[] nodes) {
+    AvlTreeNode<K, E> root;
+    if (nodes.length > AvlTreeBuildTask.THRESHOLD) {
+      root = ForkJoinPool.commonPool().invoke(new AvlTreeBuildTask<K, E>(this, nodes, 0, nodes.length));
+    } else {
+      root = this.buildTree(nodes, 0, nodes.length);
+    }
+    //the old nodes are gone, so the finger and the cached largest node cannot be kept
+    this.setFinger(null);
+    this.setMaxCache(null);
+    this.setRoot(root);
+    this.setCount(nodes.length);
+    this.publishEvent(AvlTreeEventType.RESTRUCTURED, null, null, null);
+    this.flushEvents();
+  }
+  /**
+   * Finds the node with the largest key that is below, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to accept a node with an equal key.
+   * @return The node, or null if there is none.
+   */
+  protected AvlTreeNode<K, E> floorNode(K key, boolean inclusive) {
+    AvlTreeNode<K, E> floor = null;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    while (temp != null) {
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp > 0 || (cmp == 0 && inclusive)) {
+        floor = temp;
+        temp = temp.getRight();
+      } else {
+        temp = temp.getLeft();
+      }
+    }
+    return floor;
+  }
+  /**
+   * Finds the first node on the search path that has the given key.
+   * With finger search enabled, the search starts near the finger instead of at the root.
+   * The finger is not moved, so concurrent readers may share it.
+   * @param key The key to search for.
+   * @return The node, or null if the key is not in the tree.
+   */
+  protected AvlTreeNode<K, E> findNode(K key) {
+    AvlTreeNode<K, E> node = null;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    AvlTreeNode<K, E> finger = this.getFinger();
+    if (this.isFingerEnabled() && finger != null) {
+      temp = this.fingerStart(finger, key, false);
+    }
+    int steps = 0;
+    while (temp != null && node == null) {
+      ++steps;
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp < 0) {
+        temp = temp.getLeft();
+      } else if (cmp > 0) {
+        temp = temp.getRight();
+      } else {
+        node = temp;
+      }
+    }
+    this.searched(steps);
+    return node;
+  }
+  /**
+   * Called once findNode or findNodeBounded has finished a search. It does nothing here; subclasses override it
+   * to observe searches.
+   * @param steps The number of nodes the search visited.
+   */
+  protected void searched(int steps) {
+  }
+  /**
+   * Finds the first node on the search path that has the given key, starting at the root and following
+   * at most MAX_SEARCH_STEPS links.
+   * Readers that walk the tree under an optimistic stamp use it, since a concurrent rotation can leave them
+   * in a cycle or a stale sub-tree; giving up lets them validate the stamp and retry under the lock.
+   * @param key The key to search for.
+   * @return The node, or null if the key is not in the tree.
+   * @throws IllegalStateException If the search takes more steps than a balanced tree allows.
+   */
+  protected AvlTreeNode<K, E> findNodeBounded(K key) {
+    AvlTreeNode<K, E> node = null;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    int steps = 0;
+    while (temp != null && node == null) {
+      if (++steps > MAX_SEARCH_STEPS) {
+        throw new IllegalStateException("The search path is longer than a balanced tree allows.");
+      }
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp < 0) {
+        temp = temp.getLeft();
+      } else if (cmp > 0) {
+        temp = temp.getRight();
+      } else {
+        node = temp;
+      }
+    }
+    this.searched(steps);
+    return node;
+  }
+  /**
+   * Finds where a search for a key should start, by climbing from the finger through the parent links.
+   * The climb stops at the lowest ancestor whose sub-tree must hold the key, so the descent that follows
+   * costs O(log d), where d is the distance in key order between the finger and the key.
+   * Key comparisons are only made where the climb could pass the key.
+   * @param finger The finger.
+   * @param key The key.
+   * @param forInsert True, if equal keys belong to the right, as for an insertion.
+   * @return The node to start the descent from.
+   */
+  protected AvlTreeNode<K, E> fingerStart(AvlTreeNode<K, E> finger, K key, boolean forInsert) {
+    AvlTreeNode<K, E> start = finger;
+    AvlTreeNode<K, E> node = finger;
+    int cmp = this.compare(key, finger.getKey());
+    boolean isAbove = (cmp > 0 || (cmp == 0 && forInsert));
+    boolean done = (cmp == 0 && !forInsert);
+    while (!done && node.getParent() != null) {
+      AvlTreeNode<K, E> parent = node.getParent();
+      if (isAbove && node.isLeft()) {
+        if (this.compare(key, parent.getKey()) < 0) {
+          done = true;
+        } else {
+          start = parent;
+        }
+      } else if (!isAbove && node.isRight()) {
+        cmp = this.compare(key, parent.getKey());
+        if (cmp > 0 || (cmp == 0 && forInsert)) {
+          done = true;
+        } else {
+          start = parent;
+        }
+      }
+      node = parent;
+    }
+    return start;
+  }
+  /**
+   * Gets the in-order predecessor of a node using the parent links.
+   * @param node The node.
+   * @return The predecessor, or null if the node has the smallest key.
+   */
+  protected AvlTreeNode<K, E> predecessorOf(AvlTreeNode<K, E> node) {
+    AvlTreeNode<K, E> predecessor = node.getPredecessor();
+    if (predecessor == null) {
+      while (node.isLeft()) {
+        node = node.getParent();
+      }
+      predecessor = node.getParent();
+    }
+    return predecessor;
+  }
+  /**
+   * Replaces the elements of the tree with the elements in a snapshot file.
+   * @param path The snapshot file.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @throws IOException If the file could not be read or is not a valid snapshot.
+   */
+  public void readSnapshot(Path path, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec) throws IOException {
+    new AvlSnapshot<K, E>(keyCodec, dataCodec).read(this, path);
+  }
+  /**
+   * Gets a view of the entries whose keys are within a range.
+   * @param lo The smallest key, inclusive.
+   * @param hi The largest key, exclusive.
+   * @return The view.
+   */
+  public AvlTreeRange<K, E> range(K lo, K hi) {
+    AvlTreeRange<K, E> range = new AvlTreeRange<K, E>(this, lo, true, hi, false);
+    return range;
+  }
+  /**
+   * Removes an element from the tree.
    * @param key The key of the element.
    */
   public void remove(K key) {
-    AvlTreeNode<K, E> root = this.getRoot();
-    this.setRoot(this.removeRec(key, root));
+    AvlTreeNode<K, E> node = this.findNode(key);
+    if (node != null) {
+      this.removeNode(node);
+    }
   }
   /**
-   * Recursively removes a node.
-   * @param key The key to remove.
-   * @param node The current node.
-   * @return The current node.
+   * Unlinks a node from the tree and restores the balance.
+   * A node with two children takes the key and data of its predecessor, and the predecessor is unlinked instead.
+   * @param node The node to remove.
    */
-  protected AvlTreeNode<K, E> removeRec(K key, AvlTreeNode<K, E> node) {
-    if (node != null) {
-      if (key.compareTo(node.getKey()) < 0) {
-        node.setLeft(this.removeRec(key, node.getLeft()));
-        node.updateHeight();
-      } else if (key.compareTo(node.getKey()) > 0) {
-        node.setRight(this.removeRec(key, node.getRight()));
-        node.updateHeight();
-      } else if (node.hasBoth()) {
-        AvlTreeNode<K, E> predecessor = node.getPredecessor();
-        node.setData(predecessor.getData());
-        node.setKey(predecessor.getKey());
-        node.setLeft(this.removeRec(predecessor.getKey(), node.getLeft()));
+  protected void removeNode(AvlTreeNode<K, E> node) {
+    K key = node.getKey();
+    E data = node.getData();
+    if (node.hasBoth()) {
+      AvlTreeNode<K, E> predecessor = node.getPredecessor();
+      node.setKey(predecessor.getKey());
+      node.setData(predecessor.getData());
+      node = predecessor;
+    }
+    AvlTreeNode<K, E> child = node.getLeft();
+    if (child == null) {
+      child = node.getRight();
+    }
+    AvlTreeNode<K, E> parent = node.getParent();
+    if (child != null) {
+      child.setParent(parent);
+    }
+    if (parent == null) {
+      this.setRoot(child);
+    } else if (node.isLeft()) {
+      parent.setLeft(child);
+    } else {
+      parent.setRight(child);
+    }
+    node.setLeft(null);
+    node.setParent(null);
+    node.setRight(null);
+    //the largest node never has two children, so it is only unlinked when it is the one removed
+    if (node == this.getMaxCache()) {
+      this.setMaxCache(null);
+    }
+    this.decrementCount();
+    this.publishEvent(AvlTreeEventType.REMOVED, key, data, null);
+    this.retraceRemove(parent);
+    if (this.isFingerEnabled()) {
+      this.setFinger(parent);
+    } else {
+      this.setFinger(null);
+    }
+    this.flushEvents();
+  }
+  /**
+   * Walks up from a node after an insertion.
+   * Heights are only fixed until a subtree keeps its height; after that only the sub-tree sizes change.
+   * @param node The parent of the inserted node.
+   * @return The number of nodes whose heights were fixed.
+   */
+  protected int retraceInsert(AvlTreeNode<K, E> node) {
+    boolean balanced = false;
+    int steps = 0;
+    while (node != null) {
+      AvlTreeNode<K, E> parent = node.getParent();
+      node.updateTreeSize();
+      if (!balanced) {
+        ++steps;
+        int height = node.getHeight();
         node.updateHeight();
-      } else if (node.hasLeft()) {
-        AvlTreeNode<K, E> left = node.getLeft();
-        left.setParent(node.getParent());
-        if (node.hasParent()) {
-          AvlTreeNode<K, E> parent = node.getParent();
-          if (node.isLeft()) {
-            parent.setLeft(left);
-          } else {
-            parent.setRight(left);
-          }
+        if (node.isLeftHeavy() || node.isRightHeavy()) {
+          this.rebalanceNode(node);
+          balanced = true;
+        } else if (node.getHeight() == height) {
+          balanced = true;
         }
-        node.setLeft(null);
-        node.setParent(null);
-        node = left;
-        this.decrementCount();
-      } else if (node.hasRight()) {
-        AvlTreeNode<K, E> right = node.getRight();
-        right.setParent(node.getParent());
-        if (node.hasParent()) {
-          AvlTreeNode<K, E> parent = node.getParent();
-          if (node.isLeft()) {
-            parent.setLeft(right);
-          } else {
-            parent.setRight(right);
-          }
+      }
+      node = parent;
+    }
+    return steps;
+  }
+  /**
+   * Walks up from a node after a removal.
+   * Heights are only fixed until a subtree keeps its height; after that only the sub-tree sizes change.
+   * @param node The parent of the unlinked node.
+   * @return The number of nodes whose heights were fixed.
+   */
+  protected int retraceRemove(AvlTreeNode<K, E> node) {
+    boolean balanced = false;
+    int steps = 0;
+    while (node != null) {
+      AvlTreeNode<K, E> parent = node.getParent();
+      node.updateTreeSize();
+      if (!balanced) {
+        ++steps;
+        int height = node.getHeight();
+        node.updateHeight();
+        AvlTreeNode<K, E> root = node;
+        if (node.isLeftHeavy() || node.isRightHeavy()) {
+          root = this.rebalanceNode(node);
         }
-        node.setRight(null);
-        node.setParent(null);
-        node = right;
-        this.decrementCount();
+        balanced = (root.getHeight() == height);
+      }
+      node = parent;
+    }
+    return steps;
+  }
+  /**
+   * Re-balances the sub-tree of a node and updates the root of the tree if needed.
+   * @param node The node.
+   * @return The new root of the sub-tree.
+   */
+  protected AvlTreeNode<K, E> rebalanceNode(AvlTreeNode<K, E> node) {
+    AvlTreeNode<K, E> root = node.rebalance();
+    if (!root.hasParent()) {
+      this.setRoot(root);
+    }
+    this.publishEvent(AvlTreeEventType.RESTRUCTURED, root.getKey(), null, null);
+    return root;
+  }
+  /**
+   * Counts the elements whose keys are within a range.
+   * @param lo The smallest key, inclusive.
+   * @param hi The largest key, inclusive.
+   * @return The number of elements.
+   */
+  public int countRange(K lo, K hi) {
+    int count = 0;
+    if (this.compare(lo, hi) <= 0) {
+      count = this.rankOf(hi, true) - this.rankOf(lo, false);
+    }
+    return count;
+  }
+  /**
+   * Gets the element at a position in key order.
+   * @param index The zero-based position.
+   * @return The element.
+   * @throws IndexOutOfBoundsException If the position is not in the tree.
+   */
+  public E get(int index) {
+    AvlTreeNode<K, E> node = this.selectNode(index);
+    E data = node.getData();
+    return data;
+  }
+  /**
+   * Gets the number of elements whose keys are smaller than a key.
+   * @param key The key.
+   * @return The number of elements.
+   */
+  public int rank(K key) {
+    int rank = this.rankOf(key, false);
+    return rank;
+  }
+  /**
+   * Counts the elements whose keys are smaller than, or optionally equal to, a key.
+   * @param key The key.
+   * @param inclusive True, to also count elements equal to the key.
+   * @return The number of elements.
+   */
+  protected int rankOf(K key, boolean inclusive) {
+    int rank = 0;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    while (temp != null) {
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        temp = temp.getLeft();
       } else {
-        if (node.hasParent()) {
-          AvlTreeNode<K, E> parent = node.getParent();
-          if (node.isLeft()) {
-            parent.setLeft(null);
-          } else {
-            parent.setRight(null);
-          }
-          node.setParent(null);
-          node = null;
-        }
-        this.decrementCount();
+        rank += temp.getLeftTreeSize() + 1;
+        temp = temp.getRight();
       }
-      if (node != null) {
-        node = node.rebalance();
+    }
+    return rank;
+  }
+  /**
+   * Gets the key at a position in key order.
+   * @param index The zero-based position.
+   * @return The key.
+   * @throws IndexOutOfBoundsException If the position is not in the tree.
+   */
+  public K select(int index) {
+    AvlTreeNode<K, E> node = this.selectNode(index);
+    K key = node.getKey();
+    return key;
+  }
+  /**
+   * Finds the node at a position in key order.
+   * @param index The zero-based position.
+   * @return The node.
+   * @throws IndexOutOfBoundsException If the position is not in the tree.
+   */
+  protected AvlTreeNode<K, E> selectNode(int index) {
+    if (index < 0 || index >= this.getCount()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Count: " + this.getCount());
+    }
+    AvlTreeNode<K, E> node = null;
+    AvlTreeNode<K, E> temp = this.getRoot();
+    while (node == null) {
+      int leftTreeSize = temp.getLeftTreeSize();
+      if (index < leftTreeSize) {
+        temp = temp.getLeft();
+      } else if (index > leftTreeSize) {
+        index -= leftTreeSize + 1;
+        temp = temp.getRight();
+      } else {
+        node = temp;
       }
     }
     return node;
   }
+  /**
+   * Appends the elements of another tree whose keys are all at least the largest key of this tree.
+   * The other tree is left empty.
+   * @param other The other tree.
+   * @throws IllegalArgumentException If the other tree has a key smaller than the largest key of this tree.
+   */
+  public void concat(AvlTree<K, E> other) {
+    AvlTreeNode<K, E> max = this.getMaxNode();
+    AvlTreeNode<K, E> min = other.getMinNode();
+    if (max != null && min != null && this.compare(max.getKey(), min.getKey()) > 0) {
+      throw new IllegalArgumentException("The other tree has keys smaller than " + max.getKey() + ".");
+    }
+    this.setJoined(this.join(this.getRoot(), other.getRoot()));
+    other.setJoined(null);
+  }
+  /**
+   * Detaches a sub-tree from its parent.
+   * @param node The root of the sub-tree, or null.
+   * @return The root of the sub-tree.
+   */
+  protected AvlTreeNode<K, E> detach(AvlTreeNode<K, E> node) {
+    if (node != null) {
+      node.setParent(null);
+    }
+    return node;
+  }
+  /**
+   * Removes the elements whose keys are in another tree.
+   * The other tree is left empty.
+   * @param other The other tree.
+   */
+  public void difference(AvlTree<K, E> other) {
+    this.applySetOperation(AvlSetOperation.DIFFERENCE, other);
+  }
+  /**
+   * Gets the node with the largest key.
+   * @return The node, or null if the tree is empty.
+   */
+  protected AvlTreeNode<K, E> getMaxNode() {
+    AvlTreeNode<K, E> temp = this.getRoot();
+    if (temp != null) {
+      while (temp.getRight() != null) {
+        temp = temp.getRight();
+      }
+    }
+    return temp;
+  }
+  /**
+   * Gets the node with the largest key, following at most MAX_SEARCH_STEPS links, as findNodeBounded does.
+   * @return The node, or null if the tree is empty.
+   * @throws IllegalStateException If the walk takes more steps than a balanced tree allows.
+   */
+  protected AvlTreeNode<K, E> getMaxNodeBounded() {
+    AvlTreeNode<K, E> temp = this.getRoot();
+    int steps = 0;
+    while (temp != null && temp.getRight() != null) {
+      if (++steps > MAX_SEARCH_STEPS) {
+        throw new IllegalStateException("The search path is longer than a balanced tree allows.");
+      }
+      temp = temp.getRight();
+    }
+    return temp;
+  }
+  /**
+   * Gets the node with the smallest key.
+   * @return The node, or null if the tree is empty.
+   */
+  protected AvlTreeNode<K, E> getMinNode() {
+    AvlTreeNode<K, E> temp = this.getRoot();
+    if (temp != null) {
+      while (temp.getLeft() != null) {
+        temp = temp.getLeft();
+      }
+    }
+    return temp;
+  }
+  /**
+   * Gets the node with the smallest key, following at most MAX_SEARCH_STEPS links, as findNodeBounded does.
+   * @return The node, or null if the tree is empty.
+   * @throws IllegalStateException If the walk takes more steps than a balanced tree allows.
+   */
+  protected AvlTreeNode<K, E> getMinNodeBounded() {
+    AvlTreeNode<K, E> temp = this.getRoot();
+    int steps = 0;
+    while (temp != null && temp.getLeft() != null) {
+      if (++steps > MAX_SEARCH_STEPS) {
+        throw new IllegalStateException("The search path is longer than a balanced tree allows.");
+      }
+      temp = temp.getLeft();
+    }
+    return temp;
+  }
+  /**
+   * Gets the height of a sub-tree.
+   * @param node The root of the sub-tree, or null.
+   * @return The height, or -1 if the sub-tree is empty.
+   */
+  protected int heightOf(AvlTreeNode<K, E> node) {
+    int height = -1;
+    if (node != null) {
+      height = node.getHeight();
+    }
+    return height;
+  }
+  /**
+   * Keeps only the elements whose keys are also in another tree.
+   * The other tree is left empty.
+   * @param other The other tree.
+   */
+  public void intersection(AvlTree<K, E> other) {
+    this.applySetOperation(AvlSetOperation.INTERSECTION, other);
+  }
+  /**
+   * Joins two detached sub-trees and a node whose key lies between them.
+   * The heights of the sub-trees may differ by any amount.
+   * @param left The root of the sub-tree with the smaller keys, or null.
+   * @param node The middle node.
+   * @param right The root of the sub-tree with the larger keys, or null.
+   * @return The root of the joined sub-tree.
+   */
+  protected AvlTreeNode<K, E> join(AvlTreeNode<K, E> left, AvlTreeNode<K, E> node, AvlTreeNode<K, E> right) {
+    AvlTreeNode<K, E> root;
+    int leftHeight = this.heightOf(left);
+    int rightHeight = this.heightOf(right);
+    if (leftHeight > rightHeight + 1) {
+      root = this.joinRight(left, node, right);
+    } else if (rightHeight > leftHeight + 1) {
+      root = this.joinLeft(left, node, right);
+    } else {
+      root = this.linkNode(left, node, right);
+    }
+    return root;
+  }
+  /**
+   * Joins two detached sub-trees where every key of the first is at most every key of the second.
+   * @param left The root of the sub-tree with the smaller keys, or null.
+   * @param right The root of the sub-tree with the larger keys, or null.
+   * @return The root of the joined sub-tree, or null if both are empty.
+   */
+  protected AvlTreeNode<K, E> join(AvlTreeNode<K, E> left, AvlTreeNode<K, E> right) {
+    AvlTreeNode<K, E> root = left;
+    if (left == null) {
+      root = right;
+    } else if (right != null) {
+      AvlTreeSplit<K, E> split = this.splitLast(left);
+      root = this.join(split.getLeft(), split.getNode(), right);
+    }
+    return root;
+  }
+  /**
+   * Joins a taller right sub-tree by descending its left spine.
+   * @param left The root of the shorter sub-tree, or null.
+   * @param node The middle node.
+   * @param right The root of the taller sub-tree.
+   * @return The root of the joined sub-tree.
+   */
+  protected AvlTreeNode<K, E> joinLeft(AvlTreeNode<K, E> left, AvlTreeNode<K, E> node, AvlTreeNode<K, E> right) {
+    AvlTreeNode<K, E> inner = right.getLeft();
+    AvlTreeNode<K, E> joined;
+    if (this.heightOf(inner) <= this.heightOf(left) + 1) {
+      joined = this.linkNode(left, node, inner);
+    } else {
+      joined = this.joinLeft(left, node, this.detach(inner));
+    }
+    AvlTreeNode<K, E> root = this.linkNode(joined, right, right.getRight());
+    root = root.rebalance();
+    return root;
+  }
+  /**
+   * Joins a taller left sub-tree by descending its right spine.
+   * @param left The root of the taller sub-tree.
+   * @param node The middle node.
+   * @param right The root of the shorter sub-tree, or null.
+   * @return The root of the joined sub-tree.
+   */
+  protected AvlTreeNode<K, E> joinRight(AvlTreeNode<K, E> left, AvlTreeNode<K, E> node, AvlTreeNode<K, E> right) {
+    AvlTreeNode<K, E> inner = left.getRight();
+    AvlTreeNode<K, E> joined;
+    if (this.heightOf(inner) <= this.heightOf(right) + 1) {
+      joined = this.linkNode(inner, node, right);
+    } else {
+      joined = this.joinRight(this.detach(inner), node, right);
+    }
+    AvlTreeNode<K, E> root = this.linkNode(left.getLeft(), left, joined);
+    root = root.rebalance();
+    return root;
+  }
+  /**
+   * Applies a set operation to this tree and another tree on the common fork-join pool.
+   * The other tree is left empty.
+   * @param operation The operation.
+   * @param other The other tree.
+   */
+  protected void applySetOperation(AvlSetOperation operation, AvlTree<K, E> other) {
+    AvlTreeNode<K, E> first = this.getRoot();
+    AvlTreeNode<K, E> second = other.getRoot();
+    other.setJoined(null);
+    ForkJoinTask<AvlTreeNode<K, E>> task = new AvlSetOperationTask<K, E>(this, operation, first, second);
+    this.setJoined(ForkJoinPool.commonPool().invoke(task));
+  }
+  /**
+   * Sets the root to the result of a split or join and updates the count from it.
+   * @param root The new root, or null.
+   */
+  protected void setJoined(AvlTreeNode<K, E> root) {
+    int count = 0;
+    if (root != null) {
+      count = root.getTreeSize();
+    }
+    //the nodes may have moved to or from another tree, so the finger and the cached largest node cannot be kept
+    this.setFinger(null);
+    this.setMaxCache(null);
+    this.setRoot(root);
+    this.setCount(count);
+    this.publishEvent(AvlTreeEventType.RESTRUCTURED, null, null, null);
+    this.flushEvents();
+  }
+  /**
+   * Splits a detached sub-tree around a key.
+   * Keys are assumed to be unique.
+   * @param node The root of the sub-tree, or null.
+   * @param key The key.
+   * @return The sub-tree with smaller keys, the detached node with the key if any, and the sub-tree with larger keys.
+   */
+  protected AvlTreeSplit<K, E> split(AvlTreeNode<K, E> node, K key) {
+    AvlTreeSplit<K, E> split;
+    if (node == null) {
+      split = new AvlTreeSplit<K, E>(null, null, null);
+    } else {
+      AvlTreeNode<K, E> left = this.detach(node.getLeft());
+      AvlTreeNode<K, E> right = this.detach(node.getRight());
+      int cmp = this.compare(key, node.getKey());
+      if (cmp < 0) {
+        split = this.split(left, key);
+        split.setRight(this.join(split.getRight(), node, right));
+      } else if (cmp > 0) {
+        split = this.split(right, key);
+        split.setLeft(this.join(left, node, split.getLeft()));
+      } else {
+        split = new AvlTreeSplit<K, E>(left, this.linkNode(null, node, null), right);
+      }
+    }
+    return split;
+  }
+  /**
+   * Splits a detached sub-tree into the keys smaller than a key and the rest.
+   * Unlike split, this keeps every duplicate of the key on the right.
+   * @param node The root of the sub-tree, or null.
+   * @param key The key.
+   * @return The sub-tree with smaller keys and the sub-tree with the other keys.
+   */
+  protected AvlTreeSplit<K, E> splitAt(AvlTreeNode<K, E> node, K key) {
+    AvlTreeSplit<K, E> split;
+    if (node == null) {
+      split = new AvlTreeSplit<K, E>(null, null, null);
+    } else {
+      AvlTreeNode<K, E> left = this.detach(node.getLeft());
+      AvlTreeNode<K, E> right = this.detach(node.getRight());
+      if (this.compare(key, node.getKey()) <= 0) {
+        split = this.splitAt(left, key);
+        split.setRight(this.join(split.getRight(), node, right));
+      } else {
+        split = this.splitAt(right, key);
+        split.setLeft(this.join(left, node, split.getLeft()));
+      }
+    }
+    return split;
+  }
+  /**
+   * Moves the elements whose keys are at least a key into a new tree.
+   * @param key The key.
+   * @return The new tree.
+   */
+  public AvlTree<K, E> splitFrom(K key) {
+    AvlTreeSplit<K, E> split = this.splitAt(this.getRoot(), key);
+    AvlTree<K, E> tree = new AvlTree<K, E>(this.getComparator());
+    tree.setJoined(split.getRight());
+    this.setJoined(split.getLeft());
+    return tree;
+  }
+  /**
+   * Detaches the node with the largest key from a detached sub-tree.
+   * @param node The root of the sub-tree.
+   * @return The remaining sub-tree as the left and the largest node as the node.
+   */
+  protected AvlTreeSplit<K, E> splitLast(AvlTreeNode<K, E> node) {
+    AvlTreeSplit<K, E> split;
+    AvlTreeNode<K, E> left = this.detach(node.getLeft());
+    AvlTreeNode<K, E> right = this.detach(node.getRight());
+    if (right == null) {
+      split = new AvlTreeSplit<K, E>(left, this.linkNode(null, node, null), null);
+    } else {
+      split = this.splitLast(right);
+      split.setLeft(this.join(left, node, split.getLeft()));
+    }
+    return split;
+  }
+  /**
+   * Gets a spliterator over the entries that splits at sub-tree boundaries.
+   * @return The spliterator.
+   */
+  @Override
+  public Spliterator<Map.Entry<K, E>> spliterator() {
+    Spliterator<Map.Entry<K, E>> spliterator = new AvlTreeSpliterator<K, E>(this, this.getMinNode(), null, 0, this.getCount());
+    return spliterator;
+  }
+  /**
+   * Gets a sequential stream over the entries in key order.
+   * Call parallel on it to spread the work across the common fork-join pool.
+   * @return The stream.
+   */
+  public Stream<Map.Entry<K, E>> stream() {
+    Stream<Map.Entry<K, E>> stream = StreamSupport.stream(this.spliterator(), false);
+    return stream;
+  }
+  /**
+   * Gets the in-order successor of a node using the parent links.
+   * @param node The node.
+   * @return The successor, or null if the node has the largest key.
+   */
+  protected AvlTreeNode<K, E> successorOf(AvlTreeNode<K, E> node) {
+    AvlTreeNode<K, E> successor = node.getRight();
+    if (successor != null) {
+      while (successor.getLeft() != null) {
+        successor = successor.getLeft();
+      }
+    } else {
+      while (node.isRight()) {
+        node = node.getParent();
+      }
+      successor = node.getParent();
+    }
+    return successor;
+  }
+  /**
+   * Gets a view of the entries whose keys are at least a key.
+   * @param lo The key, inclusive.
+   * @return The view.
+   */
+  public AvlTreeRange<K, E> tailFrom(K lo) {
+    AvlTreeRange<K, E> range = new AvlTreeRange<K, E>(this, lo, true, null, false);
+    return range;
+  }
+  /**
+   * Adds the elements of another tree whose keys are not already in this tree.
+   * The other tree is left empty.
+   * @param other The other tree.
+   */
+  public void union(AvlTree<K, E> other) {
+    this.applySetOperation(AvlSetOperation.UNION, other);
+  }
+  /**
+   * Inserts a batch of elements in one pass over the tree.
+   * The batch is split at each node on the way down, so a path shared by several keys is walked once,
+   * and the sub-trees are joined back together on the way up.
+   * Equal keys are placed after the existing ones, as with insert.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   * @throws IllegalArgumentException If the arrays differ in length.
+   */
+  public void insertAll(K[] keys, E[] data) {
+    AvlTreeNode<K, E>[] nodes = this.createNodes(keys, data);
+    if (!this.isSorted(nodes)) {
+      this.sortNodes(nodes);
+    }
+    this.setJoined(this.insertBatch(this.getRoot(), nodes, 0, nodes.length));
+  }
+  /**
+   * Recursively inserts a sorted run of nodes into a detached sub-tree.
+   * @param node The root of the sub-tree, or null.
+   * @param nodes The sorted nodes.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @return The root of the new sub-tree.
+   */
+  protected AvlTreeNode<K, E> insertBatch(AvlTreeNode<K, E> node, AvlTreeNode<K, E>[] nodes, int lo, int hi) {
+    AvlTreeNode<K, E> root = node;
+    if (lo < hi) {
+      if (node == null) {
+        root = this.buildTree(nodes, lo, hi);
+      } else {
+        AvlTreeNode<K, E> left = this.detach(node.getLeft());
+        AvlTreeNode<K, E> right = this.detach(node.getRight());
+        int mid = this.searchNodes(nodes, lo, hi, node.getKey());
+        left = this.insertBatch(left, nodes, lo, mid);
+        right = this.insertBatch(right, nodes, mid, hi);
+        root = this.join(left, node, right);
+      }
+    }
+    return root;
+  }
+  /**
+   * Indicates if a run of nodes is in ascending key order.
+   * @param nodes The nodes.
+   * @return True, if the keys are sorted.
+   */
+  protected boolean isSorted(AvlTreeNode<K, E>[] nodes) {
+    boolean isSorted = true;
+    for (int i = 1; i < nodes.length && isSorted; i++) {
+      isSorted = (this.compare(nodes[i - 1].getKey(), nodes[i].getKey()) <= 0);
+    }
+    return isSorted;
+  }
+  /**
+   * Removes every element whose key is in a batch, in one pass over the tree.
+   * The batch is split at each node on the way down and the remaining sub-trees are joined on the way up.
+   * @param keys The keys, in any order.
+   */
+  public void removeAll(K[] keys) {
+    boolean isSorted = true;
+    for (int i = 1; i < keys.length && isSorted; i++) {
+      isSorted = (this.compare(keys[i - 1], keys[i]) <= 0);
+    }
+    if (!isSorted) {
+      Comparator<K> order = new Comparator<K>() {
+        @Override
+        public int compare(K a, K b) {
+          return AvlTree.this.compare(a, b);
+        }
+      };
+      keys = keys.clone();
+      Arrays.sort(keys, order);
+    }
+    this.setJoined(this.removeBatch(this.getRoot(), keys, 0, keys.length));
+  }
+  /**
+   * Recursively removes the nodes whose keys are in a sorted run from a detached sub-tree.
+   * Equal keys can sit on both sides of a node, so the keys equal to the node go to both sides.
+   * @param node The root of the sub-tree, or null.
+   * @param keys The sorted keys.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @return The root of the new sub-tree.
+   */
+  protected AvlTreeNode<K, E> removeBatch(AvlTreeNode<K, E> node, K[] keys, int lo, int hi) {
+    AvlTreeNode<K, E> root = node;
+    if (lo < hi && node != null) {
+      AvlTreeNode<K, E> left = this.detach(node.getLeft());
+      AvlTreeNode<K, E> right = this.detach(node.getRight());
+      int lt = this.searchKeys(keys, lo, hi, node.getKey(), false);
+      int gt = this.searchKeys(keys, lt, hi, node.getKey(), true);
+      left = this.removeBatch(left, keys, lo, gt);
+      right = this.removeBatch(right, keys, lt, hi);
+      if (lt < gt) {
+        root = this.join(left, right);
+      } else {
+        root = this.join(left, node, right);
+      }
+    }
+    return root;
+  }
+  /**
+   * Finds the first key in a sorted run that is above, or optionally equal to, a key.
+   * @param keys The sorted keys.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @param key The key.
+   * @param above True, to skip keys equal to the key as well.
+   * @return The index, or hi if there is none.
+   */
+  protected int searchKeys(K[] keys, int lo, int hi, K key, boolean above) {
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = this.compare(keys[mid], key);
+      if (cmp < 0 || (cmp == 0 && above)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+  /**
+   * Finds the first node in a sorted run whose key is at least a key.
+   * @param nodes The sorted nodes.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @param key The key.
+   * @return The index, or hi if there is none.
+   */
+  protected int searchNodes(AvlTreeNode<K, E>[] nodes, int lo, int hi, K key) {
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.compare(nodes[mid].getKey(), key) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+  /**
+   * Sorts nodes by key with a stable parallel sort.
+   * @param nodes The nodes.
+   */
+  protected void sortNodes(AvlTreeNode<K, E>[] nodes) {
+    Comparator<AvlTreeNode<K, E>> order = new Comparator<AvlTreeNode<K, E>>() {
+      @Override
+      public int compare(AvlTreeNode<K, E> a, AvlTreeNode<K, E> b) {
+        return AvlTree.this.compare(a.getKey(), b.getKey());
+      }
+    };
+    Arrays.parallelSort(nodes, order);
+  }
+  /**
+   * Writes the elements of the tree to a snapshot file, in key order.
+   * @param path The snapshot file.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @throws IOException If the file could not be written.
+   */
+  public void writeSnapshot(Path path, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec) throws IOException {
+    new AvlSnapshot<K, E>(keyCodec, dataCodec).write(this, path);
+  }
   /**
    * Gets the string representation of the tree.
    * @return The string representation.
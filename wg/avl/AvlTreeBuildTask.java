@@ -0,0 +1,102 @@
+package wg.avl;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork-join task that links a sorted run of nodes into a balanced sub-tree.
+ * The two halves of a large run are built in parallel.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlTreeBuildTask<K, E> extends RecursiveTask<AvlTreeNode<K, E>> {
+  /**
+   * The serialization version.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * The run length below which the sub-tree is built on the current thread.
+   */
+  public static final int THRESHOLD = 8192;
+  /**
+   * The end of the run, exclusive.
+   */
+  private int mHi;
+  /**
+   * The start of the run, inclusive.
+   */
+  private int mLo;
+  /**
+   * The sorted nodes.
+   */
+  private AvlTreeNode<K, E>[] mNodes;
+  /**
+   * The tree being built.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Gets the end of the run.
+   * @return The end, exclusive.
+   */
+  public int getHi() {
+    return this.mHi;
+  }
+  /**
+   * Gets the start of the run.
+   * @return The start, inclusive.
+   */
+  public int getLo() {
+    return this.mLo;
+  }
+  /**
+   * Gets the sorted nodes.
+   * @return The nodes.
+   */
+  public AvlTreeNode<K, E>[] getNodes() {
+    return this.mNodes;
+  }
+  /**
+   * Gets the tree being built.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Creates an instance of the AvlTreeBuildTask class.
+   * @param tree The tree being built.
+   * @param nodes The sorted nodes.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   */
+  public AvlTreeBuildTask(AvlTree<K, E> tree, AvlTreeNode<K, E>[] nodes, int lo, int hi) {
+    this.mHi = hi;
+    this.mLo = lo;
+    this.mNodes = nodes;
+    this.mTree = tree;
+  }
+  /**
+   * Builds the sub-tree.
+   * @return The root of the sub-tree, or null if the run is empty.
+   */
+  @Override
+  protected AvlTreeNode<K, E> compute() {
+    AvlTreeNode<K, E> root;
+    int lo = this.getLo();
+    int hi = this.getHi();
+    AvlTree<K, E> tree = this.getTree();
+    AvlTreeNode<K, E>[] nodes = this.getNodes();
+    if (hi - lo <= AvlTreeBuildTask.THRESHOLD) {
+      root = tree.buildTree(nodes, lo, hi);
+    } else {
+      int mid = (lo + hi) >>> 1;
+      AvlTreeBuildTask<K, E> leftTask = new AvlTreeBuildTask<K, E>(tree, nodes, lo, mid);
+      AvlTreeBuildTask<K, E> rightTask = new AvlTreeBuildTask<K, E>(tree, nodes, mid + 1, hi);
+      leftTask.fork();
+      AvlTreeNode<K, E> right = rightTask.compute();
+      AvlTreeNode<K, E> left = leftTask.join();
+      root = tree.linkNode(left, nodes[mid], right);
+    }
+    return root;
+  }
+}
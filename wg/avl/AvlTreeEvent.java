@@ -0,0 +1,84 @@
+package wg.avl;
+
+/**
+ * A change to an AVL tree.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class AvlTreeEvent<K, E> {
+  /**
+   * The data after the change.
+   */
+  private E mData;
+  /**
+   * The key of the element changed, or of the root of the sub-tree restructured.
+   */
+  private K mKey;
+  /**
+   * The data before the change.
+   */
+  private E mOldData;
+  /**
+   * The kind of change.
+   */
+  private AvlTreeEventType mType;
+  /**
+   * Gets the data after the change.
+   * @return The data, or null if the element was removed or the tree restructured.
+   */
+  public E getData() {
+    return this.mData;
+  }
+  /**
+   * Gets the key of the element changed, or of the new root of the sub-tree restructured.
+   * @return The key, or null if the whole tree was replaced.
+   */
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the data before the change.
+   * @return The data, or null if the element was inserted or the tree restructured.
+   */
+  public E getOldData() {
+    return this.mOldData;
+  }
+  /**
+   * Gets the kind of change.
+   * @return The kind of change.
+   */
+  public AvlTreeEventType getType() {
+    return this.mType;
+  }
+  /**
+   * Creates an instance of the AvlTreeEvent class.
+   * @param type The kind of change.
+   * @param key The key of the element changed, or of the root of the sub-tree restructured.
+   * @param oldData The data before the change.
+   * @param data The data after the change.
+   */
+  public AvlTreeEvent(AvlTreeEventType type, K key, E oldData, E data) {
+    this.mData = data;
+    this.mKey = key;
+    this.mOldData = oldData;
+    this.mType = type;
+  }
+  /**
+   * Indicates if the event replaces the whole tree, so that listeners must read it again.
+   * @return True, if the whole tree was replaced.
+   */
+  public boolean isWholeTree() {
+    boolean isWholeTree = (this.mType == AvlTreeEventType.RESTRUCTURED && this.mKey == null);
+    return isWholeTree;
+  }
+  /**
+   * Gets the string representation of the event.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    String rep = this.mType + "(key=" + this.mKey + ";old=" + this.mOldData + ";data=" + this.mData + ")";
+    return rep;
+  }
+}
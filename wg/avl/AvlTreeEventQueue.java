@@ -0,0 +1,215 @@
+package wg.avl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds the changes made to an AVL tree until the tree is consistent, then hands them to the listeners.
+ * Changes made while a batch is open are held until the outermost batch closes.
+ * A listener may ask for its changes to be coalesced, so that it sees at most the net change to each key.
+ * Like the tree, the queue is not thread-safe, except that listeners may be added and removed at any time.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class AvlTreeEventQueue<K, E> {
+  /**
+   * The number of batches open.
+   */
+  private int mBatchDepth;
+  /**
+   * The listeners that want their changes coalesced.
+   */
+  private List<AvlTreeListener<K, E>> mCoalescing;
+  /**
+   * The key order, used to coalesce changes.
+   */
+  private Comparator<? super K> mComparator;
+  /**
+   * Indicates if changes are being handed to the listeners.
+   */
+  private boolean mDelivering;
+  /**
+   * The listeners that want every change.
+   */
+  private List<AvlTreeListener<K, E>> mListeners;
+  /**
+   * The changes not yet handed to the listeners.
+   */
+  private List<AvlTreeEvent<K, E>> mPending;
+  /**
+   * Creates an instance of the AvlTreeEventQueue class.
+   * @param comparator The key order of the tree, or null for the natural ordering.
+   */
+  public AvlTreeEventQueue(Comparator<? super K> comparator) {
+    this.mBatchDepth = 0;
+    this.mCoalescing = new CopyOnWriteArrayList<AvlTreeListener<K, E>>();
+    this.mComparator = comparator;
+    this.mDelivering = false;
+    this.mListeners = new CopyOnWriteArrayList<AvlTreeListener<K, E>>();
+    this.mPending = new ArrayList<AvlTreeEvent<K, E>>();
+  }
+  /**
+   * Adds a listener.
+   * @param listener The listener.
+   * @param coalesce True, to hand the listener only the net change to each key in a batch.
+   */
+  public void addListener(AvlTreeListener<K, E> listener, boolean coalesce) {
+    if (coalesce) {
+      this.mCoalescing.add(listener);
+    } else {
+      this.mListeners.add(listener);
+    }
+  }
+  /**
+   * Opens a batch. Changes are held until every open batch is closed.
+   */
+  public void beginBatch() {
+    ++this.mBatchDepth;
+  }
+  /**
+   * Reduces a batch of changes to the net change to each key.
+   * A batch that replaced the whole tree reduces to that alone, since listeners must read the tree again anyway.
+   * Otherwise the changes are ordered by key, followed by one change for each sub-tree root that was restructured.
+   * Changes to a key that cannot be combined, as with duplicate keys, are kept in order.
+   * @param events The changes, in the order they were made.
+   * @return The net changes.
+   */
+  protected List<AvlTreeEvent<K, E>> coalesce(List<AvlTreeEvent<K, E>> events) {
+    TreeMap<K, List<AvlTreeEvent<K, E>>> changes = new TreeMap<K, List<AvlTreeEvent<K, E>>>(this.mComparator);
+    TreeMap<K, AvlTreeEvent<K, E>> restructures = new TreeMap<K, AvlTreeEvent<K, E>>(this.mComparator);
+    AvlTreeEvent<K, E> wholeTree = null;
+    for (AvlTreeEvent<K, E> event : events) {
+      if (event.isWholeTree()) {
+        wholeTree = event;
+      } else if (event.getType() == AvlTreeEventType.RESTRUCTURED) {
+        restructures.put(event.getKey(), event);
+      } else {
+        List<AvlTreeEvent<K, E>> list = changes.get(event.getKey());
+        if (list == null) {
+          list = new ArrayList<AvlTreeEvent<K, E>>(1);
+          changes.put(event.getKey(), list);
+        }
+        AvlTreeEvent<K, E> last = null;
+        if (!list.isEmpty()) {
+          last = list.remove(list.size() - 1);
+        }
+        list.addAll(AvlTreeEventQueue.combine(last, event));
+      }
+    }
+    List<AvlTreeEvent<K, E>> coalesced = new ArrayList<AvlTreeEvent<K, E>>();
+    if (wholeTree != null) {
+      coalesced.add(wholeTree);
+    } else {
+      for (List<AvlTreeEvent<K, E>> list : changes.values()) {
+        coalesced.addAll(list);
+      }
+      coalesced.addAll(restructures.values());
+    }
+    return coalesced;
+  }
+  /**
+   * Combines two changes to the same key into their net change.
+   * @param first The earlier change, or null if there is none.
+   * @param second The later change.
+   * @return The net change, no change, or both changes if they cannot be combined.
+   */
+  protected static <K, E> List<AvlTreeEvent<K, E>> combine(AvlTreeEvent<K, E> first, AvlTreeEvent<K, E> second) {
+    List<AvlTreeEvent<K, E>> combined = new ArrayList<AvlTreeEvent<K, E>>(2);
+    AvlTreeEventType firstType = null;
+    if (first != null) {
+      firstType = first.getType();
+    }
+    AvlTreeEventType secondType = second.getType();
+    K key = second.getKey();
+    if (firstType == null) {
+      combined.add(second);
+    } else if (firstType == AvlTreeEventType.INSERTED && secondType == AvlTreeEventType.REPLACED) {
+      combined.add(new AvlTreeEvent<K, E>(AvlTreeEventType.INSERTED, key, null, second.getData()));
+    } else if (firstType == AvlTreeEventType.INSERTED && secondType == AvlTreeEventType.REMOVED) {
+      //the key came and went within the batch
+    } else if (firstType == AvlTreeEventType.REPLACED && secondType == AvlTreeEventType.REPLACED) {
+      combined.add(new AvlTreeEvent<K, E>(AvlTreeEventType.REPLACED, key, first.getOldData(), second.getData()));
+    } else if (firstType == AvlTreeEventType.REPLACED && secondType == AvlTreeEventType.REMOVED) {
+      combined.add(new AvlTreeEvent<K, E>(AvlTreeEventType.REMOVED, key, first.getOldData(), null));
+    } else if (firstType == AvlTreeEventType.REMOVED && secondType == AvlTreeEventType.INSERTED) {
+      combined.add(new AvlTreeEvent<K, E>(AvlTreeEventType.REPLACED, key, first.getOldData(), second.getData()));
+    } else {
+      combined.add(first);
+      combined.add(second);
+    }
+    return combined;
+  }
+  /**
+   * Closes a batch, handing the changes to the listeners if it was the outermost.
+   * @throws IllegalStateException If no batch is open.
+   */
+  public void endBatch() {
+    if (this.mBatchDepth == 0) {
+      throw new IllegalStateException("No batch is open.");
+    }
+    --this.mBatchDepth;
+    this.flush();
+  }
+  /**
+   * Hands the held changes to the listeners, unless a batch is open.
+   * Changes that a listener makes to the tree are handed out once the current changes have been.
+   * If a listener throws, the rest of the current changes are not handed out.
+   */
+  public void flush() {
+    if (this.mBatchDepth == 0 && !this.mDelivering) {
+      this.mDelivering = true;
+      try {
+        while (!this.mPending.isEmpty()) {
+          List<AvlTreeEvent<K, E>> events = Collections.unmodifiableList(this.mPending);
+          this.mPending = new ArrayList<AvlTreeEvent<K, E>>();
+          for (AvlTreeListener<K, E> listener : this.mListeners) {
+            listener.treeChanged(events);
+          }
+          if (!this.mCoalescing.isEmpty()) {
+            List<AvlTreeEvent<K, E>> coalesced = this.coalesce(events);
+            if (!coalesced.isEmpty()) {
+              coalesced = Collections.unmodifiableList(coalesced);
+              for (AvlTreeListener<K, E> listener : this.mCoalescing) {
+                listener.treeChanged(coalesced);
+              }
+            }
+          }
+        }
+      } finally {
+        this.mDelivering = false;
+      }
+    }
+  }
+  /**
+   * Indicates if there are any listeners.
+   * @return True, if there is a listener.
+   */
+  public boolean hasListeners() {
+    boolean hasListeners = (!this.mListeners.isEmpty() || !this.mCoalescing.isEmpty());
+    return hasListeners;
+  }
+  /**
+   * Holds a change for the listeners. Nothing is held if there are no listeners.
+   * @param event The change.
+   */
+  public void publish(AvlTreeEvent<K, E> event) {
+    if (this.hasListeners()) {
+      this.mPending.add(event);
+    }
+  }
+  /**
+   * Removes a listener.
+   * @param listener The listener.
+   * @return True, if the listener was found.
+   */
+  public boolean removeListener(AvlTreeListener<K, E> listener) {
+    boolean removed = this.mListeners.remove(listener);
+    removed |= this.mCoalescing.remove(listener);
+    return removed;
+  }
+}
@@ -0,0 +1,25 @@
+package wg.avl;
+
+/**
+ * The kinds of change an AVL tree reports to its listeners.
+ * @author Wesley Garey
+ */
+public enum AvlTreeEventType {
+  /**
+   * An element was added.
+   */
+  INSERTED,
+  /**
+   * An element was removed.
+   */
+  REMOVED,
+  /**
+   * The data of an element was replaced.
+   */
+  REPLACED,
+  /**
+   * The shape of a sub-tree changed without its elements changing, or, when there is no key,
+   * the elements were replaced wholesale and must be read again.
+   */
+  RESTRUCTURED
+}
@@ -0,0 +1,176 @@
+package wg.avl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy in-order iterator over the entries of an AVL tree.
+ * It steps between nodes through the parent links, so it allocates nothing per element.
+ * The tree must not be changed while iterating, except through remove.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlTreeIterator<K, E> implements Iterator<Map.Entry<K, E>> {
+  /**
+   * The key at which iteration stops, or null for no bound.
+   */
+  private K mBound;
+  /**
+   * Indicates if the bound itself is included.
+   */
+  private boolean mBoundInclusive;
+  /**
+   * Indicates if the entries are visited from the largest key down.
+   */
+  private boolean mDescending;
+  /**
+   * The last node returned.
+   */
+  private AvlTreeNode<K, E> mLast;
+  /**
+   * The next node to return.
+   */
+  private AvlTreeNode<K, E> mNext;
+  /**
+   * The tree being iterated.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Gets the key at which iteration stops.
+   * @return The key, or null for no bound.
+   */
+  public K getBound() {
+    return this.mBound;
+  }
+  /**
+   * Gets the last node returned.
+   * @return The node.
+   */
+  protected AvlTreeNode<K, E> getLast() {
+    return this.mLast;
+  }
+  /**
+   * Gets the next node to return.
+   * @return The node.
+   */
+  protected AvlTreeNode<K, E> getNext() {
+    return this.mNext;
+  }
+  /**
+   * Gets the tree being iterated.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Indicates if the bound itself is included.
+   * @return True, if the bound is included.
+   */
+  public boolean isBoundInclusive() {
+    return this.mBoundInclusive;
+  }
+  /**
+   * Indicates if the entries are visited from the largest key down.
+   * @return True, if descending.
+   */
+  public boolean isDescending() {
+    return this.mDescending;
+  }
+  /**
+   * Sets the last node returned.
+   * @param last The node.
+   */
+  protected void setLast(AvlTreeNode<K, E> last) {
+    this.mLast = last;
+  }
+  /**
+   * Sets the next node to return.
+   * @param next The node.
+   */
+  protected void setNext(AvlTreeNode<K, E> next) {
+    this.mNext = next;
+  }
+  /**
+   * Creates an instance of the AvlTreeIterator class.
+   * @param tree The tree being iterated.
+   * @param first The first node to return, or null.
+   * @param descending True, to visit the entries from the largest key down.
+   * @param bound The key at which iteration stops, or null for no bound.
+   * @param boundInclusive True, to include the bound itself.
+   */
+  public AvlTreeIterator(AvlTree<K, E> tree, AvlTreeNode<K, E> first, boolean descending, K bound, boolean boundInclusive) {
+    this.mBound = bound;
+    this.mBoundInclusive = boundInclusive;
+    this.mDescending = descending;
+    this.mLast = null;
+    this.mNext = null;
+    this.mTree = tree;
+    this.advanceTo(first);
+  }
+  /**
+   * Makes a node the next node, unless it is past the bound.
+   * @param node The node, or null.
+   */
+  protected void advanceTo(AvlTreeNode<K, E> node) {
+    K bound = this.getBound();
+    if (node != null && bound != null) {
+      int cmp = this.getTree().compare(node.getKey(), bound);
+      if (this.isDescending()) {
+        cmp = -cmp;
+      }
+      if (cmp > 0 || (cmp == 0 && !this.isBoundInclusive())) {
+        node = null;
+      }
+    }
+    this.setNext(node);
+  }
+  /**
+   * Indicates if there are more entries.
+   * @return True, if there are more entries.
+   */
+  @Override
+  public boolean hasNext() {
+    boolean hasNext = (this.getNext() != null);
+    return hasNext;
+  }
+  /**
+   * Gets the next entry.
+   * @return The entry.
+   * @throws NoSuchElementException If there are no more entries.
+   */
+  @Override
+  public Map.Entry<K, E> next() {
+    AvlTreeNode<K, E> node = this.getNext();
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    AvlTree<K, E> tree = this.getTree();
+    if (this.isDescending()) {
+      this.advanceTo(tree.predecessorOf(node));
+    } else {
+      this.advanceTo(tree.successorOf(node));
+    }
+    this.setLast(node);
+    return node;
+  }
+  /**
+   * Removes the last entry returned from the tree.
+   * @throws IllegalStateException If next has not been called since the last remove.
+   */
+  @Override
+  public void remove() {
+    AvlTreeNode<K, E> last = this.getLast();
+    if (last == null) {
+      throw new IllegalStateException();
+    }
+    if (this.isDescending() && last.hasBoth() && this.getNext() != null) {
+      //The predecessor is moved into the last node, so it is visited there.
+      this.setNext(last);
+    }
+    this.getTree().removeNode(last);
+    this.setLast(null);
+  }
+}
@@ -0,0 +1,20 @@
+package wg.avl;
+
+import java.util.List;
+
+/**
+ * Receives the changes made to an AVL tree.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public interface AvlTreeListener<K, E> {
+  /**
+   * Receives a batch of changes, once the tree is consistent again.
+   * It runs on the thread that changed the tree, so it should be quick.
+   * If the batch has a RESTRUCTURED change without a key, the listener should read the tree again instead of
+   * applying the changes, since the tree already holds the outcome of the whole batch.
+   * @param events The changes, in the order they were made unless the listener asked for them to be coalesced.
+   */
+  public void treeChanged(List<AvlTreeEvent<K, E>> events);
+}
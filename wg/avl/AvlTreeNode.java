@@ -1,13 +1,15 @@
 
 package wg.avl;
 
+import java.util.Map;
+
 /**
  *
  * @author Wesley Garey
  * @param <K> The key type
  * @param <E> The data type 
  */
-public class AvlTreeNode<K, E> {
+public class AvlTreeNode<K, E> implements Map.Entry<K, E> {
   /**
    * The data.
    */
@@ -32,6 +34,10 @@ public class AvlTreeNode<K, E> {
    * The right child.
    */
   private AvlTreeNode<K, E> mRight;
+  /**
+   * The number of nodes in the sub-tree.
+   */
+  private int mTreeSize;
   /**
    * Gets the data.
    * @return The data.
@@ -74,6 +80,13 @@ public class AvlTreeNode<K, E> {
   public AvlTreeNode<K, E> getRight() {
     return this.mRight;
   }
+  /**
+   * Gets the number of nodes in the sub-tree.
+   * @return The number of nodes.
+   */
+  public int getTreeSize() {
+    return this.mTreeSize;
+  }
   /**
    * Sets the data.
    * @param data The data.
@@ -116,6 +129,13 @@ public class AvlTreeNode<K, E> {
   public void setRight(AvlTreeNode<K, E> right) {
     this.mRight = right;
   }
+  /**
+   * Sets the number of nodes in the sub-tree.
+   * @param treeSize The number of nodes.
+   */
+  public void setTreeSize(int treeSize) {
+    this.mTreeSize = treeSize;
+  }
   /**
    * Creates an instance of the Tree node class.
    */
@@ -126,6 +146,24 @@ public class AvlTreeNode<K, E> {
     this.mLeft = null;
     this.mParent = null;
     this.mRight = null;
+    this.mTreeSize = 0;
+  }
+  /**
+   * Indicates if another object is an entry with the same key and data.
+   * @param obj The other object.
+   * @return True, if the key and data are equal.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    boolean equals = false;
+    if (obj instanceof Map.Entry) {
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+      K key = this.getKey();
+      E data = this.getData();
+      equals = (key == null ? entry.getKey() == null : key.equals(entry.getKey()))
+        && (data == null ? entry.getValue() == null : data.equals(entry.getValue()));
+    }
+    return equals;
   }
   /**
    * Gets the balance factor of the node.
@@ -148,6 +186,17 @@ public class AvlTreeNode<K, E> {
     }
     return height;
   }
+  /**
+   * Gets the number of nodes in the left tree.
+   * @return The number of nodes.
+   */
+  public int getLeftTreeSize() {
+    int treeSize = 0;
+    if (this.hasLeft()) {
+      treeSize = this.getLeft().getTreeSize();
+    }
+    return treeSize;
+  }
   /**
    * Gets the predecessor.
    * @return The predecessor.
@@ -172,6 +221,25 @@ public class AvlTreeNode<K, E> {
     }
     return height;
   }
+  /**
+   * Gets the number of nodes in the right tree.
+   * @return The number of nodes.
+   */
+  public int getRightTreeSize() {
+    int treeSize = 0;
+    if (this.hasRight()) {
+      treeSize = this.getRight().getTreeSize();
+    }
+    return treeSize;
+  }
+  /**
+   * Gets the data, as an entry value.
+   * @return The data.
+   */
+  @Override
+  public E getValue() {
+    return this.getData();
+  }
   /**
    * Indicates if this node has both children.
    * @return True, if this node has both children.
@@ -204,6 +272,17 @@ public class AvlTreeNode<K, E> {
     boolean hasRight = (this.getRight() != null);
     return hasRight;
   }
+  /**
+   * Gets the hash code of the key and data, as an entry.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode() {
+    K key = this.getKey();
+    E data = this.getData();
+    int hashCode = (key == null ? 0 : key.hashCode()) ^ (data == null ? 0 : data.hashCode());
+    return hashCode;
+  }
   /**
    * Indicates if this node is a left child node.
    * @return True, if this node is a left child node.
@@ -278,7 +357,9 @@ public class AvlTreeNode<K, E> {
     right.setParent(this.getParent());
     this.setParent(right);
     this.updateHeight();
+    this.updateTreeSize();
     right.updateHeight();
+    right.updateTreeSize();
   }
   /**
    * Rotates this node to the right.
@@ -298,7 +379,20 @@ public class AvlTreeNode<K, E> {
     left.setParent(this.getParent());
     this.setParent(left);
     this.updateHeight();
+    this.updateTreeSize();
     left.updateHeight();
+    left.updateTreeSize();
+  }
+  /**
+   * Replaces the data, as an entry value.
+   * @param value The new data.
+   * @return The old data.
+   */
+  @Override
+  public E setValue(E value) {
+    E data = this.getData();
+    this.setData(value);
+    return data;
   }
   /**
    * Gets the string representation of this instance.
@@ -321,4 +415,13 @@ public class AvlTreeNode<K, E> {
     int height = Math.max(leftHeight, rightHeight) + 1;
     this.setHeight(height);
   }
+  /**
+   * Updates the number of nodes in the sub-tree of this node.
+   */
+  public void updateTreeSize() {
+    int leftTreeSize = this.getLeftTreeSize();
+    int rightTreeSize = this.getRightTreeSize();
+    int treeSize = leftTreeSize + rightTreeSize + 1;
+    this.setTreeSize(treeSize);
+  }
 }
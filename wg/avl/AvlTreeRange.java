@@ -0,0 +1,117 @@
+package wg.avl;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A view of the entries of an AVL tree whose keys are within a range.
+ * Each iterator seeks to the start of the range and streams from there without copying.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlTreeRange<K, E> implements Iterable<Map.Entry<K, E>> {
+  /**
+   * The largest key, or null for no upper bound.
+   */
+  private K mHi;
+  /**
+   * Indicates if the largest key is included.
+   */
+  private boolean mHiInclusive;
+  /**
+   * The smallest key, or null for no lower bound.
+   */
+  private K mLo;
+  /**
+   * Indicates if the smallest key is included.
+   */
+  private boolean mLoInclusive;
+  /**
+   * The tree being viewed.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Gets the largest key.
+   * @return The key, or null for no upper bound.
+   */
+  public K getHi() {
+    return this.mHi;
+  }
+  /**
+   * Gets the smallest key.
+   * @return The key, or null for no lower bound.
+   */
+  public K getLo() {
+    return this.mLo;
+  }
+  /**
+   * Gets the tree being viewed.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Indicates if the largest key is included.
+   * @return True, if the largest key is included.
+   */
+  public boolean isHiInclusive() {
+    return this.mHiInclusive;
+  }
+  /**
+   * Indicates if the smallest key is included.
+   * @return True, if the smallest key is included.
+   */
+  public boolean isLoInclusive() {
+    return this.mLoInclusive;
+  }
+  /**
+   * Creates an instance of the AvlTreeRange class.
+   * @param tree The tree being viewed.
+   * @param lo The smallest key, or null for no lower bound.
+   * @param loInclusive True, to include the smallest key.
+   * @param hi The largest key, or null for no upper bound.
+   * @param hiInclusive True, to include the largest key.
+   */
+  public AvlTreeRange(AvlTree<K, E> tree, K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+    this.mHi = hi;
+    this.mHiInclusive = hiInclusive;
+    this.mLo = lo;
+    this.mLoInclusive = loInclusive;
+    this.mTree = tree;
+  }
+  /**
+   * Gets an iterator over the range from the largest key down.
+   * @return The iterator.
+   */
+  public Iterator<Map.Entry<K, E>> descendingIterator() {
+    AvlTree<K, E> tree = this.getTree();
+    K hi = this.getHi();
+    AvlTreeNode<K, E> first;
+    if (hi == null) {
+      first = tree.getMaxNode();
+    } else {
+      first = tree.floorNode(hi, this.isHiInclusive());
+    }
+    Iterator<Map.Entry<K, E>> iterator = new AvlTreeIterator<K, E>(tree, first, true, this.getLo(), this.isLoInclusive());
+    return iterator;
+  }
+  /**
+   * Gets an iterator over the range from the smallest key up.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    AvlTree<K, E> tree = this.getTree();
+    K lo = this.getLo();
+    AvlTreeNode<K, E> first;
+    if (lo == null) {
+      first = tree.getMinNode();
+    } else {
+      first = tree.ceilingNode(lo, this.isLoInclusive());
+    }
+    Iterator<Map.Entry<K, E>> iterator = new AvlTreeIterator<K, E>(tree, first, false, this.getHi(), this.isHiInclusive());
+    return iterator;
+  }
+}
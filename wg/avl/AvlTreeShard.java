@@ -0,0 +1,114 @@
+package wg.avl;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * One key range of a sharded AVL tree, with its own tree and lock.
+ * A shard that has been split or merged is retired while its write lock is held, so an operation that
+ * finds its shard retired under the lock routes the key again.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class AvlTreeShard<K, E> {
+  /**
+   * The smallest key of the range, or null if the range has no lower bound.
+   */
+  private K mLo;
+  /**
+   * The lock that guards the tree.
+   */
+  private StampedLock mLock;
+  /**
+   * The count below which the shard is merged with a neighbour.
+   */
+  private volatile int mMergeBelow;
+  /**
+   * Indicates if the shard has been replaced by a split or merge.
+   */
+  private boolean mRetired;
+  /**
+   * The count above which the shard is split.
+   */
+  private volatile int mSplitAbove;
+  /**
+   * The elements of the range.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Gets the smallest key of the range.
+   * @return The key, or null if the range has no lower bound.
+   */
+  public K getLo() {
+    return this.mLo;
+  }
+  /**
+   * Gets the lock that guards the tree.
+   * @return The lock.
+   */
+  public StampedLock getLock() {
+    return this.mLock;
+  }
+  /**
+   * Gets the count below which the shard is merged with a neighbour.
+   * @return The count.
+   */
+  public int getMergeBelow() {
+    return this.mMergeBelow;
+  }
+  /**
+   * Gets the count above which the shard is split.
+   * @return The count.
+   */
+  public int getSplitAbove() {
+    return this.mSplitAbove;
+  }
+  /**
+   * Gets the elements of the range. The tree must only be used under the lock.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Indicates if the shard has been replaced by a split or merge. It must be read under the lock.
+   * @return True, if the shard has been replaced.
+   */
+  public boolean isRetired() {
+    return this.mRetired;
+  }
+  /**
+   * Sets the count below which the shard is merged with a neighbour.
+   * @param mergeBelow The count.
+   */
+  public void setMergeBelow(int mergeBelow) {
+    this.mMergeBelow = mergeBelow;
+  }
+  /**
+   * Sets whether the shard has been replaced. It must be set under the write lock.
+   * @param retired True, if the shard has been replaced.
+   */
+  public void setRetired(boolean retired) {
+    this.mRetired = retired;
+  }
+  /**
+   * Sets the count above which the shard is split.
+   * @param splitAbove The count.
+   */
+  public void setSplitAbove(int splitAbove) {
+    this.mSplitAbove = splitAbove;
+  }
+  /**
+   * Creates an instance of the AvlTreeShard class.
+   * @param lo The smallest key of the range, or null if the range has no lower bound.
+   * @param tree The elements of the range.
+   */
+  public AvlTreeShard(K lo, AvlTree<K, E> tree) {
+    this.mLo = lo;
+    this.mLock = new StampedLock();
+    this.mMergeBelow = 0;
+    this.mRetired = false;
+    this.mSplitAbove = Integer.MAX_VALUE;
+    this.mTree = tree;
+  }
+}
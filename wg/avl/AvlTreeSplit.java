@@ -0,0 +1,75 @@
+package wg.avl;
+
+/**
+ * The result of splitting an AVL tree around a key.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class AvlTreeSplit<K, E> {
+  /**
+   * The root of the tree with the smaller keys.
+   */
+  private AvlTreeNode<K, E> mLeft;
+  /**
+   * The detached node with the split key.
+   */
+  private AvlTreeNode<K, E> mNode;
+  /**
+   * The root of the tree with the larger keys.
+   */
+  private AvlTreeNode<K, E> mRight;
+  /**
+   * Gets the root of the tree with the smaller keys.
+   * @return The root, or null if the tree is empty.
+   */
+  public AvlTreeNode<K, E> getLeft() {
+    return this.mLeft;
+  }
+  /**
+   * Gets the detached node with the split key.
+   * @return The node, or null if the key was not found.
+   */
+  public AvlTreeNode<K, E> getNode() {
+    return this.mNode;
+  }
+  /**
+   * Gets the root of the tree with the larger keys.
+   * @return The root, or null if the tree is empty.
+   */
+  public AvlTreeNode<K, E> getRight() {
+    return this.mRight;
+  }
+  /**
+   * Sets the root of the tree with the smaller keys.
+   * @param left The root.
+   */
+  public void setLeft(AvlTreeNode<K, E> left) {
+    this.mLeft = left;
+  }
+  /**
+   * Sets the detached node with the split key.
+   * @param node The node.
+   */
+  public void setNode(AvlTreeNode<K, E> node) {
+    this.mNode = node;
+  }
+  /**
+   * Sets the root of the tree with the larger keys.
+   * @param right The root.
+   */
+  public void setRight(AvlTreeNode<K, E> right) {
+    this.mRight = right;
+  }
+  /**
+   * Creates an instance of the AvlTreeSplit class.
+   * @param left The root of the tree with the smaller keys.
+   * @param node The detached node with the split key.
+   * @param right The root of the tree with the larger keys.
+   */
+  public AvlTreeSplit(AvlTreeNode<K, E> left, AvlTreeNode<K, E> node, AvlTreeNode<K, E> right) {
+    this.mLeft = left;
+    this.mNode = node;
+    this.mRight = right;
+  }
+}
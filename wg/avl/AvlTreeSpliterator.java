@@ -0,0 +1,205 @@
+package wg.avl;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the entries of an AVL tree that splits at sub-tree boundaries.
+ * It covers the in-order run from a first node up to a fence node. A split hands the run up to
+ * the root of the next sub-tree to a new spliterator, and the sub-tree sizes keep both sides exact.
+ * Entries are not reported as DISTINCT because insert allows duplicate keys and data.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlTreeSpliterator<K, E> implements Spliterator<Map.Entry<K, E>> {
+  /**
+   * The first node not yet visited.
+   */
+  private AvlTreeNode<K, E> mCurrent;
+  /**
+   * The first node past the run, or null for the end of the tree.
+   */
+  private AvlTreeNode<K, E> mFence;
+  /**
+   * Where the next split point comes from: 0 for the root, 1 right of the current node, -1 left of the fence.
+   */
+  private int mSide;
+  /**
+   * The number of nodes left in the run.
+   */
+  private long mSize;
+  /**
+   * The tree being split.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Gets the first node not yet visited.
+   * @return The node.
+   */
+  protected AvlTreeNode<K, E> getCurrent() {
+    return this.mCurrent;
+  }
+  /**
+   * Gets the first node past the run.
+   * @return The node, or null for the end of the tree.
+   */
+  protected AvlTreeNode<K, E> getFence() {
+    return this.mFence;
+  }
+  /**
+   * Gets where the next split point comes from.
+   * @return The side.
+   */
+  protected int getSide() {
+    return this.mSide;
+  }
+  /**
+   * Gets the number of nodes left in the run.
+   * @return The number of nodes.
+   */
+  protected long getSize() {
+    return this.mSize;
+  }
+  /**
+   * Gets the tree being split.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Sets the first node not yet visited.
+   * @param current The node.
+   */
+  protected void setCurrent(AvlTreeNode<K, E> current) {
+    this.mCurrent = current;
+  }
+  /**
+   * Sets where the next split point comes from.
+   * @param side The side.
+   */
+  protected void setSide(int side) {
+    this.mSide = side;
+  }
+  /**
+   * Sets the number of nodes left in the run.
+   * @param size The number of nodes.
+   */
+  protected void setSize(long size) {
+    this.mSize = size;
+  }
+  /**
+   * Creates an instance of the AvlTreeSpliterator class.
+   * @param tree The tree being split.
+   * @param current The first node of the run, or null.
+   * @param fence The first node past the run, or null for the end of the tree.
+   * @param side Where the next split point comes from.
+   * @param size The number of nodes in the run.
+   */
+  public AvlTreeSpliterator(AvlTree<K, E> tree, AvlTreeNode<K, E> current, AvlTreeNode<K, E> fence, int side, long size) {
+    this.mCurrent = current;
+    this.mFence = fence;
+    this.mSide = side;
+    this.mSize = size;
+    this.mTree = tree;
+  }
+  /**
+   * Gets the characteristics of this spliterator.
+   * @return The characteristics.
+   */
+  @Override
+  public int characteristics() {
+    return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+  }
+  /**
+   * Gets the exact number of entries left.
+   * @return The number of entries.
+   */
+  @Override
+  public long estimateSize() {
+    return this.getSize();
+  }
+  /**
+   * Visits every entry left.
+   * @param action The action to apply.
+   */
+  @Override
+  public void forEachRemaining(Consumer<? super Map.Entry<K, E>> action) {
+    AvlTree<K, E> tree = this.getTree();
+    AvlTreeNode<K, E> fence = this.getFence();
+    AvlTreeNode<K, E> node = this.getCurrent();
+    this.setCurrent(fence);
+    this.setSize(0);
+    while (node != null && node != fence) {
+      action.accept(node);
+      node = tree.successorOf(node);
+    }
+  }
+  /**
+   * Gets the order of the entries, which is the order of their keys.
+   * @return The comparator.
+   */
+  @Override
+  public Comparator<? super Map.Entry<K, E>> getComparator() {
+    final AvlTree<K, E> tree = this.getTree();
+    Comparator<Map.Entry<K, E>> order = new Comparator<Map.Entry<K, E>>() {
+      @Override
+      public int compare(Map.Entry<K, E> a, Map.Entry<K, E> b) {
+        return tree.compare(a.getKey(), b.getKey());
+      }
+    };
+    return order;
+  }
+  /**
+   * Visits the next entry, if there is one.
+   * @param action The action to apply.
+   * @return True, if an entry was visited.
+   */
+  @Override
+  public boolean tryAdvance(Consumer<? super Map.Entry<K, E>> action) {
+    boolean advanced = false;
+    AvlTreeNode<K, E> node = this.getCurrent();
+    if (node != null && node != this.getFence()) {
+      this.setCurrent(this.getTree().successorOf(node));
+      this.setSize(this.getSize() - 1);
+      action.accept(node);
+      advanced = true;
+    }
+    return advanced;
+  }
+  /**
+   * Hands the front of the run, up to the root of the next sub-tree, to a new spliterator.
+   * @return The new spliterator, or null if the run cannot be split.
+   */
+  @Override
+  public Spliterator<Map.Entry<K, E>> trySplit() {
+    Spliterator<Map.Entry<K, E>> prefix = null;
+    AvlTree<K, E> tree = this.getTree();
+    AvlTreeNode<K, E> current = this.getCurrent();
+    AvlTreeNode<K, E> fence = this.getFence();
+    int side = this.getSide();
+    AvlTreeNode<K, E> split = null;
+    if (current != null && current != fence) {
+      if (side == 0) {
+        split = tree.getRoot();
+      } else if (side > 0) {
+        split = current.getRight();
+      } else if (fence != null) {
+        split = fence.getLeft();
+      }
+    }
+    if (split != null && split != current && split != fence) {
+      long prefixSize = tree.indexOf(split) - tree.indexOf(current);
+      if (prefixSize > 0 && prefixSize < this.getSize()) {
+        prefix = new AvlTreeSpliterator<K, E>(tree, current, split, -1, prefixSize);
+        this.setCurrent(split);
+        this.setSide(1);
+        this.setSize(this.getSize() - prefixSize);
+      }
+    }
+    return prefix;
+  }
+}
@@ -0,0 +1,365 @@
+package wg.avl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A snapshot of the statistics of an instrumented AVL tree.
+ * The counters run from when the tree was created or its statistics were last reset.
+ * @author Wesley Garey
+ */
+public class AvlTreeStats {
+  /**
+   * The average depth of a node, or NaN if it was not measured.
+   */
+  private double mAverageDepth;
+  /**
+   * The number of key comparisons.
+   */
+  private long mComparisons;
+  /**
+   * The number of elements.
+   */
+  private int mCount;
+  /**
+   * The number of double rotations.
+   */
+  private long mDoubleRotations;
+  /**
+   * The height of the tree.
+   */
+  private int mHeight;
+  /**
+   * The number of nodes whose heights were fixed after insertions.
+   */
+  private long mInsertRetraceSteps;
+  /**
+   * The number of nodes inserted.
+   */
+  private long mInserts;
+  /**
+   * The largest height an AVL tree with as many elements can have.
+   */
+  private int mMaxHeight;
+  /**
+   * The smallest height a binary tree with as many elements can have.
+   */
+  private int mMinHeight;
+  /**
+   * The number of searches of each path length, where the last bucket also counts longer paths.
+   */
+  private long[] mPathLengths;
+  /**
+   * The number of nodes removed.
+   */
+  private long mRemovals;
+  /**
+   * The number of nodes whose heights were fixed after removals.
+   */
+  private long mRemoveRetraceSteps;
+  /**
+   * The number of searches.
+   */
+  private long mSearches;
+  /**
+   * The number of single rotations.
+   */
+  private long mSingleRotations;
+  /**
+   * Gets the average depth of a node, the root having depth zero.
+   * @return The average depth, or NaN if it was not measured or the tree is empty.
+   */
+  public double getAverageDepth() {
+    return this.mAverageDepth;
+  }
+  /**
+   * Gets the number of key comparisons.
+   * @return The number of key comparisons.
+   */
+  public long getComparisons() {
+    return this.mComparisons;
+  }
+  /**
+   * Gets the number of elements.
+   * @return The number of elements.
+   */
+  public int getCount() {
+    return this.mCount;
+  }
+  /**
+   * Gets the number of double rotations.
+   * @return The number of double rotations.
+   */
+  public long getDoubleRotations() {
+    return this.mDoubleRotations;
+  }
+  /**
+   * Gets the height of the tree.
+   * @return The height, or -1 if the tree is empty.
+   */
+  public int getHeight() {
+    return this.mHeight;
+  }
+  /**
+   * Gets the number of nodes whose heights were fixed after insertions.
+   * @return The number of nodes.
+   */
+  public long getInsertRetraceSteps() {
+    return this.mInsertRetraceSteps;
+  }
+  /**
+   * Gets the number of nodes inserted.
+   * @return The number of nodes.
+   */
+  public long getInserts() {
+    return this.mInserts;
+  }
+  /**
+   * Gets the largest height an AVL tree with as many elements can have.
+   * @return The height.
+   */
+  public int getMaxHeight() {
+    return this.mMaxHeight;
+  }
+  /**
+   * Gets the smallest height a binary tree with as many elements can have.
+   * @return The height.
+   */
+  public int getMinHeight() {
+    return this.mMinHeight;
+  }
+  /**
+   * Gets the number of searches of each path length, the path length being the number of nodes visited.
+   * The last bucket also counts longer paths.
+   * @return The counts, indexed by path length.
+   */
+  public long[] getPathLengths() {
+    return this.mPathLengths;
+  }
+  /**
+   * Gets the number of nodes removed.
+   * @return The number of nodes.
+   */
+  public long getRemovals() {
+    return this.mRemovals;
+  }
+  /**
+   * Gets the number of nodes whose heights were fixed after removals.
+   * @return The number of nodes.
+   */
+  public long getRemoveRetraceSteps() {
+    return this.mRemoveRetraceSteps;
+  }
+  /**
+   * Gets the number of searches.
+   * @return The number of searches.
+   */
+  public long getSearches() {
+    return this.mSearches;
+  }
+  /**
+   * Gets the number of single rotations.
+   * @return The number of single rotations.
+   */
+  public long getSingleRotations() {
+    return this.mSingleRotations;
+  }
+  /**
+   * Sets the average depth of a node.
+   * @param averageDepth The average depth, or NaN if it was not measured.
+   */
+  public void setAverageDepth(double averageDepth) {
+    this.mAverageDepth = averageDepth;
+  }
+  /**
+   * Sets the number of key comparisons.
+   * @param comparisons The number of key comparisons.
+   */
+  public void setComparisons(long comparisons) {
+    this.mComparisons = comparisons;
+  }
+  /**
+   * Sets the number of elements.
+   * @param count The number of elements.
+   */
+  public void setCount(int count) {
+    this.mCount = count;
+  }
+  /**
+   * Sets the number of double rotations.
+   * @param doubleRotations The number of double rotations.
+   */
+  public void setDoubleRotations(long doubleRotations) {
+    this.mDoubleRotations = doubleRotations;
+  }
+  /**
+   * Sets the height of the tree.
+   * @param height The height.
+   */
+  public void setHeight(int height) {
+    this.mHeight = height;
+  }
+  /**
+   * Sets the number of nodes whose heights were fixed after insertions.
+   * @param insertRetraceSteps The number of nodes.
+   */
+  public void setInsertRetraceSteps(long insertRetraceSteps) {
+    this.mInsertRetraceSteps = insertRetraceSteps;
+  }
+  /**
+   * Sets the number of nodes inserted.
+   * @param inserts The number of nodes.
+   */
+  public void setInserts(long inserts) {
+    this.mInserts = inserts;
+  }
+  /**
+   * Sets the largest height an AVL tree with as many elements can have.
+   * @param maxHeight The height.
+   */
+  public void setMaxHeight(int maxHeight) {
+    this.mMaxHeight = maxHeight;
+  }
+  /**
+   * Sets the smallest height a binary tree with as many elements can have.
+   * @param minHeight The height.
+   */
+  public void setMinHeight(int minHeight) {
+    this.mMinHeight = minHeight;
+  }
+  /**
+   * Sets the number of searches of each path length.
+   * @param pathLengths The counts, indexed by path length.
+   */
+  public void setPathLengths(long[] pathLengths) {
+    this.mPathLengths = pathLengths;
+  }
+  /**
+   * Sets the number of nodes removed.
+   * @param removals The number of nodes.
+   */
+  public void setRemovals(long removals) {
+    this.mRemovals = removals;
+  }
+  /**
+   * Sets the number of nodes whose heights were fixed after removals.
+   * @param removeRetraceSteps The number of nodes.
+   */
+  public void setRemoveRetraceSteps(long removeRetraceSteps) {
+    this.mRemoveRetraceSteps = removeRetraceSteps;
+  }
+  /**
+   * Sets the number of searches.
+   * @param searches The number of searches.
+   */
+  public void setSearches(long searches) {
+    this.mSearches = searches;
+  }
+  /**
+   * Sets the number of single rotations.
+   * @param singleRotations The number of single rotations.
+   */
+  public void setSingleRotations(long singleRotations) {
+    this.mSingleRotations = singleRotations;
+  }
+  /**
+   * Creates an instance of the AvlTreeStats class with no counts.
+   */
+  public AvlTreeStats() {
+    this.mAverageDepth = Double.NaN;
+    this.mComparisons = 0;
+    this.mCount = 0;
+    this.mDoubleRotations = 0;
+    this.mHeight = -1;
+    this.mInsertRetraceSteps = 0;
+    this.mInserts = 0;
+    this.mMaxHeight = -1;
+    this.mMinHeight = -1;
+    this.mPathLengths = new long[0];
+    this.mRemovals = 0;
+    this.mRemoveRetraceSteps = 0;
+    this.mSearches = 0;
+    this.mSingleRotations = 0;
+  }
+  /**
+   * Gets the average number of nodes visited by a search.
+   * @return The average, or NaN if there were no searches.
+   */
+  public double getMeanPathLength() {
+    long searches = 0;
+    long visited = 0;
+    for (int i = 0; i < this.mPathLengths.length; ++i) {
+      searches += this.mPathLengths[i];
+      visited += i * this.mPathLengths[i];
+    }
+    double mean = Double.NaN;
+    if (searches > 0) {
+      mean = (double)visited / searches;
+    }
+    return mean;
+  }
+  /**
+   * Gets the path length that a fraction of searches did not exceed.
+   * @param fraction The fraction, from zero to one.
+   * @return The path length, or -1 if there were no searches.
+   */
+  public int getPathLengthPercentile(double fraction) {
+    long searches = 0;
+    for (long count : this.mPathLengths) {
+      searches += count;
+    }
+    int length = -1;
+    if (searches > 0) {
+      long target = Math.max(1, (long)Math.ceil(fraction * searches));
+      long seen = 0;
+      for (int i = 0; i < this.mPathLengths.length && length < 0; ++i) {
+        seen += this.mPathLengths[i];
+        if (seen >= target) {
+          length = i;
+        }
+      }
+    }
+    return length;
+  }
+  /**
+   * Gets the number of rotations, counting a double rotation as two.
+   * @return The number of rotations.
+   */
+  public long getRotations() {
+    return this.mSingleRotations + 2 * this.mDoubleRotations;
+  }
+  /**
+   * Gets the statistics as named numbers, for a metrics system.
+   * @return The statistics, in a fixed order.
+   */
+  public Map<String, Number> toMap() {
+    Map<String, Number> map = new LinkedHashMap<String, Number>();
+    map.put("count", this.getCount());
+    map.put("height", this.getHeight());
+    map.put("height.min", this.getMinHeight());
+    map.put("height.max", this.getMaxHeight());
+    map.put("depth.average", this.getAverageDepth());
+    map.put("comparisons", this.getComparisons());
+    map.put("searches", this.getSearches());
+    map.put("inserts", this.getInserts());
+    map.put("removals", this.getRemovals());
+    map.put("rotations.single", this.getSingleRotations());
+    map.put("rotations.double", this.getDoubleRotations());
+    map.put("retrace.insert", this.getInsertRetraceSteps());
+    map.put("retrace.remove", this.getRemoveRetraceSteps());
+    map.put("path.mean", this.getMeanPathLength());
+    map.put("path.p50", this.getPathLengthPercentile(0.5));
+    map.put("path.p99", this.getPathLengthPercentile(0.99));
+    map.put("path.max", this.getPathLengthPercentile(1.0));
+    return map;
+  }
+  /**
+   * Gets a string representation of the statistics.
+   * @return The statistics, as name=value pairs.
+   */
+  @Override
+  public String toString() {
+    String rep = this.toMap().toString();
+    return rep;
+  }
+}
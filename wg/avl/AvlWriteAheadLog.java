@@ -0,0 +1,681 @@
+package wg.avl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes made to an AVL tree, kept in one file per generation.
+ * A change is appended to an in-memory buffer under the caller's lock and committed afterwards.
+ * The first thread to commit writes, and optionally forces, everything buffered so far while later threads
+ * keep appending to a second buffer and wait for it, so one write and one force serve a whole group of changes.
+ * Each record is its length, a CRC32 of its body, and the body: an operation, a key and, for inserts and puts, the data.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlWriteAheadLog<K, E> implements Closeable {
+  /**
+   * The first int of a log file.
+   */
+  public static final int MAGIC = 0x41564C57;
+  /**
+   * The format version.
+   */
+  public static final int VERSION = 1;
+  /**
+   * Inserts an element, as insert does.
+   */
+  public static final byte INSERT = 1;
+  /**
+   * Sets the data of a key, as put does.
+   */
+  public static final byte PUT = 2;
+  /**
+   * Removes one element with a key, as remove does.
+   */
+  public static final byte REMOVE = 3;
+  /**
+   * Removes every element with a key, as removeAll does.
+   */
+  public static final byte REMOVE_EVERY = 4;
+  /**
+   * The size of the header: the magic number and the version.
+   */
+  protected static final int HEADER_SIZE = 8;
+  /**
+   * The size of a record header: the length and the checksum.
+   */
+  protected static final int RECORD_HEADER_SIZE = 8;
+  /**
+   * The number of changes appended.
+   */
+  private long mAppended;
+  /**
+   * The file of the current generation, or null if the log is closed.
+   */
+  private FileChannel mChannel;
+  /**
+   * A stream that writes to the file at its position.
+   */
+  private OutputStream mChannelOut;
+  /**
+   * The checksum of the record being encoded.
+   */
+  private CRC32 mCrc;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The directory of the log files.
+   */
+  private Path mDirectory;
+  /**
+   * The error that stopped the log, or null.
+   */
+  private IOException mFailure;
+  /**
+   * Indicates if a thread is writing a group of changes.
+   */
+  private boolean mFlushing;
+  /**
+   * The number of changes forced to disk.
+   */
+  private long mForced;
+  /**
+   * The current generation.
+   */
+  private long mGeneration;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * The records appended but not yet taken for writing.
+   */
+  private ByteArrayOutputStream mPending;
+  /**
+   * The body of the record being encoded.
+   */
+  private ByteArrayOutputStream mRecord;
+  /**
+   * The output for the body of the record being encoded.
+   */
+  private DataOutputStream mRecordOut;
+  /**
+   * The empty buffer that replaces the pending buffer when it is taken for writing.
+   */
+  private ByteArrayOutputStream mSpare;
+  /**
+   * The number of changes written to the operating system.
+   */
+  private long mWritten;
+  /**
+   * Gets the number of changes appended.
+   * @return The number of changes.
+   */
+  public synchronized long getAppended() {
+    return this.mAppended;
+  }
+  /**
+   * Gets the file of the current generation.
+   * @return The file, or null if the log is closed.
+   */
+  protected FileChannel getChannel() {
+    return this.mChannel;
+  }
+  /**
+   * Gets the stream that writes to the file at its position.
+   * @return The stream.
+   */
+  protected OutputStream getChannelOut() {
+    return this.mChannelOut;
+  }
+  /**
+   * Gets the checksum of the record being encoded.
+   * @return The checksum.
+   */
+  protected CRC32 getCrc() {
+    return this.mCrc;
+  }
+  /**
+   * Gets the codec for the data.
+   * @return The codec.
+   */
+  public AvlCodec<E> getDataCodec() {
+    return this.mDataCodec;
+  }
+  /**
+   * Gets the directory of the log files.
+   * @return The directory.
+   */
+  public Path getDirectory() {
+    return this.mDirectory;
+  }
+  /**
+   * Gets the error that stopped the log.
+   * @return The error, or null.
+   */
+  protected IOException getFailure() {
+    return this.mFailure;
+  }
+  /**
+   * Gets the number of changes forced to disk.
+   * @return The number of changes.
+   */
+  public synchronized long getForced() {
+    return this.mForced;
+  }
+  /**
+   * Gets the current generation.
+   * @return The generation.
+   */
+  public synchronized long getGeneration() {
+    return this.mGeneration;
+  }
+  /**
+   * Gets the codec for the keys.
+   * @return The codec.
+   */
+  public AvlCodec<K> getKeyCodec() {
+    return this.mKeyCodec;
+  }
+  /**
+   * Gets the records appended but not yet taken for writing.
+   * @return The records.
+   */
+  protected ByteArrayOutputStream getPending() {
+    return this.mPending;
+  }
+  /**
+   * Gets the body of the record being encoded.
+   * @return The body.
+   */
+  protected ByteArrayOutputStream getRecord() {
+    return this.mRecord;
+  }
+  /**
+   * Gets the output for the body of the record being encoded.
+   * @return The output.
+   */
+  protected DataOutputStream getRecordOut() {
+    return this.mRecordOut;
+  }
+  /**
+   * Gets the empty buffer that replaces the pending buffer.
+   * @return The buffer.
+   */
+  protected ByteArrayOutputStream getSpare() {
+    return this.mSpare;
+  }
+  /**
+   * Gets the number of changes written to the operating system.
+   * @return The number of changes.
+   */
+  public synchronized long getWritten() {
+    return this.mWritten;
+  }
+  /**
+   * Indicates if a thread is writing a group of changes.
+   * @return True, if a thread is writing.
+   */
+  protected boolean isFlushing() {
+    return this.mFlushing;
+  }
+  /**
+   * Sets the number of changes appended.
+   * @param appended The number of changes.
+   */
+  protected void setAppended(long appended) {
+    this.mAppended = appended;
+  }
+  /**
+   * Sets the file of the current generation.
+   * @param channel The file, or null.
+   */
+  protected void setChannel(FileChannel channel) {
+    this.mChannel = channel;
+  }
+  /**
+   * Sets the stream that writes to the file at its position.
+   * @param channelOut The stream, or null.
+   */
+  protected void setChannelOut(OutputStream channelOut) {
+    this.mChannelOut = channelOut;
+  }
+  /**
+   * Sets the error that stopped the log.
+   * @param failure The error.
+   */
+  protected void setFailure(IOException failure) {
+    this.mFailure = failure;
+  }
+  /**
+   * Sets whether a thread is writing a group of changes.
+   * @param flushing True, if a thread is writing.
+   */
+  protected void setFlushing(boolean flushing) {
+    this.mFlushing = flushing;
+  }
+  /**
+   * Sets the number of changes forced to disk.
+   * @param forced The number of changes.
+   */
+  protected void setForced(long forced) {
+    this.mForced = forced;
+  }
+  /**
+   * Sets the current generation.
+   * @param generation The generation.
+   */
+  protected void setGeneration(long generation) {
+    this.mGeneration = generation;
+  }
+  /**
+   * Sets the records appended but not yet taken for writing.
+   * @param pending The records.
+   */
+  protected void setPending(ByteArrayOutputStream pending) {
+    this.mPending = pending;
+  }
+  /**
+   * Sets the empty buffer that replaces the pending buffer.
+   * @param spare The buffer.
+   */
+  protected void setSpare(ByteArrayOutputStream spare) {
+    this.mSpare = spare;
+  }
+  /**
+   * Sets the number of changes written to the operating system.
+   * @param written The number of changes.
+   */
+  protected void setWritten(long written) {
+    this.mWritten = written;
+  }
+  /**
+   * Creates an instance of the AvlWriteAheadLog class. No file is open until open is called.
+   * @param directory The directory of the log files.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   */
+  public AvlWriteAheadLog(Path directory, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec) {
+    this.mAppended = 0;
+    this.mChannel = null;
+    this.mChannelOut = null;
+    this.mCrc = new CRC32();
+    this.mDataCodec = dataCodec;
+    this.mDirectory = directory;
+    this.mFailure = null;
+    this.mFlushing = false;
+    this.mForced = 0;
+    this.mGeneration = -1;
+    this.mKeyCodec = keyCodec;
+    this.mPending = new ByteArrayOutputStream();
+    this.mRecord = new ByteArrayOutputStream();
+    this.mRecordOut = new DataOutputStream(this.mRecord);
+    this.mSpare = new ByteArrayOutputStream();
+    this.mWritten = 0;
+  }
+  /**
+   * Appends a change.
+   * Call it while holding the lock that orders changes to the tree, so the log has them in the same order.
+   * @param op The operation.
+   * @param key The key.
+   * @param data The data, used by inserts and puts.
+   * @return The sequence number to commit.
+   * @throws IOException If the log has failed or is closed, or the key or data could not be encoded.
+   */
+  public synchronized long append(byte op, K key, E data) throws IOException {
+    this.checkOpen();
+    this.encode(op, key, data);
+    this.setAppended(this.getAppended() + 1);
+    return this.getAppended();
+  }
+  /**
+   * Appends a batch of changes with one operation, which commit together.
+   * @param op The operation.
+   * @param keys The keys.
+   * @param data The data, in the same order as the keys, or null for removals.
+   * @return The sequence number to commit.
+   * @throws IOException If the log has failed or is closed, or a key or data could not be encoded.
+   */
+  public synchronized long appendAll(byte op, K[] keys, E[] data) throws IOException {
+    this.checkOpen();
+    for (int i = 0; i < keys.length; i++) {
+      E datum = null;
+      if (data != null) {
+        datum = data[i];
+      }
+      this.encode(op, keys[i], datum);
+    }
+    this.setAppended(this.getAppended() + 1);
+    return this.getAppended();
+  }
+  /**
+   * Applies a record to a tree.
+   * @param tree The tree.
+   * @param body The body of the record.
+   * @throws IOException If the record is malformed.
+   */
+  protected void apply(AvlTree<K, E> tree, ByteBuffer body) throws IOException {
+    byte op = body.get();
+    K key = this.getKeyCodec().read(body, null);
+    E data = null;
+    if (hasData(op) && body.get() != 0) {
+      data = this.getDataCodec().read(body, null);
+    }
+    if (body.hasRemaining()) {
+      throw new IOException("Unexpected data at the end of a record.");
+    }
+    if (op == INSERT) {
+      tree.insert(key, data);
+    } else if (op == PUT) {
+      tree.put(key, data);
+    } else if (op == REMOVE) {
+      tree.remove(key);
+    } else if (op == REMOVE_EVERY) {
+      while (tree.contains(key)) {
+        tree.remove(key);
+      }
+    } else {
+      throw new IOException("Unknown operation " + op + ".");
+    }
+  }
+  /**
+   * Waits for the thread that is writing a group of changes. Call it while holding the monitor.
+   * @throws InterruptedIOException If the thread is interrupted.
+   */
+  protected void await() throws InterruptedIOException {
+    try {
+      this.wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the log.");
+    }
+  }
+  /**
+   * Checks that the log is open and has not failed. Call it while holding the monitor.
+   * @throws IOException If the log has failed or is closed.
+   */
+  protected void checkOpen() throws IOException {
+    if (this.getFailure() != null) {
+      throw new IOException("The log has failed.", this.getFailure());
+    }
+    if (this.getChannel() == null) {
+      throw new IOException("The log is closed.");
+    }
+  }
+  /**
+   * Writes and forces the pending changes, then closes the file.
+   * @throws IOException If the changes could not be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.getChannel() != null) {
+      try {
+        this.drain();
+      } finally {
+        this.getChannel().close();
+        this.setChannel(null);
+        this.setChannelOut(null);
+      }
+    }
+  }
+  /**
+   * Waits until a change is written to the operating system and, optionally, forced to disk.
+   * If no other thread is writing, this thread writes every change appended so far, so changes that
+   * commit at about the same time share one write and one force.
+   * @param sequence The sequence number returned by append.
+   * @param force True, to wait until the change is forced to disk.
+   * @throws IOException If the log has failed.
+   */
+  public void commit(long sequence, boolean force) throws IOException {
+    boolean done = false;
+    while (!done) {
+      ByteArrayOutputStream batch = null;
+      long target = 0;
+      synchronized (this) {
+        long committed = this.getWritten();
+        if (force) {
+          committed = this.getForced();
+        }
+        done = (committed >= sequence);
+        if (!done) {
+          this.checkOpen();
+          if (this.isFlushing()) {
+            this.await();
+          } else {
+            batch = this.getPending();
+            target = this.getAppended();
+            this.setPending(this.getSpare());
+            this.setFlushing(true);
+          }
+        }
+      }
+      if (batch != null) {
+        this.flush(batch, target, force);
+      }
+    }
+  }
+  /**
+   * Writes and forces the pending changes once no other thread is writing. Call it while holding the monitor.
+   * @throws IOException If the changes could not be written.
+   */
+  protected void drain() throws IOException {
+    while (this.isFlushing()) {
+      this.await();
+    }
+    if (this.getFailure() != null) {
+      throw new IOException("The log has failed.", this.getFailure());
+    }
+    this.getPending().writeTo(this.getChannelOut());
+    this.getPending().reset();
+    this.getChannel().force(false);
+    this.setWritten(this.getAppended());
+    this.setForced(this.getAppended());
+  }
+  /**
+   * Encodes a record and adds it to the pending records. Call it while holding the monitor.
+   * @param op The operation.
+   * @param key The key.
+   * @param data The data, used by inserts and puts.
+   * @throws IOException If the key or data could not be encoded.
+   */
+  protected void encode(byte op, K key, E data) throws IOException {
+    ByteArrayOutputStream record = this.getRecord();
+    DataOutputStream recordOut = this.getRecordOut();
+    record.reset();
+    recordOut.writeByte(op);
+    this.getKeyCodec().write(recordOut, null, key);
+    if (hasData(op)) {
+      recordOut.writeBoolean(data != null);
+      if (data != null) {
+        this.getDataCodec().write(recordOut, null, data);
+      }
+    }
+    CRC32 crc = this.getCrc();
+    crc.reset();
+    byte[] body = record.toByteArray();
+    crc.update(body, 0, body.length);
+    DataOutputStream out = new DataOutputStream(this.getPending());
+    out.writeInt(body.length);
+    out.writeInt((int)crc.getValue());
+    out.write(body);
+  }
+  /**
+   * Writes a group of changes taken from the pending records, then wakes the threads waiting for it.
+   * @param batch The records.
+   * @param target The sequence number of the last change in the group.
+   * @param force True, to force the file to disk.
+   */
+  protected void flush(ByteArrayOutputStream batch, long target, boolean force) {
+    IOException failure = null;
+    try {
+      batch.writeTo(this.getChannelOut());
+      if (force) {
+        this.getChannel().force(false);
+      }
+    } catch (IOException e) {
+      failure = e;
+    }
+    batch.reset();
+    synchronized (this) {
+      this.setSpare(batch);
+      if (failure == null) {
+        this.setWritten(target);
+        if (force) {
+          this.setForced(target);
+        }
+      } else {
+        this.setFailure(failure);
+      }
+      this.setFlushing(false);
+      this.notifyAll();
+    }
+  }
+  /**
+   * Gets the file of a generation.
+   * @param directory The directory of the log files.
+   * @param generation The generation.
+   * @return The file.
+   */
+  public static Path getLogPath(Path directory, long generation) {
+    return directory.resolve("wal." + generation);
+  }
+  /**
+   * Indicates if an operation carries data.
+   * @param op The operation.
+   * @return True, if it carries data.
+   */
+  protected static boolean hasData(byte op) {
+    boolean hasData = (op == INSERT || op == PUT);
+    return hasData;
+  }
+  /**
+   * Opens the file of a generation for appending, creating it if needed.
+   * @param generation The generation.
+   * @throws IOException If the file could not be opened.
+   */
+  public synchronized void open(long generation) throws IOException {
+    Path path = getLogPath(this.getDirectory(), generation);
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (channel.size() < HEADER_SIZE) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        channel.truncate(0);
+        while (header.hasRemaining()) {
+          channel.write(header, header.position());
+        }
+        channel.force(true);
+        AvlSnapshot.syncDirectory(this.getDirectory());
+      }
+      channel.position(channel.size());
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.setChannel(channel);
+    this.setChannelOut(Channels.newOutputStream(channel));
+    this.setGeneration(generation);
+  }
+  /**
+   * Reads the records of a generation and applies them to a tree.
+   * A record cut short by a crash can only be at the end of the last generation. It and anything after
+   * it are cut from the file, since the change it holds was never committed.
+   * @param tree The tree.
+   * @param generation The generation.
+   * @param isLast True, if it is the last generation.
+   * @return The number of records applied.
+   * @throws IOException If the file could not be read or is corrupt.
+   */
+  public long replay(AvlTree<K, E> tree, long generation, boolean isLast) throws IOException {
+    Path path = getLogPath(this.getDirectory(), generation);
+    long applied = 0;
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      long position = HEADER_SIZE;
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+      boolean isTorn = false;
+      if (size < HEADER_SIZE) {
+        position = 0;
+        isTorn = true;
+      } else if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a log: " + path);
+      }
+      while (!isTorn && position < size) {
+        int length = -1;
+        int checksum = 0;
+        byte[] body = null;
+        if (size - position >= RECORD_HEADER_SIZE) {
+          length = in.readInt();
+          checksum = in.readInt();
+        }
+        if (length >= 0 && length <= size - position - RECORD_HEADER_SIZE) {
+          body = new byte[length];
+          in.readFully(body);
+          crc.reset();
+          crc.update(body, 0, length);
+        }
+        isTorn = (body == null || (int)crc.getValue() != checksum);
+        if (!isTorn) {
+          try {
+            this.apply(tree, ByteBuffer.wrap(body));
+          } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt record at " + position + ": " + path, e);
+          }
+          applied++;
+          position += RECORD_HEADER_SIZE + length;
+        }
+      }
+      if (isTorn && !isLast) {
+        throw new IOException("Corrupt record at " + position + ": " + path);
+      }
+      if (isTorn) {
+        channel.truncate(position);
+        channel.force(true);
+      }
+    } catch (EOFException e) {
+      throw new IOException("Unexpected end of log: " + path, e);
+    }
+    return applied;
+  }
+  /**
+   * Writes and forces the pending changes, then switches to the file of a new generation.
+   * Call it while holding the lock that orders changes, so the switch falls between two changes.
+   * @param generation The new generation.
+   * @throws IOException If the log has failed or the files could not be written.
+   */
+  public synchronized void roll(long generation) throws IOException {
+    this.checkOpen();
+    this.drain();
+    this.getChannel().close();
+    this.setChannel(null);
+    this.setChannelOut(null);
+    this.open(generation);
+  }
+  /**
+   * Forces every change appended so far to disk.
+   * @throws IOException If the log has failed.
+   */
+  public void sync() throws IOException {
+    this.commit(this.getAppended(), true);
+  }
+}
@@ -0,0 +1,303 @@
+package wg.avl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A node arena that keeps the links and heights in a ByteBuffer, optionally off-heap.
+ * Keys and data are objects, so they stay in on-heap arrays.
+ * Freed slots are chained through the left child field and reused first.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class BufferNodeArena<K, E> implements NodeArena<K, E> {
+  /**
+   * The offset of the left child within a record.
+   */
+  protected static final int LEFT_OFFSET = 0;
+  /**
+   * The offset of the right child within a record.
+   */
+  protected static final int RIGHT_OFFSET = 4;
+  /**
+   * The offset of the parent within a record.
+   */
+  protected static final int PARENT_OFFSET = 8;
+  /**
+   * The offset of the height within a record.
+   */
+  protected static final int HEIGHT_OFFSET = 12;
+  /**
+   * The size of a record in bytes.
+   */
+  protected static final int RECORD_SIZE = 16;
+  /**
+   * The data of each node.
+   */
+  private Object[] mData;
+  /**
+   * Indicates if the records are stored off-heap.
+   */
+  private boolean mDirect;
+  /**
+   * The first free slot.
+   */
+  private int mFreeHead;
+  /**
+   * The key of each node.
+   */
+  private Object[] mKeys;
+  /**
+   * The first slot that has never been used.
+   */
+  private int mNext;
+  /**
+   * The node records.
+   */
+  private ByteBuffer mRecords;
+  /**
+   * Gets the first free slot.
+   * @return The slot.
+   */
+  protected int getFreeHead() {
+    return this.mFreeHead;
+  }
+  /**
+   * Gets the first slot that has never been used.
+   * @return The slot.
+   */
+  protected int getNext() {
+    return this.mNext;
+  }
+  /**
+   * Indicates if the records are stored off-heap.
+   * @return True, if the records are off-heap.
+   */
+  public boolean isDirect() {
+    return this.mDirect;
+  }
+  /**
+   * Sets the first free slot.
+   * @param freeHead The slot.
+   */
+  protected void setFreeHead(int freeHead) {
+    this.mFreeHead = freeHead;
+  }
+  /**
+   * Sets the first slot that has never been used.
+   * @param next The slot.
+   */
+  protected void setNext(int next) {
+    this.mNext = next;
+  }
+  /**
+   * Creates an instance of the BufferNodeArena class.
+   * @param capacity The initial number of slots.
+   * @param direct True, to store the records off-heap.
+   */
+  public BufferNodeArena(int capacity, boolean direct) {
+    capacity = Math.max(capacity, 1);
+    this.mData = new Object[capacity];
+    this.mDirect = direct;
+    this.mFreeHead = NodeArena.NIL;
+    this.mKeys = new Object[capacity];
+    this.mNext = 0;
+    this.mRecords = this.allocateRecords(capacity);
+  }
+  /**
+   * Allocates a node.
+   * @return The node id.
+   */
+  @Override
+  public int allocate() {
+    int id = this.getFreeHead();
+    if (id != NodeArena.NIL) {
+      this.setFreeHead(this.getLeft(id));
+    } else {
+      id = this.getNext();
+      if (id == this.getCapacity()) {
+        this.grow();
+      }
+      this.setNext(id + 1);
+    }
+    this.setHeight(id, 0);
+    this.setLeft(id, NodeArena.NIL);
+    this.setParent(id, NodeArena.NIL);
+    this.setRight(id, NodeArena.NIL);
+    return id;
+  }
+  /**
+   * Allocates a buffer for the given number of records.
+   * @param capacity The number of records.
+   * @return The buffer.
+   */
+  protected ByteBuffer allocateRecords(int capacity) {
+    ByteBuffer records;
+    if (this.isDirect()) {
+      records = ByteBuffer.allocateDirect(capacity * BufferNodeArena.RECORD_SIZE);
+    } else {
+      records = ByteBuffer.allocate(capacity * BufferNodeArena.RECORD_SIZE);
+    }
+    records.order(ByteOrder.nativeOrder());
+    return records;
+  }
+  /**
+   * Removes all nodes.
+   */
+  @Override
+  public void clear() {
+    Arrays.fill(this.mData, 0, this.getNext(), null);
+    Arrays.fill(this.mKeys, 0, this.getNext(), null);
+    this.setFreeHead(NodeArena.NIL);
+    this.setNext(0);
+  }
+  /**
+   * Returns a node to the free list.
+   * @param id The node id.
+   */
+  @Override
+  public void free(int id) {
+    this.mData[id] = null;
+    this.mKeys[id] = null;
+    this.setLeft(id, this.getFreeHead());
+    this.setFreeHead(id);
+  }
+  /**
+   * Gets the number of slots.
+   * @return The capacity.
+   */
+  @Override
+  public int getCapacity() {
+    return this.mKeys.length;
+  }
+  /**
+   * Gets the data of a node.
+   * @param id The node id.
+   * @return The data.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public E getData(int id) {
+    return (E)this.mData[id];
+  }
+  /**
+   * Gets the height of a node.
+   * @param id The node id.
+   * @return The height.
+   */
+  @Override
+  public int getHeight(int id) {
+    return this.mRecords.get(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.HEIGHT_OFFSET);
+  }
+  /**
+   * Gets the key of a node.
+   * @param id The node id.
+   * @return The key.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public K getKey(int id) {
+    return (K)this.mKeys[id];
+  }
+  /**
+   * Gets the left child of a node.
+   * @param id The node id.
+   * @return The left child id.
+   */
+  @Override
+  public int getLeft(int id) {
+    return this.mRecords.getInt(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.LEFT_OFFSET);
+  }
+  /**
+   * Gets the parent of a node.
+   * @param id The node id.
+   * @return The parent id.
+   */
+  @Override
+  public int getParent(int id) {
+    return this.mRecords.getInt(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.PARENT_OFFSET);
+  }
+  /**
+   * Gets the right child of a node.
+   * @param id The node id.
+   * @return The right child id.
+   */
+  @Override
+  public int getRight(int id) {
+    return this.mRecords.getInt(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.RIGHT_OFFSET);
+  }
+  /**
+   * Doubles the number of slots.
+   * @throws IllegalStateException If the records would not fit in one buffer.
+   */
+  protected void grow() {
+    if (this.getCapacity() > Integer.MAX_VALUE / 2 / BufferNodeArena.RECORD_SIZE) {
+      throw new IllegalStateException("The arena is full.");
+    }
+    int capacity = this.getCapacity() * 2;
+    ByteBuffer records = this.allocateRecords(capacity);
+    ByteBuffer old = this.mRecords.duplicate();
+    old.clear();
+    records.put(old);
+    records.clear();
+    this.mData = Arrays.copyOf(this.mData, capacity);
+    this.mKeys = Arrays.copyOf(this.mKeys, capacity);
+    this.mRecords = records;
+  }
+  /**
+   * Sets the data of a node.
+   * @param id The node id.
+   * @param data The data.
+   */
+  @Override
+  public void setData(int id, E data) {
+    this.mData[id] = data;
+  }
+  /**
+   * Sets the height of a node.
+   * @param id The node id.
+   * @param height The height.
+   */
+  @Override
+  public void setHeight(int id, int height) {
+    this.mRecords.put(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.HEIGHT_OFFSET, (byte)height);
+  }
+  /**
+   * Sets the key of a node.
+   * @param id The node id.
+   * @param key The key.
+   */
+  @Override
+  public void setKey(int id, K key) {
+    this.mKeys[id] = key;
+  }
+  /**
+   * Sets the left child of a node.
+   * @param id The node id.
+   * @param left The left child id.
+   */
+  @Override
+  public void setLeft(int id, int left) {
+    this.mRecords.putInt(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.LEFT_OFFSET, left);
+  }
+  /**
+   * Sets the parent of a node.
+   * @param id The node id.
+   * @param parent The parent id.
+   */
+  @Override
+  public void setParent(int id, int parent) {
+    this.mRecords.putInt(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.PARENT_OFFSET, parent);
+  }
+  /**
+   * Sets the right child of a node.
+   * @param id The node id.
+   * @param right The right child id.
+   */
+  @Override
+  public void setRight(int id, int right) {
+    this.mRecords.putInt(id * BufferNodeArena.RECORD_SIZE + BufferNodeArena.RIGHT_OFFSET, right);
+  }
+}
@@ -0,0 +1,525 @@
+package wg.avl;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An AVL tree with a smaller node layout than AvlTree.
+ * Nodes have no parent link and keep a byte balance factor instead of an int height and a sub-tree size,
+ * so the search path is kept on a stack for retracing, and rotations only touch child links.
+ * In key-only mode the key is the data, so nodes do not hold a data reference.
+ * Keys are ordered by a comparator, or by their natural ordering if there is none.
+ * Equal keys are allowed, as in AvlTree.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class CompactAvlTree<K, E> implements Iterable<Map.Entry<K, E>> {
+  /**
+   * The largest height the path stack can hold. An AVL tree of 2^31 nodes is less than 46 high.
+   */
+  protected static final int MAX_HEIGHT = 64;
+  /**
+   * The key order, or null for the natural ordering.
+   */
+  private Comparator<? super K> mComparator;
+  /**
+   * The number of elements in the tree.
+   */
+  private int mCount;
+  /**
+   * Indicates if the key is the data.
+   */
+  private boolean mKeyOnly;
+  /**
+   * The nodes on the last search path, from the root down.
+   */
+  private CompactAvlTreeNode<K, E>[] mPath;
+  /**
+   * Indicates, for each node on the path, if the path went on to the left child.
+   */
+  private boolean[] mPathLeft;
+  /**
+   * The root node.
+   */
+  private CompactAvlTreeNode<K, E> mRoot;
+  /**
+   * Gets the key order.
+   * @return The comparator, or null for the natural ordering.
+   */
+  public Comparator<? super K> getComparator() {
+    return this.mComparator;
+  }
+  /**
+   * Gets the number of elements in the tree.
+   * @return The number.
+   */
+  public int getCount() {
+    return this.mCount;
+  }
+  /**
+   * Gets the nodes on the last search path.
+   * @return The nodes, from the root down.
+   */
+  protected CompactAvlTreeNode<K, E>[] getPath() {
+    return this.mPath;
+  }
+  /**
+   * Gets the directions taken on the last search path.
+   * @return True, for each node where the path went on to the left child.
+   */
+  protected boolean[] getPathLeft() {
+    return this.mPathLeft;
+  }
+  /**
+   * Gets the root node.
+   * @return The root node.
+   */
+  protected CompactAvlTreeNode<K, E> getRoot() {
+    return this.mRoot;
+  }
+  /**
+   * Indicates if the key is the data.
+   * @return True, if nodes hold only a key.
+   */
+  public boolean isKeyOnly() {
+    return this.mKeyOnly;
+  }
+  /**
+   * Sets the number of elements in the tree.
+   * @param count The number.
+   */
+  protected void setCount(int count) {
+    this.mCount = count;
+  }
+  /**
+   * Sets the root node.
+   * @param root The root node.
+   */
+  protected void setRoot(CompactAvlTreeNode<K, E> root) {
+    this.mRoot = root;
+  }
+  /**
+   * Creates an instance of the CompactAvlTree class that orders keys by their natural ordering and holds data.
+   */
+  public CompactAvlTree() {
+    this(null, false);
+  }
+  /**
+   * Creates an instance of the CompactAvlTree class.
+   * @param comparator The key order, or null for the natural ordering.
+   * @param keyOnly True, if the key is the data.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public CompactAvlTree(Comparator<? super K> comparator, boolean keyOnly) {
+    this.mComparator = comparator;
+    this.mCount = 0;
+    this.mKeyOnly = keyOnly;
+    this.mPath = new CompactAvlTreeNode[MAX_HEIGHT];
+    this.mPathLeft = new boolean[MAX_HEIGHT];
+    this.mRoot = null;
+  }
+  /**
+   * Compares two keys in the order of the tree.
+   * @param a The first key.
+   * @param b The second key.
+   * @return A negative number, zero, or a positive number, as the first key is smaller, equal or larger.
+   */
+  @SuppressWarnings("unchecked")
+  protected int compare(K a, K b) {
+    Comparator<? super K> comparator = this.getComparator();
+    int cmp;
+    if (comparator == null) {
+      cmp = ((Comparable)a).compareTo(b);
+    } else {
+      cmp = comparator.compare(a, b);
+    }
+    return cmp;
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key to search for.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(K key) {
+    boolean contains = (this.findNode(key) != null);
+    return contains;
+  }
+  /**
+   * Creates a new node.
+   * @param key The key.
+   * @param data The data. It is not stored in key-only mode.
+   * @return The new node.
+   */
+  protected CompactAvlTreeNode<K, E> createNode(K key, E data) {
+    CompactAvlTreeNode<K, E> node;
+    if (this.isKeyOnly()) {
+      node = new CompactAvlTreeNode<K, E>(key);
+    } else {
+      node = new CompactAvlTreeDataNode<K, E>(key, data);
+    }
+    return node;
+  }
+  /**
+   * Finds the first node on the search path that has the given key.
+   * @param key The key to search for.
+   * @return The node, or null if the key is not in the tree.
+   */
+  protected CompactAvlTreeNode<K, E> findNode(K key) {
+    CompactAvlTreeNode<K, E> node = null;
+    CompactAvlTreeNode<K, E> temp = this.getRoot();
+    while (temp != null && node == null) {
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp < 0) {
+        temp = temp.getLeft();
+      } else if (cmp > 0) {
+        temp = temp.getRight();
+      } else {
+        node = temp;
+      }
+    }
+    return node;
+  }
+  /**
+   * Gets the data of a key.
+   * @param key The key.
+   * @return The data, or null if the key is not in the tree.
+   */
+  public E get(K key) {
+    E data = null;
+    CompactAvlTreeNode<K, E> node = this.findNode(key);
+    if (node != null) {
+      data = node.getData();
+    }
+    return data;
+  }
+  /**
+   * Estimates the heap bytes taken by the nodes, excluding the keys and data they refer to.
+   * @param compressedRefs True, if the JVM uses 4-byte references and a 12-byte object header.
+   * @return The number of bytes.
+   */
+  public long getFootprint(boolean compressedRefs) {
+    long footprint = (long)this.getCount() * this.getNodeSize(compressedRefs);
+    return footprint;
+  }
+  /**
+   * Gets the collection of elements in order.
+   * @return The collection.
+   */
+  public Object[] getInOrder() {
+    Object[] collection = new Object[this.getCount()];
+    this.getInOrderRec(this.getRoot(), 0, collection);
+    return collection;
+  }
+  /**
+   * Recursively gets each element in the tree.
+   * @param node The current node.
+   * @param index The current index.
+   * @param collection The collection.
+   * @return The new index value.
+   */
+  protected int getInOrderRec(CompactAvlTreeNode<K, E> node, int index, Object[] collection) {
+    if (node != null) {
+      index = this.getInOrderRec(node.getLeft(), index, collection);
+      collection[index++] = node.getData();
+      index = this.getInOrderRec(node.getRight(), index, collection);
+    }
+    return index;
+  }
+  /**
+   * Gets the largest element in the tree.
+   * @return The element, or null if the tree is empty.
+   */
+  public E getMax() {
+    E max = null;
+    CompactAvlTreeNode<K, E> temp = this.getRoot();
+    if (temp != null) {
+      while (temp.getRight() != null) {
+        temp = temp.getRight();
+      }
+      max = temp.getData();
+    }
+    return max;
+  }
+  /**
+   * Gets the smallest element in the tree.
+   * @return The element, or null if the tree is empty.
+   */
+  public E getMin() {
+    E min = null;
+    CompactAvlTreeNode<K, E> temp = this.getRoot();
+    if (temp != null) {
+      while (temp.getLeft() != null) {
+        temp = temp.getLeft();
+      }
+      min = temp.getData();
+    }
+    return min;
+  }
+  /**
+   * Estimates the heap bytes taken by one node, excluding the key and data it refers to.
+   * The estimate follows the HotSpot layout: an object header, a slot per reference and a byte for the
+   * balance factor, rounded up to a multiple of 8 bytes.
+   * With compressed references a node takes 32 bytes either way, against 40 for an AvlTreeNode.
+   * Without them, a key-only node takes 48 bytes and a node with data 56, against 64.
+   * @param compressedRefs True, if the JVM uses 4-byte references and a 12-byte object header.
+   * @return The number of bytes.
+   */
+  public int getNodeSize(boolean compressedRefs) {
+    int header = (compressedRefs ? 12 : 16);
+    int refSize = (compressedRefs ? 4 : 8);
+    int refCount = (this.isKeyOnly() ? 3 : 4);
+    int size = header + refCount * refSize + 1;
+    size = (size + 7) & ~7;
+    return size;
+  }
+  /**
+   * Inserts a key that is also its own data.
+   * @param key The key.
+   */
+  @SuppressWarnings("unchecked")
+  public void insert(K key) {
+    this.insert(key, (E)key);
+  }
+  /**
+   * Inserts an element into the tree.
+   * @param key The key of the element.
+   * @param data The element.
+   * @throws IllegalArgumentException If the tree is key-only and the element is not the key.
+   */
+  public void insert(K key, E data) {
+    if (this.isKeyOnly() && data != key) {
+      throw new IllegalArgumentException("A key-only tree keeps the key as the data.");
+    }
+    CompactAvlTreeNode<K, E>[] path = this.getPath();
+    boolean[] pathLeft = this.getPathLeft();
+    int depth = 0;
+    CompactAvlTreeNode<K, E> temp = this.getRoot();
+    while (temp != null) {
+      boolean isLeft = (this.compare(key, temp.getKey()) < 0);
+      path[depth] = temp;
+      pathLeft[depth] = isLeft;
+      depth++;
+      if (isLeft) {
+        temp = temp.getLeft();
+      } else {
+        temp = temp.getRight();
+      }
+    }
+    CompactAvlTreeNode<K, E> node = this.createNode(key, data);
+    this.replaceChild(depth, node);
+    this.setCount(this.getCount() + 1);
+    this.retraceInsert(depth);
+    this.clearPath(depth - 1);
+  }
+  /**
+   * Indicates if the tree is empty.
+   * @return True, if the tree is empty.
+   */
+  public boolean isEmpty() {
+    boolean isEmpty = (this.getCount() == 0);
+    return isEmpty;
+  }
+  /**
+   * Gets an iterator over the entries in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    Iterator<Map.Entry<K, E>> iterator = new CompactAvlTreeIterator<K, E>(this.getRoot());
+    return iterator;
+  }
+  /**
+   * Rotates a sub-tree once or twice if its balance factor is two or minus two.
+   * @param node The root of the sub-tree.
+   * @return The new root of the sub-tree.
+   */
+  protected CompactAvlTreeNode<K, E> rebalance(CompactAvlTreeNode<K, E> node) {
+    CompactAvlTreeNode<K, E> root = node;
+    if (node.getBalFac() > 1) {
+      if (node.getLeft().getBalFac() < 0) {
+        node.setLeft(this.rotateLeft(node.getLeft()));
+      }
+      root = this.rotateRight(node);
+    } else if (node.getBalFac() < -1) {
+      if (node.getRight().getBalFac() > 0) {
+        node.setRight(this.rotateRight(node.getRight()));
+      }
+      root = this.rotateLeft(node);
+    }
+    return root;
+  }
+  /**
+   * Removes the first element found with a key.
+   * A node with two children takes the key and data of its in-order predecessor, which is unlinked instead.
+   * @param key The key.
+   */
+  public void remove(K key) {
+    CompactAvlTreeNode<K, E>[] path = this.getPath();
+    boolean[] pathLeft = this.getPathLeft();
+    int depth = 0;
+    CompactAvlTreeNode<K, E> node = null;
+    CompactAvlTreeNode<K, E> temp = this.getRoot();
+    while (temp != null && node == null) {
+      int cmp = this.compare(key, temp.getKey());
+      if (cmp == 0) {
+        node = temp;
+      } else {
+        path[depth] = temp;
+        pathLeft[depth] = (cmp < 0);
+        depth++;
+        if (cmp < 0) {
+          temp = temp.getLeft();
+        } else {
+          temp = temp.getRight();
+        }
+      }
+    }
+    if (node != null) {
+      CompactAvlTreeNode<K, E> child;
+      if (node.getLeft() != null && node.getRight() != null) {
+        path[depth] = node;
+        pathLeft[depth] = true;
+        depth++;
+        CompactAvlTreeNode<K, E> predecessor = node.getLeft();
+        while (predecessor.getRight() != null) {
+          path[depth] = predecessor;
+          pathLeft[depth] = false;
+          depth++;
+          predecessor = predecessor.getRight();
+        }
+        node.setKey(predecessor.getKey());
+        if (!this.isKeyOnly()) {
+          node.setData(predecessor.getData());
+        }
+        child = predecessor.getLeft();
+      } else if (node.getLeft() != null) {
+        child = node.getLeft();
+      } else {
+        child = node.getRight();
+      }
+      this.replaceChild(depth, child);
+      this.setCount(this.getCount() - 1);
+      this.retraceRemove(depth);
+    }
+    this.clearPath(depth - 1);
+  }
+  /**
+   * Links a node in place of the child at a depth of the search path.
+   * @param depth The depth of the child. At depth zero, the node becomes the root.
+   * @param node The node, or null.
+   */
+  protected void replaceChild(int depth, CompactAvlTreeNode<K, E> node) {
+    if (depth == 0) {
+      this.setRoot(node);
+    } else {
+      CompactAvlTreeNode<K, E> parent = this.getPath()[depth - 1];
+      if (this.getPathLeft()[depth - 1]) {
+        parent.setLeft(node);
+      } else {
+        parent.setRight(node);
+      }
+    }
+  }
+  /**
+   * Walks up the search path after an insertion, updating the balance factors.
+   * It stops at the first sub-tree whose height did not change, which is at most one rotation.
+   * @param depth The depth of the new node.
+   */
+  protected void retraceInsert(int depth) {
+    CompactAvlTreeNode<K, E>[] path = this.getPath();
+    boolean[] pathLeft = this.getPathLeft();
+    boolean done = false;
+    int i = depth - 1;
+    while (!done && i >= 0) {
+      CompactAvlTreeNode<K, E> node = path[i];
+      int balFac = node.getBalFac() + (pathLeft[i] ? 1 : -1);
+      node.setBalFac(balFac);
+      if (balFac == 0) {
+        done = true;
+      } else if (balFac > 1 || balFac < -1) {
+        this.replaceChild(i, this.rebalance(node));
+        done = true;
+      }
+      i--;
+    }
+  }
+  /**
+   * Walks up the search path after a removal, updating the balance factors.
+   * It stops at the first sub-tree whose height did not change.
+   * @param depth The depth of the unlinked node.
+   */
+  protected void retraceRemove(int depth) {
+    CompactAvlTreeNode<K, E>[] path = this.getPath();
+    boolean[] pathLeft = this.getPathLeft();
+    boolean done = false;
+    int i = depth - 1;
+    while (!done && i >= 0) {
+      CompactAvlTreeNode<K, E> node = path[i];
+      int balFac = node.getBalFac() + (pathLeft[i] ? -1 : 1);
+      node.setBalFac(balFac);
+      if (balFac == 1 || balFac == -1) {
+        done = true;
+      } else if (balFac > 1 || balFac < -1) {
+        CompactAvlTreeNode<K, E> root = this.rebalance(node);
+        this.replaceChild(i, root);
+        done = (root.getBalFac() != 0);
+      }
+      i--;
+    }
+  }
+  /**
+   * Drops the references to the nodes left on the search path, so removed nodes can be collected.
+   * @param depth The depth of the deepest node left on the path, or -1 if there are none.
+   */
+  protected void clearPath(int depth) {
+    CompactAvlTreeNode<K, E>[] path = this.getPath();
+    for (int i = depth; i >= 0; i--) {
+      path[i] = null;
+    }
+  }
+  /**
+   * Rotates a sub-tree to the left.
+   * @param node The root of the sub-tree.
+   * @return The new root of the sub-tree.
+   */
+  protected CompactAvlTreeNode<K, E> rotateLeft(CompactAvlTreeNode<K, E> node) {
+    CompactAvlTreeNode<K, E> right = node.getRight();
+    node.setRight(right.getLeft());
+    right.setLeft(node);
+    int nodeBalFac = node.getBalFac() + 1 - Math.min(right.getBalFac(), 0);
+    int rightBalFac = right.getBalFac() + 1 + Math.max(nodeBalFac, 0);
+    node.setBalFac(nodeBalFac);
+    right.setBalFac(rightBalFac);
+    return right;
+  }
+  /**
+   * Rotates a sub-tree to the right.
+   * @param node The root of the sub-tree.
+   * @return The new root of the sub-tree.
+   */
+  protected CompactAvlTreeNode<K, E> rotateRight(CompactAvlTreeNode<K, E> node) {
+    CompactAvlTreeNode<K, E> left = node.getLeft();
+    node.setLeft(left.getRight());
+    left.setRight(node);
+    int nodeBalFac = node.getBalFac() - 1 - Math.max(left.getBalFac(), 0);
+    int leftBalFac = left.getBalFac() - 1 + Math.min(nodeBalFac, 0);
+    node.setBalFac(nodeBalFac);
+    left.setBalFac(leftBalFac);
+    return left;
+  }
+  /**
+   * Gets the string representation of the tree.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    String rep = "(empty)";
+    CompactAvlTreeNode<K, E> root = this.getRoot();
+    if (!this.isEmpty()) {
+      rep = root.toString();
+    }
+    return rep;
+  }
+}
@@ -0,0 +1,39 @@
+package wg.avl;
+
+/**
+ * A node of a CompactAvlTree that holds data apart from its key.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class CompactAvlTreeDataNode<K, E> extends CompactAvlTreeNode<K, E> {
+  /**
+   * The data.
+   */
+  private E mData;
+  /**
+   * Gets the data.
+   * @return The data.
+   */
+  @Override
+  public E getData() {
+    return this.mData;
+  }
+  /**
+   * Sets the data.
+   * @param data The data.
+   */
+  @Override
+  public void setData(E data) {
+    this.mData = data;
+  }
+  /**
+   * Creates an instance of the CompactAvlTreeDataNode class.
+   * @param key The key.
+   * @param data The data.
+   */
+  public CompactAvlTreeDataNode(K key, E data) {
+    super(key);
+    this.mData = data;
+  }
+}
@@ -0,0 +1,69 @@
+package wg.avl;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An in-order iterator over the entries of a compact AVL tree.
+ * Compact nodes have no parent link, so the path to the next node is kept on a stack.
+ * The tree must not be changed while iterating.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class CompactAvlTreeIterator<K, E> implements Iterator<Map.Entry<K, E>> {
+  /**
+   * The nodes whose left sub-trees are being visited, the next node on top.
+   */
+  private ArrayDeque<CompactAvlTreeNode<K, E>> mPath;
+  /**
+   * Gets the nodes whose left sub-trees are being visited.
+   * @return The nodes, the next node on top.
+   */
+  protected ArrayDeque<CompactAvlTreeNode<K, E>> getPath() {
+    return this.mPath;
+  }
+  /**
+   * Creates an instance of the CompactAvlTreeIterator class.
+   * @param root The root node of the tree.
+   */
+  public CompactAvlTreeIterator(CompactAvlTreeNode<K, E> root) {
+    this.mPath = new ArrayDeque<CompactAvlTreeNode<K, E>>();
+    this.pushLeft(root);
+  }
+  /**
+   * Indicates if there are more entries.
+   * @return True, if there are more entries.
+   */
+  @Override
+  public boolean hasNext() {
+    boolean hasNext = !this.getPath().isEmpty();
+    return hasNext;
+  }
+  /**
+   * Gets the next entry.
+   * @return The entry.
+   * @throws NoSuchElementException If there are no more entries.
+   */
+  @Override
+  public Map.Entry<K, E> next() {
+    CompactAvlTreeNode<K, E> node = this.getPath().poll();
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    this.pushLeft(node.getRight());
+    return node;
+  }
+  /**
+   * Pushes a node and its chain of left children.
+   * @param node The node, or null.
+   */
+  protected void pushLeft(CompactAvlTreeNode<K, E> node) {
+    while (node != null) {
+      this.getPath().push(node);
+      node = node.getLeft();
+    }
+  }
+}
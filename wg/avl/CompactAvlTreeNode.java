@@ -0,0 +1,172 @@
+package wg.avl;
+
+import java.util.Map;
+
+/**
+ * A node of a CompactAvlTree that holds only a key, which also serves as the data.
+ * There is no parent link and the balance factor takes a single byte instead of an int height.
+ * CompactAvlTreeDataNode adds a separate data reference.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class CompactAvlTreeNode<K, E> implements Map.Entry<K, E> {
+  /**
+   * The height of the left sub-tree minus the height of the right sub-tree.
+   */
+  private byte mBalFac;
+  /**
+   * The key.
+   */
+  private K mKey;
+  /**
+   * The left child.
+   */
+  private CompactAvlTreeNode<K, E> mLeft;
+  /**
+   * The right child.
+   */
+  private CompactAvlTreeNode<K, E> mRight;
+  /**
+   * Gets the balance factor.
+   * @return The height of the left sub-tree minus the height of the right sub-tree.
+   */
+  public int getBalFac() {
+    return this.mBalFac;
+  }
+  /**
+   * Gets the data, which is the key.
+   * @return The data.
+   */
+  @SuppressWarnings("unchecked")
+  public E getData() {
+    return (E)this.mKey;
+  }
+  /**
+   * Gets the key.
+   * @return The key.
+   */
+  @Override
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the left child.
+   * @return The left child.
+   */
+  public CompactAvlTreeNode<K, E> getLeft() {
+    return this.mLeft;
+  }
+  /**
+   * Gets the right child.
+   * @return The right child.
+   */
+  public CompactAvlTreeNode<K, E> getRight() {
+    return this.mRight;
+  }
+  /**
+   * Sets the balance factor.
+   * @param balFac The height of the left sub-tree minus the height of the right sub-tree.
+   */
+  public void setBalFac(int balFac) {
+    this.mBalFac = (byte)balFac;
+  }
+  /**
+   * Not supported, since the key is the data.
+   * @param data The data.
+   * @throws UnsupportedOperationException Always.
+   */
+  public void setData(E data) {
+    throw new UnsupportedOperationException("The key is the data of a key-only node.");
+  }
+  /**
+   * Sets the key.
+   * @param key The key.
+   */
+  public void setKey(K key) {
+    this.mKey = key;
+  }
+  /**
+   * Sets the left child.
+   * @param left The left child.
+   */
+  public void setLeft(CompactAvlTreeNode<K, E> left) {
+    this.mLeft = left;
+  }
+  /**
+   * Sets the right child.
+   * @param right The right child.
+   */
+  public void setRight(CompactAvlTreeNode<K, E> right) {
+    this.mRight = right;
+  }
+  /**
+   * Creates an instance of the CompactAvlTreeNode class.
+   * @param key The key.
+   */
+  public CompactAvlTreeNode(K key) {
+    this.mBalFac = 0;
+    this.mKey = key;
+    this.mLeft = null;
+    this.mRight = null;
+  }
+  /**
+   * Indicates if another object is an entry with the same key and data.
+   * @param obj The other object.
+   * @return True, if the key and data are equal.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    boolean equals = false;
+    if (obj instanceof Map.Entry) {
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+      K key = this.getKey();
+      E data = this.getData();
+      equals = (key == null ? entry.getKey() == null : key.equals(entry.getKey()))
+        && (data == null ? entry.getValue() == null : data.equals(entry.getValue()));
+    }
+    return equals;
+  }
+  /**
+   * Gets the data, as an entry value.
+   * @return The data.
+   */
+  @Override
+  public E getValue() {
+    return this.getData();
+  }
+  /**
+   * Gets the hash code of the key and data, as an entry.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode() {
+    K key = this.getKey();
+    E data = this.getData();
+    int hashCode = (key == null ? 0 : key.hashCode()) ^ (data == null ? 0 : data.hashCode());
+    return hashCode;
+  }
+  /**
+   * Replaces the data, as an entry value.
+   * @param value The new data.
+   * @return The old data.
+   */
+  @Override
+  public E setValue(E value) {
+    E data = this.getData();
+    this.setData(value);
+    return data;
+  }
+  /**
+   * Gets the string representation of this instance.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    K key = this.getKey();
+    E data = this.getData();
+    int balFac = this.getBalFac();
+    String rep = "(key=" + key + ";data=" + data + ";balFac=" + balFac + ")";
+    return rep;
+  }
+}
@@ -0,0 +1,933 @@
+package wg.avl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe AVL tree with optimistic reads and relaxed balancing.
+ * Readers take no locks. Each step from a node to a child is validated against the version of the node,
+ * and a search that is overtaken by a rotation retries from the deepest node that is still valid.
+ * Writers lock only the nodes they change, and rotations lock the nodes they move, parent before child.
+ * Removing a node with two children leaves it in place as a routing node, which is spliced out later once it has at most one child.
+ * Keys are unique: inserting an existing key replaces its element.
+ * Iteration is weakly consistent: it never fails, returns each key at most once and in order,
+ * and reflects some but not necessarily all of the changes made after it started.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ConcurrentAvlTree<K extends Comparable, E> implements Iterable<Map.Entry<K, E>> {
+  /**
+   * The stored value of a null element, since a null value marks a routing node.
+   */
+  protected static final Object NULL_DATA = new Object();
+  /**
+   * The result of an attempt that was invalidated by a concurrent change.
+   */
+  protected static final Object RETRY = new Object();
+  /**
+   * The node condition of a routing node that can be spliced out.
+   */
+  protected static final int UNLINK_REQUIRED = -2;
+  /**
+   * The node condition of a node that needs a rotation.
+   */
+  protected static final int REBALANCE_REQUIRED = -3;
+  /**
+   * The node condition of a node that needs no repair.
+   */
+  protected static final int NOTHING_REQUIRED = -4;
+  /**
+   * The number of elements in the tree.
+   */
+  private LongAdder mCount;
+  /**
+   * The sentinel whose right child is the root. It is never rotated, so its version never changes.
+   */
+  private ConcurrentAvlTreeNode<K, E> mHolder;
+  /**
+   * Gets the number of elements in the tree.
+   * The count is exact when no update is in progress.
+   * @return The number.
+   */
+  public int getCount() {
+    return (int)this.mCount.sum();
+  }
+  /**
+   * Gets the sentinel whose right child is the root.
+   * @return The sentinel.
+   */
+  protected ConcurrentAvlTreeNode<K, E> getHolder() {
+    return this.mHolder;
+  }
+  /**
+   * Creates an instance of the ConcurrentAvlTree class.
+   */
+  public ConcurrentAvlTree() {
+    this.mCount = new LongAdder();
+    this.mHolder = new ConcurrentAvlTreeNode<K, E>(null, null, null);
+  }
+  /**
+   * Tries to find a key below a node.
+   * @param key The key to search for.
+   * @param node The node, which was reached by a validated step.
+   * @param isLeft True, to continue into the left child.
+   * @param version The version of the node when it was reached.
+   * @return The stored value, null if the key is absent, or RETRY if the node changed.
+   */
+  protected Object attemptGet(K key, ConcurrentAvlTreeNode<K, E> node, boolean isLeft, long version) {
+    Object value = ConcurrentAvlTree.RETRY;
+    boolean done = false;
+    while (!done) {
+      ConcurrentAvlTreeNode<K, E> child = node.getChild(isLeft);
+      if (child == null) {
+        if (node.getVersion() == version) {
+          value = null;
+        }
+        done = true;
+      } else {
+        int cmp = key.compareTo(child.getKey());
+        if (cmp == 0) {
+          value = child.getValue();
+          done = true;
+        } else {
+          long childVersion = child.getVersion();
+          if (ConcurrentAvlTreeNode.isShrinkingOrUnlinked(childVersion)) {
+            child.waitUntilShrinkCompleted(childVersion);
+            done = (node.getVersion() != version);
+          } else if (child != node.getChild(isLeft)) {
+            done = (node.getVersion() != version);
+          } else if (node.getVersion() != version) {
+            done = true;
+          } else {
+            value = this.attemptGet(key, child, cmp < 0, childVersion);
+            done = (value != ConcurrentAvlTree.RETRY);
+          }
+        }
+      }
+    }
+    return value;
+  }
+  /**
+   * Tries to change the element of a node that has the key, or to remove it.
+   * @param value The new stored value, or null to remove.
+   * @param parent The parent the node was reached from.
+   * @param node The node.
+   * @return The previous stored value, or RETRY if the node changed.
+   */
+  protected Object attemptNodeUpdate(Object value, ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node) {
+    Object prev = ConcurrentAvlTree.RETRY;
+    if (value == null && node.getValue() == null) {
+      prev = null;
+    } else if (value == null && (node.getLeft() == null || node.getRight() == null)) {
+      ConcurrentAvlTreeNode<K, E> damaged = null;
+      synchronized (parent) {
+        if (!parent.isUnlinked() && node.getParent() == parent) {
+          synchronized (node) {
+            prev = node.getValue();
+            if (prev != null && !this.attemptUnlink(parent, node)) {
+              prev = ConcurrentAvlTree.RETRY;
+            }
+          }
+          if (prev != null && prev != ConcurrentAvlTree.RETRY) {
+            damaged = this.fixHeight(parent);
+          }
+        }
+      }
+      this.fixHeightAndRebalance(damaged);
+    } else {
+      synchronized (node) {
+        if (!node.isUnlinked()) {
+          if (value != null || (node.getLeft() != null && node.getRight() != null)) {
+            prev = node.getValue();
+            node.setValue(value);
+          }
+        }
+      }
+    }
+    return prev;
+  }
+  /**
+   * Tries to find where a seek lands below a node.
+   * Ascending seeks find the smallest key after the given key, descending seeks the largest key before it.
+   * @param key The key to seek from, or null to seek from the end of the tree.
+   * @param inclusive True, if a node with the key itself qualifies.
+   * @param ascending True, to seek upwards.
+   * @param node The node, which was reached by a validated step.
+   * @param version The version of the node when it was reached.
+   * @return The node, null if there is none, or RETRY if the node changed.
+   */
+  protected Object attemptSeek(K key, boolean inclusive, boolean ascending, ConcurrentAvlTreeNode<K, E> node, long version) {
+    Object result = ConcurrentAvlTree.RETRY;
+    boolean isLeft = false;
+    boolean isCandidate = false;
+    boolean done = false;
+    if (node != this.getHolder()) {
+      int cmp;
+      if (key == null) {
+        cmp = (ascending ? -1 : 1);
+      } else {
+        cmp = key.compareTo(node.getKey());
+      }
+      if (cmp == 0 && inclusive) {
+        result = node;
+        done = true;
+      } else if (ascending) {
+        isLeft = (cmp < 0);
+      } else {
+        isLeft = (cmp <= 0);
+      }
+      isCandidate = (isLeft == ascending);
+    }
+    while (!done) {
+      ConcurrentAvlTreeNode<K, E> child = node.getChild(isLeft);
+      if (node.getVersion() != version) {
+        done = true;
+      } else if (child == null) {
+        result = (isCandidate ? node : null);
+        done = true;
+      } else {
+        long childVersion = child.getVersion();
+        if (ConcurrentAvlTreeNode.isShrinkingOrUnlinked(childVersion)) {
+          child.waitUntilShrinkCompleted(childVersion);
+        } else if (child == node.getChild(isLeft)) {
+          if (node.getVersion() != version) {
+            done = true;
+          } else {
+            Object found = this.attemptSeek(key, inclusive, ascending, child, childVersion);
+            if (found != ConcurrentAvlTree.RETRY) {
+              result = ((found == null && isCandidate) ? node : found);
+              done = true;
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+  /**
+   * Tries to splice out a node that has at most one child.
+   * The parent and the node must be locked. Heights are not adjusted.
+   * @param parent The parent.
+   * @param node The node.
+   * @return True, if the node was unlinked.
+   */
+  protected boolean attemptUnlink(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node) {
+    boolean unlinked = false;
+    ConcurrentAvlTreeNode<K, E> parentLeft = parent.getLeft();
+    ConcurrentAvlTreeNode<K, E> parentRight = parent.getRight();
+    ConcurrentAvlTreeNode<K, E> left = node.getLeft();
+    ConcurrentAvlTreeNode<K, E> right = node.getRight();
+    if ((parentLeft == node || parentRight == node) && (left == null || right == null)) {
+      ConcurrentAvlTreeNode<K, E> splice = (left != null ? left : right);
+      if (parentLeft == node) {
+        parent.setLeft(splice);
+      } else {
+        parent.setRight(splice);
+      }
+      if (splice != null) {
+        splice.setParent(parent);
+      }
+      node.setVersion(ConcurrentAvlTreeNode.UNLINKED);
+      node.setValue(null);
+      unlinked = true;
+    }
+    return unlinked;
+  }
+  /**
+   * Tries to insert, replace or remove a key below a node.
+   * @param key The key.
+   * @param value The new stored value, or null to remove.
+   * @param parent The parent the node was reached from.
+   * @param node The node, which was reached by a validated step.
+   * @param version The version of the node when it was reached.
+   * @return The previous stored value, null if the key was absent, or RETRY if the node changed.
+   */
+  protected Object attemptUpdate(K key, Object value, ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, long version) {
+    Object prev = ConcurrentAvlTree.RETRY;
+    int cmp = 1;
+    if (node != this.getHolder()) {
+      cmp = key.compareTo(node.getKey());
+    }
+    if (cmp == 0) {
+      prev = this.attemptNodeUpdate(value, parent, node);
+    } else {
+      boolean isLeft = (cmp < 0);
+      boolean done = false;
+      while (!done) {
+        ConcurrentAvlTreeNode<K, E> child = node.getChild(isLeft);
+        if (node.getVersion() != version) {
+          done = true;
+        } else if (child == null) {
+          if (value == null) {
+            prev = null;
+            done = true;
+          } else {
+            boolean inserted = false;
+            ConcurrentAvlTreeNode<K, E> damaged = null;
+            synchronized (node) {
+              if (node.getVersion() != version) {
+                done = true;
+              } else if (node.getChild(isLeft) == null) {
+                node.setChild(isLeft, new ConcurrentAvlTreeNode<K, E>(key, value, node));
+                damaged = this.fixHeight(node);
+                inserted = true;
+              }
+            }
+            if (inserted) {
+              this.fixHeightAndRebalance(damaged);
+              prev = null;
+              done = true;
+            }
+          }
+        } else {
+          long childVersion = child.getVersion();
+          if (ConcurrentAvlTreeNode.isShrinkingOrUnlinked(childVersion)) {
+            child.waitUntilShrinkCompleted(childVersion);
+          } else if (child == node.getChild(isLeft)) {
+            if (node.getVersion() != version) {
+              done = true;
+            } else {
+              prev = this.attemptUpdate(key, value, node, child, childVersion);
+              done = (prev != ConcurrentAvlTree.RETRY);
+            }
+          }
+        }
+      }
+    }
+    return prev;
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key to search for.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(K key) {
+    boolean contains = (this.getValue(key) != null);
+    return contains;
+  }
+  /**
+   * Converts a stored value back into an element.
+   * @param value The stored value.
+   * @return The element.
+   */
+  @SuppressWarnings("unchecked")
+  protected E decode(Object value) {
+    E data = null;
+    if (value != ConcurrentAvlTree.NULL_DATA) {
+      data = (E)value;
+    }
+    return data;
+  }
+  /**
+   * Gets a weakly consistent iterator over the entries from the largest key down.
+   * @return The iterator.
+   */
+  public Iterator<Map.Entry<K, E>> descendingIterator() {
+    return new ConcurrentAvlTreeIterator<K, E>(this, true);
+  }
+  /**
+   * Converts an element into a stored value.
+   * @param data The element.
+   * @return The stored value, which is never null.
+   */
+  protected Object encode(E data) {
+    Object value = data;
+    if (data == null) {
+      value = ConcurrentAvlTree.NULL_DATA;
+    }
+    return value;
+  }
+  /**
+   * Updates the height of a locked node, or reports why it cannot.
+   * @param node The node.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> fixHeight(ConcurrentAvlTreeNode<K, E> node) {
+    ConcurrentAvlTreeNode<K, E> damaged;
+    int condition = this.getCondition(node);
+    if (condition == ConcurrentAvlTree.REBALANCE_REQUIRED || condition == ConcurrentAvlTree.UNLINK_REQUIRED) {
+      damaged = node;
+    } else if (condition == ConcurrentAvlTree.NOTHING_REQUIRED) {
+      damaged = null;
+    } else {
+      node.setHeight(condition);
+      damaged = node.getParent();
+    }
+    return damaged;
+  }
+  /**
+   * Repairs heights, balance and routing nodes from a damaged node up towards the root.
+   * @param node The damaged node, or null.
+   */
+  protected void fixHeightAndRebalance(ConcurrentAvlTreeNode<K, E> node) {
+    while (node != null && node.getParent() != null) {
+      int condition = this.getCondition(node);
+      if (condition == ConcurrentAvlTree.NOTHING_REQUIRED || node.isUnlinked()) {
+        node = null;
+      } else if (condition != ConcurrentAvlTree.UNLINK_REQUIRED && condition != ConcurrentAvlTree.REBALANCE_REQUIRED) {
+        synchronized (node) {
+          node = this.fixHeight(node);
+        }
+      } else {
+        ConcurrentAvlTreeNode<K, E> grandparent = null;
+        ConcurrentAvlTreeNode<K, E> parent = node.getParent();
+        ConcurrentAvlTreeNode<K, E> damaged = node;
+        synchronized (parent) {
+          if (!parent.isUnlinked() && node.getParent() == parent) {
+            grandparent = parent.getParent();
+            synchronized (node) {
+              damaged = this.rebalanceNode(parent, node);
+            }
+          }
+        }
+        if (grandparent != null && damaged != null && damaged != parent && damaged != grandparent) {
+          //The damage is below the parent, which may itself be left damaged by the rotation, so repair it afterwards.
+          this.fixHeightAndRebalance(damaged);
+          damaged = parent;
+        }
+        node = damaged;
+      }
+    }
+  }
+  /**
+   * Gets the element with a key.
+   * @param key The key to search for.
+   * @return The element, or null if the key is not in the tree.
+   */
+  public E get(K key) {
+    E data = null;
+    Object value = this.getValue(key);
+    if (value != null) {
+      data = this.decode(value);
+    }
+    return data;
+  }
+  /**
+   * Gets what a node needs, judged from an unlocked read of its children.
+   * @param node The node.
+   * @return UNLINK_REQUIRED, REBALANCE_REQUIRED, NOTHING_REQUIRED, or the height the node should have.
+   */
+  protected int getCondition(ConcurrentAvlTreeNode<K, E> node) {
+    int condition;
+    ConcurrentAvlTreeNode<K, E> left = node.getLeft();
+    ConcurrentAvlTreeNode<K, E> right = node.getRight();
+    if ((left == null || right == null) && node.getValue() == null) {
+      condition = ConcurrentAvlTree.UNLINK_REQUIRED;
+    } else {
+      int height = node.getHeight();
+      int leftHeight = this.heightOf(left);
+      int rightHeight = this.heightOf(right);
+      int balFac = leftHeight - rightHeight;
+      int newHeight = Math.max(leftHeight, rightHeight) + 1;
+      if (balFac > 1 || balFac < -1) {
+        condition = ConcurrentAvlTree.REBALANCE_REQUIRED;
+      } else if (height != newHeight) {
+        condition = newHeight;
+      } else {
+        condition = ConcurrentAvlTree.NOTHING_REQUIRED;
+      }
+    }
+    return condition;
+  }
+  /**
+   * Gets the collection of elements in order.
+   * The collection is weakly consistent with concurrent updates.
+   * @return The collection.
+   */
+  public Object[] getInOrder() {
+    ArrayList<Object> collection = new ArrayList<Object>();
+    Iterator<Map.Entry<K, E>> iterator = this.iterator();
+    while (iterator.hasNext()) {
+      collection.add(iterator.next().getValue());
+    }
+    return collection.toArray();
+  }
+  /**
+   * The largest element.
+   * @return The element.
+   */
+  public E getMax() {
+    E max = null;
+    Map.Entry<K, E> entry = this.seekEntry(null, true, false);
+    if (entry != null) {
+      max = entry.getValue();
+    }
+    return max;
+  }
+  /**
+   * Gets the smallest element
+   * @return The smallest element.
+   */
+  public E getMin() {
+    E min = null;
+    Map.Entry<K, E> entry = this.seekEntry(null, true, true);
+    if (entry != null) {
+      min = entry.getValue();
+    }
+    return min;
+  }
+  /**
+   * Gets the stored value of a key without taking any locks.
+   * @param key The key to search for.
+   * @return The stored value, or null if the key is not in the tree.
+   */
+  protected Object getValue(K key) {
+    Object value = ConcurrentAvlTree.RETRY;
+    ConcurrentAvlTreeNode<K, E> holder = this.getHolder();
+    while (value == ConcurrentAvlTree.RETRY) {
+      value = this.attemptGet(key, holder, false, holder.getVersion());
+    }
+    return value;
+  }
+  /**
+   * Gets the height of a node.
+   * @param node The node, or null.
+   * @return The height, or -1 for null.
+   */
+  protected int heightOf(ConcurrentAvlTreeNode<K, E> node) {
+    int height = -1;
+    if (node != null) {
+      height = node.getHeight();
+    }
+    return height;
+  }
+  /**
+   * Inserts an element into the tree, replacing the element of an equal key.
+   * @param key The key of the element.
+   * @param data The element.
+   */
+  public void insert(K key, E data) {
+    Object prev = this.update(key, this.encode(data));
+    if (prev == null) {
+      this.mCount.increment();
+    }
+  }
+  /**
+   * Indicates if the tree is empty.
+   * @return True, if the tree is empty.
+   */
+  public boolean isEmpty() {
+    boolean isEmpty = (this.seekEntry(null, true, true) == null);
+    return isEmpty;
+  }
+  /**
+   * Gets a weakly consistent iterator over the entries in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    return new ConcurrentAvlTreeIterator<K, E>(this, false);
+  }
+  /**
+   * Rotates or splices a locked node whose parent is also locked.
+   * @param parent The parent.
+   * @param node The node.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rebalanceNode(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node) {
+    ConcurrentAvlTreeNode<K, E> damaged;
+    ConcurrentAvlTreeNode<K, E> left = node.getLeft();
+    ConcurrentAvlTreeNode<K, E> right = node.getRight();
+    if ((left == null || right == null) && node.getValue() == null) {
+      if (this.attemptUnlink(parent, node)) {
+        damaged = this.fixHeight(parent);
+      } else {
+        damaged = node;
+      }
+    } else {
+      int height = node.getHeight();
+      int leftHeight = this.heightOf(left);
+      int rightHeight = this.heightOf(right);
+      int balFac = leftHeight - rightHeight;
+      int newHeight = Math.max(leftHeight, rightHeight) + 1;
+      if (balFac > 1) {
+        damaged = this.rebalanceToRight(parent, node, left, rightHeight);
+      } else if (balFac < -1) {
+        damaged = this.rebalanceToLeft(parent, node, right, leftHeight);
+      } else if (height != newHeight) {
+        node.setHeight(newHeight);
+        damaged = this.fixHeight(parent);
+      } else {
+        damaged = null;
+      }
+    }
+    return damaged;
+  }
+  /**
+   * Rotates a locked node that is too heavy on the right.
+   * @param parent The locked parent.
+   * @param node The locked node.
+   * @param right The right child.
+   * @param leftHeight The height of the left child that was read under the lock.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rebalanceToLeft(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, ConcurrentAvlTreeNode<K, E> right, int leftHeight) {
+    ConcurrentAvlTreeNode<K, E> damaged = node;
+    synchronized (right) {
+      if (leftHeight - right.getHeight() < -1) {
+        ConcurrentAvlTreeNode<K, E> rightLeft = right.getLeft();
+        int rightLeftHeight = this.heightOf(rightLeft);
+        int rightRightHeight = this.heightOf(right.getRight());
+        if (rightRightHeight >= rightLeftHeight) {
+          damaged = this.rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+        } else {
+          boolean rotated = false;
+          synchronized (rightLeft) {
+            rightLeftHeight = rightLeft.getHeight();
+            if (rightRightHeight >= rightLeftHeight) {
+              damaged = this.rotateLeft(parent, node, leftHeight, right, rightLeft, rightLeftHeight, rightRightHeight);
+              rotated = true;
+            } else {
+              int rightLeftRightHeight = this.heightOf(rightLeft.getRight());
+              int balFac = rightRightHeight - rightLeftRightHeight;
+              if (balFac >= -1 && balFac <= 1) {
+                damaged = this.rotateLeftOverRight(parent, node, leftHeight, right, rightLeft, rightRightHeight, rightLeftRightHeight);
+                rotated = true;
+              }
+            }
+          }
+          if (!rotated) {
+            //A double rotation would leave the right child damaged, so fix it on its own first.
+            damaged = this.rebalanceToRight(node, right, rightLeft, rightRightHeight);
+          }
+        }
+      }
+    }
+    return damaged;
+  }
+  /**
+   * Rotates a locked node that is too heavy on the left.
+   * @param parent The locked parent.
+   * @param node The locked node.
+   * @param left The left child.
+   * @param rightHeight The height of the right child that was read under the lock.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rebalanceToRight(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, ConcurrentAvlTreeNode<K, E> left, int rightHeight) {
+    ConcurrentAvlTreeNode<K, E> damaged = node;
+    synchronized (left) {
+      if (left.getHeight() - rightHeight > 1) {
+        ConcurrentAvlTreeNode<K, E> leftRight = left.getRight();
+        int leftLeftHeight = this.heightOf(left.getLeft());
+        int leftRightHeight = this.heightOf(leftRight);
+        if (leftLeftHeight >= leftRightHeight) {
+          damaged = this.rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+        } else {
+          boolean rotated = false;
+          synchronized (leftRight) {
+            leftRightHeight = leftRight.getHeight();
+            if (leftLeftHeight >= leftRightHeight) {
+              damaged = this.rotateRight(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightHeight);
+              rotated = true;
+            } else {
+              int leftRightLeftHeight = this.heightOf(leftRight.getLeft());
+              int balFac = leftLeftHeight - leftRightLeftHeight;
+              if (balFac >= -1 && balFac <= 1) {
+                damaged = this.rotateRightOverLeft(parent, node, left, rightHeight, leftLeftHeight, leftRight, leftRightLeftHeight);
+                rotated = true;
+              }
+            }
+          }
+          if (!rotated) {
+            //A double rotation would leave the left child damaged, so fix it on its own first.
+            damaged = this.rebalanceToLeft(node, left, leftRight, leftLeftHeight);
+          }
+        }
+      }
+    }
+    return damaged;
+  }
+  /**
+   * Removes an element from the tree.
+   * @param key The key of the element.
+   */
+  public void remove(K key) {
+    Object prev = this.update(key, null);
+    if (prev != null) {
+      this.mCount.decrement();
+    }
+  }
+  /**
+   * Replaces the child link of a parent.
+   * @param parent The parent.
+   * @param parentLeft The left child of the parent, read before the change.
+   * @param old The child being replaced.
+   * @param child The new child.
+   */
+  protected void replaceChild(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> parentLeft, ConcurrentAvlTreeNode<K, E> old, ConcurrentAvlTreeNode<K, E> child) {
+    if (parentLeft == old) {
+      parent.setLeft(child);
+    } else {
+      parent.setRight(child);
+    }
+    child.setParent(parent);
+  }
+  /**
+   * Rotates a locked node to the left. The parent and the right child must be locked.
+   * @param parent The parent.
+   * @param node The node.
+   * @param leftHeight The height of the left child.
+   * @param right The right child.
+   * @param rightLeft The left child of the right child.
+   * @param rightLeftHeight The height of the left child of the right child.
+   * @param rightRightHeight The height of the right child of the right child.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rotateLeft(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, int leftHeight, ConcurrentAvlTreeNode<K, E> right, ConcurrentAvlTreeNode<K, E> rightLeft, int rightLeftHeight, int rightRightHeight) {
+    ConcurrentAvlTreeNode<K, E> damaged;
+    long version = node.getVersion();
+    ConcurrentAvlTreeNode<K, E> parentLeft = parent.getLeft();
+    node.setVersion(version | ConcurrentAvlTreeNode.SHRINKING);
+    node.setRight(rightLeft);
+    if (rightLeft != null) {
+      rightLeft.setParent(node);
+    }
+    right.setLeft(node);
+    node.setParent(right);
+    this.replaceChild(parent, parentLeft, node, right);
+    int nodeHeight = Math.max(leftHeight, rightLeftHeight) + 1;
+    node.setHeight(nodeHeight);
+    right.setHeight(Math.max(nodeHeight, rightRightHeight) + 1);
+    node.setVersion(version + ConcurrentAvlTreeNode.SHRINK_COUNT_INCR);
+    int nodeBalFac = leftHeight - rightLeftHeight;
+    int rightBalFac = nodeHeight - rightRightHeight;
+    if (nodeBalFac < -1 || nodeBalFac > 1) {
+      damaged = node;
+    } else if ((rightLeft == null || leftHeight == -1) && node.getValue() == null) {
+      damaged = node;
+    } else if (rightBalFac < -1 || rightBalFac > 1) {
+      damaged = right;
+    } else if (rightRightHeight == -1 && right.getValue() == null) {
+      damaged = right;
+    } else {
+      damaged = this.fixHeight(parent);
+    }
+    return damaged;
+  }
+  /**
+   * Rotates the right child of a locked node to the right, and then the node to the left.
+   * The parent, the right child and its left child must be locked.
+   * @param parent The parent.
+   * @param node The node.
+   * @param leftHeight The height of the left child.
+   * @param right The right child.
+   * @param rightLeft The left child of the right child.
+   * @param rightRightHeight The height of the right child of the right child.
+   * @param rightLeftRightHeight The height of the right child of the left child of the right child.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rotateLeftOverRight(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, int leftHeight, ConcurrentAvlTreeNode<K, E> right, ConcurrentAvlTreeNode<K, E> rightLeft, int rightRightHeight, int rightLeftRightHeight) {
+    ConcurrentAvlTreeNode<K, E> damaged;
+    long version = node.getVersion();
+    long rightVersion = right.getVersion();
+    ConcurrentAvlTreeNode<K, E> parentLeft = parent.getLeft();
+    ConcurrentAvlTreeNode<K, E> rightLeftLeft = rightLeft.getLeft();
+    ConcurrentAvlTreeNode<K, E> rightLeftRight = rightLeft.getRight();
+    int rightLeftLeftHeight = this.heightOf(rightLeftLeft);
+    node.setVersion(version | ConcurrentAvlTreeNode.SHRINKING);
+    right.setVersion(rightVersion | ConcurrentAvlTreeNode.SHRINKING);
+    node.setRight(rightLeftLeft);
+    if (rightLeftLeft != null) {
+      rightLeftLeft.setParent(node);
+    }
+    right.setLeft(rightLeftRight);
+    if (rightLeftRight != null) {
+      rightLeftRight.setParent(right);
+    }
+    rightLeft.setRight(right);
+    right.setParent(rightLeft);
+    rightLeft.setLeft(node);
+    node.setParent(rightLeft);
+    this.replaceChild(parent, parentLeft, node, rightLeft);
+    int nodeHeight = Math.max(leftHeight, rightLeftLeftHeight) + 1;
+    node.setHeight(nodeHeight);
+    int rightHeight = Math.max(rightLeftRightHeight, rightRightHeight) + 1;
+    right.setHeight(rightHeight);
+    rightLeft.setHeight(Math.max(nodeHeight, rightHeight) + 1);
+    node.setVersion(version + ConcurrentAvlTreeNode.SHRINK_COUNT_INCR);
+    right.setVersion(rightVersion + ConcurrentAvlTreeNode.SHRINK_COUNT_INCR);
+    int nodeBalFac = leftHeight - rightLeftLeftHeight;
+    int rightLeftBalFac = nodeHeight - rightHeight;
+    if (nodeBalFac < -1 || nodeBalFac > 1) {
+      damaged = node;
+    } else if ((rightLeftLeft == null || leftHeight == -1) && node.getValue() == null) {
+      damaged = node;
+    } else if (rightLeftBalFac < -1 || rightLeftBalFac > 1) {
+      damaged = rightLeft;
+    } else {
+      damaged = this.fixHeight(parent);
+    }
+    return damaged;
+  }
+  /**
+   * Rotates a locked node to the right. The parent and the left child must be locked.
+   * @param parent The parent.
+   * @param node The node.
+   * @param left The left child.
+   * @param rightHeight The height of the right child.
+   * @param leftLeftHeight The height of the left child of the left child.
+   * @param leftRight The right child of the left child.
+   * @param leftRightHeight The height of the right child of the left child.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rotateRight(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, ConcurrentAvlTreeNode<K, E> left, int rightHeight, int leftLeftHeight, ConcurrentAvlTreeNode<K, E> leftRight, int leftRightHeight) {
+    ConcurrentAvlTreeNode<K, E> damaged;
+    long version = node.getVersion();
+    ConcurrentAvlTreeNode<K, E> parentLeft = parent.getLeft();
+    node.setVersion(version | ConcurrentAvlTreeNode.SHRINKING);
+    node.setLeft(leftRight);
+    if (leftRight != null) {
+      leftRight.setParent(node);
+    }
+    left.setRight(node);
+    node.setParent(left);
+    this.replaceChild(parent, parentLeft, node, left);
+    int nodeHeight = Math.max(leftRightHeight, rightHeight) + 1;
+    node.setHeight(nodeHeight);
+    left.setHeight(Math.max(leftLeftHeight, nodeHeight) + 1);
+    node.setVersion(version + ConcurrentAvlTreeNode.SHRINK_COUNT_INCR);
+    int nodeBalFac = leftRightHeight - rightHeight;
+    int leftBalFac = leftLeftHeight - nodeHeight;
+    if (nodeBalFac < -1 || nodeBalFac > 1) {
+      damaged = node;
+    } else if ((leftRight == null || rightHeight == -1) && node.getValue() == null) {
+      damaged = node;
+    } else if (leftBalFac < -1 || leftBalFac > 1) {
+      damaged = left;
+    } else if (leftLeftHeight == -1 && left.getValue() == null) {
+      damaged = left;
+    } else {
+      damaged = this.fixHeight(parent);
+    }
+    return damaged;
+  }
+  /**
+   * Rotates the left child of a locked node to the left, and then the node to the right.
+   * The parent, the left child and its right child must be locked.
+   * @param parent The parent.
+   * @param node The node.
+   * @param left The left child.
+   * @param rightHeight The height of the right child.
+   * @param leftLeftHeight The height of the left child of the left child.
+   * @param leftRight The right child of the left child.
+   * @param leftRightLeftHeight The height of the left child of the right child of the left child.
+   * @return The next node that needs repair, or null if none does.
+   */
+  protected ConcurrentAvlTreeNode<K, E> rotateRightOverLeft(ConcurrentAvlTreeNode<K, E> parent, ConcurrentAvlTreeNode<K, E> node, ConcurrentAvlTreeNode<K, E> left, int rightHeight, int leftLeftHeight, ConcurrentAvlTreeNode<K, E> leftRight, int leftRightLeftHeight) {
+    ConcurrentAvlTreeNode<K, E> damaged;
+    long version = node.getVersion();
+    long leftVersion = left.getVersion();
+    ConcurrentAvlTreeNode<K, E> parentLeft = parent.getLeft();
+    ConcurrentAvlTreeNode<K, E> leftRightLeft = leftRight.getLeft();
+    ConcurrentAvlTreeNode<K, E> leftRightRight = leftRight.getRight();
+    int leftRightRightHeight = this.heightOf(leftRightRight);
+    node.setVersion(version | ConcurrentAvlTreeNode.SHRINKING);
+    left.setVersion(leftVersion | ConcurrentAvlTreeNode.SHRINKING);
+    node.setLeft(leftRightRight);
+    if (leftRightRight != null) {
+      leftRightRight.setParent(node);
+    }
+    left.setRight(leftRightLeft);
+    if (leftRightLeft != null) {
+      leftRightLeft.setParent(left);
+    }
+    leftRight.setLeft(left);
+    left.setParent(leftRight);
+    leftRight.setRight(node);
+    node.setParent(leftRight);
+    this.replaceChild(parent, parentLeft, node, leftRight);
+    int nodeHeight = Math.max(leftRightRightHeight, rightHeight) + 1;
+    node.setHeight(nodeHeight);
+    int leftHeight = Math.max(leftLeftHeight, leftRightLeftHeight) + 1;
+    left.setHeight(leftHeight);
+    leftRight.setHeight(Math.max(leftHeight, nodeHeight) + 1);
+    node.setVersion(version + ConcurrentAvlTreeNode.SHRINK_COUNT_INCR);
+    left.setVersion(leftVersion + ConcurrentAvlTreeNode.SHRINK_COUNT_INCR);
+    int nodeBalFac = leftRightRightHeight - rightHeight;
+    int leftRightBalFac = leftHeight - nodeHeight;
+    if (nodeBalFac < -1 || nodeBalFac > 1) {
+      damaged = node;
+    } else if ((leftRightRight == null || rightHeight == -1) && node.getValue() == null) {
+      damaged = node;
+    } else if (leftRightBalFac < -1 || leftRightBalFac > 1) {
+      damaged = leftRight;
+    } else {
+      damaged = this.fixHeight(parent);
+    }
+    return damaged;
+  }
+  /**
+   * Finds the first element after a key, skipping routing nodes.
+   * @param key The key to seek from, or null to seek from the end of the tree.
+   * @param inclusive True, if the key itself qualifies.
+   * @param ascending True, to seek upwards.
+   * @return A snapshot of the entry, or null if there is none.
+   */
+  protected Map.Entry<K, E> seekEntry(K key, boolean inclusive, boolean ascending) {
+    Map.Entry<K, E> entry = null;
+    boolean done = false;
+    while (!done) {
+      ConcurrentAvlTreeNode<K, E> node = this.seekNode(key, inclusive, ascending);
+      if (node == null) {
+        done = true;
+      } else {
+        Object value = node.getValue();
+        if (value != null) {
+          entry = new AbstractMap.SimpleImmutableEntry<K, E>(node.getKey(), this.decode(value));
+          done = true;
+        } else {
+          key = node.getKey();
+          inclusive = false;
+        }
+      }
+    }
+    return entry;
+  }
+  /**
+   * Finds the first node after a key without taking any locks. The node may be a routing node.
+   * @param key The key to seek from, or null to seek from the end of the tree.
+   * @param inclusive True, if a node with the key itself qualifies.
+   * @param ascending True, to seek upwards.
+   * @return The node, or null if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  protected ConcurrentAvlTreeNode<K, E> seekNode(K key, boolean inclusive, boolean ascending) {
+    Object found = ConcurrentAvlTree.RETRY;
+    ConcurrentAvlTreeNode<K, E> holder = this.getHolder();
+    while (found == ConcurrentAvlTree.RETRY) {
+      found = this.attemptSeek(key, inclusive, ascending, holder, holder.getVersion());
+    }
+    return (ConcurrentAvlTreeNode<K, E>)found;
+  }
+  /**
+   * Gets the string representation of the tree.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    String rep = "(empty)";
+    ConcurrentAvlTreeNode<K, E> root = this.getHolder().getRight();
+    if (root != null) {
+      rep = "(key=" + root.getKey() + ";data=" + this.decode(root.getValue()) + ";height=" + root.getHeight() + ")";
+    }
+    return rep;
+  }
+  /**
+   * Inserts, replaces or removes a key.
+   * @param key The key.
+   * @param value The new stored value, or null to remove.
+   * @return The previous stored value, or null if the key was absent.
+   */
+  protected Object update(K key, Object value) {
+    Object prev = ConcurrentAvlTree.RETRY;
+    ConcurrentAvlTreeNode<K, E> holder = this.getHolder();
+    while (prev == ConcurrentAvlTree.RETRY) {
+      prev = this.attemptUpdate(key, value, null, holder, holder.getVersion());
+    }
+    return prev;
+  }
+}
@@ -0,0 +1,123 @@
+package wg.avl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A weakly consistent iterator over the entries of a concurrent AVL tree.
+ * Each step seeks the key after the last one returned, so it never fails under concurrent updates
+ * and returns each key at most once and in order.
+ * The entries are snapshots: setValue is not supported.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ConcurrentAvlTreeIterator<K extends Comparable, E> implements Iterator<Map.Entry<K, E>> {
+  /**
+   * Indicates if the entries are visited from the largest key down.
+   */
+  private boolean mDescending;
+  /**
+   * The last entry returned.
+   */
+  private Map.Entry<K, E> mLast;
+  /**
+   * The next entry to return.
+   */
+  private Map.Entry<K, E> mNext;
+  /**
+   * The tree being iterated.
+   */
+  private ConcurrentAvlTree<K, E> mTree;
+  /**
+   * Gets the last entry returned.
+   * @return The entry.
+   */
+  protected Map.Entry<K, E> getLast() {
+    return this.mLast;
+  }
+  /**
+   * Gets the next entry to return.
+   * @return The entry.
+   */
+  protected Map.Entry<K, E> getNext() {
+    return this.mNext;
+  }
+  /**
+   * Gets the tree being iterated.
+   * @return The tree.
+   */
+  public ConcurrentAvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Indicates if the entries are visited from the largest key down.
+   * @return True, if descending.
+   */
+  public boolean isDescending() {
+    return this.mDescending;
+  }
+  /**
+   * Sets the last entry returned.
+   * @param last The entry.
+   */
+  protected void setLast(Map.Entry<K, E> last) {
+    this.mLast = last;
+  }
+  /**
+   * Sets the next entry to return.
+   * @param next The entry.
+   */
+  protected void setNext(Map.Entry<K, E> next) {
+    this.mNext = next;
+  }
+  /**
+   * Creates an instance of the ConcurrentAvlTreeIterator class.
+   * @param tree The tree being iterated.
+   * @param descending True, to visit the entries from the largest key down.
+   */
+  public ConcurrentAvlTreeIterator(ConcurrentAvlTree<K, E> tree, boolean descending) {
+    this.mDescending = descending;
+    this.mLast = null;
+    this.mNext = tree.seekEntry(null, true, !descending);
+    this.mTree = tree;
+  }
+  /**
+   * Indicates if there are more entries.
+   * @return True, if there are more entries.
+   */
+  @Override
+  public boolean hasNext() {
+    boolean hasNext = (this.getNext() != null);
+    return hasNext;
+  }
+  /**
+   * Gets the next entry.
+   * @return The entry.
+   * @throws NoSuchElementException If there are no more entries.
+   */
+  @Override
+  public Map.Entry<K, E> next() {
+    Map.Entry<K, E> entry = this.getNext();
+    if (entry == null) {
+      throw new NoSuchElementException();
+    }
+    this.setNext(this.getTree().seekEntry(entry.getKey(), false, !this.isDescending()));
+    this.setLast(entry);
+    return entry;
+  }
+  /**
+   * Removes the key of the last entry returned from the tree.
+   * @throws IllegalStateException If next has not been called since the last remove.
+   */
+  @Override
+  public void remove() {
+    Map.Entry<K, E> last = this.getLast();
+    if (last == null) {
+      throw new IllegalStateException();
+    }
+    this.getTree().remove(last.getKey());
+    this.setLast(null);
+  }
+}
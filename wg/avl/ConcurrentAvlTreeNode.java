@@ -0,0 +1,232 @@
+package wg.avl;
+
+/**
+ * A node of a ConcurrentAvlTree.
+ * The links, height, value and version are volatile so that readers can follow them without locking.
+ * A reader validates a step by checking that the version of the node it came from has not changed.
+ * A node with a null value is a routing node: it only guides searches and is not an element.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class ConcurrentAvlTreeNode<K, E> {
+  /**
+   * The version of a node that has been unlinked from the tree.
+   */
+  public static final long UNLINKED = 1L;
+  /**
+   * The version bit set while a rotation shrinks the key range below a node.
+   */
+  public static final long SHRINKING = 2L;
+  /**
+   * The amount the version grows by each time a shrink completes.
+   */
+  public static final long SHRINK_COUNT_INCR = 4L;
+  /**
+   * The number of times to spin on a shrinking node before yielding.
+   */
+  public static final int SPIN_COUNT = 100;
+  /**
+   * The number of times to yield on a shrinking node before blocking on its lock.
+   */
+  public static final int YIELD_COUNT = 10;
+  /**
+   * The height.
+   */
+  private volatile int mHeight;
+  /**
+   * The key.
+   */
+  private final K mKey;
+  /**
+   * The left child.
+   */
+  private volatile ConcurrentAvlTreeNode<K, E> mLeft;
+  /**
+   * The parent.
+   */
+  private volatile ConcurrentAvlTreeNode<K, E> mParent;
+  /**
+   * The right child.
+   */
+  private volatile ConcurrentAvlTreeNode<K, E> mRight;
+  /**
+   * The encoded data, or null for a routing node.
+   */
+  private volatile Object mValue;
+  /**
+   * The version.
+   */
+  private volatile long mVersion;
+  /**
+   * Gets the height.
+   * @return The height.
+   */
+  public int getHeight() {
+    return this.mHeight;
+  }
+  /**
+   * Gets the key.
+   * @return The key.
+   */
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the left child.
+   * @return The left child.
+   */
+  public ConcurrentAvlTreeNode<K, E> getLeft() {
+    return this.mLeft;
+  }
+  /**
+   * Gets the parent.
+   * @return The parent.
+   */
+  public ConcurrentAvlTreeNode<K, E> getParent() {
+    return this.mParent;
+  }
+  /**
+   * Gets the right child.
+   * @return The right child.
+   */
+  public ConcurrentAvlTreeNode<K, E> getRight() {
+    return this.mRight;
+  }
+  /**
+   * Gets the encoded data.
+   * @return The encoded data, or null for a routing node.
+   */
+  public Object getValue() {
+    return this.mValue;
+  }
+  /**
+   * Gets the version.
+   * @return The version.
+   */
+  public long getVersion() {
+    return this.mVersion;
+  }
+  /**
+   * Sets the height.
+   * @param height The height.
+   */
+  public void setHeight(int height) {
+    this.mHeight = height;
+  }
+  /**
+   * Sets the left child.
+   * @param left The left child.
+   */
+  public void setLeft(ConcurrentAvlTreeNode<K, E> left) {
+    this.mLeft = left;
+  }
+  /**
+   * Sets the parent.
+   * @param parent The parent.
+   */
+  public void setParent(ConcurrentAvlTreeNode<K, E> parent) {
+    this.mParent = parent;
+  }
+  /**
+   * Sets the right child.
+   * @param right The right child.
+   */
+  public void setRight(ConcurrentAvlTreeNode<K, E> right) {
+    this.mRight = right;
+  }
+  /**
+   * Sets the encoded data.
+   * @param value The encoded data, or null to make this a routing node.
+   */
+  public void setValue(Object value) {
+    this.mValue = value;
+  }
+  /**
+   * Sets the version.
+   * @param version The version.
+   */
+  public void setVersion(long version) {
+    this.mVersion = version;
+  }
+  /**
+   * Creates an instance of the ConcurrentAvlTreeNode class.
+   * @param key The key.
+   * @param value The encoded data.
+   * @param parent The parent.
+   */
+  public ConcurrentAvlTreeNode(K key, Object value, ConcurrentAvlTreeNode<K, E> parent) {
+    this.mHeight = 0;
+    this.mKey = key;
+    this.mLeft = null;
+    this.mParent = parent;
+    this.mRight = null;
+    this.mValue = value;
+    this.mVersion = 0L;
+  }
+  /**
+   * Gets a child.
+   * @param isLeft True, for the left child.
+   * @return The child.
+   */
+  public ConcurrentAvlTreeNode<K, E> getChild(boolean isLeft) {
+    ConcurrentAvlTreeNode<K, E> child;
+    if (isLeft) {
+      child = this.getLeft();
+    } else {
+      child = this.getRight();
+    }
+    return child;
+  }
+  /**
+   * Indicates if a version belongs to a node that is shrinking or unlinked.
+   * @param version The version.
+   * @return True, if the node is shrinking or unlinked.
+   */
+  public static boolean isShrinkingOrUnlinked(long version) {
+    boolean isShrinkingOrUnlinked = ((version & (ConcurrentAvlTreeNode.SHRINKING | ConcurrentAvlTreeNode.UNLINKED)) != 0);
+    return isShrinkingOrUnlinked;
+  }
+  /**
+   * Indicates if this node has been unlinked from the tree.
+   * @return True, if this node is unlinked.
+   */
+  public boolean isUnlinked() {
+    boolean isUnlinked = (this.getVersion() == ConcurrentAvlTreeNode.UNLINKED);
+    return isUnlinked;
+  }
+  /**
+   * Sets a child.
+   * @param isLeft True, for the left child.
+   * @param child The child.
+   */
+  public void setChild(boolean isLeft, ConcurrentAvlTreeNode<K, E> child) {
+    if (isLeft) {
+      this.setLeft(child);
+    } else {
+      this.setRight(child);
+    }
+  }
+  /**
+   * Waits until a shrink seen in a version has completed.
+   * It spins first, then yields, and finally blocks on the lock that the rotation holds.
+   * @param version The version that was seen.
+   */
+  public void waitUntilShrinkCompleted(long version) {
+    if ((version & ConcurrentAvlTreeNode.SHRINKING) != 0) {
+      boolean done = false;
+      for (int i = 0; i < ConcurrentAvlTreeNode.SPIN_COUNT && !done; i++) {
+        done = (this.getVersion() != version);
+      }
+      for (int i = 0; i < ConcurrentAvlTreeNode.YIELD_COUNT && !done; i++) {
+        Thread.yield();
+        done = (this.getVersion() != version);
+      }
+      if (!done) {
+        synchronized (this) {
+          //The rotation holds the lock until the shrink has completed.
+        }
+      }
+    }
+  }
+}
@@ -10,9 +10,10 @@ import javax.swing.JPanel;
 
 /**
  * A class used to draw Drawable objects.
+ * Refreshing the panel schedules a repaint, so it can be driven by a RefreshListener.
  * @author Wesley Garey
  */
-public class DrawPanel extends JPanel {
+public class DrawPanel extends JPanel implements Refresher {
   /**
    * The background color.
    */
@@ -87,4 +88,11 @@ public class DrawPanel extends JPanel {
       drawable.draw(g);
     }
   }
+  /**
+   * Schedules a repaint. It may be called from any thread.
+   */
+  @Override
+  public void refresh() {
+    this.repaint();
+  }
 }
@@ -0,0 +1,790 @@
+package wg.avl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe AVL tree whose changes survive a crash.
+ * Every insert, put and remove is applied under the write lock and appended to a write-ahead log, and the call
+ * returns once the log holds it as firmly as the sync policy asks. The wait for the disk happens after the lock
+ * is released, so concurrent writers are committed together by one force rather than one force each.
+ * A checkpoint writes a snapshot of the tree and starts a new log generation, after which older files are deleted.
+ * On opening, the tree is rebuilt from the latest snapshot and the logs written after it. The directory is
+ * locked while the tree is open, so a second tree, in this process or another, cannot open it.
+ * Bulk loads, splits, concatenations and set operations are made durable by a checkpoint of their own.
+ * If the log fails, changes already applied in memory stay, but every later change throws.
+ * With duplicate keys, which of the equal elements a put or remove reaches may differ after recovery.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class DurableAvlTree<K extends Comparable, E> extends StampedAvlTree<K, E> implements Closeable {
+  /**
+   * The default interval between forces under the INTERVAL policy, in milliseconds.
+   */
+  public static final long DEFAULT_SYNC_INTERVAL = 10;
+  /**
+   * The prefix of the snapshot files.
+   */
+  protected static final String SNAPSHOT_PREFIX = "snapshot.";
+  /**
+   * The prefix of the log files.
+   */
+  protected static final String LOG_PREFIX = "wal.";
+  /**
+   * The name of the file locked while the directory is open.
+   */
+  protected static final String LOCK_NAME = "lock";
+  /**
+   * Held while checkpointing, so only one checkpoint runs at a time. It is taken before the tree lock.
+   */
+  private Object mCheckpointMonitor;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The directory of the snapshot and log files.
+   */
+  private Path mDirectory;
+  /**
+   * The locked file that keeps the directory to this tree.
+   */
+  private FileChannel mDirectoryLock;
+  /**
+   * The executor of the periodic forces and checkpoints, or null if there are none.
+   */
+  private ScheduledExecutorService mExecutor;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * The write-ahead log.
+   */
+  private AvlWriteAheadLog<K, E> mLog;
+  /**
+   * The sync policy.
+   */
+  private SyncPolicy mPolicy;
+  /**
+   * Gets the monitor held while checkpointing.
+   * @return The monitor.
+   */
+  protected Object getCheckpointMonitor() {
+    return this.mCheckpointMonitor;
+  }
+  /**
+   * Gets the codec for the data.
+   * @return The codec.
+   */
+  public AvlCodec<E> getDataCodec() {
+    return this.mDataCodec;
+  }
+  /**
+   * Gets the directory of the snapshot and log files.
+   * @return The directory.
+   */
+  public Path getDirectory() {
+    return this.mDirectory;
+  }
+  /**
+   * Gets the locked file that keeps the directory to this tree.
+   * @return The file.
+   */
+  protected FileChannel getDirectoryLock() {
+    return this.mDirectoryLock;
+  }
+  /**
+   * Gets the executor of the periodic forces and checkpoints.
+   * @return The executor, or null.
+   */
+  protected ScheduledExecutorService getExecutor() {
+    return this.mExecutor;
+  }
+  /**
+   * Gets the codec for the keys.
+   * @return The codec.
+   */
+  public AvlCodec<K> getKeyCodec() {
+    return this.mKeyCodec;
+  }
+  /**
+   * Gets the write-ahead log.
+   * @return The log.
+   */
+  public AvlWriteAheadLog<K, E> getLog() {
+    return this.mLog;
+  }
+  /**
+   * Gets the sync policy.
+   * @return The policy.
+   */
+  public SyncPolicy getPolicy() {
+    return this.mPolicy;
+  }
+  /**
+   * Creates an instance of the DurableAvlTree class, recovering the elements stored in a directory.
+   * Under the INTERVAL policy the log is forced every DEFAULT_SYNC_INTERVAL milliseconds. There are no periodic checkpoints.
+   * @param directory The directory of the snapshot and log files. It is created if needed.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @param policy The sync policy.
+   * @throws IOException If the directory is in use, or the files could not be read or are corrupt.
+   */
+  public DurableAvlTree(Path directory, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec, SyncPolicy policy) throws IOException {
+    this(new AvlTree<K, E>(), directory, keyCodec, dataCodec, policy, DEFAULT_SYNC_INTERVAL, 0);
+  }
+  /**
+   * Creates an instance of the DurableAvlTree class, recovering the elements stored in a directory.
+   * @param subj The empty tree to guard and recover into. It must not be used directly afterwards.
+   * @param directory The directory of the snapshot and log files. It is created if needed.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @param policy The sync policy.
+   * @param syncInterval The interval between forces under the INTERVAL policy, in milliseconds.
+   * @param checkpointInterval The interval between checkpoints in milliseconds, or zero for none.
+   * @throws IOException If the directory is in use, or the files could not be read or are corrupt.
+   */
+  public DurableAvlTree(AvlTree<K, E> subj, Path directory, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec, SyncPolicy policy, long syncInterval, long checkpointInterval) throws IOException {
+    super(subj);
+    Files.createDirectories(directory);
+    this.mCheckpointMonitor = new Object();
+    this.mDataCodec = dataCodec;
+    this.mDirectory = directory;
+    this.mDirectoryLock = lockDirectory(directory);
+    this.mExecutor = null;
+    this.mKeyCodec = keyCodec;
+    this.mLog = new AvlWriteAheadLog<K, E>(directory, keyCodec, dataCodec);
+    this.mPolicy = policy;
+    try {
+      this.getLog().open(this.recover());
+    } catch (IOException | RuntimeException e) {
+      this.getDirectoryLock().close();
+      throw e;
+    }
+    if (policy == SyncPolicy.INTERVAL || checkpointInterval > 0) {
+      this.mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+          Thread thread = new Thread(task, "avl-wal-" + directory.getFileName());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    if (policy == SyncPolicy.INTERVAL) {
+      this.getExecutor().scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            DurableAvlTree.this.getLog().sync();
+          } catch (IOException e) {
+            //The log keeps the failure and the next change reports it
+          }
+        }
+      }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+    }
+    if (checkpointInterval > 0) {
+      this.getExecutor().scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            DurableAvlTree.this.checkpoint();
+          } catch (IOException e) {
+            //The older files are kept, so nothing is lost and the next checkpoint tries again
+          }
+        }
+      }, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements, then checkpoints.
+   * @param keys The keys, in ascending order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void bulkLoad(final K[] keys, final E[] data) {
+    this.checkpointAfter(new Supplier<Object>() {
+      @Override
+      public Object get() {
+        DurableAvlTree.this.getSubj().bulkLoad(keys, data);
+        return null;
+      }
+    });
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements, then checkpoints.
+   * @param entries The entries, in ascending key order.
+   */
+  @Override
+  public void bulkLoad(final Iterator<? extends Map.Entry<? extends K, ? extends E>> entries) {
+    this.checkpointAfter(new Supplier<Object>() {
+      @Override
+      public Object get() {
+        DurableAvlTree.this.getSubj().bulkLoad(entries);
+        return null;
+      }
+    });
+  }
+  /**
+   * Replaces the elements of the tree with unsorted elements, then checkpoints.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void bulkLoadUnsorted(final K[] keys, final E[] data) {
+    this.checkpointAfter(new Supplier<Object>() {
+      @Override
+      public Object get() {
+        DurableAvlTree.this.getSubj().bulkLoadUnsorted(keys, data);
+        return null;
+      }
+    });
+  }
+  /**
+   * Writes a snapshot of the tree and starts a new log generation, then deletes the older files.
+   * The tree is copied under the write lock and written without it, so writers are only held up by the copy.
+   * @throws IOException If the files could not be written. The older files are then kept.
+   */
+  public void checkpoint() throws IOException {
+    synchronized (this.getCheckpointMonitor()) {
+      AvlTree<K, E> copy = new AvlTree<K, E>(this.getComparator());
+      long generation;
+      long stamp = this.getLock().writeLock();
+      try {
+        copy.bulkLoad(this.getSubj().iterator());
+        generation = this.getLog().getGeneration() + 1;
+        this.getLog().roll(generation);
+      } finally {
+        this.getLock().unlockWrite(stamp);
+      }
+      copy.writeSnapshot(getSnapshotPath(this.getDirectory(), generation), this.getKeyCodec(), this.getDataCodec());
+      this.deleteBefore(generation);
+    }
+  }
+  /**
+   * Makes a change that is not logged record by record, then checkpoints before releasing the write lock.
+   * The snapshot must be on disk before the next generation starts, or a change logged after it would be
+   * replayed without it.
+   * @param <T> The result type.
+   * @param change The change.
+   * @return The result of the change.
+   * @throws UncheckedIOException If the checkpoint could not be written.
+   */
+  protected <T> T checkpointAfter(Supplier<T> change) {
+    T result;
+    synchronized (this.getCheckpointMonitor()) {
+      long generation;
+      long stamp = this.getLock().writeLock();
+      try {
+        result = change.get();
+        generation = this.checkpointLocked();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        this.getLock().unlockWrite(stamp);
+      }
+      this.deleteQuietly(generation);
+    }
+    return result;
+  }
+  /**
+   * Makes a change that empties another tree into this tree, then checkpoints before releasing the write locks.
+   * The other tree is locked as by writeBoth.
+   * @param other The other tree.
+   * @param change The change, handed the tree to empty.
+   * @throws UncheckedIOException If the checkpoint could not be written.
+   */
+  protected void checkpointAfter(AvlTree<K, E> other, final Consumer<AvlTree<K, E>> change) {
+    synchronized (this.getCheckpointMonitor()) {
+      final long[] generation = new long[1];
+      this.writeBoth(other, new Consumer<AvlTree<K, E>>() {
+        @Override
+        public void accept(AvlTree<K, E> emptied) {
+          change.accept(emptied);
+          try {
+            generation[0] = DurableAvlTree.this.checkpointLocked();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+      this.deleteQuietly(generation[0]);
+    }
+  }
+  /**
+   * Writes a snapshot of the elements and starts the next generation of the log.
+   * The caller must hold the write lock and the checkpoint monitor.
+   * @return The new generation.
+   * @throws IOException If the snapshot could not be written or the log could not be rolled.
+   */
+  protected long checkpointLocked() throws IOException {
+    long generation = this.getLog().getGeneration() + 1;
+    this.getSubj().writeSnapshot(getSnapshotPath(this.getDirectory(), generation), this.getKeyCodec(), this.getDataCodec());
+    this.getLog().roll(generation);
+    return generation;
+  }
+  /**
+   * Stops the periodic tasks, then writes and forces the pending changes and closes the log.
+   * The elements stay readable, but later changes throw.
+   * @throws IOException If the changes could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.getExecutor() != null) {
+      this.getExecutor().shutdown();
+    }
+    try {
+      this.getLog().close();
+    } finally {
+      this.getDirectoryLock().close();
+    }
+  }
+  /**
+   * Waits until a change is committed under the sync policy.
+   * @param sequence The sequence number of the change, or zero if nothing was logged.
+   * @throws UncheckedIOException If the log has failed.
+   */
+  protected void commit(long sequence) {
+    try {
+      this.getLog().commit(sequence, this.getPolicy() == SyncPolicy.ALWAYS);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+  /**
+   * Computes new data for a key from its current data, or from null if the key is not in the tree.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if the key was removed or not added.
+   */
+  @Override
+  public E compute(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    E data;
+    long[] sequence = new long[1];
+    long stamp = this.getLock().writeLock();
+    try {
+      data = this.getSubj().compute(key, this.logBefore(sequence, function));
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence[0]);
+    return data;
+  }
+  /**
+   * Computes new data for a key that is in the tree with non-null data.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if there was none or the key was removed.
+   */
+  @Override
+  public E computeIfPresent(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    E data;
+    long[] sequence = new long[1];
+    long stamp = this.getLock().writeLock();
+    try {
+      data = this.getSubj().computeIfPresent(key, this.logBefore(sequence, function));
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence[0]);
+    return data;
+  }
+  /**
+   * Appends the elements of another tree whose keys are all at least the largest key of this tree, then checkpoints.
+   * @param other The other tree.
+   */
+  @Override
+  public void concat(AvlTree<K, E> other) {
+    this.checkpointAfter(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        DurableAvlTree.this.getSubj().concat(emptied);
+      }
+    });
+  }
+  /**
+   * Deletes the snapshot and log files of the generations before one.
+   * @param generation The first generation to keep.
+   * @throws IOException If the directory could not be listed or a file could not be deleted.
+   */
+  protected void deleteBefore(long generation) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.getDirectory())) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        long snapshot = parseGeneration(name, SNAPSHOT_PREFIX);
+        long log = parseGeneration(name, LOG_PREFIX);
+        if ((snapshot >= 0 && snapshot < generation) || (log >= 0 && log < generation)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    AvlSnapshot.syncDirectory(this.getDirectory());
+  }
+  /**
+   * Deletes the files of the generations before one, leaving them for the next checkpoint if that fails.
+   * @param generation The first generation to keep.
+   */
+  protected void deleteQuietly(long generation) {
+    try {
+      this.deleteBefore(generation);
+    } catch (IOException e) {
+      //Recovery starts from the latest snapshot, so the older files do no harm
+    }
+  }
+  /**
+   * Removes the elements whose keys are in another tree, then checkpoints.
+   * @param other The other tree.
+   */
+  @Override
+  public void difference(AvlTree<K, E> other) {
+    this.checkpointAfter(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        DurableAvlTree.this.getSubj().difference(emptied);
+      }
+    });
+  }
+  /**
+   * Gets the snapshot file of a generation, which holds the elements as they were when the generation started.
+   * @param directory The directory of the snapshot and log files.
+   * @param generation The generation.
+   * @return The file.
+   */
+  public static Path getSnapshotPath(Path directory, long generation) {
+    return directory.resolve(SNAPSHOT_PREFIX + generation);
+  }
+  /**
+   * Inserts an element into the tree based on the key.
+   * @param key The key.
+   * @param data The element.
+   */
+  @Override
+  public void insert(K key, E data) {
+    long sequence;
+    long stamp = this.getLock().writeLock();
+    try {
+      sequence = this.getLog().append(AvlWriteAheadLog.INSERT, key, data);
+      this.getSubj().insert(key, data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence);
+  }
+  /**
+   * Inserts a batch of elements in one pass over the tree. The batch is committed as one change.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void insertAll(K[] keys, E[] data) {
+    long sequence;
+    long stamp = this.getLock().writeLock();
+    try {
+      sequence = this.getLog().appendAll(AvlWriteAheadLog.INSERT, keys, data);
+      this.getSubj().insertAll(keys, data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence);
+  }
+  /**
+   * Keeps only the elements whose keys are also in another tree, then checkpoints.
+   * @param other The other tree.
+   */
+  @Override
+  public void intersection(AvlTree<K, E> other) {
+    this.checkpointAfter(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        DurableAvlTree.this.getSubj().intersection(emptied);
+      }
+    });
+  }
+  /**
+   * Locks a directory for a tree.
+   * @param directory The directory.
+   * @return The locked file. Closing it releases the lock.
+   * @throws IOException If the directory is in use or the file could not be opened.
+   */
+  protected static FileChannel lockDirectory(Path directory) throws IOException {
+    FileChannel channel = FileChannel.open(directory.resolve(LOCK_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    boolean isLocked = false;
+    try {
+      isLocked = (channel.tryLock() != null);
+    } catch (OverlappingFileLockException e) {
+      isLocked = false;
+    } finally {
+      if (!isLocked) {
+        channel.close();
+      }
+    }
+    if (!isLocked) {
+      throw new IOException("The directory is in use: " + directory);
+    }
+    return channel;
+  }
+  /**
+   * Wraps an update function so that its outcome is appended to the log before the tree applies it.
+   * If the append fails, the exception leaves the function and the tree is not changed.
+   * @param sequence Receives the sequence number to commit, or zero if nothing changes.
+   * @param function The update function.
+   * @return The wrapped function.
+   */
+  protected BiFunction<K, E, E> logBefore(final long[] sequence, final BiFunction<? super K, ? super E, ? extends E> function) {
+    BiFunction<K, E, E> logged = new BiFunction<K, E, E>() {
+      @Override
+      public E apply(K key, E current) {
+        E data = function.apply(key, current);
+        try {
+          sequence[0] = DurableAvlTree.this.logUpdate(key, data);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return data;
+      }
+    };
+    return logged;
+  }
+  /**
+   * Appends the outcome of an update to the log before the tree applies it. Call it while holding the write lock.
+   * @param key The key.
+   * @param data The data the update will set, or null if it removes the key.
+   * @return The sequence number to commit, or zero if nothing changes.
+   * @throws IOException If the change could not be appended.
+   */
+  protected long logUpdate(K key, E data) throws IOException {
+    long sequence = 0;
+    if (data != null) {
+      sequence = this.getLog().append(AvlWriteAheadLog.PUT, key, data);
+    } else if (this.getSubj().contains(key)) {
+      sequence = this.getLog().append(AvlWriteAheadLog.REMOVE, key, null);
+    }
+    return sequence;
+  }
+  /**
+   * Sets the data of a key, or combines it with the current data if there is any.
+   * @param key The key.
+   * @param data The data to set or combine.
+   * @param function The function of the current data and the given data.
+   * @return The new data, or null if the key was removed.
+   */
+  @Override
+  public E merge(K key, final E data, final BiFunction<? super E, ? super E, ? extends E> function) {
+    if (data == null) {
+      throw new NullPointerException("The data to merge must not be null.");
+    }
+    //merge is the compute whose function keeps the given data unless there is current data to combine
+    BiFunction<K, E, E> combine = new BiFunction<K, E, E>() {
+      @Override
+      public E apply(K k, E current) {
+        E merged = data;
+        if (current != null) {
+          merged = function.apply(current, data);
+        }
+        return merged;
+      }
+    };
+    E merged;
+    long[] sequence = new long[1];
+    long stamp = this.getLock().writeLock();
+    try {
+      merged = this.getSubj().compute(key, this.logBefore(sequence, combine));
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence[0]);
+    return merged;
+  }
+  /**
+   * Gets the generation in a file name.
+   * @param name The file name.
+   * @param prefix The prefix of the kind of file.
+   * @return The generation, or -1 if the name is not of that kind.
+   */
+  protected static long parseGeneration(String name, String prefix) {
+    long generation = -1;
+    if (name.startsWith(prefix)) {
+      try {
+        generation = Long.parseLong(name.substring(prefix.length()));
+      } catch (NumberFormatException e) {
+        generation = -1;
+      }
+    }
+    return generation;
+  }
+  /**
+   * Sets the data of a key, replacing the data of the first node found with the key, or inserting it.
+   * @param key The key.
+   * @param data The data.
+   * @return The previous data, or null if the key was not in the tree.
+   */
+  @Override
+  public E put(K key, E data) {
+    E previous;
+    long sequence;
+    long stamp = this.getLock().writeLock();
+    try {
+      sequence = this.getLog().append(AvlWriteAheadLog.PUT, key, data);
+      previous = this.getSubj().put(key, data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence);
+    return previous;
+  }
+  /**
+   * Sets the data of a key if the key is not in the tree or has null data.
+   * @param key The key.
+   * @param data The data.
+   * @return The current data, or null if the data was set.
+   */
+  @Override
+  public E putIfAbsent(K key, E data) {
+    E current;
+    long sequence = 0;
+    long stamp = this.getLock().writeLock();
+    try {
+      AvlTreeNode<K, E> found = this.getSubj().seekNode(key);
+      if (!this.getSubj().isNodeOf(key, found) || found.getData() == null) {
+        sequence = this.getLog().append(AvlWriteAheadLog.PUT, key, data);
+      }
+      current = this.getSubj().putIfAbsent(key, data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence);
+    return current;
+  }
+  /**
+   * Rebuilds the tree from the latest snapshot and the logs written after it, and removes leftovers of
+   * an interrupted checkpoint.
+   * @return The generation to append to.
+   * @throws IOException If the files could not be read, are corrupt, or a generation is missing.
+   */
+  protected long recover() throws IOException {
+    long snapshot = -1;
+    long firstLog = -1;
+    long lastLog = -1;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(this.getDirectory())) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        snapshot = Math.max(snapshot, parseGeneration(name, SNAPSHOT_PREFIX));
+        long log = parseGeneration(name, LOG_PREFIX);
+        if (log >= 0) {
+          if (firstLog < 0 || log < firstLog) {
+            firstLog = log;
+          }
+          lastLog = Math.max(lastLog, log);
+        }
+      }
+    }
+    long start = snapshot;
+    if (snapshot >= 0) {
+      this.getSubj().readSnapshot(getSnapshotPath(this.getDirectory(), snapshot), this.getKeyCodec(), this.getDataCodec());
+    } else {
+      start = Math.max(firstLog, 0);
+      if (start > 0) {
+        throw new IOException("The snapshot before generation " + start + " is missing: " + this.getDirectory());
+      }
+    }
+    for (long generation = start; generation <= lastLog; generation++) {
+      if (!Files.exists(AvlWriteAheadLog.getLogPath(this.getDirectory(), generation))) {
+        throw new IOException("The log of generation " + generation + " is missing: " + this.getDirectory());
+      }
+      this.getLog().replay(this.getSubj(), generation, generation == lastLog);
+    }
+    this.deleteBefore(start);
+    return Math.max(start, lastLog);
+  }
+  /**
+   * Removes an element from the tree based on it's key.
+   * @param key The key.
+   */
+  @Override
+  public void remove(K key) {
+    long sequence = 0;
+    long stamp = this.getLock().writeLock();
+    try {
+      if (this.getSubj().contains(key)) {
+        sequence = this.getLog().append(AvlWriteAheadLog.REMOVE, key, null);
+        this.getSubj().remove(key);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence);
+  }
+  /**
+   * Removes every element whose key is in a batch, in one pass over the tree. The batch is committed as one change.
+   * @param keys The keys, in any order.
+   */
+  @Override
+  public void removeAll(K[] keys) {
+    long sequence;
+    long stamp = this.getLock().writeLock();
+    try {
+      sequence = this.getLog().appendAll(AvlWriteAheadLog.REMOVE_EVERY, keys, null);
+      this.getSubj().removeAll(keys);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    this.commit(sequence);
+  }
+  /**
+   * Moves the elements whose keys are at least a key into a new tree, then checkpoints.
+   * @param key The key.
+   * @return The new tree, which is neither guarded nor durable.
+   */
+  @Override
+  public AvlTree<K, E> splitFrom(final K key) {
+    return this.checkpointAfter(new Supplier<AvlTree<K, E>>() {
+      @Override
+      public AvlTree<K, E> get() {
+        return DurableAvlTree.this.getSubj().splitFrom(key);
+      }
+    });
+  }
+  /**
+   * Adds the elements of another tree whose keys are not already in this tree, then checkpoints.
+   * @param other The other tree.
+   */
+  @Override
+  public void union(AvlTree<K, E> other) {
+    this.checkpointAfter(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        DurableAvlTree.this.getSubj().union(emptied);
+      }
+    });
+  }
+}
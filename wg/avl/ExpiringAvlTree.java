@@ -0,0 +1,499 @@
+package wg.avl;
+
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe AVL tree whose elements expire a while after they are put.
+ * Alongside the tree of keys is an index of the entries ordered by deadline, so the expired entries are always
+ * a prefix of the index. A sweep cuts that prefix off the index with one split and removes its keys from the tree
+ * in one batch, so it costs O(k + log n) for k expired entries, whatever the size of the tree.
+ * An expired entry is treated as absent as soon as its deadline passes. A lookup that meets one removes it, and
+ * the rest are removed by sweeps, either on a background thread or by calling sweep.
+ * Each sweep removes at most a batch of entries under the write lock, so it pauses other threads for at most
+ * one batch; a background sweep keeps going in batches until nothing expired is left.
+ * Point reads run under an optimistic stamp and only take the read lock if a writer got in the way,
+ * as in StampedAvlTree. Keys are unique: putting an existing key replaces its element and its deadline.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ExpiringAvlTree<K extends Comparable, E> implements Closeable, Iterable<Map.Entry<K, E>> {
+  /**
+   * The most entries a sweep removes under the lock by default.
+   */
+  public static final int DEFAULT_SWEEP_BATCH = 1024;
+  /**
+   * The time to live of an element put without one, in nanoseconds.
+   */
+  private long mDefaultTtl;
+  /**
+   * The entries by key.
+   */
+  private AvlTree<K, ExpiringAvlTreeEntry<K, E>> mEntries;
+  /**
+   * The entries by deadline, each with its key.
+   */
+  private AvlTree<ExpiringAvlTreeEntry<K, E>, K> mExpiry;
+  /**
+   * Guards both trees.
+   */
+  private StampedLock mLock;
+  /**
+   * The sequence number of the next entry.
+   */
+  private long mSequence;
+  /**
+   * The most entries a sweep removes under the lock.
+   */
+  private int mSweepBatch;
+  /**
+   * The executor of the background sweeps, or null if there are none.
+   */
+  private ScheduledExecutorService mSweeper;
+  /**
+   * Gets the number of entries, including expired entries not yet removed.
+   * @return The number.
+   */
+  public int getCount() {
+    int count = 0;
+    long stamp = this.getLock().tryOptimisticRead();
+    if (stamp != 0L) {
+      count = this.getEntries().getCount();
+    }
+    if (stamp == 0L || !this.getLock().validate(stamp)) {
+      stamp = this.getLock().readLock();
+      try {
+        count = this.getEntries().getCount();
+      } finally {
+        this.getLock().unlockRead(stamp);
+      }
+    }
+    return count;
+  }
+  /**
+   * Gets the time to live of an element put without one.
+   * @param unit The unit of the result.
+   * @return The time to live.
+   */
+  public long getDefaultTtl(TimeUnit unit) {
+    return unit.convert(this.mDefaultTtl, TimeUnit.NANOSECONDS);
+  }
+  /**
+   * Gets the entries by key.
+   * @return The tree.
+   */
+  protected AvlTree<K, ExpiringAvlTreeEntry<K, E>> getEntries() {
+    return this.mEntries;
+  }
+  /**
+   * Gets the entries by deadline.
+   * @return The tree.
+   */
+  protected AvlTree<ExpiringAvlTreeEntry<K, E>, K> getExpiry() {
+    return this.mExpiry;
+  }
+  /**
+   * Gets the lock that guards both trees.
+   * @return The lock.
+   */
+  protected StampedLock getLock() {
+    return this.mLock;
+  }
+  /**
+   * Gets the most entries a sweep removes under the lock.
+   * @return The number.
+   */
+  public int getSweepBatch() {
+    return this.mSweepBatch;
+  }
+  /**
+   * Sets the entries by deadline.
+   * @param expiry The tree.
+   */
+  protected void setExpiry(AvlTree<ExpiringAvlTreeEntry<K, E>, K> expiry) {
+    this.mExpiry = expiry;
+  }
+  /**
+   * Creates an instance of the ExpiringAvlTree class with no background sweeps.
+   * Expired elements are removed when they are looked up and when sweep is called.
+   * @param defaultTtl The time to live of an element put without one.
+   * @param unit The unit of the time to live.
+   */
+  public ExpiringAvlTree(long defaultTtl, TimeUnit unit) {
+    this(defaultTtl, 0, unit, DEFAULT_SWEEP_BATCH);
+  }
+  /**
+   * Creates an instance of the ExpiringAvlTree class.
+   * @param defaultTtl The time to live of an element put without one.
+   * @param sweepInterval The pause between background sweeps, or zero for none.
+   * @param unit The unit of the time to live and the interval.
+   * @param sweepBatch The most entries a sweep removes under the lock.
+   * @throws IllegalArgumentException If the time to live or the batch is not positive, or the interval is negative.
+   */
+  public ExpiringAvlTree(long defaultTtl, long sweepInterval, TimeUnit unit, int sweepBatch) {
+    if (defaultTtl <= 0 || sweepInterval < 0 || sweepBatch <= 0) {
+      throw new IllegalArgumentException("The time to live and the sweep batch must be positive, and the sweep interval not negative.");
+    }
+    this.mDefaultTtl = unit.toNanos(defaultTtl);
+    this.mEntries = new AvlTree<K, ExpiringAvlTreeEntry<K, E>>();
+    this.mExpiry = new AvlTree<ExpiringAvlTreeEntry<K, E>, K>();
+    this.mLock = new StampedLock();
+    this.mSequence = 0;
+    this.mSweepBatch = sweepBatch;
+    this.mSweeper = null;
+    if (sweepInterval > 0) {
+      this.mSweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+          Thread thread = new Thread(task, "avl-expiry-sweeper");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      this.mSweeper.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          int batch = ExpiringAvlTree.this.getSweepBatch();
+          while (ExpiringAvlTree.this.sweep(batch) == batch && !Thread.currentThread().isInterrupted()) {
+            //the lock is released between batches, so other threads get in
+          }
+        }
+      }, sweepInterval, sweepInterval, unit);
+    }
+  }
+  /**
+   * Stops the background sweeps. The elements stay usable and can still be swept by calling sweep.
+   */
+  @Override
+  public void close() {
+    if (this.mSweeper != null) {
+      this.mSweeper.shutdownNow();
+    }
+  }
+  /**
+   * Indicates if the tree contains a key that has not expired.
+   * @param key The key.
+   * @return True, if the tree contains the key.
+   */
+  public boolean contains(K key) {
+    return (this.findLive(key) != null);
+  }
+  /**
+   * Computes a deadline, saturating instead of overflowing for very long times to live.
+   * @param now The current time, on the System.nanoTime clock.
+   * @param ttl The time to live, in nanoseconds.
+   * @return The deadline.
+   */
+  protected static long deadline(long now, long ttl) {
+    long deadline = now + ttl;
+    if (((now ^ deadline) & (ttl ^ deadline)) < 0) {
+      deadline = Long.MAX_VALUE;
+    }
+    return deadline;
+  }
+  /**
+   * Removes an entry that has expired, if it is still the entry of its key.
+   * @param entry The entry.
+   */
+  protected void expire(ExpiringAvlTreeEntry<K, E> entry) {
+    boolean removed = false;
+    long stamp = this.getLock().writeLock();
+    try {
+      AvlTreeNode<K, ExpiringAvlTreeEntry<K, E>> node = this.getEntries().findNode(entry.getKey());
+      if (node != null && node.getData() == entry) {
+        this.getEntries().remove(entry.getKey());
+        this.getExpiry().remove(entry);
+        removed = true;
+      }
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    if (removed) {
+      this.expired(entry.getKey(), entry.getData());
+    }
+  }
+  /**
+   * Called after an element is removed because it expired, outside the lock. Does nothing by default.
+   * @param key The key.
+   * @param data The element.
+   */
+  protected void expired(K key, E data) {
+  }
+  /**
+   * Finds the entry of a key, expired or not.
+   * @param key The key.
+   * @return The entry, or null if the key is not in the tree.
+   */
+  protected ExpiringAvlTreeEntry<K, E> find(K key) {
+    ExpiringAvlTreeEntry<K, E> entry = null;
+    RuntimeException failure = null;
+    long stamp = this.getLock().tryOptimisticRead();
+    if (stamp != 0L) {
+      try {
+        //the walk is bounded, since links can change under an optimistic stamp
+        AvlTreeNode<K, ExpiringAvlTreeEntry<K, E>> node = this.getEntries().findNodeBounded(key);
+        entry = (node == null) ? null : node.getData();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+    boolean valid = (stamp != 0L && this.getLock().validate(stamp));
+    if (valid && failure != null) {
+      throw failure;
+    }
+    if (!valid) {
+      stamp = this.getLock().readLock();
+      try {
+        AvlTreeNode<K, ExpiringAvlTreeEntry<K, E>> node = this.getEntries().findNode(key);
+        entry = (node == null) ? null : node.getData();
+      } finally {
+        this.getLock().unlockRead(stamp);
+      }
+    }
+    return entry;
+  }
+  /**
+   * Finds the entry of a key that has not expired, removing the entry if it has.
+   * @param key The key.
+   * @return The entry, or null if the key is not in the tree or has expired.
+   */
+  protected ExpiringAvlTreeEntry<K, E> findLive(K key) {
+    ExpiringAvlTreeEntry<K, E> entry = this.find(key);
+    if (entry != null && entry.isExpired(this.now())) {
+      this.expire(entry);
+      entry = null;
+    }
+    return entry;
+  }
+  /**
+   * Gets the element of a key that has not expired.
+   * @param key The key.
+   * @return The element, or null if the key is not in the tree or has expired.
+   */
+  public E get(K key) {
+    ExpiringAvlTreeEntry<K, E> entry = this.findLive(key);
+    E data = null;
+    if (entry != null) {
+      data = entry.getData();
+    }
+    return data;
+  }
+  /**
+   * Gets the elements that have not expired, ordered by key.
+   * @return The elements.
+   */
+  public Object[] getInOrder() {
+    List<Map.Entry<K, E>> entries = this.snapshot();
+    Object[] collection = new Object[entries.size()];
+    for (int i = 0; i < collection.length; ++i) {
+      collection[i] = entries.get(i).getValue();
+    }
+    return collection;
+  }
+  /**
+   * Gets how long a key has left to live.
+   * @param key The key.
+   * @param unit The unit of the result.
+   * @return The time left, or -1 if the key is not in the tree or has expired.
+   */
+  public long getRemaining(K key, TimeUnit unit) {
+    ExpiringAvlTreeEntry<K, E> entry = this.findLive(key);
+    long remaining = -1;
+    if (entry != null) {
+      remaining = unit.convert(entry.getDeadline() - this.now(), TimeUnit.NANOSECONDS);
+    }
+    return remaining;
+  }
+  /**
+   * Gets an iterator over a snapshot of the entries that have not expired, in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    return this.snapshot().iterator();
+  }
+  /**
+   * Gets the current time. Overridden to drive the expiry from another clock.
+   * @return The time, on the System.nanoTime clock.
+   */
+  protected long now() {
+    return System.nanoTime();
+  }
+  /**
+   * Sets the element of a key with the default time to live.
+   * @param key The key.
+   * @param data The element.
+   * @return The previous element, or null if the key was not in the tree or had expired.
+   */
+  public E put(K key, E data) {
+    return this.put(key, data, this.mDefaultTtl, TimeUnit.NANOSECONDS);
+  }
+  /**
+   * Sets the element of a key, replacing any element and deadline it had.
+   * @param key The key.
+   * @param data The element.
+   * @param ttl The time to live.
+   * @param unit The unit of the time to live.
+   * @return The previous element, or null if the key was not in the tree or had expired.
+   * @throws IllegalArgumentException If the time to live is not positive.
+   */
+  public E put(K key, E data, long ttl, TimeUnit unit) {
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("The time to live must be positive.");
+    }
+    long now = this.now();
+    ExpiringAvlTreeEntry<K, E> previous;
+    long stamp = this.getLock().writeLock();
+    try {
+      ExpiringAvlTreeEntry<K, E> entry = new ExpiringAvlTreeEntry<K, E>(key, data, deadline(now, unit.toNanos(ttl)), this.mSequence++);
+      previous = this.getEntries().put(key, entry);
+      if (previous != null) {
+        this.getExpiry().remove(previous);
+      }
+      this.getExpiry().insert(entry, key);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    E replaced = null;
+    if (previous != null && previous.isExpired(now)) {
+      this.expired(key, previous.getData());
+    } else if (previous != null) {
+      replaced = previous.getData();
+    }
+    return replaced;
+  }
+  /**
+   * Removes an element from the tree.
+   * @param key The key of the element.
+   */
+  public void remove(K key) {
+    long stamp = this.getLock().writeLock();
+    try {
+      AvlTreeNode<K, ExpiringAvlTreeEntry<K, E>> node = this.getEntries().findNode(key);
+      if (node != null) {
+        this.getExpiry().remove(node.getData());
+        this.getEntries().remove(key);
+      }
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Copies the entries that have not expired, in key order, under the read lock.
+   * @return The entries.
+   */
+  protected List<Map.Entry<K, E>> snapshot() {
+    ArrayList<Map.Entry<K, E>> entries = new ArrayList<Map.Entry<K, E>>();
+    long now = this.now();
+    long stamp = this.getLock().readLock();
+    try {
+      for (Map.Entry<K, ExpiringAvlTreeEntry<K, E>> entry : this.getEntries()) {
+        if (!entry.getValue().isExpired(now)) {
+          entries.add(new AbstractMap.SimpleImmutableEntry<K, E>(entry.getKey(), entry.getValue().getData()));
+        }
+      }
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return entries;
+  }
+  /**
+   * Removes up to a batch of expired elements, the earliest deadlines first.
+   * The expired entries are cut off the front of the expiry index with one split and their keys removed from the
+   * tree in one pass, so the cost depends on the number removed and not on the size of the tree.
+   * @param max The most elements to remove.
+   * @return The number of elements removed.
+   */
+  @SuppressWarnings("unchecked")
+  public int sweep(int max) {
+    ArrayList<ExpiringAvlTreeEntry<K, E>> expired = new ArrayList<ExpiringAvlTreeEntry<K, E>>();
+    long now = this.now();
+    long stamp = this.getLock().writeLock();
+    try {
+      Iterator<Map.Entry<ExpiringAvlTreeEntry<K, E>, K>> entries = this.getExpiry().iterator();
+      ExpiringAvlTreeEntry<K, E> cut = null;
+      while (cut == null && entries.hasNext()) {
+        ExpiringAvlTreeEntry<K, E> entry = entries.next().getKey();
+        if (expired.size() < max && entry.isExpired(now)) {
+          expired.add(entry);
+        } else {
+          cut = entry;
+        }
+      }
+      if (!expired.isEmpty()) {
+        if (cut == null) {
+          this.setExpiry(new AvlTree<ExpiringAvlTreeEntry<K, E>, K>());
+        } else {
+          this.setExpiry(this.getExpiry().splitFrom(cut));
+        }
+        K[] keys = (K[])new Comparable[expired.size()];
+        for (int i = 0; i < keys.length; ++i) {
+          keys[i] = expired.get(i).getKey();
+        }
+        this.getEntries().removeAll(keys);
+      }
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    for (ExpiringAvlTreeEntry<K, E> entry : expired) {
+      this.expired(entry.getKey(), entry.getData());
+    }
+    return expired.size();
+  }
+  /**
+   * Gives a key that has not expired a new time to live, keeping its element.
+   * @param key The key.
+   * @param ttl The new time to live.
+   * @param unit The unit of the time to live.
+   * @return True, if the key was in the tree and had not expired.
+   * @throws IllegalArgumentException If the time to live is not positive.
+   */
+  public boolean touch(K key, long ttl, TimeUnit unit) {
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("The time to live must be positive.");
+    }
+    long now = this.now();
+    ExpiringAvlTreeEntry<K, E> stale = null;
+    boolean touched = false;
+    long stamp = this.getLock().writeLock();
+    try {
+      AvlTreeNode<K, ExpiringAvlTreeEntry<K, E>> node = this.getEntries().findNode(key);
+      if (node != null && node.getData().isExpired(now)) {
+        stale = node.getData();
+        this.getExpiry().remove(stale);
+        this.getEntries().remove(key);
+      } else if (node != null) {
+        ExpiringAvlTreeEntry<K, E> entry = new ExpiringAvlTreeEntry<K, E>(key, node.getData().getData(), deadline(now, unit.toNanos(ttl)), this.mSequence++);
+        this.getExpiry().remove(node.getData());
+        this.getEntries().put(key, entry);
+        this.getExpiry().insert(entry, key);
+        touched = true;
+      }
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    if (stale != null) {
+      this.expired(key, stale.getData());
+    }
+    return touched;
+  }
+  /**
+   * Gets a string representation of the tree.
+   * @return The number of entries, including expired entries not yet removed.
+   */
+  @Override
+  public String toString() {
+    String rep = "(count=" + this.getCount() + ")";
+    return rep;
+  }
+}
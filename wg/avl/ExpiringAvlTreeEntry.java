@@ -0,0 +1,90 @@
+package wg.avl;
+
+/**
+ * An element of an expiring AVL tree with the time it expires.
+ * Entries are never changed; putting or touching a key replaces its entry.
+ * Entries order by deadline, then by the order they were made, which is the order of the expiry index.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ExpiringAvlTreeEntry<K, E> implements Comparable<ExpiringAvlTreeEntry<K, E>> {
+  /**
+   * The element.
+   */
+  private E mData;
+  /**
+   * When the entry expires, on the System.nanoTime clock.
+   */
+  private long mDeadline;
+  /**
+   * The key.
+   */
+  private K mKey;
+  /**
+   * The order the entry was made in, which breaks ties between equal deadlines.
+   */
+  private long mSequence;
+  /**
+   * Gets the element.
+   * @return The element.
+   */
+  public E getData() {
+    return this.mData;
+  }
+  /**
+   * Gets when the entry expires.
+   * @return The deadline, on the System.nanoTime clock.
+   */
+  public long getDeadline() {
+    return this.mDeadline;
+  }
+  /**
+   * Gets the key.
+   * @return The key.
+   */
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the order the entry was made in.
+   * @return The sequence number.
+   */
+  public long getSequence() {
+    return this.mSequence;
+  }
+  /**
+   * Creates an instance of the ExpiringAvlTreeEntry class.
+   * @param key The key.
+   * @param data The element.
+   * @param deadline When the entry expires, on the System.nanoTime clock.
+   * @param sequence The order the entry was made in.
+   */
+  public ExpiringAvlTreeEntry(K key, E data, long deadline, long sequence) {
+    this.mData = data;
+    this.mDeadline = deadline;
+    this.mKey = key;
+    this.mSequence = sequence;
+  }
+  /**
+   * Compares the deadlines of two entries, then the order they were made in.
+   * @param other The other entry.
+   * @return A negative number, zero or a positive number as this entry expires before, with, or after the other.
+   */
+  @Override
+  public int compareTo(ExpiringAvlTreeEntry<K, E> other) {
+    int comparison = Long.compare(this.mDeadline, other.mDeadline);
+    if (comparison == 0) {
+      comparison = Long.compare(this.mSequence, other.mSequence);
+    }
+    return comparison;
+  }
+  /**
+   * Indicates if the entry has expired.
+   * @param now The current time, on the System.nanoTime clock.
+   * @return True, if the deadline is not after the current time.
+   */
+  public boolean isExpired(long now) {
+    return (this.mDeadline <= now);
+  }
+}
@@ -157,11 +157,9 @@ public class GraphicalAvlFrame extends JFrame implements ActionListener, MouseLi
       int num = Integer.parseInt(this.getNumTxt().getText());
       GraphicalAvlTree tree = this.getTree();
       tree.insert(num, num);
-      this.updateCb();
     } else if (src == this.getRmBtn()) {
       GraphicalAvlTree tree = this.getTree();
       tree.remove(Integer.parseInt(this.getNumTxt().getText()));
-      this.updateCb();
     }
   }
   /**
@@ -241,6 +239,8 @@ public class GraphicalAvlFrame extends JFrame implements ActionListener, MouseLi
     tree.setLoc(new Point (0, 0));
     tree.setSize(new Dimension(1500, 1000));
     canvas.addDrawable(tree);
+    //The canvas repaints whenever the tree changes, instead of on every tick.
+    tree.addListener(new RefreshListener<Integer, Integer>(canvas), true);
     this.setTree(tree);
     this.setTitle("Game of Life");
     this.setSize(1600, 1000);
@@ -272,15 +272,13 @@ public class GraphicalAvlFrame extends JFrame implements ActionListener, MouseLi
     updateTmr.stop();
   }
   /**
-   * The update callback.
+   * The update callback. The canvas is repainted by the tree's listener.
    */
   protected void updateCb() {
     Random rnd = new Random();
     GraphicalAvlTree tree = this.getTree();
     int count = rnd.nextInt(1000);
     tree.insert(count, count);
-    DrawPanel canvas = this.getCanvas();
-    canvas.repaint();
   }
   /**
    * Mouse clicked event.
@@ -4,6 +4,12 @@ package wg.avl;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Point;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 /**
  * An AVL tree that can be drawn.
@@ -74,6 +80,56 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
     this.mSize = new Dimension();
     this.mSubj = new AvlTree<K, E>();
   }
+  /**
+   * Adds a listener to the tree being represented.
+   * @param listener The listener.
+   * @param coalesce True, to hand the listener only the net change to each key in each delivery.
+   */
+  @Override
+  public void addListener(AvlTreeListener<K, E> listener, boolean coalesce) {
+    this.getSubj().addListener(listener, coalesce);
+  }
+  /**
+   * Opens a batch of changes.
+   */
+  @Override
+  public void beginBatch() {
+    this.getSubj().beginBatch();
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements.
+   * @param keys The keys, in ascending order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void bulkLoad(K[] keys, E[] data) {
+    this.getSubj().bulkLoad(keys, data);
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements.
+   * @param entries The entries, in ascending key order.
+   */
+  @Override
+  public void bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends E>> entries) {
+    this.getSubj().bulkLoad(entries);
+  }
+  /**
+   * Replaces the elements of the tree with unsorted elements.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void bulkLoadUnsorted(K[] keys, E[] data) {
+    this.getSubj().bulkLoadUnsorted(keys, data);
+  }
+  /**
+   * Appends the elements of another tree whose keys are all at least the largest key of this tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void concat(AvlTree<K, E> other) {
+    this.getSubj().concat(other);
+  }
   /**
    * Indicates if this tree contains the given key.
    * @param key The key.
@@ -83,6 +139,16 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   public boolean contains(K key) {
     return this.getSubj().contains(key);
   }
+  /**
+   * Counts the elements whose keys are within a range.
+   * @param lo The smallest key, inclusive.
+   * @param hi The largest key, inclusive.
+   * @return The number of elements.
+   */
+  @Override
+  public int countRange(K lo, K hi) {
+    return this.getSubj().countRange(lo, hi);
+  }
   /**
    * Creates a node.
    * @return The new node.
@@ -98,6 +164,73 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   protected void decrementCount() {
     this.getSubj().decrementCount();
   }
+  /**
+   * Gets an iterator over the entries from the largest key down.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> descendingIterator() {
+    return this.getSubj().descendingIterator();
+  }
+  /**
+   * Sets the data of a key, replacing the data of the first node found with the key, or inserting it.
+   * @param key The key.
+   * @param data The data.
+   * @return The previous data, or null if the key was not in the tree.
+   */
+  @Override
+  public E put(K key, E data) {
+    return this.getSubj().put(key, data);
+  }
+  /**
+   * Sets the data of a key if the key is not in the tree or has null data.
+   * @param key The key.
+   * @param data The data.
+   * @return The current data, or null if the data was set.
+   */
+  @Override
+  public E putIfAbsent(K key, E data) {
+    return this.getSubj().putIfAbsent(key, data);
+  }
+  /**
+   * Computes new data for a key from its current data, or from null if the key is not in the tree.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if the key was removed or not added.
+   */
+  @Override
+  public E compute(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    return this.getSubj().compute(key, function);
+  }
+  /**
+   * Computes new data for a key that is in the tree with non-null data.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if there was none or the key was removed.
+   */
+  @Override
+  public E computeIfPresent(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    return this.getSubj().computeIfPresent(key, function);
+  }
+  /**
+   * Sets the data of a key, or combines it with the current data if there is any.
+   * @param key The key.
+   * @param data The data to set or combine.
+   * @param function The function of the current data and the given data.
+   * @return The new data, or null if the key was removed.
+   */
+  @Override
+  public E merge(K key, E data, BiFunction<? super E, ? super E, ? extends E> function) {
+    return this.getSubj().merge(key, data, function);
+  }
+  /**
+   * Removes the elements whose keys are in another tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void difference(AvlTree<K, E> other) {
+    this.getSubj().difference(other);
+  }
   /**
    * Draws the tree.
    * @param g The graphics to draw with.
@@ -116,6 +249,30 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
       root.draw(g);
     }
   }
+  /**
+   * Closes a batch of changes.
+   */
+  @Override
+  public void endBatch() {
+    this.getSubj().endBatch();
+  }
+  /**
+   * Gets the element at a position in key order.
+   * @param index The zero-based position.
+   * @return The element.
+   */
+  @Override
+  public E get(int index) {
+    return this.getSubj().get(index);
+  }
+  /**
+   * Gets the key order.
+   * @return The comparator, or null for the natural ordering.
+   */
+  @Override
+  public Comparator<? super K> getComparator() {
+    return this.getSubj().getComparator();
+  }
   /**
    * Gets the number of elements stored in the tree.
    * @return The number of elements.
@@ -167,6 +324,15 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   protected AvlTreeNode<K, E> getRoot() {
     return this.getSubj().getRoot();
   }
+  /**
+   * Gets a view of the entries whose keys are smaller than a key.
+   * @param hi The key, exclusive.
+   * @return The view.
+   */
+  @Override
+  public AvlTreeRange<K, E> headFrom(K hi) {
+    return this.getSubj().headFrom(hi);
+  }
   /**
    * Increments the current count by one.
    */
@@ -184,15 +350,29 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
     this.getSubj().insert(key, data);
   }
   /**
-   * Recursively inserts a node.
-   * @param key The new key.
-   * @param data The new data.
-   * @param node The current node.
-   * @return The parent.
+   * Inserts a batch of elements in one pass over the tree.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void insertAll(K[] keys, E[] data) {
+    this.getSubj().insertAll(keys, data);
+  }
+  /**
+   * Keeps only the elements whose keys are also in another tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void intersection(AvlTree<K, E> other) {
+    this.getSubj().intersection(other);
+  }
+  /**
+   * Indicates if searches start from the finger.
+   * @return True, if finger search is enabled.
    */
   @Override
-  protected AvlTreeNode<K, E> insertRec(K key, E data, AvlTreeNode<K, E> node) {
-    return this.getSubj().insertRec(key, data, node);
+  public boolean isFingerEnabled() {
+    return this.getSubj().isFingerEnabled();
   }
   /**
    * Indicates if the tree is empty or not.
@@ -202,6 +382,33 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   public boolean isEmpty() {
     return this.getSubj().isEmpty();
   }
+  /**
+   * Gets the number of elements whose keys are smaller than a key.
+   * @param key The key.
+   * @return The number of elements.
+   */
+  @Override
+  public int rank(K key) {
+    return this.getSubj().rank(key);
+  }
+  /**
+   * Gets a lazy iterator over the entries in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    return this.getSubj().iterator();
+  }
+  /**
+   * Gets a view of the entries whose keys are within a range.
+   * @param lo The smallest key, inclusive.
+   * @param hi The largest key, exclusive.
+   * @return The view.
+   */
+  @Override
+  public AvlTreeRange<K, E> range(K lo, K hi) {
+    return this.getSubj().range(lo, hi);
+  }
   /**
    * Removes an element from the tree based on it's key.
    * @param key The key.
@@ -211,14 +418,30 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
     this.getSubj().remove(key);
   }
   /**
-   * Recursively removes a node.
-   * @param key The key to search for.
-   * @param node The current node.
-   * @return The parent.
+   * Removes a listener from the tree being represented.
+   * @param listener The listener.
+   * @return True, if the listener was found.
+   */
+  @Override
+  public boolean removeListener(AvlTreeListener<K, E> listener) {
+    return this.getSubj().removeListener(listener);
+  }
+  /**
+   * Removes every element whose key is in a batch, in one pass over the tree.
+   * @param keys The keys, in any order.
    */
   @Override
-  protected AvlTreeNode<K, E> removeRec(K key, AvlTreeNode<K, E> node) {
-    return super.removeRec(key, node); //To change body of generated methods, choose Tools | Templates.
+  public void removeAll(K[] keys) {
+    this.getSubj().removeAll(keys);
+  }
+  /**
+   * Gets the key at a position in key order.
+   * @param index The zero-based position.
+   * @return The key.
+   */
+  @Override
+  public K select(int index) {
+    return this.getSubj().select(index);
   }
   /**
    * Sets the current count.
@@ -228,6 +451,22 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   protected void setCount(int count) {
     this.getSubj().setCount(count);
   }
+  /**
+   * Sets whether searches start from the finger.
+   * @param fingerEnabled True, to enable finger search.
+   */
+  @Override
+  public void setFingerEnabled(boolean fingerEnabled) {
+    this.getSubj().setFingerEnabled(fingerEnabled);
+  }
+  /**
+   * Sets the root of the tree being represented to the result of a split or join.
+   * @param root The new root, or null.
+   */
+  @Override
+  protected void setJoined(AvlTreeNode<K, E> root) {
+    this.getSubj().setJoined(root);
+  }
   /**
    * Sets the root node.
    * @param root The root node.
@@ -236,6 +475,40 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   protected void setRoot(AvlTreeNode<K, E> root) {
     this.getSubj().setRoot(root);
   }
+  /**
+   * Moves the elements whose keys are at least a key into a new tree.
+   * @param key The key.
+   * @return The new tree.
+   */
+  @Override
+  public AvlTree<K, E> splitFrom(K key) {
+    return this.getSubj().splitFrom(key);
+  }
+  /**
+   * Gets a spliterator over the entries that splits at sub-tree boundaries.
+   * @return The spliterator.
+   */
+  @Override
+  public Spliterator<Map.Entry<K, E>> spliterator() {
+    return this.getSubj().spliterator();
+  }
+  /**
+   * Gets a sequential stream over the entries in key order.
+   * @return The stream.
+   */
+  @Override
+  public Stream<Map.Entry<K, E>> stream() {
+    return this.getSubj().stream();
+  }
+  /**
+   * Gets a view of the entries whose keys are at least a key.
+   * @param lo The key, inclusive.
+   * @return The view.
+   */
+  @Override
+  public AvlTreeRange<K, E> tailFrom(K lo) {
+    return this.getSubj().tailFrom(lo);
+  }
   /**
    * Gets the string representation of the tree.
    * @return The string representation.
@@ -244,4 +517,12 @@ public class GraphicalAvlTree<K extends Comparable, E> extends AvlTree<K, E> imp
   public String toString() {
     return this.getSubj().toString();
   }
+  /**
+   * Adds the elements of another tree whose keys are not already in this tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void union(AvlTree<K, E> other) {
+    this.getSubj().union(other);
+  }
 }
@@ -196,6 +196,14 @@ public class GraphicalAvlTreeNode<K, E> extends AvlTreeNode<K, E> implements Dra
   public int getLeftHeight() {
     return this.getSubj().getLeftHeight();
   }
+  /**
+   * Gets the number of nodes in the left tree.
+   * @return The number of nodes.
+   */
+  @Override
+  public int getLeftTreeSize() {
+    return this.getSubj().getLeftTreeSize();
+  }
   /**
    * Gets the parent node.
    * @return 
@@ -228,6 +236,22 @@ public class GraphicalAvlTreeNode<K, E> extends AvlTreeNode<K, E> implements Dra
   public int getRightHeight() {
     return this.getSubj().getRightHeight();
   }
+  /**
+   * Gets the number of nodes in the right tree.
+   * @return The number of nodes.
+   */
+  @Override
+  public int getRightTreeSize() {
+    return this.getSubj().getRightTreeSize();
+  }
+  /**
+   * Gets the number of nodes in the sub-tree.
+   * @return The number of nodes.
+   */
+  @Override
+  public int getTreeSize() {
+    return this.getSubj().getTreeSize();
+  }
   /**
    * Indicates if this nodes has both children.
    * @return True, if this node has both children.
@@ -362,6 +386,14 @@ public class GraphicalAvlTreeNode<K, E> extends AvlTreeNode<K, E> implements Dra
   public void setRight(AvlTreeNode<K, E> right) {
     this.getSubj().setRight(right);
   }
+  /**
+   * Sets the number of nodes in the sub-tree.
+   * @param treeSize The number of nodes.
+   */
+  @Override
+  public void setTreeSize(int treeSize) {
+    this.getSubj().setTreeSize(treeSize);
+  }
   /**
    * Gets the string representation.
    * @return The string.
@@ -377,4 +409,11 @@ public class GraphicalAvlTreeNode<K, E> extends AvlTreeNode<K, E> implements Dra
   public void updateHeight() {
     this.getSubj().updateHeight();
   }
+  /**
+   * Updates the number of nodes in the sub-tree.
+   */
+  @Override
+  public void updateTreeSize() {
+    this.getSubj().updateTreeSize();
+  }
 }
@@ -0,0 +1,251 @@
+package wg.avl;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An AVL tree that counts its comparisons, searches, rotations and retrace steps.
+ * The counters are striped, so readers sharing the tree, as under a StampedAvlTree, do not contend on them.
+ * Only this class pays for the counting; a plain AvlTree is not slowed down.
+ * Searches are the lookups made by contains, get and remove. Rotations and retraces are those made
+ * by insertions and removals, not by bulk loads, joins or set operations.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class InstrumentedAvlTree<K, E> extends AvlTree<K, E> {
+  /**
+   * The number of buckets in the path length histogram. An AVL tree of 2^31 elements is at most 43 high.
+   */
+  public static final int PATH_LENGTH_BUCKETS = 48;
+  /**
+   * The number of key comparisons.
+   */
+  private LongAdder mComparisons;
+  /**
+   * The number of double rotations.
+   */
+  private LongAdder mDoubleRotations;
+  /**
+   * The number of nodes whose heights were fixed after insertions.
+   */
+  private LongAdder mInsertRetraceSteps;
+  /**
+   * The number of nodes inserted.
+   */
+  private LongAdder mInserts;
+  /**
+   * The number of searches of each path length.
+   */
+  private LongAdder[] mPathLengths;
+  /**
+   * The number of nodes removed.
+   */
+  private LongAdder mRemovals;
+  /**
+   * The number of nodes whose heights were fixed after removals.
+   */
+  private LongAdder mRemoveRetraceSteps;
+  /**
+   * The number of single rotations.
+   */
+  private LongAdder mSingleRotations;
+  /**
+   * Creates an instance of the InstrumentedAvlTree class.
+   */
+  public InstrumentedAvlTree() {
+    this(null);
+  }
+  /**
+   * Creates an instance of the InstrumentedAvlTree class.
+   * @param comparator The comparator that orders the keys, or null to use their natural order.
+   */
+  public InstrumentedAvlTree(Comparator<? super K> comparator) {
+    super(comparator);
+    this.mComparisons = new LongAdder();
+    this.mDoubleRotations = new LongAdder();
+    this.mInsertRetraceSteps = new LongAdder();
+    this.mInserts = new LongAdder();
+    this.mPathLengths = new LongAdder[PATH_LENGTH_BUCKETS];
+    for (int i = 0; i < PATH_LENGTH_BUCKETS; ++i) {
+      this.mPathLengths[i] = new LongAdder();
+    }
+    this.mRemovals = new LongAdder();
+    this.mRemoveRetraceSteps = new LongAdder();
+    this.mSingleRotations = new LongAdder();
+  }
+  /**
+   * Creates a node for an element and links it into the tree, counting the insertion.
+   * @param key The key of the element.
+   * @param data The element.
+   * @param parent The parent, or null if the tree is empty.
+   * @return The new node.
+   */
+  @Override
+  protected AvlTreeNode<K, E> attachNode(K key, E data, AvlTreeNode<K, E> parent) {
+    this.mInserts.increment();
+    return super.attachNode(key, data, parent);
+  }
+  /**
+   * Compares two keys, counting the comparison.
+   * @param a The first key.
+   * @param b The second key.
+   * @return A negative number, zero, or a positive number, as the first key is smaller, equal or larger.
+   */
+  @Override
+  protected int compare(K a, K b) {
+    this.mComparisons.increment();
+    return super.compare(a, b);
+  }
+  /**
+   * Takes a snapshot of the statistics.
+   * The counters are read one at a time, so a snapshot taken while the tree changes may be slightly inconsistent.
+   * @param measureDepth True, to also measure the average depth of a node. This visits every node,
+   * so it must not run while the tree changes.
+   * @return The snapshot.
+   */
+  public AvlTreeStats getStats(boolean measureDepth) {
+    AvlTreeStats stats = new AvlTreeStats();
+    int count = this.getCount();
+    long[] pathLengths = new long[PATH_LENGTH_BUCKETS];
+    for (int i = 0; i < PATH_LENGTH_BUCKETS; ++i) {
+      pathLengths[i] = this.mPathLengths[i].sum();
+    }
+    long searches = 0;
+    for (long searchCount : pathLengths) {
+      searches += searchCount;
+    }
+    if (measureDepth && count > 0) {
+      //the depths of all nodes sum to the sizes of all sub-trees, less one for each node itself
+      long depths = this.sumTreeSizes(this.getRoot()) - count;
+      stats.setAverageDepth((double)depths / count);
+    }
+    stats.setComparisons(this.mComparisons.sum());
+    stats.setCount(count);
+    stats.setDoubleRotations(this.mDoubleRotations.sum());
+    stats.setHeight(this.heightOf(this.getRoot()));
+    stats.setInsertRetraceSteps(this.mInsertRetraceSteps.sum());
+    stats.setInserts(this.mInserts.sum());
+    stats.setMaxHeight(InstrumentedAvlTree.maxHeight(count));
+    stats.setMinHeight(InstrumentedAvlTree.minHeight(count));
+    stats.setPathLengths(pathLengths);
+    stats.setRemovals(this.mRemovals.sum());
+    stats.setRemoveRetraceSteps(this.mRemoveRetraceSteps.sum());
+    stats.setSearches(searches);
+    stats.setSingleRotations(this.mSingleRotations.sum());
+    return stats;
+  }
+  /**
+   * Gets the largest height an AVL tree can have.
+   * The sparsest AVL tree of height h has one node more than the sparsest trees of heights h - 1 and h - 2 together.
+   * @param count The number of elements.
+   * @return The height, or -1 if there are no elements.
+   */
+  protected static int maxHeight(int count) {
+    int height = -1;
+    long sparsest = 0;
+    long next = 1;
+    while (next <= count) {
+      long swap = next;
+      next = sparsest + next + 1;
+      sparsest = swap;
+      ++height;
+    }
+    return height;
+  }
+  /**
+   * Gets the smallest height a binary tree can have.
+   * @param count The number of elements.
+   * @return The height, or -1 if there are no elements.
+   */
+  protected static int minHeight(int count) {
+    int height = 31 - Integer.numberOfLeadingZeros(count);
+    return height;
+  }
+  /**
+   * Re-balances the sub-tree of a node, counting the rotations.
+   * @param node The node.
+   * @return The new root of the sub-tree.
+   */
+  @Override
+  protected AvlTreeNode<K, E> rebalanceNode(AvlTreeNode<K, E> node) {
+    boolean isDouble = false;
+    if (node.isLeftHeavy()) {
+      isDouble = (node.getLeft().getLeftHeight() < node.getLeft().getRightHeight());
+    } else if (node.isRightHeavy()) {
+      isDouble = (node.getRight().getRightHeight() < node.getRight().getLeftHeight());
+    }
+    if (isDouble) {
+      this.mDoubleRotations.increment();
+    } else {
+      this.mSingleRotations.increment();
+    }
+    return super.rebalanceNode(node);
+  }
+  /**
+   * Unlinks a node from the tree, counting the removal.
+   * @param node The node to remove.
+   */
+  @Override
+  protected void removeNode(AvlTreeNode<K, E> node) {
+    this.mRemovals.increment();
+    super.removeNode(node);
+  }
+  /**
+   * Sets every counter back to zero.
+   */
+  public void resetStats() {
+    this.mComparisons.reset();
+    this.mDoubleRotations.reset();
+    this.mInsertRetraceSteps.reset();
+    this.mInserts.reset();
+    for (LongAdder pathLength : this.mPathLengths) {
+      pathLength.reset();
+    }
+    this.mRemovals.reset();
+    this.mRemoveRetraceSteps.reset();
+    this.mSingleRotations.reset();
+  }
+  /**
+   * Walks up from a node after an insertion, counting the nodes whose heights were fixed.
+   * @param node The parent of the inserted node.
+   * @return The number of nodes whose heights were fixed.
+   */
+  @Override
+  protected int retraceInsert(AvlTreeNode<K, E> node) {
+    int steps = super.retraceInsert(node);
+    this.mInsertRetraceSteps.add(steps);
+    return steps;
+  }
+  /**
+   * Walks up from a node after a removal, counting the nodes whose heights were fixed.
+   * @param node The parent of the unlinked node.
+   * @return The number of nodes whose heights were fixed.
+   */
+  @Override
+  protected int retraceRemove(AvlTreeNode<K, E> node) {
+    int steps = super.retraceRemove(node);
+    this.mRemoveRetraceSteps.add(steps);
+    return steps;
+  }
+  /**
+   * Counts a search by the number of nodes it visited.
+   * @param steps The number of nodes the search visited.
+   */
+  @Override
+  protected void searched(int steps) {
+    this.mPathLengths[Math.min(steps, PATH_LENGTH_BUCKETS - 1)].increment();
+  }
+  /**
+   * Sums the sizes of every sub-tree below and including a node.
+   * @param node The root of the sub-tree, or null.
+   * @return The sum.
+   */
+  protected long sumTreeSizes(AvlTreeNode<K, E> node) {
+    long sum = 0;
+    if (node != null) {
+      sum = node.getTreeSize() + this.sumTreeSizes(node.getLeft()) + this.sumTreeSizes(node.getRight());
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,53 @@
+package wg.avl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A codec for Integer values that writes the difference from the previous value as a zig-zag varint.
+ * Keys in a snapshot are sorted, so dense keys take a single byte each. Without a previous value,
+ * such as for data, the value itself is written as a zig-zag varint.
+ * @author Wesley Garey
+ */
+public class IntDeltaCodec implements AvlCodec<Integer> {
+  /**
+   * Creates an instance of the IntDeltaCodec class.
+   */
+  public IntDeltaCodec() {
+  }
+  /**
+   * Reads a value.
+   * @param in The buffer, positioned at the value.
+   * @param previous The value read before this one, or null if there is none.
+   * @return The value.
+   * @throws IOException If the value is malformed.
+   */
+  @Override
+  public Integer read(ByteBuffer in, Integer previous) throws IOException {
+    long delta = AvlSnapshot.decodeZigZag(AvlSnapshot.readVarLong(in));
+    long value = delta;
+    if (previous != null) {
+      value += previous;
+    }
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new IOException("Value out of range: " + value);
+    }
+    return (int)value;
+  }
+  /**
+   * Writes a value.
+   * @param out The output.
+   * @param previous The value written before this one, or null if there is none.
+   * @param value The value.
+   * @throws IOException If the value could not be written.
+   */
+  @Override
+  public void write(DataOutput out, Integer previous, Integer value) throws IOException {
+    long delta = value;
+    if (previous != null) {
+      delta -= previous;
+    }
+    AvlSnapshot.writeVarLong(out, AvlSnapshot.encodeZigZag(delta));
+  }
+}
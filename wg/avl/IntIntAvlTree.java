@@ -0,0 +1,394 @@
+
+package wg.avl;
+
+import java.util.NoSuchElementException;
+
+/**
+ * An AVL tree with int keys and int data.
+ * The keys are stored unboxed and compared directly.
+ * @author Wesley Garey
+ */
+public class IntIntAvlTree {
+  /**
+   * The number of elements in the tree.
+   */
+  private int mCount;
+  /**
+   * The root node.
+   */
+  private IntIntAvlTreeNode mRoot;
+  /**
+   * Gets the number of elements in the tree.
+   * @return The number.
+   */
+  public int getCount() {
+    return this.mCount;
+  }
+  /**
+   * Gets the root node.
+   * @return The root node.
+   */
+  protected IntIntAvlTreeNode getRoot() {
+    return this.mRoot;
+  }
+  /**
+   * Sets the number of elements in the tree.
+   * @param count The number.
+   */
+  protected void setCount(int count) {
+    this.mCount = count;
+  }
+  /**
+   * Sets the root node.
+   * @param root The root node.
+   */
+  protected void setRoot(IntIntAvlTreeNode root) {
+    this.mRoot = root;
+  }
+  /**
+   * Creates an instance of the IntIntAvlTree class.
+   */
+  public IntIntAvlTree() {
+    this.mCount = 0;
+    this.mRoot = null;
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements in linear time.
+   * @param keys The keys, in ascending order.
+   * @param data The elements, in the same order as the keys.
+   * @throws IllegalArgumentException If the arrays differ in length or the keys are not sorted.
+   */
+  public void bulkLoad(int[] keys, int[] data) {
+    if (keys.length != data.length) {
+      throw new IllegalArgumentException("There are " + keys.length + " keys but " + data.length + " elements.");
+    }
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i - 1] > keys[i]) {
+        throw new IllegalArgumentException("The keys are not sorted at index " + i + ".");
+      }
+    }
+    this.setRoot(this.buildTree(keys, data, 0, keys.length));
+    this.setCount(keys.length);
+  }
+  /**
+   * Recursively builds a balanced sub-tree from a sorted run of elements.
+   * @param keys The sorted keys.
+   * @param data The elements.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @return The root of the sub-tree, or null if the run is empty.
+   */
+  protected IntIntAvlTreeNode buildTree(int[] keys, int[] data, int lo, int hi) {
+    IntIntAvlTreeNode root = null;
+    if (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      IntIntAvlTreeNode left = this.buildTree(keys, data, lo, mid);
+      IntIntAvlTreeNode right = this.buildTree(keys, data, mid + 1, hi);
+      root = this.createNode();
+      root.setKey(keys[mid]);
+      root.setData(data[mid]);
+      root.setLeft(left);
+      root.setRight(right);
+      if (left != null) {
+        left.setParent(root);
+      }
+      if (right != null) {
+        right.setParent(root);
+      }
+      root.updateHeight();
+    }
+    return root;
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key to search for.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(int key) {
+    boolean contains = (this.findNode(key) != null);
+    return contains;
+  }
+  /**
+   * Creates a new node.
+   * @return The new node.
+   */
+  protected IntIntAvlTreeNode createNode() {
+     return new IntIntAvlTreeNode();
+  }
+  /**
+   * Decreases the element count by one.
+   */
+  protected void decrementCount() {
+    this.setCount(this.getCount() - 1);
+  }
+  /**
+   * Gets the collection of elements in order.
+   * @return The collection.
+   */
+  public int[] getInOrder() {
+    int index = 0;
+    int count = this.getCount();
+    IntIntAvlTreeNode root = this.getRoot();
+    int[] collection = new int[count];
+    this.getInOrderRec(root, index, collection);
+    return collection;
+  }
+  /**
+   * Recursively gets each element in the tree.
+   * @param node The current node.
+   * @param index The current index.
+   * @param collection The collection.
+   * @return The new index value.
+   */
+  protected int getInOrderRec(IntIntAvlTreeNode node, int index, int[] collection) {
+    if (node != null) {
+      index = this.getInOrderRec(node.getLeft(), index, collection);
+      collection[index++] = node.getData();
+      index = this.getInOrderRec(node.getRight(), index, collection);
+    }
+    return index;
+  }
+  /**
+   * Gets the collection of keys in order.
+   * @return The collection.
+   */
+  public int[] getKeysInOrder() {
+    int index = 0;
+    int count = this.getCount();
+    IntIntAvlTreeNode root = this.getRoot();
+    int[] keys = new int[count];
+    this.getKeysInOrderRec(root, index, keys);
+    return keys;
+  }
+  /**
+   * Recursively gets each key in the tree.
+   * @param node The current node.
+   * @param index The current index.
+   * @param keys The collection of keys.
+   * @return The new index value.
+   */
+  protected int getKeysInOrderRec(IntIntAvlTreeNode node, int index, int[] keys) {
+    if (node != null) {
+      index = this.getKeysInOrderRec(node.getLeft(), index, keys);
+      keys[index++] = node.getKey();
+      index = this.getKeysInOrderRec(node.getRight(), index, keys);
+    }
+    return index;
+  }
+  /**
+   * Gets the smallest element
+   * @return The smallest element.
+   * @throws NoSuchElementException If the tree is empty.
+   */
+  public int getMin() {
+    IntIntAvlTreeNode temp = this.getRoot();
+    if (this.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    while (temp.getLeft() != null) {
+      temp = temp.getLeft();
+    }
+    int min = temp.getData();
+    return min;
+  }
+  /**
+   * The largest element.
+   * @return The element.
+   * @throws NoSuchElementException If the tree is empty.
+   */
+  public int getMax() {
+    IntIntAvlTreeNode temp = this.getRoot();
+    if (this.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    while (temp.getRight() != null) {
+      temp = temp.getRight();
+    }
+    int max = temp.getData();
+    return max;
+  }
+  /**
+   * Increases the element count by one.
+   */
+  protected void incrementCount() {
+    this.setCount(this.getCount() + 1);
+  }
+  /**
+   * Indicates if the tree is empty.
+   * @return True, if the tree is empty.
+   */
+  public boolean isEmpty() {
+    int count = this.getCount();
+    boolean isEmpty = (count == 0);
+    return isEmpty;
+  }
+  /**
+   * Inserts an element into the tree.
+   * @param key The key of the element.
+   * @param data The element.
+   */
+  public void insert(int key, int data) {
+    boolean isLeft = false;
+    IntIntAvlTreeNode parent = null;
+    IntIntAvlTreeNode temp = this.getRoot();
+    while (temp != null) {
+      parent = temp;
+      isLeft = (key < temp.getKey());
+      if (isLeft) {
+        temp = temp.getLeft();
+      } else {
+        temp = temp.getRight();
+      }
+    }
+    IntIntAvlTreeNode node = this.createNode();
+    node.setKey(key);
+    node.setData(data);
+    this.insertNode(node, parent, isLeft);
+  }
+  /**
+   * Links a new node into the tree below the given parent and restores the balance.
+   * @param node The new node.
+   * @param parent The parent, or null if the tree is empty.
+   * @param isLeft True, if the node becomes the left child of the parent.
+   */
+  protected void insertNode(IntIntAvlTreeNode node, IntIntAvlTreeNode parent, boolean isLeft) {
+    node.setLeft(null);
+    node.setRight(null);
+    node.setParent(parent);
+    node.updateHeight();
+    if (parent == null) {
+      this.setRoot(node);
+    } else if (isLeft) {
+      parent.setLeft(node);
+    } else {
+      parent.setRight(node);
+    }
+    this.incrementCount();
+    this.retraceInsert(parent);
+  }
+  /**
+   * Finds the first node on the search path that has the given key.
+   * @param key The key to search for.
+   * @return The node, or null if the key is not in the tree.
+   */
+  protected IntIntAvlTreeNode findNode(int key) {
+    IntIntAvlTreeNode node = null;
+    IntIntAvlTreeNode temp = this.getRoot();
+    while (temp != null && node == null) {
+      int tempKey = temp.getKey();
+      if (key < tempKey) {
+        temp = temp.getLeft();
+      } else if (key > tempKey) {
+        temp = temp.getRight();
+      } else {
+        node = temp;
+      }
+    }
+    return node;
+  }
+  /**
+   * Removes an element from the tree.
+   * @param key The key of the element.
+   */
+  public void remove(int key) {
+    IntIntAvlTreeNode node = this.findNode(key);
+    if (node != null) {
+      this.removeNode(node);
+    }
+  }
+  /**
+   * Unlinks a node from the tree and restores the balance.
+   * A node with two children takes the key and data of its predecessor, and the predecessor is unlinked instead.
+   * @param node The node to remove.
+   */
+  protected void removeNode(IntIntAvlTreeNode node) {
+    if (node.hasBoth()) {
+      IntIntAvlTreeNode predecessor = node.getPredecessor();
+      node.setKey(predecessor.getKey());
+      node.setData(predecessor.getData());
+      node = predecessor;
+    }
+    IntIntAvlTreeNode child = node.getLeft();
+    if (child == null) {
+      child = node.getRight();
+    }
+    IntIntAvlTreeNode parent = node.getParent();
+    if (child != null) {
+      child.setParent(parent);
+    }
+    if (parent == null) {
+      this.setRoot(child);
+    } else if (node.isLeft()) {
+      parent.setLeft(child);
+    } else {
+      parent.setRight(child);
+    }
+    node.setLeft(null);
+    node.setParent(null);
+    node.setRight(null);
+    this.decrementCount();
+    this.retraceRemove(parent);
+  }
+  /**
+   * Walks up from a node after an insertion, stopping once a subtree keeps its height.
+   * @param node The parent of the inserted node.
+   */
+  protected void retraceInsert(IntIntAvlTreeNode node) {
+    boolean done = false;
+    while (node != null && !done) {
+      IntIntAvlTreeNode parent = node.getParent();
+      int height = node.getHeight();
+      node.updateHeight();
+      if (node.isLeftHeavy() || node.isRightHeavy()) {
+        this.rebalanceNode(node);
+        done = true;
+      } else if (node.getHeight() == height) {
+        done = true;
+      }
+      node = parent;
+    }
+  }
+  /**
+   * Walks up from a node after a removal, stopping once a subtree keeps its height.
+   * @param node The parent of the unlinked node.
+   */
+  protected void retraceRemove(IntIntAvlTreeNode node) {
+    boolean done = false;
+    while (node != null && !done) {
+      IntIntAvlTreeNode parent = node.getParent();
+      int height = node.getHeight();
+      node.updateHeight();
+      IntIntAvlTreeNode root = node;
+      if (node.isLeftHeavy() || node.isRightHeavy()) {
+        root = this.rebalanceNode(node);
+      }
+      done = (root.getHeight() == height);
+      node = parent;
+    }
+  }
+  /**
+   * Re-balances the sub-tree of a node and updates the root of the tree if needed.
+   * @param node The node.
+   * @return The new root of the sub-tree.
+   */
+  protected IntIntAvlTreeNode rebalanceNode(IntIntAvlTreeNode node) {
+    IntIntAvlTreeNode root = node.rebalance();
+    if (!root.hasParent()) {
+      this.setRoot(root);
+    }
+    return root;
+  }
+  /**
+   * Gets the string representation of the tree.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    String rep = "(empty)";
+    IntIntAvlTreeNode root = this.getRoot();
+    if (!this.isEmpty()) {
+      rep = root.toString();
+    }
+    return rep;
+  }
+}
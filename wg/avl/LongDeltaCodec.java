@@ -0,0 +1,49 @@
+package wg.avl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A codec for Long values that writes the difference from the previous value as a zig-zag varint.
+ * The difference wraps around on overflow, which the reader undoes, so every pair of values round-trips.
+ * Without a previous value, such as for data, the value itself is written as a zig-zag varint.
+ * @author Wesley Garey
+ */
+public class LongDeltaCodec implements AvlCodec<Long> {
+  /**
+   * Creates an instance of the LongDeltaCodec class.
+   */
+  public LongDeltaCodec() {
+  }
+  /**
+   * Reads a value.
+   * @param in The buffer, positioned at the value.
+   * @param previous The value read before this one, or null if there is none.
+   * @return The value.
+   * @throws IOException If the value is malformed.
+   */
+  @Override
+  public Long read(ByteBuffer in, Long previous) throws IOException {
+    long value = AvlSnapshot.decodeZigZag(AvlSnapshot.readVarLong(in));
+    if (previous != null) {
+      value += previous;
+    }
+    return value;
+  }
+  /**
+   * Writes a value.
+   * @param out The output.
+   * @param previous The value written before this one, or null if there is none.
+   * @param value The value.
+   * @throws IOException If the value could not be written.
+   */
+  @Override
+  public void write(DataOutput out, Long previous, Long value) throws IOException {
+    long delta = value;
+    if (previous != null) {
+      delta -= previous;
+    }
+    AvlSnapshot.writeVarLong(out, AvlSnapshot.encodeZigZag(delta));
+  }
+}
@@ -0,0 +1,106 @@
+package wg.avl;
+
+/**
+ * Storage for the nodes of an ArenaAvlTree, addressed by int node id.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public interface NodeArena<K, E> {
+  /**
+   * The id used for a missing node.
+   */
+  public static final int NIL = -1;
+  /**
+   * Allocates a node, reusing a freed slot if there is one.
+   * The new node has no children, no parent and a height of zero.
+   * @return The node id.
+   */
+  public int allocate();
+  /**
+   * Removes all nodes.
+   */
+  public void clear();
+  /**
+   * Returns a node to the free list.
+   * @param id The node id.
+   */
+  public void free(int id);
+  /**
+   * Gets the number of slots that can be used without growing.
+   * @return The capacity.
+   */
+  public int getCapacity();
+  /**
+   * Gets the data of a node.
+   * @param id The node id.
+   * @return The data.
+   */
+  public E getData(int id);
+  /**
+   * Gets the height of a node.
+   * @param id The node id.
+   * @return The height.
+   */
+  public int getHeight(int id);
+  /**
+   * Gets the key of a node.
+   * @param id The node id.
+   * @return The key.
+   */
+  public K getKey(int id);
+  /**
+   * Gets the left child of a node.
+   * @param id The node id.
+   * @return The left child id.
+   */
+  public int getLeft(int id);
+  /**
+   * Gets the parent of a node.
+   * @param id The node id.
+   * @return The parent id.
+   */
+  public int getParent(int id);
+  /**
+   * Gets the right child of a node.
+   * @param id The node id.
+   * @return The right child id.
+   */
+  public int getRight(int id);
+  /**
+   * Sets the data of a node.
+   * @param id The node id.
+   * @param data The data.
+   */
+  public void setData(int id, E data);
+  /**
+   * Sets the height of a node.
+   * @param id The node id.
+   * @param height The height.
+   */
+  public void setHeight(int id, int height);
+  /**
+   * Sets the key of a node.
+   * @param id The node id.
+   * @param key The key.
+   */
+  public void setKey(int id, K key);
+  /**
+   * Sets the left child of a node.
+   * @param id The node id.
+   * @param left The left child id.
+   */
+  public void setLeft(int id, int left);
+  /**
+   * Sets the parent of a node.
+   * @param id The node id.
+   * @param parent The parent id.
+   */
+  public void setParent(int id, int parent);
+  /**
+   * Sets the right child of a node.
+   * @param id The node id.
+   * @param right The right child id.
+   */
+  public void setRight(int id, int right);
+}
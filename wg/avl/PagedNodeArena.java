@@ -0,0 +1,524 @@
+package wg.avl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A node arena that keeps whole nodes, keys and data included, in fixed-size records in a memory-mapped file,
+ * so a tree can hold more nodes than fit in the heap.
+ * The file is split into pages of whole records, each mapped once when the file grows to it and kept mapped.
+ * A mapping only takes address space, so the operating system's page cache decides which parts stay in memory:
+ * the pages near the root, used by every search, stay resident, and cold pages are written back and dropped when
+ * memory is short. The heap holds nothing but the table of pages. A node id picks a page and a slot, and the byte
+ * position in the file is a 64-bit offset, so the file can grow far past 2 GiB.
+ * Keys and data are encoded with codecs into slots of a fixed size. Null keys are not allowed.
+ * The file is scratch space: it is emptied when the arena is created and deleted when it is closed.
+ * Freed slots are chained through the left child field and reused first.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class PagedNodeArena<K, E> implements NodeArena<K, E>, Closeable {
+  /**
+   * The default size of a page in bytes.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 1 << 24;
+  /**
+   * The offset of the left child within a record.
+   */
+  protected static final int LEFT_OFFSET = 0;
+  /**
+   * The offset of the right child within a record.
+   */
+  protected static final int RIGHT_OFFSET = 4;
+  /**
+   * The offset of the parent within a record.
+   */
+  protected static final int PARENT_OFFSET = 8;
+  /**
+   * The offset of the height within a record.
+   */
+  protected static final int HEIGHT_OFFSET = 12;
+  /**
+   * The offset of the flag that marks non-null data within a record.
+   */
+  protected static final int HAS_DATA_OFFSET = 13;
+  /**
+   * The offset of the key slot within a record.
+   */
+  protected static final int KEY_OFFSET = 16;
+  /**
+   * The file.
+   */
+  private FileChannel mChannel;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The size of the data slot in bytes.
+   */
+  private int mDataSize;
+  /**
+   * The path of the file.
+   */
+  private Path mFile;
+  /**
+   * The first free slot.
+   */
+  private int mFreeHead;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * The size of the key slot in bytes.
+   */
+  private int mKeySize;
+  /**
+   * The first slot that has never been used.
+   */
+  private int mNext;
+  /**
+   * The number of pages in the file.
+   */
+  private int mPageCount;
+  /**
+   * The mapped pages.
+   */
+  private MappedByteBuffer[] mPages;
+  /**
+   * The size of a page in bytes.
+   */
+  private int mPageSize;
+  /**
+   * The size of a record in bytes.
+   */
+  private int mRecordSize;
+  /**
+   * The number of records in a page.
+   */
+  private int mRecordsPerPage;
+  /**
+   * The buffer a key or data is encoded into before it is copied to its slot.
+   */
+  private ByteArrayOutputStream mScratch;
+  /**
+   * The output for the scratch buffer.
+   */
+  private DataOutputStream mScratchOut;
+  /**
+   * Gets the file.
+   * @return The file.
+   */
+  protected FileChannel getChannel() {
+    return this.mChannel;
+  }
+  /**
+   * Gets the codec for the data.
+   * @return The codec.
+   */
+  public AvlCodec<E> getDataCodec() {
+    return this.mDataCodec;
+  }
+  /**
+   * Gets the size of the data slot in bytes.
+   * @return The size.
+   */
+  public int getDataSize() {
+    return this.mDataSize;
+  }
+  /**
+   * Gets the path of the file.
+   * @return The path.
+   */
+  public Path getFile() {
+    return this.mFile;
+  }
+  /**
+   * Gets the first free slot.
+   * @return The slot.
+   */
+  protected int getFreeHead() {
+    return this.mFreeHead;
+  }
+  /**
+   * Gets the codec for the keys.
+   * @return The codec.
+   */
+  public AvlCodec<K> getKeyCodec() {
+    return this.mKeyCodec;
+  }
+  /**
+   * Gets the size of the key slot in bytes.
+   * @return The size.
+   */
+  public int getKeySize() {
+    return this.mKeySize;
+  }
+  /**
+   * Gets the first slot that has never been used.
+   * @return The slot.
+   */
+  protected int getNext() {
+    return this.mNext;
+  }
+  /**
+   * Gets the number of pages in the file.
+   * @return The number of pages.
+   */
+  public int getPageCount() {
+    return this.mPageCount;
+  }
+  /**
+   * Gets the size of a page in bytes.
+   * @return The size.
+   */
+  public int getPageSize() {
+    return this.mPageSize;
+  }
+  /**
+   * Gets the size of a record in bytes.
+   * @return The size.
+   */
+  public int getRecordSize() {
+    return this.mRecordSize;
+  }
+  /**
+   * Gets the number of records in a page.
+   * @return The number of records.
+   */
+  public int getRecordsPerPage() {
+    return this.mRecordsPerPage;
+  }
+  /**
+   * Sets the first free slot.
+   * @param freeHead The slot.
+   */
+  protected void setFreeHead(int freeHead) {
+    this.mFreeHead = freeHead;
+  }
+  /**
+   * Sets the first slot that has never been used.
+   * @param next The slot.
+   */
+  protected void setNext(int next) {
+    this.mNext = next;
+  }
+  /**
+   * Creates an instance of the PagedNodeArena class with the default page size.
+   * @param file The path of the file. Anything in it is discarded.
+   * @param keyCodec The codec for the keys.
+   * @param keySize The largest encoded size of a key in bytes.
+   * @param dataCodec The codec for the data.
+   * @param dataSize The largest encoded size of the data in bytes.
+   * @throws IOException If the file could not be opened.
+   */
+  public PagedNodeArena(Path file, AvlCodec<K> keyCodec, int keySize, AvlCodec<E> dataCodec, int dataSize) throws IOException {
+    this(file, keyCodec, keySize, dataCodec, dataSize, DEFAULT_PAGE_SIZE);
+  }
+  /**
+   * Creates an instance of the PagedNodeArena class.
+   * @param file The path of the file. Anything in it is discarded.
+   * @param keyCodec The codec for the keys.
+   * @param keySize The largest encoded size of a key in bytes.
+   * @param dataCodec The codec for the data.
+   * @param dataSize The largest encoded size of the data in bytes.
+   * @param pageSize The size of a page in bytes. It is rounded down to a whole number of records.
+   * @throws IOException If the file could not be opened.
+   * @throws IllegalArgumentException If a page cannot hold a record.
+   */
+  public PagedNodeArena(Path file, AvlCodec<K> keyCodec, int keySize, AvlCodec<E> dataCodec, int dataSize, int pageSize) throws IOException {
+    int recordSize = (KEY_OFFSET + keySize + dataSize + 7) & ~7;
+    if (pageSize < recordSize) {
+      throw new IllegalArgumentException("A page must hold a record of " + recordSize + " bytes.");
+    }
+    this.mChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.mDataCodec = dataCodec;
+    this.mDataSize = dataSize;
+    this.mFile = file;
+    this.mFreeHead = NodeArena.NIL;
+    this.mKeyCodec = keyCodec;
+    this.mKeySize = keySize;
+    this.mNext = 0;
+    this.mPageCount = 0;
+    this.mPages = new MappedByteBuffer[16];
+    this.mPageSize = pageSize / recordSize * recordSize;
+    this.mRecordSize = recordSize;
+    this.mRecordsPerPage = pageSize / recordSize;
+    this.mScratch = new ByteArrayOutputStream();
+    this.mScratchOut = new DataOutputStream(this.mScratch);
+  }
+  /**
+   * Allocates a node.
+   * @return The node id.
+   */
+  @Override
+  public int allocate() {
+    int id = this.getFreeHead();
+    if (id != NodeArena.NIL) {
+      this.setFreeHead(this.getLeft(id));
+    } else {
+      id = this.getNext();
+      if (id == this.getCapacity()) {
+        this.grow();
+      }
+      this.setNext(id + 1);
+    }
+    this.setHeight(id, 0);
+    this.setLeft(id, NodeArena.NIL);
+    this.setParent(id, NodeArena.NIL);
+    this.setRight(id, NodeArena.NIL);
+    return id;
+  }
+  /**
+   * Removes all nodes. The file keeps its pages for reuse.
+   */
+  @Override
+  public void clear() {
+    this.setFreeHead(NodeArena.NIL);
+    this.setNext(0);
+  }
+  /**
+   * Unmaps the pages, then closes and deletes the file.
+   * @throws IOException If the file could not be closed or deleted.
+   */
+  @Override
+  public void close() throws IOException {
+    Arrays.fill(this.mPages, null);
+    try {
+      this.getChannel().close();
+    } finally {
+      Files.deleteIfExists(this.getFile());
+    }
+  }
+  /**
+   * Decodes a value from a slot of a record.
+   * @param <T> The value type.
+   * @param codec The codec.
+   * @param id The node id.
+   * @param offset The offset of the slot within the record.
+   * @param size The size of the slot.
+   * @return The value.
+   */
+  protected <T> T decode(AvlCodec<T> codec, int id, int offset, int size) {
+    ByteBuffer page = this.pageOf(id);
+    int position = this.positionOf(id) + offset;
+    T value;
+    try {
+      page.limit(position + size);
+      page.position(position);
+      value = codec.read(page, null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      page.limit(page.capacity());
+    }
+    return value;
+  }
+  /**
+   * Encodes a value into a slot of a record.
+   * @param <T> The value type.
+   * @param codec The codec.
+   * @param value The value.
+   * @param id The node id.
+   * @param offset The offset of the slot within the record.
+   * @param size The size of the slot.
+   * @throws IllegalArgumentException If the encoded value does not fit in the slot.
+   */
+  protected <T> void encode(AvlCodec<T> codec, T value, int id, int offset, int size) {
+    this.mScratch.reset();
+    try {
+      codec.write(this.mScratchOut, null, value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (this.mScratch.size() > size) {
+      throw new IllegalArgumentException("The value takes " + this.mScratch.size() + " bytes but its slot holds " + size + ".");
+    }
+    ByteBuffer page = this.pageOf(id);
+    page.position(this.positionOf(id) + offset);
+    page.put(this.mScratch.toByteArray());
+  }
+  /**
+   * Returns a node to the free list.
+   * @param id The node id.
+   */
+  @Override
+  public void free(int id) {
+    this.setLeft(id, this.getFreeHead());
+    this.setFreeHead(id);
+  }
+  /**
+   * Gets the number of slots in the file.
+   * @return The capacity.
+   */
+  @Override
+  public int getCapacity() {
+    return this.getPageCount() * this.getRecordsPerPage();
+  }
+  /**
+   * Gets the data of a node.
+   * @param id The node id.
+   * @return The data.
+   */
+  @Override
+  public E getData(int id) {
+    E data = null;
+    if (this.pageOf(id).get(this.positionOf(id) + HAS_DATA_OFFSET) != 0) {
+      data = this.decode(this.getDataCodec(), id, KEY_OFFSET + this.getKeySize(), this.getDataSize());
+    }
+    return data;
+  }
+  /**
+   * Gets the height of a node.
+   * @param id The node id.
+   * @return The height.
+   */
+  @Override
+  public int getHeight(int id) {
+    return this.pageOf(id).get(this.positionOf(id) + HEIGHT_OFFSET);
+  }
+  /**
+   * Gets the key of a node.
+   * @param id The node id.
+   * @return The key.
+   */
+  @Override
+  public K getKey(int id) {
+    return this.decode(this.getKeyCodec(), id, KEY_OFFSET, this.getKeySize());
+  }
+  /**
+   * Gets the left child of a node.
+   * @param id The node id.
+   * @return The left child id.
+   */
+  @Override
+  public int getLeft(int id) {
+    return this.pageOf(id).getInt(this.positionOf(id) + LEFT_OFFSET);
+  }
+  /**
+   * Gets the parent of a node.
+   * @param id The node id.
+   * @return The parent id.
+   */
+  @Override
+  public int getParent(int id) {
+    return this.pageOf(id).getInt(this.positionOf(id) + PARENT_OFFSET);
+  }
+  /**
+   * Gets the right child of a node.
+   * @param id The node id.
+   * @return The right child id.
+   */
+  @Override
+  public int getRight(int id) {
+    return this.pageOf(id).getInt(this.positionOf(id) + RIGHT_OFFSET);
+  }
+  /**
+   * Adds a page to the end of the file and maps it. Mapping past the end of the file extends it.
+   * @throws IllegalStateException If the node ids would overflow.
+   * @throws UncheckedIOException If the page could not be mapped.
+   */
+  protected void grow() {
+    if ((long)(this.getPageCount() + 1) * this.getRecordsPerPage() > Integer.MAX_VALUE) {
+      throw new IllegalStateException("The arena is full.");
+    }
+    if (this.getPageCount() == this.mPages.length) {
+      this.mPages = Arrays.copyOf(this.mPages, this.mPages.length * 2);
+    }
+    MappedByteBuffer page;
+    try {
+      page = this.getChannel().map(FileChannel.MapMode.READ_WRITE, (long)this.getPageCount() * this.getPageSize(), this.getPageSize());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    page.order(ByteOrder.nativeOrder());
+    this.mPages[this.getPageCount()] = page;
+    this.mPageCount++;
+  }
+  /**
+   * Gets the page that holds a node.
+   * @param id The node id.
+   * @return The page.
+   */
+  protected MappedByteBuffer pageOf(int id) {
+    return this.mPages[id / this.getRecordsPerPage()];
+  }
+  /**
+   * Gets the position of a node's record within its page.
+   * @param id The node id.
+   * @return The position.
+   */
+  protected int positionOf(int id) {
+    return (id % this.getRecordsPerPage()) * this.getRecordSize();
+  }
+  /**
+   * Sets the data of a node.
+   * @param id The node id.
+   * @param data The data.
+   */
+  @Override
+  public void setData(int id, E data) {
+    if (data != null) {
+      this.encode(this.getDataCodec(), data, id, KEY_OFFSET + this.getKeySize(), this.getDataSize());
+    }
+    this.pageOf(id).put(this.positionOf(id) + HAS_DATA_OFFSET, (byte)(data != null ? 1 : 0));
+  }
+  /**
+   * Sets the height of a node.
+   * @param id The node id.
+   * @param height The height.
+   */
+  @Override
+  public void setHeight(int id, int height) {
+    this.pageOf(id).put(this.positionOf(id) + HEIGHT_OFFSET, (byte)height);
+  }
+  /**
+   * Sets the key of a node.
+   * @param id The node id.
+   * @param key The key.
+   */
+  @Override
+  public void setKey(int id, K key) {
+    this.encode(this.getKeyCodec(), key, id, KEY_OFFSET, this.getKeySize());
+  }
+  /**
+   * Sets the left child of a node.
+   * @param id The node id.
+   * @param left The left child id.
+   */
+  @Override
+  public void setLeft(int id, int left) {
+    this.pageOf(id).putInt(this.positionOf(id) + LEFT_OFFSET, left);
+  }
+  /**
+   * Sets the parent of a node.
+   * @param id The node id.
+   * @param parent The parent id.
+   */
+  @Override
+  public void setParent(int id, int parent) {
+    this.pageOf(id).putInt(this.positionOf(id) + PARENT_OFFSET, parent);
+  }
+  /**
+   * Sets the right child of a node.
+   * @param id The node id.
+   * @param right The right child id.
+   */
+  @Override
+  public void setRight(int id, int right) {
+    this.pageOf(id).putInt(this.positionOf(id) + RIGHT_OFFSET, right);
+  }
+}
@@ -0,0 +1,370 @@
+package wg.avl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An immutable AVL tree. Changes return a new version of the tree.
+ * A new version copies only the nodes on the search path and shares the rest with the old version,
+ * so an update costs O(log n) new nodes and every old version stays readable.
+ * Versions can be read from any number of threads without locking.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class PersistentAvlTree<K extends Comparable, E> implements Iterable<Map.Entry<K, E>> {
+  /**
+   * The number of elements in the tree.
+   */
+  private final int mCount;
+  /**
+   * The root node.
+   */
+  private final PersistentAvlTreeNode<K, E> mRoot;
+  /**
+   * Gets the number of elements in the tree.
+   * @return The number.
+   */
+  public int getCount() {
+    return this.mCount;
+  }
+  /**
+   * Gets the root node.
+   * @return The root node.
+   */
+  protected PersistentAvlTreeNode<K, E> getRoot() {
+    return this.mRoot;
+  }
+  /**
+   * Creates an empty instance of the PersistentAvlTree class.
+   */
+  public PersistentAvlTree() {
+    this(null, 0);
+  }
+  /**
+   * Creates an instance of the PersistentAvlTree class.
+   * @param root The root node.
+   * @param count The number of elements under the root.
+   */
+  protected PersistentAvlTree(PersistentAvlTreeNode<K, E> root, int count) {
+    this.mCount = count;
+    this.mRoot = root;
+  }
+  /**
+   * Builds a node, rotating once or twice if its children differ in height by two.
+   * @param key The key.
+   * @param data The data.
+   * @param left The left child.
+   * @param right The right child.
+   * @return The root of the balanced sub-tree.
+   */
+  protected PersistentAvlTreeNode<K, E> balance(K key, E data, PersistentAvlTreeNode<K, E> left, PersistentAvlTreeNode<K, E> right) {
+    PersistentAvlTreeNode<K, E> node;
+    int leftHeight = this.heightOf(left);
+    int rightHeight = this.heightOf(right);
+    if (leftHeight > rightHeight + 1) {
+      PersistentAvlTreeNode<K, E> inner = left.getRight();
+      if (this.heightOf(left.getLeft()) >= this.heightOf(inner)) {
+        node = this.createNode(left.getKey(), left.getData(), left.getLeft(), this.createNode(key, data, inner, right));
+      } else {
+        node = this.createNode(inner.getKey(), inner.getData(),
+          this.createNode(left.getKey(), left.getData(), left.getLeft(), inner.getLeft()),
+          this.createNode(key, data, inner.getRight(), right));
+      }
+    } else if (rightHeight > leftHeight + 1) {
+      PersistentAvlTreeNode<K, E> inner = right.getLeft();
+      if (this.heightOf(right.getRight()) >= this.heightOf(inner)) {
+        node = this.createNode(right.getKey(), right.getData(), this.createNode(key, data, left, inner), right.getRight());
+      } else {
+        node = this.createNode(inner.getKey(), inner.getData(),
+          this.createNode(key, data, left, inner.getLeft()),
+          this.createNode(right.getKey(), right.getData(), inner.getRight(), right.getRight()));
+      }
+    } else {
+      node = this.createNode(key, data, left, right);
+    }
+    return node;
+  }
+  /**
+   * Builds a balanced sub-tree from a sorted run of entries.
+   * @param entries The entries.
+   * @param lo The start of the run, inclusive.
+   * @param hi The end of the run, exclusive.
+   * @return The root of the sub-tree, or null if the run is empty.
+   */
+  protected PersistentAvlTreeNode<K, E> buildTree(ArrayList<Map.Entry<? extends K, ? extends E>> entries, int lo, int hi) {
+    PersistentAvlTreeNode<K, E> node = null;
+    if (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      Map.Entry<? extends K, ? extends E> entry = entries.get(mid);
+      node = this.createNode(entry.getKey(), entry.getValue(), this.buildTree(entries, lo, mid), this.buildTree(entries, mid + 1, hi));
+    }
+    return node;
+  }
+  /**
+   * Gets a version of the tree that holds only the given sorted elements.
+   * @param entries The entries, in ascending key order.
+   * @return The new version.
+   * @throws IllegalArgumentException If the keys are not sorted.
+   */
+  public PersistentAvlTree<K, E> bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends E>> entries) {
+    ArrayList<Map.Entry<? extends K, ? extends E>> list = new ArrayList<Map.Entry<? extends K, ? extends E>>();
+    while (entries.hasNext()) {
+      Map.Entry<? extends K, ? extends E> entry = entries.next();
+      if (!list.isEmpty() && list.get(list.size() - 1).getKey().compareTo(entry.getKey()) > 0) {
+        throw new IllegalArgumentException("The keys are not sorted at index " + list.size() + ".");
+      }
+      list.add(entry);
+    }
+    PersistentAvlTreeNode<K, E> root = this.buildTree(list, 0, list.size());
+    return this.createTree(root, list.size());
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key to search for.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(K key) {
+    boolean contains = (this.findNode(key) != null);
+    return contains;
+  }
+  /**
+   * Creates a node.
+   * @param key The key.
+   * @param data The data.
+   * @param left The left child.
+   * @param right The right child.
+   * @return The new node.
+   */
+  protected PersistentAvlTreeNode<K, E> createNode(K key, E data, PersistentAvlTreeNode<K, E> left, PersistentAvlTreeNode<K, E> right) {
+    return new PersistentAvlTreeNode<K, E>(key, data, left, right);
+  }
+  /**
+   * Creates a version of the tree.
+   * @param root The root node.
+   * @param count The number of elements under the root.
+   * @return The new version.
+   */
+  protected PersistentAvlTree<K, E> createTree(PersistentAvlTreeNode<K, E> root, int count) {
+    return new PersistentAvlTree<K, E>(root, count);
+  }
+  /**
+   * Finds the first node on the search path that has the given key.
+   * @param key The key to search for.
+   * @return The node, or null if the key is not in the tree.
+   */
+  protected PersistentAvlTreeNode<K, E> findNode(K key) {
+    PersistentAvlTreeNode<K, E> node = null;
+    PersistentAvlTreeNode<K, E> temp = this.getRoot();
+    while (temp != null && node == null) {
+      int cmp = key.compareTo(temp.getKey());
+      if (cmp < 0) {
+        temp = temp.getLeft();
+      } else if (cmp > 0) {
+        temp = temp.getRight();
+      } else {
+        node = temp;
+      }
+    }
+    return node;
+  }
+  /**
+   * Gets the element with a key.
+   * @param key The key to search for.
+   * @return The element, or null if the key is not in the tree.
+   */
+  public E get(K key) {
+    E data = null;
+    PersistentAvlTreeNode<K, E> node = this.findNode(key);
+    if (node != null) {
+      data = node.getData();
+    }
+    return data;
+  }
+  /**
+   * Gets the collection of elements in order.
+   * @return The collection.
+   */
+  public Object[] getInOrder() {
+    Object[] collection = new Object[this.getCount()];
+    this.getInOrderRec(this.getRoot(), 0, collection);
+    return collection;
+  }
+  /**
+   * Recursively gets each element in the tree.
+   * @param node The current node.
+   * @param index The current index.
+   * @param collection The collection.
+   * @return The new index value.
+   */
+  protected int getInOrderRec(PersistentAvlTreeNode<K, E> node, int index, Object[] collection) {
+    if (node != null) {
+      index = this.getInOrderRec(node.getLeft(), index, collection);
+      collection[index++] = node.getData();
+      index = this.getInOrderRec(node.getRight(), index, collection);
+    }
+    return index;
+  }
+  /**
+   * The largest element.
+   * @return The element.
+   */
+  public E getMax() {
+    E max = null;
+    PersistentAvlTreeNode<K, E> temp = this.getRoot();
+    if (temp != null) {
+      while (temp.getRight() != null) {
+        temp = temp.getRight();
+      }
+      max = temp.getData();
+    }
+    return max;
+  }
+  /**
+   * Gets the smallest element
+   * @return The smallest element.
+   */
+  public E getMin() {
+    E min = null;
+    PersistentAvlTreeNode<K, E> temp = this.getRoot();
+    if (temp != null) {
+      while (temp.getLeft() != null) {
+        temp = temp.getLeft();
+      }
+      min = temp.getData();
+    }
+    return min;
+  }
+  /**
+   * Gets the height of a node.
+   * @param node The node, or null.
+   * @return The height, or -1 for null.
+   */
+  protected int heightOf(PersistentAvlTreeNode<K, E> node) {
+    int height = -1;
+    if (node != null) {
+      height = node.getHeight();
+    }
+    return height;
+  }
+  /**
+   * Gets a version of the tree with an element added.
+   * As in AvlTree, an element whose key is already present is added after the existing ones.
+   * @param key The key of the element.
+   * @param data The element.
+   * @return The new version.
+   */
+  public PersistentAvlTree<K, E> insert(K key, E data) {
+    PersistentAvlTreeNode<K, E> root = this.insertRec(this.getRoot(), key, data);
+    return this.createTree(root, this.getCount() + 1);
+  }
+  /**
+   * Recursively copies the search path with a new leaf at its end.
+   * @param node The current node.
+   * @param key The key of the element.
+   * @param data The element.
+   * @return The root of the new sub-tree.
+   */
+  protected PersistentAvlTreeNode<K, E> insertRec(PersistentAvlTreeNode<K, E> node, K key, E data) {
+    PersistentAvlTreeNode<K, E> root;
+    if (node == null) {
+      root = this.createNode(key, data, null, null);
+    } else if (key.compareTo(node.getKey()) < 0) {
+      root = this.balance(node.getKey(), node.getData(), this.insertRec(node.getLeft(), key, data), node.getRight());
+    } else {
+      root = this.balance(node.getKey(), node.getData(), node.getLeft(), this.insertRec(node.getRight(), key, data));
+    }
+    return root;
+  }
+  /**
+   * Indicates if the tree is empty.
+   * @return True, if the tree is empty.
+   */
+  public boolean isEmpty() {
+    boolean isEmpty = (this.getCount() == 0);
+    return isEmpty;
+  }
+  /**
+   * Gets an iterator over the entries in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    return new PersistentAvlTreeIterator<K, E>(this.getRoot());
+  }
+  /**
+   * Gets a version of the tree with an element removed.
+   * @param key The key of the element.
+   * @return The new version, or this version if the key is not in the tree.
+   */
+  public PersistentAvlTree<K, E> remove(K key) {
+    PersistentAvlTree<K, E> tree = this;
+    PersistentAvlTreeNode<K, E> root = this.removeRec(this.getRoot(), key);
+    if (root != this.getRoot()) {
+      tree = this.createTree(root, this.getCount() - 1);
+    }
+    return tree;
+  }
+  /**
+   * Recursively copies the path to the largest node of a sub-tree, leaving that node out.
+   * @param node The root of the sub-tree.
+   * @return The root of the new sub-tree.
+   */
+  protected PersistentAvlTreeNode<K, E> removeMax(PersistentAvlTreeNode<K, E> node) {
+    PersistentAvlTreeNode<K, E> root;
+    if (node.getRight() == null) {
+      root = node.getLeft();
+    } else {
+      root = this.balance(node.getKey(), node.getData(), node.getLeft(), this.removeMax(node.getRight()));
+    }
+    return root;
+  }
+  /**
+   * Recursively copies the search path, leaving out the first node with the key.
+   * @param node The current node.
+   * @param key The key of the element.
+   * @return The root of the new sub-tree, or the same node if the key is not under it.
+   */
+  protected PersistentAvlTreeNode<K, E> removeRec(PersistentAvlTreeNode<K, E> node, K key) {
+    PersistentAvlTreeNode<K, E> root = node;
+    if (node != null) {
+      int cmp = key.compareTo(node.getKey());
+      if (cmp < 0) {
+        PersistentAvlTreeNode<K, E> left = this.removeRec(node.getLeft(), key);
+        if (left != node.getLeft()) {
+          root = this.balance(node.getKey(), node.getData(), left, node.getRight());
+        }
+      } else if (cmp > 0) {
+        PersistentAvlTreeNode<K, E> right = this.removeRec(node.getRight(), key);
+        if (right != node.getRight()) {
+          root = this.balance(node.getKey(), node.getData(), node.getLeft(), right);
+        }
+      } else if (node.getLeft() == null) {
+        root = node.getRight();
+      } else if (node.getRight() == null) {
+        root = node.getLeft();
+      } else {
+        PersistentAvlTreeNode<K, E> predecessor = node.getLeft();
+        while (predecessor.getRight() != null) {
+          predecessor = predecessor.getRight();
+        }
+        root = this.balance(predecessor.getKey(), predecessor.getData(), this.removeMax(node.getLeft()), node.getRight());
+      }
+    }
+    return root;
+  }
+  /**
+   * Gets the string representation of the tree.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    String rep = "(empty)";
+    PersistentAvlTreeNode<K, E> root = this.getRoot();
+    if (!this.isEmpty()) {
+      rep = root.toString();
+    }
+    return rep;
+  }
+}
@@ -0,0 +1,153 @@
+package wg.avl;
+
+import java.util.Map;
+
+/**
+ * An immutable node of a PersistentAvlTree.
+ * Nodes are shared between versions of a tree, so they have no parent link.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class PersistentAvlTreeNode<K, E> implements Map.Entry<K, E> {
+  /**
+   * The data.
+   */
+  private final E mData;
+  /**
+   * The height.
+   */
+  private final int mHeight;
+  /**
+   * The key.
+   */
+  private final K mKey;
+  /**
+   * The left child.
+   */
+  private final PersistentAvlTreeNode<K, E> mLeft;
+  /**
+   * The right child.
+   */
+  private final PersistentAvlTreeNode<K, E> mRight;
+  /**
+   * Gets the data.
+   * @return The data.
+   */
+  public E getData() {
+    return this.mData;
+  }
+  /**
+   * Gets the height.
+   * @return The height.
+   */
+  public int getHeight() {
+    return this.mHeight;
+  }
+  /**
+   * Gets the key.
+   * @return The key.
+   */
+  @Override
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the left child.
+   * @return The left child.
+   */
+  public PersistentAvlTreeNode<K, E> getLeft() {
+    return this.mLeft;
+  }
+  /**
+   * Gets the right child.
+   * @return The right child.
+   */
+  public PersistentAvlTreeNode<K, E> getRight() {
+    return this.mRight;
+  }
+  /**
+   * Creates an instance of the PersistentAvlTreeNode class.
+   * @param key The key.
+   * @param data The data.
+   * @param left The left child.
+   * @param right The right child.
+   */
+  public PersistentAvlTreeNode(K key, E data, PersistentAvlTreeNode<K, E> left, PersistentAvlTreeNode<K, E> right) {
+    int leftHeight = (left == null ? -1 : left.getHeight());
+    int rightHeight = (right == null ? -1 : right.getHeight());
+    this.mData = data;
+    this.mHeight = Math.max(leftHeight, rightHeight) + 1;
+    this.mKey = key;
+    this.mLeft = left;
+    this.mRight = right;
+  }
+  /**
+   * Indicates if an object is an entry with the same key and data.
+   * @param obj The object.
+   * @return True, if the object is an equal entry.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    boolean equals = false;
+    if (obj instanceof Map.Entry) {
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+      K key = this.getKey();
+      E data = this.getData();
+      equals = (key == null ? entry.getKey() == null : key.equals(entry.getKey()))
+        && (data == null ? entry.getValue() == null : data.equals(entry.getValue()));
+    }
+    return equals;
+  }
+  /**
+   * Gets the balance factor of the node.
+   * @return The balance factor.
+   */
+  public int getBalFac() {
+    int leftHeight = (this.getLeft() == null ? -1 : this.getLeft().getHeight());
+    int rightHeight = (this.getRight() == null ? -1 : this.getRight().getHeight());
+    int balFac = (leftHeight - rightHeight);
+    return balFac;
+  }
+  /**
+   * Gets the data, as an entry value.
+   * @return The data.
+   */
+  @Override
+  public E getValue() {
+    return this.getData();
+  }
+  /**
+   * Gets the hash code of the entry.
+   * @return The hash code.
+   */
+  @Override
+  public int hashCode() {
+    K key = this.getKey();
+    E data = this.getData();
+    int hashCode = (key == null ? 0 : key.hashCode()) ^ (data == null ? 0 : data.hashCode());
+    return hashCode;
+  }
+  /**
+   * Not supported, since the node is shared between versions.
+   * @param value The new data.
+   * @return Nothing.
+   * @throws UnsupportedOperationException Always.
+   */
+  @Override
+  public E setValue(E value) {
+    throw new UnsupportedOperationException("Persistent nodes are immutable.");
+  }
+  /**
+   * Gets the string representation of this instance.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    K key = this.getKey();
+    E data = this.getData();
+    int height = this.getHeight();
+    String rep = "(key=" + key + ";data=" + data + ";height=" + height + ")";
+    return rep;
+  }
+}
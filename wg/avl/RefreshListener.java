@@ -0,0 +1,55 @@
+package wg.avl;
+
+import java.util.List;
+
+/**
+ * A tree listener that refreshes a view once for each batch of changes.
+ * @author Wesley Garey
+ * @param <K> The key type.
+ * @param <E> The data type.
+ */
+public class RefreshListener<K, E> implements AvlTreeListener<K, E> {
+  /**
+   * The refresher.
+   */
+  private Refresher mRefresher;
+  /**
+   * Gets the refresher.
+   * @return The refresher.
+   */
+  public Refresher getRefresher() {
+    return this.mRefresher;
+  }
+  /**
+   * Sets the refresher.
+   * @param refresher The refresher, or null to refresh nothing.
+   */
+  public void setRefresher(Refresher refresher) {
+    if (refresher == null) {
+      refresher = NullRefresher.getInstance();
+    }
+    this.mRefresher = refresher;
+  }
+  /**
+   * Creates an instance of the RefreshListener class that refreshes nothing.
+   */
+  public RefreshListener() {
+    this(NullRefresher.getInstance());
+  }
+  /**
+   * Creates an instance of the RefreshListener class.
+   * @param refresher The refresher.
+   */
+  public RefreshListener(Refresher refresher) {
+    this.mRefresher = NullRefresher.getInstance();
+    this.setRefresher(refresher);
+  }
+  /**
+   * Refreshes the view.
+   * @param events The changes.
+   */
+  @Override
+  public void treeChanged(List<AvlTreeEvent<K, E>> events) {
+    this.getRefresher().refresh();
+  }
+}
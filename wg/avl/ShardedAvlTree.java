@@ -0,0 +1,515 @@
+package wg.avl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * A thread-safe AVL tree that splits the key space into ranges, each an AvlTree with its own lock,
+ * so that writers to different ranges do not contend.
+ * Point reads run under an optimistic stamp of their shard and only take its read lock if a writer got
+ * in the way, as in StampedAvlTree.
+ * A shard that grows past twice the average size is split at its median key, and one that shrinks below
+ * a quarter of it is merged with its smaller neighbour. The average is the count over the target number
+ * of shards, but never less than the smallest shard size. A split or merge locks only the shards involved
+ * and takes O(log n) time; operations that were waiting on a replaced shard route their key again.
+ * Keys are unique: putting an existing key replaces its element.
+ * Iteration is weakly consistent and stitches the shards together in key order. It never fails, returns
+ * each key at most once and in order, and copies a few entries at a time under a shard's read lock.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ShardedAvlTree<K extends Comparable, E> implements Iterable<Map.Entry<K, E>> {
+  /**
+   * The result of a read that found no key.
+   */
+  protected static final Object ABSENT = new Object();
+  /**
+   * The smallest average shard size used by default.
+   */
+  public static final int DEFAULT_MIN_SHARD_SIZE = 1024;
+  /**
+   * The result of a read that found its shard replaced.
+   */
+  protected static final Object RETRY = new Object();
+  /**
+   * The number of elements in the tree.
+   */
+  private LongAdder mCount;
+  /**
+   * The smallest average shard size, so that small trees are not split finely.
+   */
+  private int mMinShardSize;
+  /**
+   * The monitor held while shards are split or merged.
+   */
+  private Object mRebalanceMonitor;
+  /**
+   * The shards in key order. The array is replaced, never changed, when shards are split or merged.
+   */
+  private volatile AvlTreeShard<K, E>[] mShards;
+  /**
+   * The number of shards aimed for once the tree is large.
+   */
+  private int mTargetShards;
+  /**
+   * Gets the number of elements in the tree.
+   * The count is exact when no update is in progress.
+   * @return The number.
+   */
+  public int getCount() {
+    return (int)this.mCount.sum();
+  }
+  /**
+   * Gets the smallest average shard size.
+   * @return The size.
+   */
+  public int getMinShardSize() {
+    return this.mMinShardSize;
+  }
+  /**
+   * Gets the shards in key order.
+   * @return The shards.
+   */
+  protected AvlTreeShard<K, E>[] getShards() {
+    return this.mShards;
+  }
+  /**
+   * Gets the number of shards aimed for once the tree is large.
+   * @return The number.
+   */
+  public int getTargetShards() {
+    return this.mTargetShards;
+  }
+  /**
+   * Sets the shards in key order.
+   * @param shards The shards.
+   */
+  protected void setShards(AvlTreeShard<K, E>[] shards) {
+    this.mShards = shards;
+  }
+  /**
+   * Creates an instance of the ShardedAvlTree class that aims for four shards per processor.
+   */
+  public ShardedAvlTree() {
+    this(4 * Runtime.getRuntime().availableProcessors(), DEFAULT_MIN_SHARD_SIZE);
+  }
+  /**
+   * Creates an instance of the ShardedAvlTree class.
+   * @param targetShards The number of shards aimed for once the tree is large.
+   * @param minShardSize The smallest average shard size, so that small trees are not split finely.
+   * @throws IllegalArgumentException If either number is not positive.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public ShardedAvlTree(int targetShards, int minShardSize) {
+    if (targetShards < 1 || minShardSize < 1) {
+      throw new IllegalArgumentException("The target shard count and the smallest shard size must be positive.");
+    }
+    this.mCount = new LongAdder();
+    this.mMinShardSize = minShardSize;
+    this.mRebalanceMonitor = new Object();
+    this.mShards = null;
+    this.mTargetShards = targetShards;
+    AvlTreeShard<K, E>[] shards = new AvlTreeShard[1];
+    shards[0] = new AvlTreeShard<K, E>(null, new AvlTree<K, E>());
+    this.publish(shards);
+  }
+  /**
+   * Splits or merges a shard whose size has left the bounds of the average.
+   * @param shard The shard.
+   */
+  protected void checkBalance(AvlTreeShard<K, E> shard) {
+    //the count is read without the lock; split and merge check it again under the lock
+    int count = shard.getTree().getCount();
+    if (count > shard.getSplitAbove()) {
+      this.split(shard);
+    } else if (count < shard.getMergeBelow()) {
+      this.merge(shard);
+    }
+  }
+  /**
+   * Indicates if this tree contains a key.
+   * @param key The key.
+   * @return True, if this tree contains the key.
+   */
+  public boolean contains(K key) {
+    boolean contains = (this.lookup(key) != ShardedAvlTree.ABSENT);
+    return contains;
+  }
+  /**
+   * Gets the element of a key.
+   * @param key The key.
+   * @return The element, or null if the key is not in the tree.
+   */
+  @SuppressWarnings("unchecked")
+  public E get(K key) {
+    Object found = this.lookup(key);
+    E data = null;
+    if (found != ShardedAvlTree.ABSENT) {
+      data = (E)found;
+    }
+    return data;
+  }
+  /**
+   * Gets the elements ordered by key.
+   * @return The elements.
+   */
+  public Object[] getInOrder() {
+    ArrayList<Object> elements = new ArrayList<Object>();
+    for (Map.Entry<K, E> entry : this) {
+      elements.add(entry.getValue());
+    }
+    return elements.toArray();
+  }
+  /**
+   * Gets the element of the largest key.
+   * @return The element, or null if the tree is empty.
+   */
+  public E getMax() {
+    return this.readEnd(true);
+  }
+  /**
+   * Gets the element of the smallest key.
+   * @return The element, or null if the tree is empty.
+   */
+  public E getMin() {
+    return this.readEnd(false);
+  }
+  /**
+   * Gets the number of shards.
+   * @return The number of shards.
+   */
+  public int getShardCount() {
+    return this.getShards().length;
+  }
+  /**
+   * Finds a shard among shards.
+   * @param shards The shards.
+   * @param shard The shard.
+   * @return The position of the shard, or -1 if it is not among them.
+   */
+  protected int indexOf(AvlTreeShard<K, E>[] shards, AvlTreeShard<K, E> shard) {
+    int index = -1;
+    for (int i = 0; i < shards.length && index < 0; ++i) {
+      if (shards[i] == shard) {
+        index = i;
+      }
+    }
+    return index;
+  }
+  /**
+   * Indicates if the tree is empty.
+   * @return True, if the tree is empty.
+   */
+  public boolean isEmpty() {
+    return (this.getCount() == 0);
+  }
+  /**
+   * Gets a weakly consistent iterator over the entries in key order.
+   * @return The iterator.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    return new ShardedAvlTreeIterator<K, E>(this, null, null);
+  }
+  /**
+   * Reads the element of a key from its shard.
+   * @param key The key.
+   * @return The element, or ABSENT if the key is not in the tree.
+   */
+  protected Object lookup(final K key) {
+    Function<AvlTree<K, E>, Object> read = new Function<AvlTree<K, E>, Object>() {
+      @Override
+      public Object apply(AvlTree<K, E> tree) {
+        AvlTreeNode<K, E> node = tree.findNodeBounded(key);
+        Object found = ShardedAvlTree.ABSENT;
+        if (node != null) {
+          found = node.getData();
+        }
+        return found;
+      }
+    };
+    Object found = ShardedAvlTree.RETRY;
+    while (found == ShardedAvlTree.RETRY) {
+      AvlTreeShard<K, E>[] shards = this.getShards();
+      found = this.readShard(shards[this.route(shards, key)], read);
+    }
+    return found;
+  }
+  /**
+   * Merges a small shard with its smaller neighbour, if it is still small and the result is not too large.
+   * @param shard The shard.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected void merge(AvlTreeShard<K, E> shard) {
+    synchronized (this.mRebalanceMonitor) {
+      AvlTreeShard<K, E>[] shards = this.getShards();
+      int index = this.indexOf(shards, shard);
+      if (index >= 0 && shards.length > 1) {
+        int other;
+        if (index == 0) {
+          other = 1;
+        } else if (index == shards.length - 1) {
+          other = index - 1;
+        } else if (shards[index - 1].getTree().getCount() <= shards[index + 1].getTree().getCount()) {
+          other = index - 1;
+        } else {
+          other = index + 1;
+        }
+        int leftIndex = Math.min(index, other);
+        AvlTreeShard<K, E> left = shards[leftIndex];
+        AvlTreeShard<K, E> right = shards[leftIndex + 1];
+        //shards are always locked in key order
+        long leftStamp = left.getLock().writeLock();
+        long rightStamp = right.getLock().writeLock();
+        try {
+          AvlTree<K, E> tree = left.getTree();
+          int count = shard.getTree().getCount();
+          int merged = tree.getCount() + right.getTree().getCount();
+          if (count < shard.getMergeBelow() && merged <= shard.getSplitAbove() / 2) {
+            tree.concat(right.getTree());
+            AvlTreeShard<K, E>[] next = new AvlTreeShard[shards.length - 1];
+            System.arraycopy(shards, 0, next, 0, leftIndex);
+            next[leftIndex] = new AvlTreeShard<K, E>(left.getLo(), tree);
+            System.arraycopy(shards, leftIndex + 2, next, leftIndex + 1, shards.length - leftIndex - 2);
+            left.setRetired(true);
+            right.setRetired(true);
+            this.publish(next);
+          }
+        } finally {
+          right.getLock().unlockWrite(rightStamp);
+          left.getLock().unlockWrite(leftStamp);
+        }
+      }
+    }
+  }
+  /**
+   * Sets the split and merge bounds of every shard from the current average, then makes the shards current.
+   * @param shards The shards in key order.
+   */
+  protected void publish(AvlTreeShard<K, E>[] shards) {
+    int average = Math.max(this.getCount() / this.getTargetShards(), this.getMinShardSize());
+    for (AvlTreeShard<K, E> shard : shards) {
+      shard.setSplitAbove(2 * average);
+      shard.setMergeBelow(average / 4);
+    }
+    this.setShards(shards);
+  }
+  /**
+   * Sets the element of a key, replacing the element if the key is already in the tree.
+   * @param key The key.
+   * @param data The element.
+   * @return The previous element, or null if the key was not in the tree.
+   */
+  public E put(K key, E data) {
+    E previous = null;
+    AvlTreeShard<K, E> shard = null;
+    boolean done = false;
+    while (!done) {
+      AvlTreeShard<K, E>[] shards = this.getShards();
+      shard = shards[this.route(shards, key)];
+      long stamp = shard.getLock().writeLock();
+      try {
+        if (!shard.isRetired()) {
+          AvlTree<K, E> tree = shard.getTree();
+          int count = tree.getCount();
+          previous = tree.put(key, data);
+          this.mCount.add(tree.getCount() - count);
+          done = true;
+        }
+      } finally {
+        shard.getLock().unlockWrite(stamp);
+      }
+    }
+    this.checkBalance(shard);
+    return previous;
+  }
+  /**
+   * Gets a view of the entries whose keys are within a range.
+   * @param lo The smallest key, inclusive, or null for no lower bound.
+   * @param hi The largest key, exclusive, or null for no upper bound.
+   * @return The view, whose iterators are weakly consistent.
+   */
+  public Iterable<Map.Entry<K, E>> range(final K lo, final K hi) {
+    final ShardedAvlTree<K, E> tree = this;
+    Iterable<Map.Entry<K, E>> range = new Iterable<Map.Entry<K, E>>() {
+      @Override
+      public Iterator<Map.Entry<K, E>> iterator() {
+        return new ShardedAvlTreeIterator<K, E>(tree, lo, hi);
+      }
+    };
+    return range;
+  }
+  /**
+   * Reads the element of the smallest or largest key, skipping empty shards.
+   * @param max True, for the largest key.
+   * @return The element, or null if the tree is empty.
+   */
+  @SuppressWarnings("unchecked")
+  protected E readEnd(final boolean max) {
+    Function<AvlTree<K, E>, Object> read = new Function<AvlTree<K, E>, Object>() {
+      @Override
+      public Object apply(AvlTree<K, E> tree) {
+        AvlTreeNode<K, E> node;
+        if (max) {
+          node = tree.getMaxNodeBounded();
+        } else {
+          node = tree.getMinNodeBounded();
+        }
+        Object found = ShardedAvlTree.ABSENT;
+        if (node != null) {
+          found = node.getData();
+        }
+        return found;
+      }
+    };
+    Object found = ShardedAvlTree.RETRY;
+    while (found == ShardedAvlTree.RETRY) {
+      AvlTreeShard<K, E>[] shards = this.getShards();
+      found = ShardedAvlTree.ABSENT;
+      for (int i = 0; i < shards.length && found == ShardedAvlTree.ABSENT; ++i) {
+        int index = i;
+        if (max) {
+          index = shards.length - 1 - i;
+        }
+        found = this.readShard(shards[index], read);
+      }
+    }
+    E data = null;
+    if (found != ShardedAvlTree.ABSENT) {
+      data = (E)found;
+    }
+    return data;
+  }
+  /**
+   * Reads a shard, first under an optimistic stamp and then, if a writer got in the way, under the read lock.
+   * The read must walk the tree with the bounded searches of AvlTree, so that links changing under the stamp
+   * end the walk with an exception instead of trapping it before the stamp is validated.
+   * @param shard The shard.
+   * @param read The read.
+   * @return The result of the read, or RETRY if the shard has been replaced.
+   */
+  protected Object readShard(AvlTreeShard<K, E> shard, Function<AvlTree<K, E>, Object> read) {
+    StampedLock lock = shard.getLock();
+    Object result = ShardedAvlTree.RETRY;
+    RuntimeException failure = null;
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L) {
+      try {
+        if (!shard.isRetired()) {
+          result = read.apply(shard.getTree());
+        }
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+    boolean valid = (stamp != 0L && lock.validate(stamp));
+    if (valid && failure != null) {
+      throw failure;
+    }
+    if (!valid) {
+      stamp = lock.readLock();
+      try {
+        result = ShardedAvlTree.RETRY;
+        if (!shard.isRetired()) {
+          result = read.apply(shard.getTree());
+        }
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return result;
+  }
+  /**
+   * Removes an element from the tree.
+   * @param key The key of the element.
+   */
+  public void remove(K key) {
+    AvlTreeShard<K, E> shard = null;
+    boolean done = false;
+    while (!done) {
+      AvlTreeShard<K, E>[] shards = this.getShards();
+      shard = shards[this.route(shards, key)];
+      long stamp = shard.getLock().writeLock();
+      try {
+        if (!shard.isRetired()) {
+          AvlTree<K, E> tree = shard.getTree();
+          int count = tree.getCount();
+          tree.remove(key);
+          this.mCount.add(tree.getCount() - count);
+          done = true;
+        }
+      } finally {
+        shard.getLock().unlockWrite(stamp);
+      }
+    }
+    this.checkBalance(shard);
+  }
+  /**
+   * Finds the shard whose range holds a key.
+   * @param shards The shards in key order.
+   * @param key The key.
+   * @return The position of the last shard whose smallest key is not larger than the key.
+   */
+  @SuppressWarnings("unchecked")
+  protected int route(AvlTreeShard<K, E>[] shards, K key) {
+    //the first shard has no lower bound, so the search is over the others
+    int lo = 1;
+    int hi = shards.length - 1;
+    int index = 0;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (key.compareTo(shards[mid].getLo()) >= 0) {
+        index = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return index;
+  }
+  /**
+   * Splits a large shard at its median key, if it is still large.
+   * @param shard The shard.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  protected void split(AvlTreeShard<K, E> shard) {
+    synchronized (this.mRebalanceMonitor) {
+      AvlTreeShard<K, E>[] shards = this.getShards();
+      int index = this.indexOf(shards, shard);
+      if (index >= 0) {
+        long stamp = shard.getLock().writeLock();
+        try {
+          AvlTree<K, E> tree = shard.getTree();
+          int count = tree.getCount();
+          if (count > shard.getSplitAbove()) {
+            K mid = tree.select(count / 2);
+            AvlTree<K, E> right = tree.splitFrom(mid);
+            AvlTreeShard<K, E>[] next = new AvlTreeShard[shards.length + 1];
+            System.arraycopy(shards, 0, next, 0, index);
+            next[index] = new AvlTreeShard<K, E>(shard.getLo(), tree);
+            next[index + 1] = new AvlTreeShard<K, E>(mid, right);
+            System.arraycopy(shards, index + 1, next, index + 2, shards.length - index - 1);
+            shard.setRetired(true);
+            this.publish(next);
+          }
+        } finally {
+          shard.getLock().unlockWrite(stamp);
+        }
+      }
+    }
+  }
+  /**
+   * Gets a string representation of the tree.
+   * @return The number of shards and elements.
+   */
+  @Override
+  public String toString() {
+    String rep = "(shards=" + this.getShardCount() + ";count=" + this.getCount() + ")";
+    return rep;
+  }
+}
@@ -0,0 +1,130 @@
+package wg.avl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A weakly consistent iterator over the entries of a sharded AVL tree, in key order.
+ * Entries are copied a chunk at a time under the read lock of one shard. Each chunk resumes after the
+ * last key copied, or at the start of the next shard, so the iterator never fails under concurrent updates,
+ * splits or merges, and returns each key at most once and in order.
+ * The entries are snapshots: setValue is not supported.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class ShardedAvlTreeIterator<K extends Comparable, E> implements Iterator<Map.Entry<K, E>> {
+  /**
+   * The number of entries copied under a lock at a time.
+   */
+  public static final int CHUNK_SIZE = 256;
+  /**
+   * The entries copied and not yet returned.
+   */
+  private Iterator<Map.Entry<K, E>> mBuffer;
+  /**
+   * Indicates if every shard in the range has been copied.
+   */
+  private boolean mDone;
+  /**
+   * The key to resume from, or null to start at the smallest key.
+   */
+  private K mFrom;
+  /**
+   * Indicates if the key to resume from is itself included.
+   */
+  private boolean mFromInclusive;
+  /**
+   * The largest key, exclusive, or null for no upper bound.
+   */
+  private K mHi;
+  /**
+   * The tree being iterated.
+   */
+  private ShardedAvlTree<K, E> mTree;
+  /**
+   * Creates an instance of the ShardedAvlTreeIterator class.
+   * @param tree The tree.
+   * @param lo The smallest key, inclusive, or null for no lower bound.
+   * @param hi The largest key, exclusive, or null for no upper bound.
+   */
+  public ShardedAvlTreeIterator(ShardedAvlTree<K, E> tree, K lo, K hi) {
+    this.mBuffer = Collections.<Map.Entry<K, E>>emptyList().iterator();
+    this.mDone = false;
+    this.mFrom = lo;
+    this.mFromInclusive = true;
+    this.mHi = hi;
+    this.mTree = tree;
+  }
+  /**
+   * Copies the next chunk of entries, or moves on to the next shard if the current one has no more.
+   */
+  @SuppressWarnings("unchecked")
+  protected void fetch() {
+    AvlTreeShard<K, E>[] shards = this.mTree.getShards();
+    int index = 0;
+    if (this.mFrom != null) {
+      index = this.mTree.route(shards, this.mFrom);
+    }
+    AvlTreeShard<K, E> shard = shards[index];
+    ArrayList<Map.Entry<K, E>> chunk = new ArrayList<Map.Entry<K, E>>();
+    StampedLock lock = shard.getLock();
+    boolean retired;
+    long stamp = lock.readLock();
+    try {
+      retired = shard.isRetired();
+      if (!retired) {
+        AvlTreeRange<K, E> range = new AvlTreeRange<K, E>(shard.getTree(), this.mFrom, this.mFromInclusive, this.mHi, false);
+        Iterator<Map.Entry<K, E>> entries = range.iterator();
+        while (entries.hasNext() && chunk.size() < CHUNK_SIZE) {
+          Map.Entry<K, E> entry = entries.next();
+          chunk.add(new AbstractMap.SimpleImmutableEntry<K, E>(entry.getKey(), entry.getValue()));
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    //a replaced shard copies nothing, and the next call routes the same key through the new shards
+    if (!retired) {
+      if (chunk.size() == CHUNK_SIZE) {
+        this.mFrom = chunk.get(CHUNK_SIZE - 1).getKey();
+        this.mFromInclusive = false;
+      } else if (index + 1 < shards.length
+          && (this.mHi == null || this.mHi.compareTo(shards[index + 1].getLo()) > 0)) {
+        this.mFrom = shards[index + 1].getLo();
+        this.mFromInclusive = true;
+      } else {
+        this.mDone = true;
+      }
+      this.mBuffer = chunk.iterator();
+    }
+  }
+  /**
+   * Indicates if there is another entry.
+   * @return True, if there is another entry.
+   */
+  @Override
+  public boolean hasNext() {
+    while (!this.mBuffer.hasNext() && !this.mDone) {
+      this.fetch();
+    }
+    return this.mBuffer.hasNext();
+  }
+  /**
+   * Gets the next entry.
+   * @return The entry.
+   * @throws NoSuchElementException If there are no more entries.
+   */
+  @Override
+  public Map.Entry<K, E> next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return this.mBuffer.next();
+  }
+}
@@ -0,0 +1,841 @@
+package wg.avl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A thread-safe AVL tree that guards another tree with a StampedLock.
+ * Changes hold the write lock. Point reads first run under an optimistic stamp and only take the read lock
+ * if a writer got in the way, so readers never block each other. Bulk reads hold the read lock.
+ * Iterators, spliterators and streams work on a copy taken under the read lock, and ranges on a copy of
+ * just the entries within them.
+ * A StampedAvlTree passed to concat or a set operation is locked too. Any other tree passed to them is emptied
+ * without locking it, so it must not be shared.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class StampedAvlTree<K extends Comparable, E> extends AvlTree<K, E> {
+  /**
+   * The lock held while locking two trees whose identity hash codes are equal.
+   */
+  private static final Object TIE_LOCK = new Object();
+  /**
+   * The lock.
+   */
+  private StampedLock mLock;
+  /**
+   * The tree to guard.
+   */
+  private AvlTree<K, E> mSubj;
+  /**
+   * Gets the lock.
+   * @return The lock.
+   */
+  public StampedLock getLock() {
+    return this.mLock;
+  }
+  /**
+   * Gets the tree being guarded.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getSubj() {
+    return this.mSubj;
+  }
+  /**
+   * Creates an instance of the StampedAvlTree class.
+   */
+  public StampedAvlTree() {
+    this(new AvlTree<K, E>());
+  }
+  /**
+   * Creates an instance of the StampedAvlTree class.
+   * @param subj The tree to guard. It must not be used directly afterwards.
+   */
+  public StampedAvlTree(AvlTree<K, E> subj) {
+    this.mLock = new StampedLock();
+    this.mSubj = subj;
+  }
+  /**
+   * Adds a listener to the guarded tree.
+   * Listeners run on the changing thread while it holds the write lock, so they must not call back into this tree.
+   * @param listener The listener.
+   * @param coalesce True, to hand the listener only the net change to each key in each delivery.
+   */
+  @Override
+  public void addListener(AvlTreeListener<K, E> listener, boolean coalesce) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().addListener(listener, coalesce);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Opens a batch of changes. The batch is shared by every thread that changes the tree.
+   */
+  @Override
+  public void beginBatch() {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().beginBatch();
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements.
+   * @param keys The keys, in ascending order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void bulkLoad(K[] keys, E[] data) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().bulkLoad(keys, data);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Replaces the elements of the tree with sorted elements.
+   * @param entries The entries, in ascending key order.
+   */
+  @Override
+  public void bulkLoad(Iterator<? extends Map.Entry<? extends K, ? extends E>> entries) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().bulkLoad(entries);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Replaces the elements of the tree with unsorted elements.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void bulkLoadUnsorted(K[] keys, E[] data) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().bulkLoadUnsorted(keys, data);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Appends the elements of another tree whose keys are all at least the largest key of this tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void concat(AvlTree<K, E> other) {
+    this.writeBoth(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        StampedAvlTree.this.getSubj().concat(emptied);
+      }
+    });
+  }
+  /**
+   * Indicates if this tree contains the given key.
+   * @param key The key.
+   * @return True, if this tree contains the given key.
+   */
+  @Override
+  public boolean contains(K key) {
+    boolean contains = false;
+    RuntimeException failure = null;
+    long stamp = this.getLock().tryOptimisticRead();
+    if (stamp != 0L) {
+      try {
+        //the walk is bounded, since links can change under an optimistic stamp
+        contains = (this.getSubj().findNodeBounded(key) != null);
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+    if (!this.validate(stamp, failure)) {
+      stamp = this.getLock().readLock();
+      try {
+        contains = this.getSubj().contains(key);
+      } finally {
+        this.getLock().unlockRead(stamp);
+      }
+    }
+    return contains;
+  }
+  /**
+   * Counts the elements whose keys are within a range.
+   * @param lo The smallest key, inclusive.
+   * @param hi The largest key, inclusive.
+   * @return The number of elements.
+   */
+  @Override
+  public int countRange(K lo, K hi) {
+    int count;
+    long stamp = this.getLock().readLock();
+    try {
+      count = this.getSubj().countRange(lo, hi);
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return count;
+  }
+  /**
+   * Creates a node.
+   * @return The new node.
+   */
+  @Override
+  protected AvlTreeNode<K, E> createNode() {
+    return this.getSubj().createNode();
+  }
+  /**
+   * Decrements the count.
+   */
+  @Override
+  protected void decrementCount() {
+    this.getSubj().decrementCount();
+  }
+  /**
+   * Gets an iterator over a copy of the entries, from the largest key down.
+   * @return The iterator, which does not support remove.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> descendingIterator() {
+    ArrayList<Map.Entry<K, E>> entries = new ArrayList<Map.Entry<K, E>>();
+    long stamp = this.getLock().readLock();
+    try {
+      Iterator<Map.Entry<K, E>> iterator = this.getSubj().descendingIterator();
+      while (iterator.hasNext()) {
+        Map.Entry<K, E> entry = iterator.next();
+        entries.add(new AbstractMap.SimpleImmutableEntry<K, E>(entry));
+      }
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return Collections.unmodifiableList(entries).iterator();
+  }
+  /**
+   * Sets the data of a key, replacing the data of the first node found with the key, or inserting it.
+   * @param key The key.
+   * @param data The data.
+   * @return The previous data, or null if the key was not in the tree.
+   */
+  @Override
+  public E put(K key, E data) {
+    E previous;
+    long stamp = this.getLock().writeLock();
+    try {
+      previous = this.getSubj().put(key, data);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return previous;
+  }
+  /**
+   * Sets the data of a key if the key is not in the tree or has null data.
+   * @param key The key.
+   * @param data The data.
+   * @return The current data, or null if the data was set.
+   */
+  @Override
+  public E putIfAbsent(K key, E data) {
+    E current;
+    long stamp = this.getLock().writeLock();
+    try {
+      current = this.getSubj().putIfAbsent(key, data);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return current;
+  }
+  /**
+   * Computes new data for a key from its current data, or from null if the key is not in the tree.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if the key was removed or not added.
+   */
+  @Override
+  public E compute(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    E data;
+    long stamp = this.getLock().writeLock();
+    try {
+      data = this.getSubj().compute(key, function);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return data;
+  }
+  /**
+   * Computes new data for a key that is in the tree with non-null data.
+   * @param key The key.
+   * @param function The function of the key and the current data.
+   * @return The new data, or null if there was none or the key was removed.
+   */
+  @Override
+  public E computeIfPresent(K key, BiFunction<? super K, ? super E, ? extends E> function) {
+    E data;
+    long stamp = this.getLock().writeLock();
+    try {
+      data = this.getSubj().computeIfPresent(key, function);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return data;
+  }
+  /**
+   * Sets the data of a key, or combines it with the current data if there is any.
+   * @param key The key.
+   * @param data The data to set or combine.
+   * @param function The function of the current data and the given data.
+   * @return The new data, or null if the key was removed.
+   */
+  @Override
+  public E merge(K key, E data, BiFunction<? super E, ? super E, ? extends E> function) {
+    E merged;
+    long stamp = this.getLock().writeLock();
+    try {
+      merged = this.getSubj().merge(key, data, function);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return merged;
+  }
+  /**
+   * Removes the elements whose keys are in another tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void difference(AvlTree<K, E> other) {
+    this.writeBoth(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        StampedAvlTree.this.getSubj().difference(emptied);
+      }
+    });
+  }
+  /**
+   * Closes a batch of changes, handing the held changes to the listeners if it was the outermost.
+   */
+  @Override
+  public void endBatch() {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().endBatch();
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Gets the element at a position in key order.
+   * @param index The zero-based position.
+   * @return The element.
+   */
+  @Override
+  public E get(int index) {
+    E data;
+    long stamp = this.getLock().readLock();
+    try {
+      data = this.getSubj().get(index);
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return data;
+  }
+  /**
+   * Gets the key order.
+   * @return The comparator, or null for the natural ordering.
+   */
+  @Override
+  public Comparator<? super K> getComparator() {
+    return this.getSubj().getComparator();
+  }
+  /**
+   * Gets the number of elements stored in the tree.
+   * @return The number of elements.
+   */
+  @Override
+  public int getCount() {
+    int count = 0;
+    long stamp = this.getLock().tryOptimisticRead();
+    if (stamp != 0L) {
+      count = this.getSubj().getCount();
+    }
+    if (!this.validate(stamp, null)) {
+      stamp = this.getLock().readLock();
+      try {
+        count = this.getSubj().getCount();
+      } finally {
+        this.getLock().unlockRead(stamp);
+      }
+    }
+    return count;
+  }
+  /**
+   * Gets the collection of elements ordered by key value.
+   * @return The ordered collection of elements.
+   */
+  @Override
+  public Object[] getInOrder() {
+    Object[] collection;
+    long stamp = this.getLock().readLock();
+    try {
+      collection = this.getSubj().getInOrder();
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return collection;
+  }
+  /**
+   * The recursive method to get the collection of elements in order.
+   * @param node The current node.
+   * @param index The current index.
+   * @param collection The collection.
+   * @return The new index.
+   */
+  @Override
+  protected int getInOrderRec(AvlTreeNode<K, E> node, int index, Object[] collection) {
+    return this.getSubj().getInOrderRec(node, index, collection);
+  }
+  /**
+   * Gets the element that is associated with the largest key.
+   * @return The element.
+   */
+  @Override
+  public E getMax() {
+    E max = null;
+    RuntimeException failure = null;
+    long stamp = this.getLock().tryOptimisticRead();
+    if (stamp != 0L) {
+      try {
+        AvlTreeNode<K, E> node = this.getSubj().getMaxNodeBounded();
+        max = (node == null) ? null : node.getData();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+    if (!this.validate(stamp, failure)) {
+      stamp = this.getLock().readLock();
+      try {
+        max = this.getSubj().getMax();
+      } finally {
+        this.getLock().unlockRead(stamp);
+      }
+    }
+    return max;
+  }
+  /**
+   * Gets the element that is associated with the smallest key.
+   * @return The element.
+   */
+  @Override
+  public E getMin() {
+    E min = null;
+    RuntimeException failure = null;
+    long stamp = this.getLock().tryOptimisticRead();
+    if (stamp != 0L) {
+      try {
+        AvlTreeNode<K, E> node = this.getSubj().getMinNodeBounded();
+        min = (node == null) ? null : node.getData();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+    if (!this.validate(stamp, failure)) {
+      stamp = this.getLock().readLock();
+      try {
+        min = this.getSubj().getMin();
+      } finally {
+        this.getLock().unlockRead(stamp);
+      }
+    }
+    return min;
+  }
+  /**
+   * Gets the root node.
+   * @return The root node.
+   */
+  @Override
+  protected AvlTreeNode<K, E> getRoot() {
+    return this.getSubj().getRoot();
+  }
+  /**
+   * Gets a view of a copy of the entries whose keys are smaller than a key.
+   * @param hi The key, exclusive.
+   * @return The view.
+   */
+  @Override
+  public AvlTreeRange<K, E> headFrom(K hi) {
+    return this.snapshot(this.getSubj().headFrom(hi)).headFrom(hi);
+  }
+  /**
+   * Increments the current count by one.
+   */
+  @Override
+  protected void incrementCount() {
+    this.getSubj().incrementCount();
+  }
+  /**
+   * Inserts an element into the tree based on the key.
+   * @param key The key.
+   * @param data The element.
+   */
+  @Override
+  public void insert(K key, E data) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().insert(key, data);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Inserts a batch of elements in one pass over the tree.
+   * @param keys The keys, in any order.
+   * @param data The elements, in the same order as the keys.
+   */
+  @Override
+  public void insertAll(K[] keys, E[] data) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().insertAll(keys, data);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Keeps only the elements whose keys are also in another tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void intersection(AvlTree<K, E> other) {
+    this.writeBoth(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        StampedAvlTree.this.getSubj().intersection(emptied);
+      }
+    });
+  }
+  /**
+   * Indicates if searches start from the finger.
+   * @return True, if finger search is enabled.
+   */
+  @Override
+  public boolean isFingerEnabled() {
+    return this.getSubj().isFingerEnabled();
+  }
+  /**
+   * Indicates if the tree is empty or not.
+   * @return True, if the tree is empty; otherwise, false.
+   */
+  @Override
+  public boolean isEmpty() {
+    boolean isEmpty = (this.getCount() == 0);
+    return isEmpty;
+  }
+  /**
+   * Gets an iterator over a copy of the entries in key order.
+   * @return The iterator, which does not support remove.
+   */
+  @Override
+  public Iterator<Map.Entry<K, E>> iterator() {
+    ArrayList<Map.Entry<K, E>> entries = new ArrayList<Map.Entry<K, E>>();
+    long stamp = this.getLock().readLock();
+    try {
+      for (Map.Entry<K, E> entry : this.getSubj()) {
+        entries.add(new AbstractMap.SimpleImmutableEntry<K, E>(entry));
+      }
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return Collections.unmodifiableList(entries).iterator();
+  }
+  /**
+   * Gets a view of a copy of the entries whose keys are within a range.
+   * @param lo The smallest key, inclusive.
+   * @param hi The largest key, exclusive.
+   * @return The view.
+   */
+  @Override
+  public AvlTreeRange<K, E> range(K lo, K hi) {
+    return this.snapshot(this.getSubj().range(lo, hi)).range(lo, hi);
+  }
+  /**
+   * Gets the number of elements whose keys are smaller than a key.
+   * @param key The key.
+   * @return The number of elements.
+   */
+  @Override
+  public int rank(K key) {
+    int rank;
+    long stamp = this.getLock().readLock();
+    try {
+      rank = this.getSubj().rank(key);
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return rank;
+  }
+  /**
+   * Removes an element from the tree based on it's key.
+   * @param key The key.
+   */
+  @Override
+  public void remove(K key) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().remove(key);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Removes a listener from the guarded tree.
+   * @param listener The listener.
+   * @return True, if the listener was found.
+   */
+  @Override
+  public boolean removeListener(AvlTreeListener<K, E> listener) {
+    boolean removed;
+    long stamp = this.getLock().writeLock();
+    try {
+      removed = this.getSubj().removeListener(listener);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return removed;
+  }
+  /**
+   * Removes every element whose key is in a batch, in one pass over the tree.
+   * @param keys The keys, in any order.
+   */
+  @Override
+  public void removeAll(K[] keys) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().removeAll(keys);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Gets the key at a position in key order.
+   * @param index The zero-based position.
+   * @return The key.
+   */
+  @Override
+  public K select(int index) {
+    K key;
+    long stamp = this.getLock().readLock();
+    try {
+      key = this.getSubj().select(index);
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return key;
+  }
+  /**
+   * Sets the current count.
+   * @param count The current count.
+   */
+  @Override
+  protected void setCount(int count) {
+    this.getSubj().setCount(count);
+  }
+  /**
+   * Sets whether searches start from the finger.
+   * @param fingerEnabled True, to enable finger search.
+   */
+  @Override
+  public void setFingerEnabled(boolean fingerEnabled) {
+    long stamp = this.getLock().writeLock();
+    try {
+      this.getSubj().setFingerEnabled(fingerEnabled);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+  }
+  /**
+   * Sets the root of the tree being guarded to the result of a split or join.
+   * @param root The new root, or null.
+   */
+  @Override
+  protected void setJoined(AvlTreeNode<K, E> root) {
+    this.getSubj().setJoined(root);
+  }
+  /**
+   * Sets the root node.
+   * @param root The root node.
+   */
+  @Override
+  protected void setRoot(AvlTreeNode<K, E> root) {
+    this.getSubj().setRoot(root);
+  }
+  /**
+   * Copies the elements into a new tree under the read lock.
+   * @return The copy.
+   */
+  protected AvlTree<K, E> snapshot() {
+    return this.snapshot(this.getSubj());
+  }
+  /**
+   * Copies some of the elements into a new tree under the read lock.
+   * A range of the guarded tree seeks to its start, so copying it costs O(log n + k) for k elements.
+   * @param entries The entries of the guarded tree to copy, in ascending key order.
+   * @return The copy.
+   */
+  protected AvlTree<K, E> snapshot(Iterable<Map.Entry<K, E>> entries) {
+    AvlTree<K, E> copy = new AvlTree<K, E>(this.getComparator());
+    long stamp = this.getLock().readLock();
+    try {
+      copy.bulkLoad(entries.iterator());
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return copy;
+  }
+  /**
+   * Moves the elements whose keys are at least a key into a new tree.
+   * @param key The key.
+   * @return The new tree, which is not guarded.
+   */
+  @Override
+  public AvlTree<K, E> splitFrom(K key) {
+    AvlTree<K, E> split;
+    long stamp = this.getLock().writeLock();
+    try {
+      split = this.getSubj().splitFrom(key);
+    } finally {
+      this.getLock().unlockWrite(stamp);
+    }
+    return split;
+  }
+  /**
+   * Gets a spliterator over a copy of the entries that splits at sub-tree boundaries.
+   * @return The spliterator.
+   */
+  @Override
+  public Spliterator<Map.Entry<K, E>> spliterator() {
+    return this.snapshot().spliterator();
+  }
+  /**
+   * Gets a sequential stream over a copy of the entries in key order.
+   * @return The stream.
+   */
+  @Override
+  public Stream<Map.Entry<K, E>> stream() {
+    return this.snapshot().stream();
+  }
+  /**
+   * Gets a view of a copy of the entries whose keys are at least a key.
+   * @param lo The key, inclusive.
+   * @return The view.
+   */
+  @Override
+  public AvlTreeRange<K, E> tailFrom(K lo) {
+    return this.snapshot(this.getSubj().tailFrom(lo)).tailFrom(lo);
+  }
+  /**
+   * Gets the string representation of the tree.
+   * @return The string representation.
+   */
+  @Override
+  public String toString() {
+    String rep;
+    long stamp = this.getLock().readLock();
+    try {
+      rep = this.getSubj().toString();
+    } finally {
+      this.getLock().unlockRead(stamp);
+    }
+    return rep;
+  }
+  /**
+   * Adds the elements of another tree whose keys are not already in this tree.
+   * @param other The other tree.
+   */
+  @Override
+  public void union(AvlTree<K, E> other) {
+    this.writeBoth(other, new Consumer<AvlTree<K, E>>() {
+      @Override
+      public void accept(AvlTree<K, E> emptied) {
+        StampedAvlTree.this.getSubj().union(emptied);
+      }
+    });
+  }
+  /**
+   * Checks an optimistic read.
+   * A read that overlapped a writer may have seen a half-made change and failed because of it,
+   * so a failure only counts if the stamp is still valid.
+   * @param stamp The stamp, or zero if no optimistic read was made.
+   * @param failure The exception the read threw, or null.
+   * @return True, if the read is valid.
+   */
+  protected boolean validate(long stamp, RuntimeException failure) {
+    boolean valid = (stamp != 0L && this.getLock().validate(stamp));
+    if (valid && failure != null) {
+      throw failure;
+    }
+    return valid;
+  }
+  /**
+   * Makes a change that empties another tree into this tree, holding the write locks of both trees.
+   * If the other tree is a StampedAvlTree, the change is handed the tree it guards, so that the listeners
+   * of the other tree hear that it was emptied.
+   * The locks are taken in the order of the trees' identity hash codes, so that two threads combining
+   * the same trees in opposite directions cannot deadlock. Trees with equal hash codes are locked under TIE_LOCK.
+   * @param other The other tree.
+   * @param change The change, handed the tree to empty.
+   */
+  protected void writeBoth(AvlTree<K, E> other, Consumer<AvlTree<K, E>> change) {
+    if (other instanceof StampedAvlTree && other != this) {
+      StampedAvlTree<K, E> that = (StampedAvlTree<K, E>)other;
+      int order = Integer.compare(System.identityHashCode(this), System.identityHashCode(that));
+      if (order == 0) {
+        synchronized (StampedAvlTree.TIE_LOCK) {
+          this.writeBoth(that, change, true);
+        }
+      } else {
+        this.writeBoth(that, change, order < 0);
+      }
+    } else {
+      long stamp = this.getLock().writeLock();
+      try {
+        change.accept(other);
+      } finally {
+        this.getLock().unlockWrite(stamp);
+      }
+    }
+  }
+  /**
+   * Makes a change that empties another StampedAvlTree into this tree, holding the write locks of both trees.
+   * @param other The other tree.
+   * @param change The change, handed the tree the other tree guards.
+   * @param thisFirst True, to take the lock of this tree first.
+   */
+  protected void writeBoth(StampedAvlTree<K, E> other, Consumer<AvlTree<K, E>> change, boolean thisFirst) {
+    StampedLock first = (thisFirst ? this.getLock() : other.getLock());
+    StampedLock second = (thisFirst ? other.getLock() : this.getLock());
+    long firstStamp = first.writeLock();
+    try {
+      long secondStamp = second.writeLock();
+      try {
+        change.accept(other.getSubj());
+      } finally {
+        second.unlockWrite(secondStamp);
+      }
+    } finally {
+      first.unlockWrite(firstStamp);
+    }
+  }
+}
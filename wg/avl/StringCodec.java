@@ -0,0 +1,49 @@
+package wg.avl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A codec for String values that writes the UTF-8 bytes after a varint length.
+ * @author Wesley Garey
+ */
+public class StringCodec implements AvlCodec<String> {
+  /**
+   * Creates an instance of the StringCodec class.
+   */
+  public StringCodec() {
+  }
+  /**
+   * Reads a value.
+   * @param in The buffer, positioned at the value.
+   * @param previous Not used.
+   * @return The value.
+   * @throws IOException If the value is malformed.
+   */
+  @Override
+  public String read(ByteBuffer in, String previous) throws IOException {
+    long length = AvlSnapshot.readVarLong(in);
+    if (length < 0 || length > in.remaining()) {
+      throw new IOException("Bad string length: " + length);
+    }
+    byte[] bytes = new byte[(int)length];
+    in.get(bytes);
+    String value = new String(bytes, StandardCharsets.UTF_8);
+    return value;
+  }
+  /**
+   * Writes a value.
+   * @param out The output.
+   * @param previous Not used.
+   * @param value The value.
+   * @throws IOException If the value could not be written.
+   */
+  @Override
+  public void write(DataOutput out, String previous, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    AvlSnapshot.writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,22 @@
+package wg.avl;
+
+/**
+ * When a write-ahead log forces its records to disk.
+ * Under every policy a change is written to the operating system before the call that made it returns,
+ * so it survives the process crashing. The policy decides whether it also survives the machine crashing.
+ * @author Wesley Garey
+ */
+public enum SyncPolicy {
+  /**
+   * A change returns once it is forced to disk. Changes that wait together share one force.
+   */
+  ALWAYS,
+  /**
+   * The log is forced on a fixed interval, so a machine crash loses at most one interval of changes.
+   */
+  INTERVAL,
+  /**
+   * The operating system decides when to write to disk. The log is only forced on checkpoint and close.
+   */
+  OS
+}
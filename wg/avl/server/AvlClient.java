@@ -0,0 +1,456 @@
+package wg.avl.server;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import wg.avl.AvlCodec;
+import wg.avl.AvlSnapshot;
+
+/**
+ * A blocking client of an AvlServer that can pipeline requests.
+ * The send methods only buffer a request; flush sends everything buffered at once, and receive reads the
+ * responses back one at a time in the order the requests were sent. The other methods send one request,
+ * wait for its response and may only be called when no pipelined response is outstanding.
+ * A client is not thread-safe.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlClient<K, E> implements Closeable {
+  /**
+   * The channel.
+   */
+  private SocketChannel mChannel;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The bytes received and not yet decoded, ready to be decoded.
+   */
+  private ByteBuffer mIn;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * The requests buffered and not yet sent.
+   */
+  private AvlFrameBuffer mOut;
+  /**
+   * A data output that writes to the requests not yet sent.
+   */
+  private DataOutputStream mOutData;
+  /**
+   * The operations of the requests whose responses have not been received, oldest first.
+   */
+  private ArrayDeque<Byte> mPending;
+  /**
+   * Gets the number of requests whose responses have not been received.
+   * @return The number.
+   */
+  public int getPending() {
+    return this.mPending.size();
+  }
+  /**
+   * Creates an instance of the AvlClient class, connected to a server.
+   * @param address The address of the server.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @throws IOException If the server could not be reached.
+   */
+  public AvlClient(InetSocketAddress address, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec) throws IOException {
+    this.mChannel = SocketChannel.open(address);
+    this.mChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    this.mDataCodec = dataCodec;
+    this.mIn = ByteBuffer.allocate(AvlServerConnection.BUFFER_SIZE);
+    this.mIn.flip();
+    this.mKeyCodec = keyCodec;
+    this.mOut = new AvlFrameBuffer(AvlServerConnection.BUFFER_SIZE);
+    this.mOutData = new DataOutputStream(this.mOut);
+    this.mPending = new ArrayDeque<Byte>();
+  }
+  /**
+   * Sends one request and waits for its response.
+   * @return The response.
+   * @throws IOException If the connection failed or the server answered with an error.
+   */
+  protected AvlResponse<K, E> call() throws IOException {
+    if (this.mPending.size() != 1) {
+      throw new IllegalStateException("Pipelined responses are outstanding.");
+    }
+    this.flush();
+    AvlResponse<K, E> response = this.receive();
+    if (response.isError()) {
+      throw new IOException(response.getMessage());
+    }
+    return response;
+  }
+  /**
+   * Closes the connection. Responses not yet received are lost.
+   * @throws IOException If the channel could not be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.mChannel.close();
+  }
+  /**
+   * Indicates if the server has a key.
+   * @param key The key.
+   * @return True, if the tree contains the key.
+   * @throws IOException If the request failed.
+   */
+  public boolean contains(K key) throws IOException {
+    this.sendContains(key);
+    return this.call().isFound();
+  }
+  /**
+   * Decodes the body of a response.
+   * @param op The operation of the request answered.
+   * @param body The body.
+   * @return The response.
+   * @throws IOException If the body is malformed.
+   */
+  protected AvlResponse<K, E> decode(byte op, ByteBuffer body) throws IOException {
+    AvlResponse<K, E> response = new AvlResponse<K, E>(op, body.get());
+    if (response.isError()) {
+      response.setMessage(AvlProtocol.readString(body));
+    } else if (response.isFound()) {
+      switch (op) {
+        case AvlProtocol.PUT:
+        case AvlProtocol.GET:
+          response.setData(AvlProtocol.readData(body, this.mDataCodec));
+          break;
+        case AvlProtocol.MIN:
+        case AvlProtocol.MAX:
+          response.setKey(this.mKeyCodec.read(body, null));
+          response.setData(AvlProtocol.readData(body, this.mDataCodec));
+          break;
+        case AvlProtocol.RANGE:
+          long count = AvlSnapshot.readVarLong(body);
+          if (count < 0 || count > AvlProtocol.MAX_RANGE) {
+            throw new IOException("Bad range count: " + count);
+          }
+          ArrayList<Map.Entry<K, E>> entries = new ArrayList<Map.Entry<K, E>>((int)count);
+          K previous = null;
+          for (long i = 0; i < count; ++i) {
+            K key = this.mKeyCodec.read(body, previous);
+            entries.add(new AbstractMap.SimpleImmutableEntry<K, E>(key, AvlProtocol.readData(body, this.mDataCodec)));
+            previous = key;
+          }
+          response.setEntries(entries);
+          response.setMore(body.get() != 0);
+          break;
+        default:
+          break;
+      }
+    }
+    return response;
+  }
+  /**
+   * Sends every buffered request.
+   * @throws IOException If the connection failed.
+   */
+  public void flush() throws IOException {
+    this.mOut.send(this.mChannel);
+  }
+  /**
+   * Gets the data of a key.
+   * @param key The key.
+   * @return The data, or null if the key is not in the tree.
+   * @throws IOException If the request failed.
+   */
+  public E get(K key) throws IOException {
+    this.sendGet(key);
+    return this.call().getData();
+  }
+  /**
+   * Gets the largest entry.
+   * @return The entry, or null if the tree is empty.
+   * @throws IOException If the request failed.
+   */
+  public Map.Entry<K, E> getMax() throws IOException {
+    this.sendMax();
+    return this.toEntry(this.call());
+  }
+  /**
+   * Gets the smallest entry.
+   * @return The entry, or null if the tree is empty.
+   * @throws IOException If the request failed.
+   */
+  public Map.Entry<K, E> getMin() throws IOException {
+    this.sendMin();
+    return this.toEntry(this.call());
+  }
+  /**
+   * Inserts an element.
+   * @param key The key.
+   * @param data The data.
+   * @throws IOException If the request failed.
+   */
+  public void insert(K key, E data) throws IOException {
+    this.sendInsert(key, data);
+    this.call();
+  }
+  /**
+   * Sets the data of a key.
+   * @param key The key.
+   * @param data The data.
+   * @return The previous data, or null if the key was not in the tree.
+   * @throws IOException If the request failed.
+   */
+  public E put(K key, E data) throws IOException {
+    this.sendPut(key, data);
+    return this.call().getData();
+  }
+  /**
+   * Gets the entries whose keys are within a range, reading as many responses as the range takes.
+   * @param lo The smallest key, inclusive, or null for no lower bound.
+   * @param hi The largest key, exclusive, or null for no upper bound.
+   * @return The entries in key order.
+   * @throws IOException If a request failed.
+   */
+  public List<Map.Entry<K, E>> range(K lo, K hi) throws IOException {
+    ArrayList<Map.Entry<K, E>> entries = new ArrayList<Map.Entry<K, E>>();
+    K from = lo;
+    boolean fromInclusive = true;
+    boolean more = true;
+    while (more) {
+      this.sendRange(from, fromInclusive, hi, 0);
+      AvlResponse<K, E> response = this.call();
+      entries.addAll(response.getEntries());
+      more = response.isMore();
+      if (more) {
+        from = entries.get(entries.size() - 1).getKey();
+        fromInclusive = false;
+      }
+    }
+    return entries;
+  }
+  /**
+   * Reads the response to the oldest outstanding request, waiting for it if needed.
+   * @return The response.
+   * @throws IOException If the connection failed or the response is malformed.
+   * @throws IllegalStateException If no request is outstanding.
+   */
+  public AvlResponse<K, E> receive() throws IOException {
+    if (this.mPending.isEmpty()) {
+      throw new IllegalStateException("No request is outstanding.");
+    }
+    if (this.mOut.getPending() > 0) {
+      this.flush();
+    }
+    while (this.mIn.remaining() < AvlProtocol.FRAME_HEADER_SIZE
+        || this.mIn.remaining() - AvlProtocol.FRAME_HEADER_SIZE < this.mIn.getInt(this.mIn.position())) {
+      this.receiveMore();
+    }
+    int length = this.mIn.getInt();
+    ByteBuffer body = this.mIn.slice();
+    body.limit(length);
+    this.mIn.position(this.mIn.position() + length);
+    AvlResponse<K, E> response;
+    try {
+      response = this.decode(this.mPending.poll(), body);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated response.");
+    }
+    return response;
+  }
+  /**
+   * Reads more bytes from the channel, growing the buffer if a frame does not fit.
+   * @throws IOException If the connection failed or was closed, or a frame is too large.
+   */
+  protected void receiveMore() throws IOException {
+    int needed = AvlProtocol.FRAME_HEADER_SIZE;
+    if (this.mIn.remaining() >= AvlProtocol.FRAME_HEADER_SIZE) {
+      int length = this.mIn.getInt(this.mIn.position());
+      if (length < 1 || length > AvlProtocol.MAX_FRAME_SIZE) {
+        throw new IOException("Bad frame length: " + length);
+      }
+      needed += length;
+    }
+    if (needed > this.mIn.capacity()) {
+      ByteBuffer larger = ByteBuffer.allocate(needed);
+      larger.put(this.mIn);
+      this.mIn = larger;
+    } else {
+      this.mIn.compact();
+    }
+    int read = this.mChannel.read(this.mIn);
+    this.mIn.flip();
+    if (read < 0) {
+      throw new EOFException("The server closed the connection.");
+    }
+  }
+  /**
+   * Removes every element with a key.
+   * @param key The key.
+   * @throws IOException If the request failed.
+   */
+  public void remove(K key) throws IOException {
+    this.sendRemove(key);
+    this.call();
+  }
+  /**
+   * Buffers a request to check for a key.
+   * @param key The key.
+   * @throws IOException If the key could not be encoded.
+   */
+  public void sendContains(K key) throws IOException {
+    this.sendKey(AvlProtocol.CONTAINS, key);
+  }
+  /**
+   * Buffers a request to get the data of a key.
+   * @param key The key.
+   * @throws IOException If the key could not be encoded.
+   */
+  public void sendGet(K key) throws IOException {
+    this.sendKey(AvlProtocol.GET, key);
+  }
+  /**
+   * Buffers a request to insert an element.
+   * @param key The key.
+   * @param data The data.
+   * @throws IOException If the element could not be encoded.
+   */
+  public void sendInsert(K key, E data) throws IOException {
+    this.sendKeyData(AvlProtocol.INSERT, key, data);
+  }
+  /**
+   * Buffers a request with a key.
+   * @param op The operation.
+   * @param key The key.
+   * @throws IOException If the key could not be encoded.
+   */
+  protected void sendKey(byte op, K key) throws IOException {
+    this.mOut.beginFrame();
+    try {
+      this.mOutData.writeByte(op);
+      this.mKeyCodec.write(this.mOutData, null, key);
+    } catch (IOException | RuntimeException e) {
+      this.mOut.cancelFrame();
+      throw e;
+    }
+    this.mOut.endFrame();
+    this.mPending.add(op);
+  }
+  /**
+   * Buffers a request with a key and data.
+   * @param op The operation.
+   * @param key The key.
+   * @param data The data.
+   * @throws IOException If the key or data could not be encoded.
+   */
+  protected void sendKeyData(byte op, K key, E data) throws IOException {
+    this.mOut.beginFrame();
+    try {
+      this.mOutData.writeByte(op);
+      this.mKeyCodec.write(this.mOutData, null, key);
+      AvlProtocol.writeData(this.mOutData, this.mDataCodec, data);
+    } catch (IOException | RuntimeException e) {
+      this.mOut.cancelFrame();
+      throw e;
+    }
+    this.mOut.endFrame();
+    this.mPending.add(op);
+  }
+  /**
+   * Buffers a request for the largest entry.
+   */
+  public void sendMax() {
+    this.sendOp(AvlProtocol.MAX);
+  }
+  /**
+   * Buffers a request for the smallest entry.
+   */
+  public void sendMin() {
+    this.sendOp(AvlProtocol.MIN);
+  }
+  /**
+   * Buffers a request with no arguments.
+   * @param op The operation.
+   */
+  protected void sendOp(byte op) {
+    this.mOut.beginFrame();
+    this.mOut.write(op);
+    this.mOut.endFrame();
+    this.mPending.add(op);
+  }
+  /**
+   * Buffers a request to set the data of a key.
+   * @param key The key.
+   * @param data The data.
+   * @throws IOException If the element could not be encoded.
+   */
+  public void sendPut(K key, E data) throws IOException {
+    this.sendKeyData(AvlProtocol.PUT, key, data);
+  }
+  /**
+   * Buffers a request for the entries whose keys are within a range.
+   * @param lo The smallest key, or null for no lower bound.
+   * @param loInclusive True, to include the smallest key.
+   * @param hi The largest key, exclusive, or null for no upper bound.
+   * @param limit The most entries to return, or zero for as many as the server allows.
+   * @throws IOException If a bound could not be encoded.
+   */
+  public void sendRange(K lo, boolean loInclusive, K hi, int limit) throws IOException {
+    byte flags = 0;
+    if (lo != null) {
+      flags |= AvlProtocol.RANGE_LO;
+      if (!loInclusive) {
+        flags |= AvlProtocol.RANGE_LO_EXCLUSIVE;
+      }
+    }
+    if (hi != null) {
+      flags |= AvlProtocol.RANGE_HI;
+    }
+    this.mOut.beginFrame();
+    try {
+      this.mOutData.writeByte(AvlProtocol.RANGE);
+      this.mOutData.writeByte(flags);
+      if (lo != null) {
+        this.mKeyCodec.write(this.mOutData, null, lo);
+      }
+      if (hi != null) {
+        this.mKeyCodec.write(this.mOutData, null, hi);
+      }
+      AvlSnapshot.writeVarLong(this.mOutData, limit);
+    } catch (IOException | RuntimeException e) {
+      this.mOut.cancelFrame();
+      throw e;
+    }
+    this.mOut.endFrame();
+    this.mPending.add(AvlProtocol.RANGE);
+  }
+  /**
+   * Buffers a request to remove every element with a key.
+   * @param key The key.
+   * @throws IOException If the key could not be encoded.
+   */
+  public void sendRemove(K key) throws IOException {
+    this.sendKey(AvlProtocol.REMOVE, key);
+  }
+  /**
+   * Gets the entry of a min or max response.
+   * @param response The response.
+   * @return The entry, or null if nothing was found.
+   */
+  protected Map.Entry<K, E> toEntry(AvlResponse<K, E> response) {
+    Map.Entry<K, E> entry = null;
+    if (response.isFound()) {
+      entry = new AbstractMap.SimpleImmutableEntry<K, E>(response.getKey(), response.getData());
+    }
+    return entry;
+  }
+}
@@ -0,0 +1,85 @@
+package wg.avl.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An output buffer of frames waiting to be sent on a channel.
+ * Frames are encoded in place, the length patched in once the body is written, and sent straight from the
+ * backing array, so a batch of pipelined messages goes out in as few writes as the channel allows.
+ * @author Wesley Garey
+ */
+public class AvlFrameBuffer extends ByteArrayOutputStream {
+  /**
+   * The position of the header of the frame being written.
+   */
+  private int mFrameStart;
+  /**
+   * The number of bytes already sent.
+   */
+  private int mSent;
+  /**
+   * Gets the number of bytes waiting to be sent.
+   * @return The number.
+   */
+  public synchronized int getPending() {
+    return this.count - this.mSent;
+  }
+  /**
+   * Creates an instance of the AvlFrameBuffer class.
+   * @param size The initial capacity.
+   */
+  public AvlFrameBuffer(int size) {
+    super(size);
+    this.mFrameStart = 0;
+    this.mSent = 0;
+  }
+  /**
+   * Starts a frame by reserving its header.
+   */
+  public synchronized void beginFrame() {
+    this.mFrameStart = this.count;
+    for (int i = 0; i < AvlProtocol.FRAME_HEADER_SIZE; ++i) {
+      this.write(0);
+    }
+  }
+  /**
+   * Drops the frame being written, such as when its body failed to encode.
+   */
+  public synchronized void cancelFrame() {
+    this.count = this.mFrameStart;
+  }
+  /**
+   * Ends a frame by writing the length of its body into its header.
+   */
+  public synchronized void endFrame() {
+    int length = this.count - this.mFrameStart - AvlProtocol.FRAME_HEADER_SIZE;
+    this.buf[this.mFrameStart] = (byte)(length >>> 24);
+    this.buf[this.mFrameStart + 1] = (byte)(length >>> 16);
+    this.buf[this.mFrameStart + 2] = (byte)(length >>> 8);
+    this.buf[this.mFrameStart + 3] = (byte)length;
+  }
+  /**
+   * Sends as much as the channel takes without blocking, or everything if the channel blocks.
+   * The buffer is emptied once everything is sent.
+   * @param channel The channel.
+   * @return The number of bytes sent.
+   * @throws IOException If the channel failed.
+   */
+  public synchronized int send(WritableByteChannel channel) throws IOException {
+    int total = 0;
+    int written = 1;
+    while (this.mSent < this.count && written > 0) {
+      written = channel.write(ByteBuffer.wrap(this.buf, this.mSent, this.count - this.mSent));
+      this.mSent += written;
+      total += written;
+    }
+    if (this.mSent == this.count) {
+      this.reset();
+      this.mSent = 0;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,243 @@
+package wg.avl.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import wg.avl.AvlTree;
+import wg.avl.LongDeltaCodec;
+
+/**
+ * A load generator for an AvlServer with Long keys and Long data.
+ * Each connection runs on its own thread and repeatedly pipelines a batch of requests, a mix of gets with
+ * inserts and removes of random keys, then waits for the whole batch. It reports throughput and the
+ * round-trip time of a batch.
+ * Arguments, all optional:
+ * <ul>
+ * <li>--host name, --port n: the server, by default an embedded one on the loopback address.</li>
+ * <li>--threads: make the embedded server give each connection its own thread.</li>
+ * <li>--connections n: the number of connections, by default 4.</li>
+ * <li>--depth n: the requests in flight on each connection, by default 32.</li>
+ * <li>--keys n: the size of the key space, by default 1000000. An embedded server starts with half of it.</li>
+ * <li>--writes n: the percentage of requests that change the tree, by default 10.</li>
+ * <li>--seconds n: how long to run, by default 10.</li>
+ * </ul>
+ * @author Wesley Garey
+ */
+public class AvlLoadGenerator {
+  /**
+   * The address of the server.
+   */
+  private InetSocketAddress mAddress;
+  /**
+   * The number of connections.
+   */
+  private int mConnections;
+  /**
+   * The requests in flight on each connection.
+   */
+  private int mDepth;
+  /**
+   * How long to run, in nanoseconds.
+   */
+  private long mDuration;
+  /**
+   * The number of responses that were errors.
+   */
+  private AtomicLong mErrors;
+  /**
+   * The size of the key space.
+   */
+  private int mKeys;
+  /**
+   * The round-trip times of the batches, in nanoseconds, per connection.
+   */
+  private long[][] mLatencies;
+  /**
+   * The number of batches completed, per connection.
+   */
+  private int[] mRounds;
+  /**
+   * The percentage of requests that change the tree.
+   */
+  private int mWrites;
+  /**
+   * Creates an instance of the AvlLoadGenerator class.
+   * @param address The address of the server.
+   * @param connections The number of connections.
+   * @param depth The requests in flight on each connection.
+   * @param keys The size of the key space.
+   * @param writes The percentage of requests that change the tree.
+   * @param seconds How long to run.
+   */
+  public AvlLoadGenerator(InetSocketAddress address, int connections, int depth, int keys, int writes, int seconds) {
+    this.mAddress = address;
+    this.mConnections = connections;
+    this.mDepth = depth;
+    this.mDuration = seconds * 1000000000L;
+    this.mErrors = new AtomicLong();
+    this.mKeys = keys;
+    this.mLatencies = new long[connections][];
+    this.mRounds = new int[connections];
+    this.mWrites = writes;
+  }
+  /**
+   * Runs one connection until the time is up.
+   * @param index The connection.
+   * @throws IOException If the connection failed.
+   */
+  protected void drive(int index) throws IOException {
+    Random random = new Random(index);
+    long[] latencies = new long[1024];
+    int rounds = 0;
+    try (AvlClient<Long, Long> client = new AvlClient<Long, Long>(this.mAddress, new LongDeltaCodec(), new LongDeltaCodec())) {
+      long end = System.nanoTime() + this.mDuration;
+      long now = System.nanoTime();
+      while (now < end) {
+        for (int i = 0; i < this.mDepth; ++i) {
+          long key = random.nextInt(this.mKeys);
+          int dice = random.nextInt(100);
+          if (dice < this.mWrites / 2) {
+            client.sendInsert(key, key);
+          } else if (dice < this.mWrites) {
+            client.sendRemove(key);
+          } else {
+            client.sendGet(key);
+          }
+        }
+        client.flush();
+        for (int i = 0; i < this.mDepth; ++i) {
+          if (client.receive().isError()) {
+            this.mErrors.incrementAndGet();
+          }
+        }
+        long done = System.nanoTime();
+        if (rounds == latencies.length) {
+          latencies = Arrays.copyOf(latencies, 2 * rounds);
+        }
+        latencies[rounds] = done - now;
+        ++rounds;
+        now = done;
+      }
+    }
+    this.mLatencies[index] = Arrays.copyOf(latencies, rounds);
+    this.mRounds[index] = rounds;
+  }
+  /**
+   * Runs the load generator.
+   * @param args The arguments.
+   * @throws Exception If the server could not be reached.
+   */
+  public static void main(String[] args) throws Exception {
+    String host = null;
+    int port = AvlServer.DEFAULT_PORT;
+    boolean threadPerConnection = false;
+    int connections = 4;
+    int depth = 32;
+    int keys = 1000000;
+    int writes = 10;
+    int seconds = 10;
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("--threads")) {
+        threadPerConnection = true;
+      } else if (args[i].equals("--host")) {
+        host = args[++i];
+      } else if (args[i].equals("--port")) {
+        port = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--connections")) {
+        connections = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--depth")) {
+        depth = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--keys")) {
+        keys = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--writes")) {
+        writes = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--seconds")) {
+        seconds = Integer.parseInt(args[++i]);
+      } else {
+        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+      }
+    }
+    AvlServer<Long, Long> server = null;
+    InetSocketAddress address;
+    if (host == null) {
+      AvlTree<Long, Long> tree = new AvlTree<Long, Long>();
+      Long[] loaded = new Long[keys / 2];
+      for (int i = 0; i < loaded.length; ++i) {
+        loaded[i] = 2L * i;
+      }
+      tree.bulkLoad(loaded, loaded);
+      server = new AvlServer<Long, Long>(tree, new LongDeltaCodec(), new LongDeltaCodec(), new InetSocketAddress("127.0.0.1", 0), threadPerConnection);
+      server.start();
+      address = server.getAddress();
+    } else {
+      address = new InetSocketAddress(host, port);
+    }
+    try {
+      AvlLoadGenerator generator = new AvlLoadGenerator(address, connections, depth, keys, writes, seconds);
+      generator.run();
+      System.out.println(generator.report());
+    } finally {
+      if (server != null) {
+        server.close();
+      }
+    }
+  }
+  /**
+   * Summarizes a finished run.
+   * @return The throughput and the round-trip percentiles.
+   */
+  public String report() {
+    int total = 0;
+    for (int rounds : this.mRounds) {
+      total += rounds;
+    }
+    long[] all = new long[total];
+    int at = 0;
+    for (long[] latencies : this.mLatencies) {
+      System.arraycopy(latencies, 0, all, at, latencies.length);
+      at += latencies.length;
+    }
+    Arrays.sort(all);
+    long requests = (long)total * this.mDepth;
+    double seconds = this.mDuration / 1e9;
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%d connections, depth %d, %d%% writes%n", this.mConnections, this.mDepth, this.mWrites));
+    report.append(String.format("%d requests in %.1f s: %.0f requests/s, %d errors%n", requests, seconds, requests / seconds, this.mErrors.get()));
+    if (total > 0) {
+      report.append(String.format("batch round trip (us): p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+          all[(int)(total * 0.5)] / 1e3, all[(int)(total * 0.99)] / 1e3, all[(int)(total * 0.999)] / 1e3, all[total - 1] / 1e3));
+    }
+    return report.toString();
+  }
+  /**
+   * Runs every connection and waits for them to finish.
+   * @throws Exception If a connection failed.
+   */
+  public void run() throws Exception {
+    Thread[] threads = new Thread[this.mConnections];
+    final Exception[] failures = new Exception[this.mConnections];
+    for (int i = 0; i < threads.length; ++i) {
+      final int index = i;
+      threads[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            AvlLoadGenerator.this.drive(index);
+          } catch (IOException e) {
+            failures[index] = e;
+          }
+        }
+      }, "avl-load-" + i);
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i].join();
+      this.mLatencies[i] = (this.mLatencies[i] == null) ? new long[0] : this.mLatencies[i];
+      if (failures[i] != null) {
+        throw failures[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package wg.avl.server;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import wg.avl.AvlCodec;
+import wg.avl.AvlSnapshot;
+
+/**
+ * The binary protocol spoken between an AvlServer and its clients.
+ * Every message is a frame: a four-byte big-endian length and a body of that many bytes.
+ * A request body is an operation followed by its arguments; a response body is a status followed by its results.
+ * Keys are written with the key codec. Data is written as a byte, zero for null data, followed by the data codec.
+ * A client may send any number of requests before reading, and the responses come back in the same order.
+ * <ul>
+ * <li>INSERT key data: inserts an element, as AvlTree.insert does. Answers OK.</li>
+ * <li>PUT key data: sets the data of a key. Answers OK with the previous data, or NOT_FOUND.</li>
+ * <li>REMOVE key: removes every element with the key. Answers OK, whether or not the key was present.</li>
+ * <li>CONTAINS key: answers OK or NOT_FOUND.</li>
+ * <li>GET key: answers OK with the data, or NOT_FOUND.</li>
+ * <li>MIN, MAX: answer OK with the key and the data, or NOT_FOUND if the tree is empty.</li>
+ * <li>RANGE flags [lo] [hi] limit: answers OK with a varint count, the entries in key order, and a byte that is
+ * one if the range has more entries. The flags tell which bounds follow; the lower bound is inclusive unless
+ * RANGE_LO_EXCLUSIVE is set and the upper bound is exclusive. Each key after the first is written with the key
+ * before it as the previous value, so delta codecs apply. A limit of zero, or above MAX_RANGE, means MAX_RANGE.</li>
+ * </ul>
+ * A request that cannot be decoded or fails is answered with ERROR and a varint-length UTF-8 message.
+ * @author Wesley Garey
+ */
+public final class AvlProtocol {
+  /**
+   * Indicates if the tree contains a key.
+   */
+  public static final byte CONTAINS = 4;
+  /**
+   * The status of a request that failed.
+   */
+  public static final byte ERROR = 2;
+  /**
+   * The size of a frame header: the length of the body.
+   */
+  public static final int FRAME_HEADER_SIZE = 4;
+  /**
+   * Gets the data of a key.
+   */
+  public static final byte GET = 5;
+  /**
+   * Inserts an element.
+   */
+  public static final byte INSERT = 1;
+  /**
+   * Gets the largest key and its data.
+   */
+  public static final byte MAX = 7;
+  /**
+   * The largest frame body accepted.
+   */
+  public static final int MAX_FRAME_SIZE = 16 << 20;
+  /**
+   * The most entries a range response holds.
+   */
+  public static final int MAX_RANGE = 65536;
+  /**
+   * Gets the smallest key and its data.
+   */
+  public static final byte MIN = 6;
+  /**
+   * The status of a request that found nothing.
+   */
+  public static final byte NOT_FOUND = 1;
+  /**
+   * The status of a request that succeeded.
+   */
+  public static final byte OK = 0;
+  /**
+   * Sets the data of a key.
+   */
+  public static final byte PUT = 2;
+  /**
+   * Gets the entries whose keys are within a range.
+   */
+  public static final byte RANGE = 8;
+  /**
+   * The range flag for an upper bound.
+   */
+  public static final byte RANGE_HI = 2;
+  /**
+   * The range flag for a lower bound.
+   */
+  public static final byte RANGE_LO = 1;
+  /**
+   * The range flag for a lower bound that is not included.
+   */
+  public static final byte RANGE_LO_EXCLUSIVE = 4;
+  /**
+   * Removes every element with a key.
+   */
+  public static final byte REMOVE = 3;
+  /**
+   * Not used; the class only holds constants and helpers.
+   */
+  private AvlProtocol() {
+  }
+  /**
+   * Reads data, which may be null.
+   * @param <T> The data type.
+   * @param in The buffer, positioned at the data.
+   * @param codec The codec.
+   * @return The data.
+   * @throws IOException If the data is malformed.
+   */
+  public static <T> T readData(ByteBuffer in, AvlCodec<T> codec) throws IOException {
+    T data = null;
+    if (in.get() != 0) {
+      data = codec.read(in, null);
+    }
+    return data;
+  }
+  /**
+   * Reads a varint-length UTF-8 string.
+   * @param in The buffer, positioned at the string.
+   * @return The string.
+   * @throws IOException If the string is malformed.
+   */
+  public static String readString(ByteBuffer in) throws IOException {
+    long length = AvlSnapshot.readVarLong(in);
+    if (length < 0 || length > in.remaining()) {
+      throw new IOException("Bad string length: " + length);
+    }
+    byte[] bytes = new byte[(int)length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+  /**
+   * Writes data, which may be null.
+   * @param <T> The data type.
+   * @param out The output.
+   * @param codec The codec.
+   * @param data The data.
+   * @throws IOException If the data could not be written.
+   */
+  public static <T> void writeData(DataOutput out, AvlCodec<T> codec, T data) throws IOException {
+    if (data == null) {
+      out.writeByte(0);
+    } else {
+      out.writeByte(1);
+      codec.write(out, null, data);
+    }
+  }
+  /**
+   * Writes a varint-length UTF-8 string.
+   * @param out The output.
+   * @param value The string.
+   * @throws IOException If the string could not be written.
+   */
+  public static void writeString(DataOutput out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    AvlSnapshot.writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+}
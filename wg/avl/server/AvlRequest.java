@@ -0,0 +1,155 @@
+package wg.avl.server;
+
+/**
+ * A request decoded by an AvlServer, waiting for the pass that executes it.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlRequest<K, E> {
+  /**
+   * The connection to answer on.
+   */
+  private AvlServerConnection<K, E> mConnection;
+  /**
+   * The data, for inserts and puts.
+   */
+  private E mData;
+  /**
+   * The range flags.
+   */
+  private byte mFlags;
+  /**
+   * The upper bound of a range, or null.
+   */
+  private K mHi;
+  /**
+   * The key, or the lower bound of a range.
+   */
+  private K mKey;
+  /**
+   * The most entries a range returns.
+   */
+  private int mLimit;
+  /**
+   * Why the request could not be decoded, or null if it was.
+   */
+  private String mMessage;
+  /**
+   * The operation.
+   */
+  private byte mOp;
+  /**
+   * Gets the connection to answer on.
+   * @return The connection.
+   */
+  public AvlServerConnection<K, E> getConnection() {
+    return this.mConnection;
+  }
+  /**
+   * Gets the data, for inserts and puts.
+   * @return The data.
+   */
+  public E getData() {
+    return this.mData;
+  }
+  /**
+   * Gets the range flags.
+   * @return The flags.
+   */
+  public byte getFlags() {
+    return this.mFlags;
+  }
+  /**
+   * Gets the upper bound of a range.
+   * @return The bound, or null.
+   */
+  public K getHi() {
+    return this.mHi;
+  }
+  /**
+   * Gets the key, or the lower bound of a range.
+   * @return The key.
+   */
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the most entries a range returns.
+   * @return The limit.
+   */
+  public int getLimit() {
+    return this.mLimit;
+  }
+  /**
+   * Gets why the request could not be decoded.
+   * @return The message, or null if it was decoded.
+   */
+  public String getMessage() {
+    return this.mMessage;
+  }
+  /**
+   * Gets the operation.
+   * @return The operation.
+   */
+  public byte getOp() {
+    return this.mOp;
+  }
+  /**
+   * Sets the data, for inserts and puts.
+   * @param data The data.
+   */
+  public void setData(E data) {
+    this.mData = data;
+  }
+  /**
+   * Sets the range flags.
+   * @param flags The flags.
+   */
+  public void setFlags(byte flags) {
+    this.mFlags = flags;
+  }
+  /**
+   * Sets the upper bound of a range.
+   * @param hi The bound, or null.
+   */
+  public void setHi(K hi) {
+    this.mHi = hi;
+  }
+  /**
+   * Sets the key, or the lower bound of a range.
+   * @param key The key.
+   */
+  public void setKey(K key) {
+    this.mKey = key;
+  }
+  /**
+   * Sets the most entries a range returns.
+   * @param limit The limit.
+   */
+  public void setLimit(int limit) {
+    this.mLimit = limit;
+  }
+  /**
+   * Sets why the request could not be decoded.
+   * @param message The message.
+   */
+  public void setMessage(String message) {
+    this.mMessage = message;
+  }
+  /**
+   * Creates an instance of the AvlRequest class.
+   * @param connection The connection to answer on.
+   * @param op The operation.
+   */
+  public AvlRequest(AvlServerConnection<K, E> connection, byte op) {
+    this.mConnection = connection;
+    this.mData = null;
+    this.mFlags = 0;
+    this.mHi = null;
+    this.mKey = null;
+    this.mLimit = 0;
+    this.mMessage = null;
+    this.mOp = op;
+  }
+}
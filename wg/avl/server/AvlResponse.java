@@ -0,0 +1,154 @@
+package wg.avl.server;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response received by an AvlClient.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlResponse<K, E> {
+  /**
+   * The data found, for puts, gets, mins and maxes.
+   */
+  private E mData;
+  /**
+   * The entries of a range, in key order.
+   */
+  private List<Map.Entry<K, E>> mEntries;
+  /**
+   * The key found, for mins and maxes.
+   */
+  private K mKey;
+  /**
+   * The error message, or null if the request did not fail.
+   */
+  private String mMessage;
+  /**
+   * Indicates if a range has more entries than were returned.
+   */
+  private boolean mMore;
+  /**
+   * The operation of the request answered.
+   */
+  private byte mOp;
+  /**
+   * The status.
+   */
+  private byte mStatus;
+  /**
+   * Gets the data found, for puts, gets, mins and maxes.
+   * @return The data.
+   */
+  public E getData() {
+    return this.mData;
+  }
+  /**
+   * Gets the entries of a range, in key order.
+   * @return The entries, which are empty for other operations.
+   */
+  public List<Map.Entry<K, E>> getEntries() {
+    return this.mEntries;
+  }
+  /**
+   * Gets the key found, for mins and maxes.
+   * @return The key.
+   */
+  public K getKey() {
+    return this.mKey;
+  }
+  /**
+   * Gets the error message.
+   * @return The message, or null if the request did not fail.
+   */
+  public String getMessage() {
+    return this.mMessage;
+  }
+  /**
+   * Gets the operation of the request answered.
+   * @return The operation.
+   */
+  public byte getOp() {
+    return this.mOp;
+  }
+  /**
+   * Gets the status.
+   * @return The status.
+   */
+  public byte getStatus() {
+    return this.mStatus;
+  }
+  /**
+   * Indicates if the request failed.
+   * @return True, if the status is ERROR.
+   */
+  public boolean isError() {
+    return (this.mStatus == AvlProtocol.ERROR);
+  }
+  /**
+   * Indicates if the request found what it looked for.
+   * @return True, if the status is OK.
+   */
+  public boolean isFound() {
+    return (this.mStatus == AvlProtocol.OK);
+  }
+  /**
+   * Indicates if a range has more entries than were returned.
+   * @return True, if there are more entries.
+   */
+  public boolean isMore() {
+    return this.mMore;
+  }
+  /**
+   * Sets the data found.
+   * @param data The data.
+   */
+  public void setData(E data) {
+    this.mData = data;
+  }
+  /**
+   * Sets the entries of a range.
+   * @param entries The entries.
+   */
+  public void setEntries(List<Map.Entry<K, E>> entries) {
+    this.mEntries = entries;
+  }
+  /**
+   * Sets the key found.
+   * @param key The key.
+   */
+  public void setKey(K key) {
+    this.mKey = key;
+  }
+  /**
+   * Sets the error message.
+   * @param message The message.
+   */
+  public void setMessage(String message) {
+    this.mMessage = message;
+  }
+  /**
+   * Sets if a range has more entries than were returned.
+   * @param more True, if there are more entries.
+   */
+  public void setMore(boolean more) {
+    this.mMore = more;
+  }
+  /**
+   * Creates an instance of the AvlResponse class.
+   * @param op The operation of the request answered.
+   * @param status The status.
+   */
+  public AvlResponse(byte op, byte status) {
+    this.mData = null;
+    this.mEntries = Collections.emptyList();
+    this.mKey = null;
+    this.mMessage = null;
+    this.mMore = false;
+    this.mOp = op;
+    this.mStatus = status;
+  }
+}
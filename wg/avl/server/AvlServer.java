@@ -0,0 +1,659 @@
+package wg.avl.server;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import wg.avl.AvlCodec;
+import wg.avl.AvlTree;
+import wg.avl.AvlTreeRange;
+import wg.avl.AvlSnapshot;
+import wg.avl.LongDeltaCodec;
+
+/**
+ * A TCP server that shares one AVL tree between processes, using the protocol described by AvlProtocol.
+ * By default one thread runs a non-blocking selector over every connection. Each round of the selector decodes
+ * the requests of every connection that is ready and executes them in one pass, in the order received, inside one
+ * listener batch; a run of inserts or removes in that pass goes to the tree as one insertAll or removeAll.
+ * Alternatively, each connection gets a thread of its own, which is a virtual thread where the runtime has them.
+ * Each such thread executes whatever its client has pipelined as one pass, holding the tree for the whole pass.
+ * Either way, a pass holds the monitor of the tree, so code in the same process that synchronizes on the tree
+ * may read or change it while the server runs.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlServer<K, E> implements Closeable {
+  /**
+   * The port used when none is given.
+   */
+  public static final int DEFAULT_PORT = 7450;
+  /**
+   * The number of unsent response bytes above which a connection is not read until its client catches up.
+   */
+  public static final int MAX_PENDING_OUTPUT = 4 << 20;
+  /**
+   * The address to listen on.
+   */
+  private InetSocketAddress mAddress;
+  /**
+   * The open connections.
+   */
+  private Set<AvlServerConnection<K, E>> mConnections;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * Indicates if the server has been started and not yet closed.
+   */
+  private volatile boolean mRunning;
+  /**
+   * The selector, in selector mode.
+   */
+  private Selector mSelector;
+  /**
+   * The listening channel.
+   */
+  private ServerSocketChannel mServerChannel;
+  /**
+   * The thread that runs the selector or accepts connections.
+   */
+  private Thread mThread;
+  /**
+   * Makes the connection threads, or null in selector mode.
+   */
+  private ThreadFactory mThreadFactory;
+  /**
+   * The tree being shared.
+   */
+  private AvlTree<K, E> mTree;
+  /**
+   * Indicates if the connection threads are virtual threads.
+   */
+  private boolean mVirtual;
+  /**
+   * Gets the address the server listens on.
+   * Once started with port zero, this is the port the system picked.
+   * @return The address.
+   */
+  public InetSocketAddress getAddress() {
+    return this.mAddress;
+  }
+  /**
+   * Gets the port the server listens on.
+   * @return The port.
+   */
+  public int getPort() {
+    return this.mAddress.getPort();
+  }
+  /**
+   * Gets the thread that runs the selector or accepts connections.
+   * @return The thread, or null if the server has not been started.
+   */
+  protected Thread getThread() {
+    return this.mThread;
+  }
+  /**
+   * Gets the tree being shared.
+   * @return The tree.
+   */
+  public AvlTree<K, E> getTree() {
+    return this.mTree;
+  }
+  /**
+   * Indicates if the server is running.
+   * @return True, if the server has been started and not yet closed.
+   */
+  public boolean isRunning() {
+    return this.mRunning;
+  }
+  /**
+   * Indicates if each connection has its own thread instead of sharing the selector thread.
+   * @return True, in thread-per-connection mode.
+   */
+  public boolean isThreadPerConnection() {
+    return (this.mThreadFactory != null);
+  }
+  /**
+   * Indicates if the connection threads are virtual threads.
+   * @return True, if they are virtual threads; false in selector mode or where the runtime has none.
+   */
+  public boolean isVirtual() {
+    return this.mVirtual;
+  }
+  /**
+   * Creates an instance of the AvlServer class in selector mode.
+   * @param tree The tree to share.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @param address The address to listen on. Port zero lets the system pick a port.
+   */
+  public AvlServer(AvlTree<K, E> tree, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec, InetSocketAddress address) {
+    this(tree, keyCodec, dataCodec, address, false);
+  }
+  /**
+   * Creates an instance of the AvlServer class.
+   * @param tree The tree to share.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   * @param address The address to listen on. Port zero lets the system pick a port.
+   * @param threadPerConnection True, to give each connection its own thread, a virtual one where the runtime has them.
+   */
+  public AvlServer(AvlTree<K, E> tree, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec, InetSocketAddress address, boolean threadPerConnection) {
+    this.mAddress = address;
+    this.mConnections = ConcurrentHashMap.newKeySet();
+    this.mDataCodec = dataCodec;
+    this.mKeyCodec = keyCodec;
+    this.mRunning = false;
+    this.mSelector = null;
+    this.mServerChannel = null;
+    this.mThread = null;
+    this.mThreadFactory = null;
+    this.mTree = tree;
+    this.mVirtual = false;
+    if (threadPerConnection) {
+      this.mThreadFactory = AvlServer.createVirtualThreadFactory();
+      this.mVirtual = (this.mThreadFactory != null);
+      if (this.mThreadFactory == null) {
+        this.mThreadFactory = AvlServer.createDaemonThreadFactory("avl-server-connection");
+      }
+    }
+  }
+  /**
+   * Accepts a connection and registers it with the selector.
+   * @throws IOException If the connection could not be accepted.
+   */
+  protected void accept() throws IOException {
+    SocketChannel channel = this.mServerChannel.accept();
+    if (channel != null) {
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.configureBlocking(false);
+      AvlServerConnection<K, E> connection = new AvlServerConnection<K, E>(channel, this.mKeyCodec, this.mDataCodec);
+      this.mConnections.add(connection);
+      channel.register(this.mSelector, SelectionKey.OP_READ, connection);
+    }
+  }
+  /**
+   * Stops the server, closing every connection. Responses not yet sent are dropped.
+   * @throws IOException If the listening channel could not be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.mRunning = false;
+    if (this.mSelector != null) {
+      this.mSelector.wakeup();
+    }
+    if (this.mServerChannel != null) {
+      this.mServerChannel.close();
+    }
+    if (this.mThread != null && this.mThread != Thread.currentThread()) {
+      try {
+        this.mThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (AvlServerConnection<K, E> connection : this.mConnections) {
+      this.closeConnection(connection);
+    }
+    if (this.mSelector != null) {
+      this.mSelector.close();
+    }
+  }
+  /**
+   * Closes a connection, ignoring any failure.
+   * @param connection The connection.
+   */
+  protected void closeConnection(AvlServerConnection<K, E> connection) {
+    this.mConnections.remove(connection);
+    try {
+      connection.close();
+    } catch (IOException e) {
+      //The connection is gone either way
+    }
+  }
+  /**
+   * Gets the connection attached to a selection key.
+   * @param key The selection key.
+   * @return The connection, or null for the listening channel.
+   */
+  @SuppressWarnings("unchecked")
+  protected AvlServerConnection<K, E> connectionOf(SelectionKey key) {
+    return (AvlServerConnection<K, E>)key.attachment();
+  }
+  /**
+   * Creates a key array whose class is that of the keys, so trees that declare their keys Comparable accept it.
+   * @param keyClass The class of the keys.
+   * @param length The length.
+   * @return The array.
+   */
+  @SuppressWarnings("unchecked")
+  protected K[] createKeys(Class<?> keyClass, int length) {
+    return (K[])Array.newInstance(keyClass, length);
+  }
+  /**
+   * Creates a factory of named daemon platform threads.
+   * @param name The name of the threads.
+   * @return The factory.
+   */
+  protected static ThreadFactory createDaemonThreadFactory(final String name) {
+    ThreadFactory factory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+    return factory;
+  }
+  /**
+   * Creates a factory of virtual threads, found by reflection so the server also runs on older runtimes.
+   * @return The factory, or null if the runtime has no virtual threads or has them only as a preview.
+   */
+  protected static ThreadFactory createVirtualThreadFactory() {
+    ThreadFactory factory = null;
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Method create = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+      factory = (ThreadFactory)create.invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      //Not available on this runtime
+    } catch (RuntimeException e) {
+      //Not available on this runtime
+    }
+    return factory;
+  }
+  /**
+   * Executes a pass of requests in order and writes their responses.
+   * Consecutive inserts, or consecutive removes, are applied as one batch.
+   * @param pass The requests.
+   */
+  protected void execute(List<AvlRequest<K, E>> pass) {
+    AvlTree<K, E> tree = this.getTree();
+    synchronized (tree) {
+      tree.beginBatch();
+      try {
+        int i = 0;
+        while (i < pass.size()) {
+          byte op = pass.get(i).getOp();
+          int end = i + 1;
+          if ((op == AvlProtocol.INSERT || op == AvlProtocol.REMOVE) && pass.get(i).getMessage() == null) {
+            while (end < pass.size() && pass.get(end).getOp() == op && pass.get(end).getMessage() == null) {
+              ++end;
+            }
+          }
+          if (end - i > 1) {
+            this.executeRun(pass, i, end);
+          } else {
+            this.executeOne(pass.get(i));
+          }
+          i = end;
+        }
+      } finally {
+        tree.endBatch();
+      }
+    }
+  }
+  /**
+   * Executes one request and writes its response.
+   * @param request The request.
+   */
+  protected void executeOne(AvlRequest<K, E> request) {
+    AvlTree<K, E> tree = this.getTree();
+    AvlServerConnection<K, E> connection = request.getConnection();
+    AvlFrameBuffer out = connection.getOut();
+    DataOutput data = connection.getOutData();
+    out.beginFrame();
+    try {
+      if (request.getMessage() != null) {
+        throw new IllegalArgumentException(request.getMessage());
+      }
+      switch (request.getOp()) {
+        case AvlProtocol.INSERT:
+          tree.insert(request.getKey(), request.getData());
+          data.writeByte(AvlProtocol.OK);
+          break;
+        case AvlProtocol.PUT:
+          int count = tree.getCount();
+          E previous = tree.put(request.getKey(), request.getData());
+          this.writeData(data, tree.getCount() == count, previous);
+          break;
+        case AvlProtocol.REMOVE:
+          K[] removed = this.createKeys(request.getKey().getClass(), 1);
+          removed[0] = request.getKey();
+          tree.removeAll(removed);
+          data.writeByte(AvlProtocol.OK);
+          break;
+        case AvlProtocol.CONTAINS:
+          data.writeByte(tree.contains(request.getKey()) ? AvlProtocol.OK : AvlProtocol.NOT_FOUND);
+          break;
+        case AvlProtocol.GET:
+          Iterator<Map.Entry<K, E>> match = new AvlTreeRange<K, E>(tree, request.getKey(), true, request.getKey(), true).iterator();
+          this.writeData(data, match.hasNext(), match.hasNext() ? match.next().getValue() : null);
+          break;
+        case AvlProtocol.MIN:
+        case AvlProtocol.MAX:
+          this.writeEnd(data, request.getOp() == AvlProtocol.MAX);
+          break;
+        default:
+          this.writeRange(data, request);
+          break;
+      }
+    } catch (IOException | RuntimeException e) {
+      out.cancelFrame();
+      out.beginFrame();
+      this.writeError(data, e);
+    }
+    out.endFrame();
+  }
+  /**
+   * Executes a run of inserts, or of removes, as one batch and answers each of them.
+   * @param pass The requests.
+   * @param start The start of the run, inclusive.
+   * @param end The end of the run, exclusive.
+   */
+  @SuppressWarnings("unchecked")
+  protected void executeRun(List<AvlRequest<K, E>> pass, int start, int end) {
+    AvlTree<K, E> tree = this.getTree();
+    byte op = pass.get(start).getOp();
+    //the key array must have the class of the keys, since trees bounded by Comparable cast it
+    Class<?> keyClass = pass.get(start).getKey().getClass();
+    for (int i = start + 1; i < end; ++i) {
+      while (!keyClass.isInstance(pass.get(i).getKey())) {
+        keyClass = keyClass.getSuperclass();
+      }
+    }
+    K[] keys = this.createKeys(keyClass, end - start);
+    E[] data = (E[])new Object[end - start];
+    for (int i = start; i < end; ++i) {
+      keys[i - start] = pass.get(i).getKey();
+      data[i - start] = pass.get(i).getData();
+    }
+    RuntimeException failure = null;
+    try {
+      if (op == AvlProtocol.INSERT) {
+        tree.insertAll(keys, data);
+      } else {
+        tree.removeAll(keys);
+      }
+    } catch (RuntimeException e) {
+      failure = e;
+    }
+    for (int i = start; i < end; ++i) {
+      AvlServerConnection<K, E> connection = pass.get(i).getConnection();
+      connection.getOut().beginFrame();
+      if (failure == null) {
+        this.writeStatus(connection.getOutData(), AvlProtocol.OK);
+      } else {
+        this.writeError(connection.getOutData(), failure);
+      }
+      connection.getOut().endFrame();
+    }
+  }
+  /**
+   * Runs a standalone server that shares a tree of Long keys and Long data.
+   * Arguments: [port] [--threads], where --threads gives each connection its own thread.
+   * @param args The arguments.
+   * @throws IOException If the server could not start.
+   * @throws InterruptedException If the thread is interrupted while serving.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = AvlServer.DEFAULT_PORT;
+    boolean threadPerConnection = false;
+    for (String arg : args) {
+      if (arg.equals("--threads")) {
+        threadPerConnection = true;
+      } else {
+        port = Integer.parseInt(arg);
+      }
+    }
+    AvlServer<Long, Long> server = new AvlServer<Long, Long>(new AvlTree<Long, Long>(), new LongDeltaCodec(), new LongDeltaCodec(), new InetSocketAddress(port), threadPerConnection);
+    server.start();
+    String mode = "selector";
+    if (server.isThreadPerConnection()) {
+      mode = server.isVirtual() ? "virtual threads" : "platform threads";
+    }
+    System.out.println("Serving on " + server.getAddress() + " (" + mode + ")");
+    server.getThread().join();
+  }
+  /**
+   * Accepts connections and gives each a thread, until the server is closed.
+   */
+  protected void runAcceptor() {
+    while (this.mRunning) {
+      try {
+        SocketChannel channel = this.mServerChannel.accept();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        final AvlServerConnection<K, E> connection = new AvlServerConnection<K, E>(channel, this.mKeyCodec, this.mDataCodec);
+        this.mConnections.add(connection);
+        this.mThreadFactory.newThread(new Runnable() {
+          @Override
+          public void run() {
+            AvlServer.this.serve(connection);
+          }
+        }).start();
+      } catch (IOException e) {
+        //The listening channel was closed, or one accept failed
+      }
+    }
+  }
+  /**
+   * Runs the selector until the server is closed.
+   */
+  protected void runSelector() {
+    ArrayList<AvlRequest<K, E>> pass = new ArrayList<AvlRequest<K, E>>();
+    ArrayList<SelectionKey> ready = new ArrayList<SelectionKey>();
+    while (this.mRunning) {
+      try {
+        this.mSelector.select();
+      } catch (IOException e) {
+        this.mRunning = false;
+      }
+      Iterator<SelectionKey> keys = this.mSelector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        try {
+          if (key.isValid() && key.isAcceptable()) {
+            this.accept();
+          } else if (key.isValid()) {
+            AvlServerConnection<K, E> connection = this.connectionOf(key);
+            ready.add(key);
+            if (key.isReadable() && connection.read(pass) < 0) {
+              this.closeConnection(connection);
+            }
+          }
+        } catch (IOException e) {
+          if (key.attachment() != null) {
+            this.closeConnection(this.connectionOf(key));
+          }
+        }
+      }
+      this.execute(pass);
+      pass.clear();
+      for (SelectionKey key : ready) {
+        AvlServerConnection<K, E> connection = this.connectionOf(key);
+        if (key.isValid() && connection.isOpen()) {
+          try {
+            int pending = connection.flush();
+            int ops = 0;
+            if (pending > 0) {
+              ops |= SelectionKey.OP_WRITE;
+            }
+            if (pending < MAX_PENDING_OUTPUT) {
+              ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+          } catch (IOException e) {
+            this.closeConnection(connection);
+          }
+        }
+      }
+      ready.clear();
+    }
+  }
+  /**
+   * Serves one connection on its own thread until the client closes it or the server is closed.
+   * @param connection The connection.
+   */
+  protected void serve(AvlServerConnection<K, E> connection) {
+    ArrayList<AvlRequest<K, E>> pass = new ArrayList<AvlRequest<K, E>>();
+    try {
+      while (connection.read(pass) >= 0) {
+        if (!pass.isEmpty()) {
+          this.execute(pass);
+          pass.clear();
+          connection.flush();
+        }
+      }
+    } catch (IOException e) {
+      //The client went away or sent a bad frame
+    } finally {
+      this.closeConnection(connection);
+    }
+  }
+  /**
+   * Starts listening and serving on a background thread.
+   * @throws IOException If the address could not be bound.
+   * @throws IllegalStateException If the server has already been started.
+   */
+  public void start() throws IOException {
+    if (this.mServerChannel != null) {
+      throw new IllegalStateException("The server has already been started.");
+    }
+    this.mServerChannel = ServerSocketChannel.open();
+    this.mServerChannel.bind(this.mAddress);
+    this.mAddress = (InetSocketAddress)this.mServerChannel.getLocalAddress();
+    this.mRunning = true;
+    Runnable loop;
+    if (this.isThreadPerConnection()) {
+      loop = new Runnable() {
+        @Override
+        public void run() {
+          AvlServer.this.runAcceptor();
+        }
+      };
+    } else {
+      this.mSelector = Selector.open();
+      this.mServerChannel.configureBlocking(false);
+      this.mServerChannel.register(this.mSelector, SelectionKey.OP_ACCEPT);
+      loop = new Runnable() {
+        @Override
+        public void run() {
+          AvlServer.this.runSelector();
+        }
+      };
+    }
+    this.mThread = AvlServer.createDaemonThreadFactory("avl-server").newThread(loop);
+    this.mThread.start();
+  }
+  /**
+   * Writes the status of a lookup and, if it found something, the data.
+   * @param out The output.
+   * @param found True, if the lookup found something.
+   * @param data The data found.
+   * @throws IOException If the data could not be written.
+   */
+  protected void writeData(DataOutput out, boolean found, E data) throws IOException {
+    if (found) {
+      out.writeByte(AvlProtocol.OK);
+      AvlProtocol.writeData(out, this.mDataCodec, data);
+    } else {
+      out.writeByte(AvlProtocol.NOT_FOUND);
+    }
+  }
+  /**
+   * Writes the smallest or largest entry of the tree.
+   * @param out The output.
+   * @param max True, for the largest entry.
+   * @throws IOException If the entry could not be written.
+   */
+  protected void writeEnd(DataOutput out, boolean max) throws IOException {
+    AvlTree<K, E> tree = this.getTree();
+    if (tree.isEmpty()) {
+      out.writeByte(AvlProtocol.NOT_FOUND);
+    } else {
+      Map.Entry<K, E> entry;
+      if (max) {
+        entry = tree.descendingIterator().next();
+      } else {
+        entry = tree.iterator().next();
+      }
+      out.writeByte(AvlProtocol.OK);
+      this.mKeyCodec.write(out, null, entry.getKey());
+      AvlProtocol.writeData(out, this.mDataCodec, entry.getValue());
+    }
+  }
+  /**
+   * Writes an error response.
+   * @param out The output.
+   * @param failure Why the request failed.
+   */
+  protected void writeError(DataOutput out, Exception failure) {
+    String message = failure.getMessage();
+    if (message == null) {
+      message = failure.getClass().getName();
+    }
+    try {
+      out.writeByte(AvlProtocol.ERROR);
+      AvlProtocol.writeString(out, message);
+    } catch (IOException e) {
+      //The output is in memory
+    }
+  }
+  /**
+   * Writes the entries of a range, up to its limit.
+   * @param out The output.
+   * @param request The range request.
+   * @throws IOException If an entry could not be written.
+   */
+  protected void writeRange(DataOutput out, AvlRequest<K, E> request) throws IOException {
+    boolean loInclusive = ((request.getFlags() & AvlProtocol.RANGE_LO_EXCLUSIVE) == 0);
+    Iterator<Map.Entry<K, E>> entries = new AvlTreeRange<K, E>(this.getTree(), request.getKey(), loInclusive, request.getHi(), false).iterator();
+    ArrayList<Map.Entry<K, E>> chunk = new ArrayList<Map.Entry<K, E>>();
+    while (entries.hasNext() && chunk.size() < request.getLimit()) {
+      chunk.add(entries.next());
+    }
+    out.writeByte(AvlProtocol.OK);
+    AvlSnapshot.writeVarLong(out, chunk.size());
+    K previous = null;
+    for (Map.Entry<K, E> entry : chunk) {
+      this.mKeyCodec.write(out, previous, entry.getKey());
+      AvlProtocol.writeData(out, this.mDataCodec, entry.getValue());
+      previous = entry.getKey();
+    }
+    out.writeByte(entries.hasNext() ? 1 : 0);
+  }
+  /**
+   * Writes a status with no results.
+   * @param out The output.
+   * @param status The status.
+   */
+  protected void writeStatus(DataOutput out, byte status) {
+    try {
+      out.writeByte(status);
+    } catch (IOException e) {
+      //The output is in memory
+    }
+  }
+}
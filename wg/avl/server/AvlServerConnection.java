@@ -0,0 +1,203 @@
+package wg.avl.server;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import wg.avl.AvlCodec;
+import wg.avl.AvlSnapshot;
+
+/**
+ * A client connection to an AvlServer: the bytes received but not yet decoded and the responses not yet sent.
+ * @author Wesley Garey
+ * @param <K> The key data type.
+ * @param <E> The data data type.
+ */
+public class AvlServerConnection<K, E> implements Closeable {
+  /**
+   * The initial size of the input and output buffers.
+   */
+  public static final int BUFFER_SIZE = 64 * 1024;
+  /**
+   * The channel.
+   */
+  private SocketChannel mChannel;
+  /**
+   * The codec for the data.
+   */
+  private AvlCodec<E> mDataCodec;
+  /**
+   * The bytes received and not yet decoded, ready to receive more.
+   */
+  private ByteBuffer mIn;
+  /**
+   * The codec for the keys.
+   */
+  private AvlCodec<K> mKeyCodec;
+  /**
+   * The responses not yet sent.
+   */
+  private AvlFrameBuffer mOut;
+  /**
+   * A data output that writes to the responses not yet sent.
+   */
+  private DataOutputStream mOutData;
+  /**
+   * Gets the channel.
+   * @return The channel.
+   */
+  public SocketChannel getChannel() {
+    return this.mChannel;
+  }
+  /**
+   * Gets the responses not yet sent.
+   * @return The buffer.
+   */
+  public AvlFrameBuffer getOut() {
+    return this.mOut;
+  }
+  /**
+   * Gets a data output that writes to the responses not yet sent.
+   * @return The output.
+   */
+  public DataOutput getOutData() {
+    return this.mOutData;
+  }
+  /**
+   * Creates an instance of the AvlServerConnection class.
+   * @param channel The channel.
+   * @param keyCodec The codec for the keys.
+   * @param dataCodec The codec for the data.
+   */
+  public AvlServerConnection(SocketChannel channel, AvlCodec<K> keyCodec, AvlCodec<E> dataCodec) {
+    this.mChannel = channel;
+    this.mDataCodec = dataCodec;
+    this.mIn = ByteBuffer.allocate(BUFFER_SIZE);
+    this.mKeyCodec = keyCodec;
+    this.mOut = new AvlFrameBuffer(BUFFER_SIZE);
+    this.mOutData = new DataOutputStream(this.mOut);
+  }
+  /**
+   * Closes the channel.
+   * @throws IOException If the channel could not be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    this.mChannel.close();
+  }
+  /**
+   * Decodes the body of a request. A body that is malformed gives a request that carries the reason.
+   * @param body The body.
+   * @return The request.
+   */
+  @SuppressWarnings("unchecked")
+  protected AvlRequest<K, E> decode(ByteBuffer body) {
+    AvlRequest<K, E> request = new AvlRequest<K, E>(this, (byte)0);
+    try {
+      byte op = body.get();
+      request = new AvlRequest<K, E>(this, op);
+      switch (op) {
+        case AvlProtocol.INSERT:
+        case AvlProtocol.PUT:
+          request.setKey(this.mKeyCodec.read(body, null));
+          request.setData(AvlProtocol.readData(body, this.mDataCodec));
+          break;
+        case AvlProtocol.REMOVE:
+        case AvlProtocol.CONTAINS:
+        case AvlProtocol.GET:
+          request.setKey(this.mKeyCodec.read(body, null));
+          break;
+        case AvlProtocol.MIN:
+        case AvlProtocol.MAX:
+          break;
+        case AvlProtocol.RANGE:
+          byte flags = body.get();
+          request.setFlags(flags);
+          if ((flags & AvlProtocol.RANGE_LO) != 0) {
+            request.setKey(this.mKeyCodec.read(body, null));
+          }
+          if ((flags & AvlProtocol.RANGE_HI) != 0) {
+            request.setHi(this.mKeyCodec.read(body, null));
+          }
+          long limit = AvlSnapshot.readVarLong(body);
+          if (limit <= 0 || limit > AvlProtocol.MAX_RANGE) {
+            limit = AvlProtocol.MAX_RANGE;
+          }
+          request.setLimit((int)limit);
+          break;
+        default:
+          request.setMessage("Unknown operation: " + op);
+          break;
+      }
+      if (request.getMessage() == null && body.hasRemaining()) {
+        request.setMessage("Trailing bytes after operation " + op);
+      }
+    } catch (IOException e) {
+      request.setMessage("Malformed request: " + e.getMessage());
+    } catch (BufferUnderflowException e) {
+      request.setMessage("Truncated request.");
+    }
+    return request;
+  }
+  /**
+   * Sends as much of the responses as the channel takes.
+   * @return The number of bytes still waiting to be sent.
+   * @throws IOException If the channel failed.
+   */
+  public int flush() throws IOException {
+    this.mOut.send(this.mChannel);
+    return this.mOut.getPending();
+  }
+  /**
+   * Indicates if the channel is open.
+   * @return True, if the channel is open.
+   */
+  public boolean isOpen() {
+    return this.mChannel.isOpen();
+  }
+  /**
+   * Reads from the channel once and decodes every whole request received so far.
+   * @param requests The list the requests are added to, in the order they were sent.
+   * @return The number of bytes read, or -1 if the client closed its side.
+   * @throws IOException If the channel failed or a frame is larger than the protocol allows.
+   */
+  public int read(List<AvlRequest<K, E>> requests) throws IOException {
+    int read = this.mChannel.read(this.mIn);
+    this.mIn.flip();
+    boolean done = false;
+    while (!done && this.mIn.remaining() >= AvlProtocol.FRAME_HEADER_SIZE) {
+      int length = this.mIn.getInt(this.mIn.position());
+      if (length < 1 || length > AvlProtocol.MAX_FRAME_SIZE) {
+        throw new IOException("Bad frame length: " + length);
+      }
+      if (this.mIn.remaining() - AvlProtocol.FRAME_HEADER_SIZE >= length) {
+        int start = this.mIn.position() + AvlProtocol.FRAME_HEADER_SIZE;
+        ByteBuffer body = this.mIn.duplicate();
+        body.position(start);
+        body.limit(start + length);
+        requests.add(this.decode(body.slice()));
+        this.mIn.position(start + length);
+      } else {
+        done = true;
+        int needed = AvlProtocol.FRAME_HEADER_SIZE + length;
+        if (needed > this.mIn.capacity()) {
+          //grow to hold the whole frame; the buffer shrinks back once it is decoded
+          ByteBuffer larger = ByteBuffer.allocate(needed);
+          larger.put(this.mIn);
+          larger.flip();
+          this.mIn = larger;
+        }
+      }
+    }
+    if (!this.mIn.hasRemaining() && this.mIn.capacity() > BUFFER_SIZE) {
+      this.mIn = ByteBuffer.allocate(BUFFER_SIZE);
+    } else {
+      this.mIn.compact();
+    }
+    return read;
+  }
+}